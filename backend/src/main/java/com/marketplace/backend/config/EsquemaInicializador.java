@@ -0,0 +1,300 @@
+package com.marketplace.backend.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import com.marketplace.backend.dominio.Carrito;
+import com.marketplace.backend.service.VentaService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Ajustes de datos que ddl-auto=update no hace por sí solo.
+ * Se ejecuta después de crear el EntityManagerFactory (esquema actualizado)
+ * y antes de que el servidor acepte peticiones. Cada ajuste corre una sola vez en toda
+ * la base y las demás instancias esperan a que termine (ver MigracionDatos).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EsquemaInicializador {
+
+    // Debe coincidir con el allocationSize de los @TableGenerator
+    private static final int BLOQUE_IDS = 50;
+
+    // Fila de generadores_id -> tabla cuyos ids asigna
+    private static final Map<String, String> GENERADORES = Map.of(
+            "detalle_pedido", "detalle_pedido",
+            "imagenes_producto", "imagenes_producto",
+            "sub_pedidos", "sub_pedidos");
+
+    // Columnas de la venta en reservas_stock, obligatorias desde que el conciliador suma ventas_diarias
+    private static final Map<String, String> VENTA_EN_RESERVAS = new LinkedHashMap<>(Map.of(
+            "proveedor_id", "BIGINT",
+            "fecha_venta", "DATE",
+            "ingresos", "DECIMAL(14,2)",
+            "lineas", "INT"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final TransactionTemplate transactionTemplate;
+    private final VentaService ventaService;
+
+    // Solo para garantizar que el esquema ya fue creado/actualizado por Hibernate
+    private final EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void inicializar() {
+        migrar("detalle_pedido.fecha_pedido", this::completarFechaEnDetalles);
+        migrar("sub_pedidos", this::completarSubPedidos);
+        migrar("generadores_id", this::alinearGeneradoresId);
+        migrar("ventas_diarias", this::inicializarVentasDiarias);
+        migrar("carrito.unico_usuario_producto", this::unificarLineasDeCarrito);
+        migrar("reservas_stock.venta_obligatoria", this::exigirVentaEnReservas);
+        migrar("productos.calificacion_obligatoria", this::exigirCalificacionEnProductos);
+    }
+
+    /**
+     * Ejecutar el ajuste si ninguna instancia lo hizo antes. El registro se inserta en una
+     * transacción propia (en otra conexión) que queda abierta mientras corre el ajuste y se
+     * confirma al terminar: otra instancia que arranca a la vez se bloquea en su INSERT hasta
+     * ese commit y luego lo salta. Si el proceso muere a medias la transacción se deshace y
+     * el ajuste, que es repetible, se vuelve a ejecutar en el próximo arranque.
+     */
+    private void migrar(String nombre, Runnable ajuste) {
+        try (Connection conexion = dataSource.getConnection()) {
+            conexion.setAutoCommit(false);
+            JdbcTemplate registro = new JdbcTemplate(new SingleConnectionDataSource(conexion, true));
+            if (!registrar(registro, nombre)) {
+                conexion.rollback();
+                return;
+            }
+            try {
+                ajuste.run();
+            } catch (RuntimeException e) {
+                conexion.rollback();
+                throw e;
+            }
+            conexion.commit();
+            log.info("Migración de datos {} aplicada", nombre);
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo registrar la migración " + nombre, e);
+        }
+    }
+
+    /**
+     * Insertar el registro de la migración; false si otra instancia ya la terminó
+     */
+    private boolean registrar(JdbcTemplate registro, String nombre) {
+        while (true) {
+            try {
+                registro.update("INSERT INTO migraciones_datos (nombre, fecha) VALUES (?, ?)",
+                        nombre, LocalDateTime.now());
+                return true;
+            } catch (DuplicateKeyException e) {
+                return false;
+            } catch (PessimisticLockingFailureException e) {
+                log.info("Esperando a que otra instancia termine la migración {}", nombre);
+            }
+        }
+    }
+
+    /**
+     * Las tablas que pasaron de IDENTITY a ids por bloques ya tienen filas: el generador
+     * debe empezar por encima del id máximo existente para no repetir claves
+     */
+    private void alinearGeneradoresId() {
+        GENERADORES.forEach((entidad, tabla) -> {
+            Long maximo = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + tabla, Long.class);
+            long minimo = maximo + BLOQUE_IDS + 1;
+
+            Integer filas = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM generadores_id WHERE entidad = ?", Integer.class, entidad);
+            if (filas == 0) {
+                jdbcTemplate.update("INSERT INTO generadores_id (entidad, siguiente_id) VALUES (?, ?)",
+                        entidad, minimo);
+            } else {
+                jdbcTemplate.update(
+                        "UPDATE generadores_id SET siguiente_id = ? WHERE entidad = ? AND siguiente_id < ?",
+                        minimo, entidad, minimo);
+            }
+            log.info("Generador de ids {} alineado (id máximo actual {})", entidad, maximo);
+        });
+    }
+
+    /**
+     * Las líneas anteriores a la columna detalle_pedido.fecha_pedido la reciben de su pedido
+     */
+    private void completarFechaEnDetalles() {
+        int filas = jdbcTemplate.update("UPDATE detalle_pedido SET fecha_pedido = " +
+                "(SELECT p.fecha_pedido FROM pedidos p WHERE p.id = detalle_pedido.pedido_id) " +
+                "WHERE fecha_pedido IS NULL");
+        if (filas > 0) {
+            log.info("Fecha de pedido copiada a {} líneas de detalle", filas);
+        }
+    }
+
+    /**
+     * Las líneas anteriores a los subpedidos se agrupan por (pedido, proveedor) en uno nuevo.
+     * Los ids se toman por encima de los ya entregados por el generador, que después se alinea.
+     */
+    private void completarSubPedidos() {
+        transactionTemplate.executeWithoutResult(estado -> crearSubPedidosFaltantes());
+    }
+
+    private void crearSubPedidosFaltantes() {
+        List<Map<String, Object>> grupos = jdbcTemplate.queryForList(
+                "SELECT d.pedido_id, d.proveedor_id, p.fecha_pedido, SUM(d.subtotal) AS subtotal, " +
+                "COUNT(*) AS lineas, SUM(d.cantidad) AS unidades " +
+                "FROM detalle_pedido d JOIN pedidos p ON p.id = d.pedido_id " +
+                "WHERE d.sub_pedido_id IS NULL GROUP BY d.pedido_id, d.proveedor_id, p.fecha_pedido");
+        if (grupos.isEmpty()) {
+            return;
+        }
+
+        long siguienteId = Math.max(
+                jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM sub_pedidos", Long.class),
+                jdbcTemplate.queryForObject("SELECT COALESCE(MAX(siguiente_id), 0) FROM generadores_id " +
+                        "WHERE entidad = 'sub_pedidos'", Long.class)) + 1;
+        List<Object[]> filas = new ArrayList<>(grupos.size());
+        for (Map<String, Object> grupo : grupos) {
+            filas.add(new Object[]{siguienteId++, grupo.get("pedido_id"), grupo.get("proveedor_id"),
+                    grupo.get("fecha_pedido"), grupo.get("subtotal"), grupo.get("lineas"), grupo.get("unidades")});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO sub_pedidos (id, pedido_id, proveedor_id, fecha_pedido, subtotal, " +
+                "lineas, unidades) VALUES (?, ?, ?, ?, ?, ?, ?)", filas);
+        int lineas = jdbcTemplate.update("UPDATE detalle_pedido SET sub_pedido_id = " +
+                "(SELECT s.id FROM sub_pedidos s WHERE s.pedido_id = detalle_pedido.pedido_id " +
+                "AND s.proveedor_id = detalle_pedido.proveedor_id) WHERE sub_pedido_id IS NULL");
+        log.info("Creados {} subpedidos para {} líneas anteriores", grupos.size(), lineas);
+    }
+
+    /**
+     * La primera vez que existe ventas_diarias se calcula con todo el historial
+     */
+    private void inicializarVentasDiarias() {
+        ventaService.reconstruirVentasDiarias(null);
+    }
+
+    /**
+     * ddl-auto no puede crear el índice único (usuario_id, producto_id) de carrito si hay
+     * líneas repetidas: se suman en la de menor id, se borran las demás y se crea el índice
+     * si todavía no existe
+     */
+    private void unificarLineasDeCarrito() {
+        transactionTemplate.executeWithoutResult(estado -> {
+            List<Map<String, Object>> repetidas = jdbcTemplate.queryForList(
+                    "SELECT usuario_id, producto_id, MIN(id) AS id, SUM(cantidad) AS cantidad FROM carrito " +
+                    "GROUP BY usuario_id, producto_id HAVING COUNT(*) > 1");
+            if (repetidas.isEmpty()) {
+                return;
+            }
+            List<Object[]> sumas = new ArrayList<>(repetidas.size());
+            List<Object[]> sobrantes = new ArrayList<>(repetidas.size());
+            for (Map<String, Object> fila : repetidas) {
+                sumas.add(new Object[]{fila.get("cantidad"), fila.get("id")});
+                sobrantes.add(new Object[]{fila.get("usuario_id"), fila.get("producto_id"), fila.get("id")});
+            }
+            jdbcTemplate.batchUpdate("UPDATE carrito SET cantidad = ? WHERE id = ?", sumas);
+            jdbcTemplate.batchUpdate("DELETE FROM carrito WHERE usuario_id = ? AND producto_id = ? AND id <> ?", sobrantes);
+            log.info("Unificadas {} líneas de carrito repetidas", repetidas.size());
+        });
+        if (!existeIndiceUnico("carrito", Set.of("usuario_id", "producto_id"))) {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX " + Carrito.UK_USUARIO_PRODUCTO + " ON carrito (usuario_id, producto_id)");
+            log.info("Creado el índice único {}", Carrito.UK_USUARIO_PRODUCTO);
+        }
+    }
+
+    /**
+     * Las reservas calientes anteriores a la venta por conciliador no tienen proveedor (su venta
+     * ya se sumó en el checkout): las pendientes se restan del stock como lo hacía el conciliador,
+     * se borran y las columnas de la venta pasan a NOT NULL (ddl-auto no cambia columnas existentes)
+     */
+    private void exigirVentaEnReservas() {
+        transactionTemplate.executeWithoutResult(estado -> {
+            String pendientes = "FROM reservas_stock r WHERE r.producto_id = productos.id " +
+                    "AND r.aplicada = FALSE AND r.proveedor_id IS NULL";
+            jdbcTemplate.update("UPDATE productos SET stock_disponible = " +
+                    "CASE WHEN stock_disponible > (SELECT SUM(r.cantidad) " + pendientes + ") " +
+                    "THEN stock_disponible - (SELECT SUM(r.cantidad) " + pendientes + ") ELSE 0 END " +
+                    "WHERE EXISTS (SELECT 1 " + pendientes + ")");
+            int filas = jdbcTemplate.update("DELETE FROM reservas_stock WHERE proveedor_id IS NULL");
+            if (filas > 0) {
+                log.info("Aplicadas y borradas {} reservas calientes sin venta", filas);
+            }
+        });
+        Set<String> nulables = columnasNulables("reservas_stock");
+        VENTA_EN_RESERVAS.forEach((columna, tipo) -> {
+            if (nulables.contains(columna)) {
+                jdbcTemplate.execute("ALTER TABLE reservas_stock MODIFY " + columna + " " + tipo + " NOT NULL");
+                log.info("Columna reservas_stock.{} pasada a NOT NULL", columna);
+            }
+        });
+    }
+
+    /**
+     * El catálogo pagina por calificacion_promedio con un cursor: los productos con NULL
+     * quedaban fuera del orden. Pasan a 0 y la columna a NOT NULL DEFAULT 0.
+     */
+    private void exigirCalificacionEnProductos() {
+        int filas = jdbcTemplate.update("UPDATE productos SET calificacion_promedio = 0 WHERE calificacion_promedio IS NULL");
+        if (filas > 0) {
+            log.info("Calificación 0 asignada a {} productos sin calificación", filas);
+        }
+        if (columnasNulables("productos").contains("calificacion_promedio")) {
+            jdbcTemplate.execute("ALTER TABLE productos MODIFY calificacion_promedio DECIMAL(2,1) NOT NULL DEFAULT 0");
+            log.info("Columna productos.calificacion_promedio pasada a NOT NULL");
+        }
+    }
+
+    private Set<String> columnasNulables(String tabla) {
+        return jdbcTemplate.execute((ConnectionCallback<Set<String>>) conexion -> {
+            DatabaseMetaData metadatos = conexion.getMetaData();
+            String nombreTabla = metadatos.storesUpperCaseIdentifiers() ? tabla.toUpperCase() : tabla;
+            Set<String> columnas = new HashSet<>();
+            try (ResultSet filas = metadatos.getColumns(conexion.getCatalog(), conexion.getSchema(), nombreTabla, null)) {
+                while (filas.next()) {
+                    if (filas.getInt("NULLABLE") == DatabaseMetaData.columnNullable) {
+                        columnas.add(filas.getString("COLUMN_NAME").toLowerCase());
+                    }
+                }
+            }
+            return columnas;
+        });
+    }
+
+    /**
+     * Si la tabla tiene un índice único sobre exactamente esas columnas (sea cual sea su nombre)
+     */
+    private boolean existeIndiceUnico(String tabla, Set<String> columnas) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) conexion -> {
+            DatabaseMetaData metadatos = conexion.getMetaData();
+            String nombreTabla = metadatos.storesUpperCaseIdentifiers() ? tabla.toUpperCase() : tabla;
+            Map<String, Set<String>> indices = new HashMap<>();
+            try (ResultSet filas = metadatos.getIndexInfo(conexion.getCatalog(), conexion.getSchema(),
+                    nombreTabla, true, false)) {
+                while (filas.next()) {
+                    if (filas.getString("COLUMN_NAME") != null) {
+                        indices.computeIfAbsent(filas.getString("INDEX_NAME"), k -> new HashSet<>())
+                                .add(filas.getString("COLUMN_NAME").toLowerCase());
+                    }
+                }
+            }
+            return indices.containsValue(columnas);
+        }));
+    }
+}
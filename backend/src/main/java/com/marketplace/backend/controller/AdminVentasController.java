@@ -0,0 +1,36 @@
+package com.marketplace.backend.controller;
+
+import com.marketplace.backend.service.VentaService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/ventas")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class AdminVentasController {
+
+    private final VentaService ventaService;
+
+    /**
+     * Recalcular los acumulados diarios desde el historial (todos o un proveedor)
+     * POST /api/admin/ventas/diarias/reconstruir?proveedorId=1
+     */
+    @PostMapping("/diarias/reconstruir")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    public ResponseEntity<Map<String, Object>> reconstruirVentasDiarias(
+            @RequestParam(required = false) Long proveedorId) {
+
+        Map<String, Object> response = new HashMap<>();
+        int filas = ventaService.reconstruirVentasDiarias(proveedorId);
+        response.put("success", true);
+        response.put("message", "Ventas diarias reconstruidas");
+        response.put("filas", filas);
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,52 @@
+package com.marketplace.backend.controller;
+
+import com.marketplace.backend.security.UsuarioAutenticado;
+import com.marketplace.backend.service.ContadorCarrito;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Agrega la cantidad de líneas del carrito como cabecera en las respuestas JSON a usuarios
+ * autenticados, así el frontend actualiza el contador sin pedir /carrito/count.
+ * Se escribe al final de la petición, después del commit de un cambio del carrito.
+ */
+@RestControllerAdvice
+@RequiredArgsConstructor
+@Slf4j
+public class CabeceraContadorCarrito implements ResponseBodyAdvice<Object> {
+
+    public static final String HEADER = "X-Carrito-Items";
+
+    private final ContadorCarrito contadorCarrito;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        Authentication autenticacion = SecurityContextHolder.getContext().getAuthentication();
+        if (autenticacion != null && autenticacion.getPrincipal() instanceof UsuarioAutenticado usuario
+                && MediaType.APPLICATION_JSON.isCompatibleWith(selectedContentType)) {
+            try {
+                response.getHeaders().set(HEADER, String.valueOf(contadorCarrito.obtener(usuario.userId())));
+            } catch (RuntimeException e) {
+                // La cabecera es opcional: un fallo al contar no debe romper la respuesta
+                log.debug("No se pudo agregar el contador del carrito: {}", e.getMessage());
+            }
+        }
+        return body;
+    }
+}
@@ -3,19 +3,25 @@ package com.marketplace.backend.controller;
 import com.marketplace.backend.dto.AgregarCarritoDTO;
 import com.marketplace.backend.dto.ActualizarCantidadDTO;
 import com.marketplace.backend.dto.CarritoItemDTO;
+import com.marketplace.backend.dto.CarritoLoteDTO;
 import com.marketplace.backend.dto.CarritoResumenDTO;
-import com.marketplace.backend.security.JwtUtil;
+import com.marketplace.backend.dto.ResultadoLineaCarritoDTO;
+import com.marketplace.backend.security.UsuarioAutenticado;
 import com.marketplace.backend.service.CarritoService;
+import com.marketplace.backend.service.RegistroIdempotencia;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/usuario/carrito")
@@ -24,7 +30,7 @@ import java.util.Map;
 @Slf4j
 public class CarritoController {
     private final CarritoService carritoService;
-    private final JwtUtil jwtUtil;
+    private final RegistroIdempotencia registroIdempotencia;
 
     /**
      * Agregar producto al carrito
@@ -33,15 +39,19 @@ public class CarritoController {
     @PostMapping
     @PreAuthorize("hasAnyRole('USUARIO', 'PROVEEDOR', 'ADMINISTRADOR')")
     public ResponseEntity<Map<String, Object>> agregarProducto(
-            @RequestHeader("Authorization") String authHeader,
-            @Valid @RequestBody AgregarCarritoDTO dto) {
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
+            @Valid @RequestBody AgregarCarritoDTO dto,
+            @RequestHeader(value = RegistroIdempotencia.HEADER, required = false) String claveIdempotencia) {
 
+        // Un reintento con la misma clave no vuelve a sumar la cantidad
+        return registroIdempotencia.ejecutar(usuario.userId(), "carrito-agregar", claveIdempotencia, dto,
+                () -> procesarAgregarProducto(usuario.userId(), dto));
+    }
+
+    private ResponseEntity<Map<String, Object>> procesarAgregarProducto(Long usuarioId, AgregarCarritoDTO dto) {
         Map<String, Object> response = new HashMap<>();
 
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
-
             CarritoItemDTO item = carritoService.agregarProducto(usuarioId, dto);
 
             response.put("success", true);
@@ -58,6 +68,61 @@ public class CarritoController {
         }
     }
 
+    /**
+     * Agregar varias líneas en una sola petición (p. ej. un pedido pegado desde una planilla)
+     * POST /api/usuario/carrito/lote
+     */
+    @PostMapping("/lote")
+    @PreAuthorize("hasAnyRole('USUARIO', 'PROVEEDOR', 'ADMINISTRADOR')")
+    public ResponseEntity<Map<String, Object>> agregarProductos(
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
+            @Valid @RequestBody CarritoLoteDTO dto,
+            @RequestHeader(value = RegistroIdempotencia.HEADER, required = false) String claveIdempotencia) {
+
+        // Igual que el alta individual: un reintento con la misma clave no vuelve a sumar
+        return registroIdempotencia.ejecutar(usuario.userId(), "carrito-agregar-lote", claveIdempotencia, dto,
+                () -> procesarLote(() -> carritoService.agregarProductos(usuario.userId(), dto.getItems())));
+    }
+
+    /**
+     * Fijar la cantidad de varias líneas del carrito, identificadas por producto
+     * PUT /api/usuario/carrito/lote
+     */
+    @PutMapping("/lote")
+    @PreAuthorize("hasAnyRole('USUARIO', 'PROVEEDOR', 'ADMINISTRADOR')")
+    public ResponseEntity<Map<String, Object>> actualizarCantidades(
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
+            @Valid @RequestBody CarritoLoteDTO dto) {
+
+        return procesarLote(() -> carritoService.actualizarCantidades(usuario.userId(), dto.getItems()));
+    }
+
+    private ResponseEntity<Map<String, Object>> procesarLote(Supplier<List<ResultadoLineaCarritoDTO>> operacion) {
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            List<ResultadoLineaCarritoDTO> resultados = operacion.get();
+            long aplicadas = resultados.stream().filter(ResultadoLineaCarritoDTO::isExito).count();
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("resultados", resultados);
+            data.put("aplicadas", aplicadas);
+            data.put("rechazadas", resultados.size() - aplicadas);
+
+            response.put("success", true);
+            response.put("message", aplicadas + " de " + resultados.size() + " líneas aplicadas");
+            response.put("data", data);
+
+            return ResponseEntity.ok(response);
+
+        } catch (RuntimeException e) {
+            log.error("Error al procesar el lote del carrito: {}", e.getMessage());
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+
     /**
      * Obtener mi carrito
      * GET /api/usuario/carrito
@@ -65,13 +130,12 @@ public class CarritoController {
     @GetMapping
     @PreAuthorize("hasAnyRole('USUARIO', 'PROVEEDOR', 'ADMINISTRADOR')")
     public ResponseEntity<Map<String, Object>> obtenerCarrito(
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal UsuarioAutenticado usuario) {
 
         Map<String, Object> response = new HashMap<>();
 
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
 
             CarritoResumenDTO carrito = carritoService.obtenerCarrito(usuarioId);
 
@@ -95,13 +159,12 @@ public class CarritoController {
     @GetMapping("/count")
     @PreAuthorize("hasAnyRole('USUARIO', 'PROVEEDOR', 'ADMINISTRADOR')")
     public ResponseEntity<Map<String, Object>> contarItems(
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal UsuarioAutenticado usuario) {
 
         Map<String, Object> response = new HashMap<>();
 
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
 
             Long count = carritoService.contarItems(usuarioId);
 
@@ -125,15 +188,14 @@ public class CarritoController {
     @PutMapping("/{carritoId}")
     @PreAuthorize("hasAnyRole('USUARIO', 'PROVEEDOR', 'ADMINISTRADOR')")
     public ResponseEntity<Map<String, Object>> actualizarCantidad(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
             @PathVariable Long carritoId,
             @Valid @RequestBody ActualizarCantidadDTO dto) {
 
         Map<String, Object> response = new HashMap<>();
 
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
 
             CarritoItemDTO item = carritoService.actualizarCantidad(usuarioId, carritoId, dto);
 
@@ -158,14 +220,13 @@ public class CarritoController {
     @DeleteMapping("/{carritoId}")
     @PreAuthorize("hasAnyRole('USUARIO', 'PROVEEDOR', 'ADMINISTRADOR')")
     public ResponseEntity<Map<String, Object>> eliminarProducto(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
             @PathVariable Long carritoId) {
 
         Map<String, Object> response = new HashMap<>();
 
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
 
             carritoService.eliminarProducto(usuarioId, carritoId);
 
@@ -189,13 +250,12 @@ public class CarritoController {
     @DeleteMapping
     @PreAuthorize("hasAnyRole('USUARIO', 'PROVEEDOR', 'ADMINISTRADOR')")
     public ResponseEntity<Map<String, Object>> vaciarCarrito(
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal UsuarioAutenticado usuario) {
 
         Map<String, Object> response = new HashMap<>();
 
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
 
             carritoService.vaciarCarrito(usuarioId);
 
@@ -211,34 +271,4 @@ public class CarritoController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
         }
     }
-
-    /**
-     * Limpiar productos no disponibles
-     * POST /api/usuario/carrito/limpiar
-     */
-    @PostMapping("/limpiar")
-    @PreAuthorize("hasAnyRole('USUARIO', 'PROVEEDOR', 'ADMINISTRADOR')")
-    public ResponseEntity<Map<String, Object>> limpiarNoDisponibles(
-            @RequestHeader("Authorization") String authHeader) {
-
-        Map<String, Object> response = new HashMap<>();
-
-        try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
-
-            carritoService.limpiarProductosNoDisponibles(usuarioId);
-
-            response.put("success", true);
-            response.put("message", "Productos no disponibles eliminados");
-
-            return ResponseEntity.ok(response);
-
-        } catch (RuntimeException e) {
-            log.error("Error al limpiar productos: {}", e.getMessage());
-            response.put("success", false);
-            response.put("message", e.getMessage());
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
-        }
-    }
 }
@@ -0,0 +1,182 @@
+package com.marketplace.backend.controller;
+
+import com.marketplace.backend.security.CacheTokensVerificados;
+import com.marketplace.backend.service.CarritoEnMemoria;
+import com.marketplace.backend.service.CatalogoCache;
+import com.marketplace.backend.service.ColaCheckout;
+import com.marketplace.backend.service.ContadorCarrito;
+import com.marketplace.backend.service.IndiceBusquedaProductos;
+import com.marketplace.backend.service.IndiceFacetas;
+import com.marketplace.backend.service.IndiceSugerencias;
+import com.marketplace.backend.service.InventarioCaliente;
+import com.marketplace.backend.service.LimpiezaCarritos;
+import com.marketplace.backend.service.RegistroIdempotencia;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/metricas")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class MetricasController {
+
+    private final CatalogoCache catalogoCache;
+    private final IndiceBusquedaProductos indiceBusqueda;
+    private final IndiceFacetas indiceFacetas;
+    private final IndiceSugerencias indiceSugerencias;
+    private final CacheTokensVerificados cacheTokens;
+    private final ColaCheckout colaCheckout;
+    private final RegistroIdempotencia registroIdempotencia;
+    private final CarritoEnMemoria carritoEnMemoria;
+    private final ContadorCarrito contadorCarrito;
+    private final LimpiezaCarritos limpiezaCarritos;
+    private final InventarioCaliente inventarioCaliente;
+
+    /**
+     * Métricas de la caché del catálogo público
+     * GET /api/admin/metricas/catalogo-cache
+     */
+    @GetMapping("/catalogo-cache")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    public ResponseEntity<Map<String, Object>> obtenerMetricasCatalogo() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", catalogoCache.estadisticas());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Estado del índice de búsqueda de productos
+     * GET /api/admin/metricas/indice-busqueda
+     */
+    @GetMapping("/indice-busqueda")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    public ResponseEntity<Map<String, Object>> obtenerMetricasIndiceBusqueda() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", indiceBusqueda.estadisticas());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Estado del índice de facetas del catálogo
+     * GET /api/admin/metricas/indice-facetas
+     */
+    @GetMapping("/indice-facetas")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    public ResponseEntity<Map<String, Object>> obtenerMetricasIndiceFacetas() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", indiceFacetas.estadisticas());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Estado del índice de autocompletado
+     * GET /api/admin/metricas/indice-sugerencias
+     */
+    @GetMapping("/indice-sugerencias")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    public ResponseEntity<Map<String, Object>> obtenerMetricasIndiceSugerencias() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", indiceSugerencias.estadisticas());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Métricas de la caché de tokens verificados
+     * GET /api/admin/metricas/tokens-cache
+     */
+    @GetMapping("/tokens-cache")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    public ResponseEntity<Map<String, Object>> obtenerMetricasTokens() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", cacheTokens.estadisticas());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Estado de la cola del checkout asíncrono
+     * GET /api/admin/metricas/cola-checkout
+     */
+    @GetMapping("/cola-checkout")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    public ResponseEntity<Map<String, Object>> obtenerMetricasColaCheckout() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", colaCheckout.estadisticas());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Peticiones con Idempotency-Key ejecutadas y repetidas
+     * GET /api/admin/metricas/idempotencia
+     */
+    @GetMapping("/idempotencia")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    public ResponseEntity<Map<String, Object>> obtenerMetricasIdempotencia() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", registroIdempotencia.estadisticas());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Carritos en memoria y volcados pendientes (carrito.almacen=memoria)
+     * GET /api/admin/metricas/carritos-memoria
+     */
+    @GetMapping("/carritos-memoria")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    public ResponseEntity<Map<String, Object>> obtenerMetricasCarritosMemoria() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", carritoEnMemoria.estadisticas());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Aciertos del contador del carrito en caché
+     * GET /api/admin/metricas/contador-carrito
+     */
+    @GetMapping("/contador-carrito")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    public ResponseEntity<Map<String, Object>> obtenerMetricasContadorCarrito() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", contadorCarrito.estadisticas());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Filas borradas por la limpieza de carritos
+     * GET /api/admin/metricas/limpieza-carritos
+     */
+    @GetMapping("/limpieza-carritos")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    public ResponseEntity<Map<String, Object>> obtenerMetricasLimpiezaCarritos() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", limpiezaCarritos.estadisticas());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Reservas en memoria de productos calientes y su conciliación con la tabla
+     * GET /api/admin/metricas/inventario-caliente
+     */
+    @GetMapping("/inventario-caliente")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    public ResponseEntity<Map<String, Object>> obtenerMetricasInventarioCaliente() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", inventarioCaliente.estadisticas());
+        return ResponseEntity.ok(response);
+    }
+}
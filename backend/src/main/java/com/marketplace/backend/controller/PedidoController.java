@@ -2,18 +2,30 @@ package com.marketplace.backend.controller;
 
 import com.marketplace.backend.dominio.Pedido;
 import com.marketplace.backend.dto.CrearPedidoDTO;
+import com.marketplace.backend.dto.PaginaDTO;
 import com.marketplace.backend.dto.PedidoDetalleCompletoDTO;
-import com.marketplace.backend.security.JwtUtil;
+import com.marketplace.backend.dto.ResumenPedidoDTO;
+import com.marketplace.backend.exception.CheckoutSaturadoException;
+import com.marketplace.backend.exception.StockInsuficienteException;
+import com.marketplace.backend.security.UsuarioAutenticado;
+import com.marketplace.backend.service.ColaCheckout;
 import com.marketplace.backend.service.PedidoService;
+import com.marketplace.backend.service.RegistroIdempotencia;
+import com.marketplace.backend.util.ExportadorFilas;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.HashMap;
-import java.util.Map;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/pedidos")
@@ -22,31 +34,100 @@ import java.util.List;
 public class PedidoController {
 
     private final PedidoService pedidoService;
-    private final JwtUtil jwtUtil;
-
+    private final ColaCheckout colaCheckout;
+    private final RegistroIdempotencia registroIdempotencia;
+
+    /**
+     * Historial de pedidos del comprador paginado por cursor
+     * GET /api/pedidos/mis-pedidos?limite=20&cursor=...
+     * El total solo se calcula con la primera página (sin cursor)
+     */
     @GetMapping("/mis-pedidos")
-    public ResponseEntity<?> obtenerMisPedidos(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<Map<String, Object>> obtenerMisPedidos(
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + PedidoService.LIMITE_HISTORIAL_POR_DEFECTO) int limite) {
+
+        Map<String, Object> response = new HashMap<>();
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
 
-            List<Pedido> pedidos = pedidoService.obtenerPedidosUsuario(usuarioId);
+            PaginaDTO<ResumenPedidoDTO> pagina = pedidoService.obtenerResumenPedidos(usuarioId, cursor, limite);
 
-            return ResponseEntity.ok(pedidos);
+            response.put("success", true);
+            response.put("data", pagina.getItems());
+            response.put("siguienteCursor", pagina.getSiguienteCursor());
+            response.put("hayMas", pagina.isHayMas());
+            if (cursor == null || cursor.isBlank()) {
+                response.put("totalPedidos", pedidoService.contarPedidosUsuario(usuarioId));
+            }
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error al obtener pedidos: " + e.getMessage());
+            response.put("success", false);
+            response.put("message", "Error al obtener pedidos: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+
+    /**
+     * Exportar el historial completo de pedidos (formato csv o ndjson)
+     * GET /api/pedidos/mis-pedidos/exportar?formato=csv
+     */
+    @GetMapping("/mis-pedidos/exportar")
+    public ResponseEntity<?> exportarMisPedidos(
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
+            @RequestParam(required = false) String formato) {
+
+        try {
+            ExportadorFilas.Formato formatoExportacion = ExportadorFilas.Formato.desde(formato);
+            Long usuarioId = usuario.userId();
+
+            StreamingResponseBody cuerpo = salida ->
+                    pedidoService.exportarPedidos(usuarioId, formatoExportacion, salida);
+
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(formatoExportacion.getTipoContenido() + ";charset=UTF-8"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename("mis-pedidos." + formatoExportacion.getExtension()).build().toString())
+                    .body(cuerpo);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
         }
     }
 
     @PostMapping("/checkout")
-    public ResponseEntity<?> realizarPedido(
-            @RequestHeader("Authorization") String authHeader,
-            @Valid @RequestBody CrearPedidoDTO dto) {
+    public ResponseEntity<Map<String, Object>> realizarPedido(
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
+            @Valid @RequestBody CrearPedidoDTO dto,
+            @RequestParam(defaultValue = "false") boolean async,
+            @RequestHeader(value = RegistroIdempotencia.HEADER, required = false) String claveIdempotencia) {
+
+        // Un doble clic o reintento con la misma clave recibe la respuesta del primer intento
+        return registroIdempotencia.ejecutar(usuario.userId(), "checkout", claveIdempotencia, List.of(dto, async),
+                () -> procesarCheckout(usuario.userId(), dto, async));
+    }
 
+    private ResponseEntity<Map<String, Object>> procesarCheckout(Long usuarioId, CrearPedidoDTO dto, boolean async) {
         Map<String, Object> response = new HashMap<>();
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            if (async) {
+                // Se devuelve el ticket enseguida; el estado se consulta en /checkout/{numeroPedido}/estado
+                Pedido pedido = colaCheckout.encolar(usuarioId, dto);
+
+                response.put("success", true);
+                response.put("message", "Pedido recibido, en proceso");
+                response.put("numeroPedido", pedido.getNumeroPedido());
+                response.put("estadoCheckout", pedido.getEstadoCheckout());
+
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+            }
 
             Pedido pedido = pedidoService.crearPedido(usuarioId, dto);
 
@@ -56,6 +137,17 @@ public class PedidoController {
 
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
 
+        } catch (StockInsuficienteException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            response.put("faltantes", e.getFaltantes());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        } catch (CheckoutSaturadoException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getReintentarEnSegundos()))
+                    .body(response);
         } catch (Exception e) {
             response.put("success", false);
             response.put("message", e.getMessage());
@@ -63,13 +155,42 @@ public class PedidoController {
         }
     }
 
+    /**
+     * Estado de un checkout asíncrono
+     * GET /api/pedidos/checkout/{numeroPedido}/estado
+     */
+    @GetMapping("/checkout/{numeroPedido}/estado")
+    public ResponseEntity<?> obtenerEstadoCheckout(
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
+            @PathVariable String numeroPedido) {
+
+        Map<String, Object> response = new HashMap<>();
+        try {
+            Pedido pedido = pedidoService.obtenerEstadoCheckout(numeroPedido, usuario.userId());
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("numeroPedido", pedido.getNumeroPedido());
+            data.put("estadoCheckout", pedido.getEstadoCheckout());
+            data.put("mensaje", pedido.getMensajeCheckout());
+            data.put("pedidoId", pedido.getId());
+            data.put("total", pedido.getTotal());
+
+            response.put("success", true);
+            response.put("data", data);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+    }
+
     @GetMapping("/{pedidoId}/detalles")
     public ResponseEntity<?> obtenerDetallePedido(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
             @PathVariable Long pedidoId) {
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
 
             PedidoDetalleCompletoDTO detalle = pedidoService.obtenerDetallePedido(pedidoId, usuarioId);
 
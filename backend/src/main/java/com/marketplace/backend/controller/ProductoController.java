@@ -1,7 +1,10 @@
 package com.marketplace.backend.controller;
 
 import com.marketplace.backend.dto.*;
-import com.marketplace.backend.security.JwtUtil;
+import com.marketplace.backend.security.UsuarioAutenticado;
+import com.marketplace.backend.service.IndiceBusquedaProductos;
+import com.marketplace.backend.service.IndiceFacetas;
+import com.marketplace.backend.service.IndiceSugerencias;
 import com.marketplace.backend.service.ProductoService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -9,6 +12,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -23,7 +27,9 @@ import java.util.Map;
 public class ProductoController {
     
     private final ProductoService productoService;
-    private final JwtUtil jwtUtil;
+    private final IndiceBusquedaProductos indiceBusqueda;
+    private final IndiceFacetas indiceFacetas;
+    private final IndiceSugerencias indiceSugerencias;
     
     // ========== ENDPOINTS PARA PROVEEDORES ==========
     
@@ -34,14 +40,13 @@ public class ProductoController {
     @PostMapping("/proveedor/productos")
     @PreAuthorize("hasRole('PROVEEDOR')")
     public ResponseEntity<Map<String, Object>> crearProducto(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
             @Valid @RequestBody CrearProductoDTO dto) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
             
             ProductoDTO producto = productoService.crearProducto(usuarioId, dto);
             
@@ -66,13 +71,12 @@ public class ProductoController {
     @GetMapping("/proveedor/productos")
     @PreAuthorize("hasRole('PROVEEDOR')")
     public ResponseEntity<Map<String, Object>> obtenerMisProductos(
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal UsuarioAutenticado usuario) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
             
             List<ProductoDTO> productos = productoService.obtenerMisProductos(usuarioId);
             
@@ -96,14 +100,13 @@ public class ProductoController {
     @GetMapping("/proveedor/productos/{productoId}")
     @PreAuthorize("hasRole('PROVEEDOR')")
     public ResponseEntity<Map<String, Object>> obtenerMiProducto(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
             @PathVariable Long productoId) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
             
             ProductoDTO producto = productoService.obtenerMiProducto(usuarioId, productoId);
             
@@ -127,15 +130,14 @@ public class ProductoController {
     @PutMapping("/proveedor/productos/{productoId}")
     @PreAuthorize("hasRole('PROVEEDOR')")
     public ResponseEntity<Map<String, Object>> actualizarProducto(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
             @PathVariable Long productoId,
             @Valid @RequestBody ActualizarProductoDTO dto) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
             
             ProductoDTO producto = productoService.actualizarProducto(usuarioId, productoId, dto);
             
@@ -160,14 +162,13 @@ public class ProductoController {
     @DeleteMapping("/proveedor/productos/{productoId}")
     @PreAuthorize("hasRole('PROVEEDOR')")
     public ResponseEntity<Map<String, Object>> eliminarProducto(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
             @PathVariable Long productoId) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
             
             productoService.eliminarProducto(usuarioId, productoId);
             
@@ -191,15 +192,14 @@ public class ProductoController {
     @PostMapping("/proveedor/productos/{productoId}/imagenes")
     @PreAuthorize("hasRole('PROVEEDOR')")
     public ResponseEntity<Map<String, Object>> agregarImagen(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
             @PathVariable Long productoId,
             @Valid @RequestBody ImagenProductoDTO dto) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
             
             ImagenProductoDTO imagen = productoService.agregarImagen(usuarioId, productoId, dto.getUrlImagen());
             
@@ -224,15 +224,14 @@ public class ProductoController {
     @DeleteMapping("/proveedor/productos/{productoId}/imagenes/{imagenId}")
     @PreAuthorize("hasRole('PROVEEDOR')")
     public ResponseEntity<Map<String, Object>> eliminarImagen(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
             @PathVariable Long productoId,
             @PathVariable Long imagenId) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
             
             productoService.eliminarImagen(usuarioId, productoId, imagenId);
             
@@ -252,22 +251,36 @@ public class ProductoController {
     // ========== ENDPOINTS PÚBLICOS ==========
     
     /**
-     * Obtener todos los productos disponibles (público)
-     * GET /api/public/productos
+     * Obtener productos disponibles paginados por cursor (público)
+     * GET /api/public/productos?limite=24&orden=precio_asc&categoriaId=1&cursor=...
      */
     @GetMapping("/public/productos")
-    public ResponseEntity<Map<String, Object>> obtenerTodosLosProductos() {
+    public ResponseEntity<Map<String, Object>> obtenerTodosLosProductos(
+            @RequestParam(required = false) Long categoriaId,
+            @RequestParam(required = false) Long subcategoriaId,
+            @RequestParam(required = false) Long proveedorId,
+            @RequestParam(required = false) String orden,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + FiltroCatalogoDTO.LIMITE_POR_DEFECTO) int limite) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            List<ProductoDTO> productos = productoService.obtenerTodosLosProductos();
+            FiltroCatalogoDTO filtro = new FiltroCatalogoDTO(categoriaId, subcategoriaId, proveedorId,
+                    FiltroCatalogoDTO.OrdenCatalogo.desde(orden), cursor, limite);
+            PaginaDTO<ProductoDTO> pagina = productoService.obtenerCatalogo(filtro);
             
             response.put("success", true);
-            response.put("data", productos);
+            response.put("data", pagina.getItems());
+            response.put("siguienteCursor", pagina.getSiguienteCursor());
+            response.put("hayMas", pagina.isHayMas());
             
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
         } catch (Exception e) {
             log.error("Error al obtener productos: {}", e.getMessage());
             response.put("success", false);
@@ -277,23 +290,57 @@ public class ProductoController {
     }
     
     /**
-     * Obtener productos por categoría (público)
-     * GET /api/public/productos/categoria/{categoriaId}
+     * Obtener un producto disponible por id (público)
+     * GET /api/public/productos/{productoId}
+     */
+    @GetMapping("/public/productos/{productoId:\\d+}")
+    public ResponseEntity<Map<String, Object>> obtenerProductoPublico(@PathVariable Long productoId) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            response.put("success", true);
+            response.put("data", productoService.obtenerProductoPublico(productoId));
+            return ResponseEntity.ok(response);
+            
+        } catch (RuntimeException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+    }
+    
+    /**
+     * Obtener productos disponibles de una categoría paginados por cursor (público)
+     * GET /api/public/productos/categoria/{categoriaId}?limite=24&orden=recientes&cursor=...
      */
     @GetMapping("/public/productos/categoria/{categoriaId}")
     public ResponseEntity<Map<String, Object>> obtenerProductosPorCategoria(
-            @PathVariable Long categoriaId) {
+            @PathVariable Long categoriaId,
+            @RequestParam(required = false) Long subcategoriaId,
+            @RequestParam(required = false) Long proveedorId,
+            @RequestParam(required = false) String orden,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + FiltroCatalogoDTO.LIMITE_POR_DEFECTO) int limite) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            List<ProductoDTO> productos = productoService.obtenerProductosPorCategoria(categoriaId);
+            FiltroCatalogoDTO filtro = new FiltroCatalogoDTO(categoriaId, subcategoriaId, proveedorId,
+                    FiltroCatalogoDTO.OrdenCatalogo.desde(orden), cursor, limite);
+            PaginaDTO<ProductoDTO> pagina = productoService.obtenerCatalogo(filtro);
             
             response.put("success", true);
-            response.put("data", productos);
+            response.put("data", pagina.getItems());
+            response.put("siguienteCursor", pagina.getSiguienteCursor());
+            response.put("hayMas", pagina.isHayMas());
             
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
         } catch (Exception e) {
             log.error("Error al obtener productos por categoría: {}", e.getMessage());
             response.put("success", false);
@@ -301,4 +348,94 @@ public class ProductoController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Buscar productos disponibles por texto, ordenados por relevancia (público)
+     * GET /api/public/productos/buscar?q=arroz+integral&limite=20
+     */
+    @GetMapping("/public/productos/buscar")
+    public ResponseEntity<Map<String, Object>> buscarProductos(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limite) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        if (!indiceBusqueda.estaListo()) {
+            response.put("success", false);
+            response.put("message", "La búsqueda se está preparando, intenta nuevamente en unos segundos");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+        
+        IndiceBusquedaProductos.ResultadoBusqueda resultado = indiceBusqueda.buscar(q, limite);
+        
+        response.put("success", true);
+        response.put("data", resultado.productos());
+        response.put("total", resultado.total());
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Filtrar productos por facetas con conteos por faceta (público)
+     * GET /api/public/productos/facetas?categoriaId=1&categoriaId=2&unidadMedida=kg&precio=de_10_a_50&cursor=...
+     */
+    @GetMapping("/public/productos/facetas")
+    public ResponseEntity<Map<String, Object>> filtrarPorFacetas(
+            @RequestParam(required = false) List<Long> categoriaId,
+            @RequestParam(required = false) List<Long> subcategoriaId,
+            @RequestParam(required = false) List<Long> proveedorId,
+            @RequestParam(required = false) List<String> unidadMedida,
+            @RequestParam(required = false) List<String> precio,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + FiltroCatalogoDTO.LIMITE_POR_DEFECTO) int limite) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        if (!indiceFacetas.estaListo()) {
+            response.put("success", false);
+            response.put("message", "Los filtros se están preparando, intenta nuevamente en unos segundos");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+        
+        try {
+            FiltroFacetasDTO filtro = new FiltroFacetasDTO(
+                    categoriaId != null ? categoriaId : List.of(),
+                    subcategoriaId != null ? subcategoriaId : List.of(),
+                    proveedorId != null ? proveedorId : List.of(),
+                    unidadMedida != null ? unidadMedida : List.of(),
+                    precio != null ? precio.stream().map(FiltroFacetasDTO.BandaPrecio::desde).toList() : List.of(),
+                    cursor, limite);
+            ResultadoFacetasDTO resultado = indiceFacetas.filtrar(filtro);
+            
+            response.put("success", true);
+            response.put("data", resultado.getPagina().getItems());
+            response.put("siguienteCursor", resultado.getPagina().getSiguienteCursor());
+            response.put("hayMas", resultado.getPagina().isHayMas());
+            response.put("total", resultado.getTotal());
+            response.put("facetas", resultado.getFacetas());
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+    
+    /**
+     * Sugerencias de autocompletado mientras el usuario escribe (público)
+     * GET /api/public/productos/sugerencias?q=arr&limite=8
+     */
+    @GetMapping("/public/productos/sugerencias")
+    public ResponseEntity<Map<String, Object>> obtenerSugerencias(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "8") int limite) {
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", indiceSugerencias.sugerir(q, limite));
+        
+        return ResponseEntity.ok(response);
+    }
+}
@@ -4,7 +4,7 @@ import com.marketplace.backend.dto.CambiarEstadoProveedorDTO;
 import com.marketplace.backend.dto.CambiarRolUsuarioDTO;
 import com.marketplace.backend.dto.ProveedorDTO;
 import com.marketplace.backend.dto.SolicitudProveedorDTO;
-import com.marketplace.backend.security.JwtUtil;
+import com.marketplace.backend.security.UsuarioAutenticado;
 import com.marketplace.backend.service.ProveedorService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -12,6 +12,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -26,7 +27,6 @@ import java.util.Map;
 public class ProveedorController {
     
     private final ProveedorService proveedorService;
-    private final JwtUtil jwtUtil;
     
     // ========== ENDPOINTS PARA USUARIOS ==========
     
@@ -37,15 +37,14 @@ public class ProveedorController {
     @PostMapping("/usuario/proveedor/solicitar")
     @PreAuthorize("hasAnyRole('USUARIO', 'PROVEEDOR', 'ADMINISTRADOR')")
     public ResponseEntity<Map<String, Object>> solicitarSerProveedor(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
             @Valid @RequestBody SolicitudProveedorDTO dto) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
             // Extraer usuario ID del token
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
             
             log.info("Solicitud de proveedor recibida para usuario: {}", usuarioId);
             
@@ -72,13 +71,12 @@ public class ProveedorController {
     @GetMapping("/usuario/proveedor/mi-solicitud")
     @PreAuthorize("hasAnyRole('USUARIO', 'PROVEEDOR', 'ADMINISTRADOR')")
     public ResponseEntity<Map<String, Object>> obtenerMiSolicitud(
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal UsuarioAutenticado usuario) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
             
             ProveedorDTO proveedor = proveedorService.obtenerMiSolicitud(usuarioId);
             
@@ -102,13 +100,12 @@ public class ProveedorController {
     @GetMapping("/usuario/proveedor/verificar")
     @PreAuthorize("hasAnyRole('USUARIO', 'PROVEEDOR', 'ADMINISTRADOR')")
     public ResponseEntity<Map<String, Object>> verificarSolicitud(
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal UsuarioAutenticado usuario) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuario.userId();
             
             boolean tieneSolicitud = proveedorService.tieneSolicitud(usuarioId);
             
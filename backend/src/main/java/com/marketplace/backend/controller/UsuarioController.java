@@ -4,12 +4,13 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
 
-import com.marketplace.backend.security.JwtUtil;    
+import com.marketplace.backend.security.UsuarioAutenticado;
 import com.marketplace.backend.dominio.Usuario;
 import com.marketplace.backend.dto.ActualizarPerfilDTO;
 
@@ -23,7 +24,6 @@ import com.marketplace.backend.service.UsuarioService;
 @CrossOrigin(origins = "*") // Ajusta esto según tu frontend
 public class UsuarioController {
     private final UsuarioService usuarioService;
-    private final JwtUtil jwtUtil;
     
     @PostMapping("/registro")
     public ResponseEntity<?> registrarUsuario(@Valid @RequestBody RegistroUsuarioDTO dto) {
@@ -62,10 +62,9 @@ public class UsuarioController {
     }
 
     @GetMapping("/perfil")
-    public ResponseEntity<?> obtenerMiPerfil(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> obtenerMiPerfil(@AuthenticationPrincipal UsuarioAutenticado usuarioAutenticado) {
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuarioAutenticado.userId();
 
             Usuario usuario = usuarioService.obtenerPorId(usuarioId);
             // Por seguridad, devolvemos el objeto. El frontend ignorará el password encriptado.
@@ -77,11 +76,10 @@ public class UsuarioController {
 
     @PutMapping("/perfil")
     public ResponseEntity<?> actualizarMiPerfil(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal UsuarioAutenticado usuarioAutenticado,
             @Valid @RequestBody ActualizarPerfilDTO dto) {
         try {
-            String token = authHeader.substring(7);
-            Long usuarioId = jwtUtil.extraerUserId(token);
+            Long usuarioId = usuarioAutenticado.userId();
 
             Usuario usuario = usuarioService.actualizarPerfil(usuarioId, dto);
             
@@ -1,14 +1,27 @@
 package com.marketplace.backend.controller;
 
+import com.marketplace.backend.dto.PaginaDTO;
+import com.marketplace.backend.dto.PedidoProveedorDTO;
+import com.marketplace.backend.dto.ResumenVentasDTO;
 import com.marketplace.backend.dto.VentaDTO;
-import com.marketplace.backend.security.JwtUtil;
+import com.marketplace.backend.security.UsuarioAutenticado;
 import com.marketplace.backend.service.VentaService;
+import com.marketplace.backend.util.ExportadorFilas;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/proveedor/ventas")
@@ -17,15 +30,139 @@ import java.util.List;
 public class VentaController {
 
     private final VentaService ventaService;
-    private final JwtUtil jwtUtil;
 
+    /**
+     * Ventas del proveedor paginadas por cursor
+     * GET /api/proveedor/ventas?desde=2025-01-01&hasta=2025-01-31&limite=50&cursor=...
+     */
     @GetMapping
     @PreAuthorize("hasRole('PROVEEDOR')") // Solo proveedores pueden ver esto
-    public ResponseEntity<List<VentaDTO>> obtenerMisVentas(@RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.substring(7);
-        Long usuarioId = jwtUtil.extraerUserId(token);
+    public ResponseEntity<Map<String, Object>> obtenerMisVentas(
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + VentaService.LIMITE_POR_DEFECTO) int limite) {
 
-        List<VentaDTO> ventas = ventaService.obtenerVentasPorProveedor(usuarioId);
-        return ResponseEntity.ok(ventas);
+        Map<String, Object> response = new HashMap<>();
+        try {
+            Long usuarioId = usuario.userId();
+
+            PaginaDTO<VentaDTO> pagina = ventaService.obtenerVentasPorProveedor(usuarioId, desde, hasta, cursor, limite);
+
+            response.put("success", true);
+            response.put("data", pagina.getItems());
+            response.put("siguienteCursor", pagina.getSiguienteCursor());
+            response.put("hayMas", pagina.isHayMas());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (RuntimeException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+    }
+
+    /**
+     * Pedidos del proveedor (su parte de cada pedido) paginados por cursor
+     * GET /api/proveedor/ventas/pedidos?desde=2025-01-01&hasta=2025-01-31&limite=50&cursor=...
+     */
+    @GetMapping("/pedidos")
+    @PreAuthorize("hasRole('PROVEEDOR')")
+    public ResponseEntity<Map<String, Object>> obtenerMisPedidos(
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + VentaService.LIMITE_POR_DEFECTO) int limite) {
+
+        Map<String, Object> response = new HashMap<>();
+        try {
+            PaginaDTO<PedidoProveedorDTO> pagina =
+                    ventaService.obtenerPedidosPorProveedor(usuario.userId(), desde, hasta, cursor, limite);
+
+            response.put("success", true);
+            response.put("data", pagina.getItems());
+            response.put("siguienteCursor", pagina.getSiguienteCursor());
+            response.put("hayMas", pagina.isHayMas());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (RuntimeException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+    }
+
+    /**
+     * Panel de ventas (ingresos y unidades por día, productos más vendidos) desde los acumulados diarios
+     * GET /api/proveedor/ventas/resumen?desde=2025-01-01&hasta=2025-01-31&top=5
+     */
+    @GetMapping("/resumen")
+    @PreAuthorize("hasRole('PROVEEDOR')")
+    public ResponseEntity<Map<String, Object>> obtenerResumen(
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "" + VentaService.TOP_PRODUCTOS_POR_DEFECTO) int top) {
+
+        Map<String, Object> response = new HashMap<>();
+        try {
+            ResumenVentasDTO resumen = ventaService.obtenerResumen(usuario.userId(), desde, hasta, top);
+
+            response.put("success", true);
+            response.put("data", resumen);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (RuntimeException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+    }
+
+    /**
+     * Exportar las ventas del rango sin cargarlas en memoria (formato csv o ndjson)
+     * GET /api/proveedor/ventas/exportar?formato=csv&desde=2025-01-01&hasta=2025-12-31
+     */
+    @GetMapping("/exportar")
+    @PreAuthorize("hasRole('PROVEEDOR')")
+    public ResponseEntity<?> exportarVentas(
+            @AuthenticationPrincipal UsuarioAutenticado usuario,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) String formato) {
+
+        Map<String, Object> response = new HashMap<>();
+        try {
+            ExportadorFilas.Formato formatoExportacion = ExportadorFilas.Formato.desde(formato);
+            Long proveedorId = ventaService.prepararExportacion(usuario.userId(), desde, hasta);
+
+            StreamingResponseBody cuerpo = salida ->
+                    ventaService.exportarVentas(proveedorId, desde, hasta, formatoExportacion, salida);
+
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(formatoExportacion.getTipoContenido() + ";charset=UTF-8"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename("ventas." + formatoExportacion.getExtension()).build().toString())
+                    .body(cuerpo);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (RuntimeException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
     }
-}
\ No newline at end of file
+}
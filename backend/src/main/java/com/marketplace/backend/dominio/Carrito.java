@@ -10,11 +10,16 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "carrito")
+@Table(name = "carrito", uniqueConstraints = {
+        // Una línea por producto: el alta concurrente suma sobre la misma fila
+        @UniqueConstraint(name = Carrito.UK_USUARIO_PRODUCTO, columnNames = {"usuario_id", "producto_id"})
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Carrito {
+    public static final String UK_USUARIO_PRODUCTO = "uk_carrito_usuario_producto";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @JsonProperty("id")
@@ -9,15 +9,21 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "detalle_pedido")
+@Table(name = "detalle_pedido", indexes = {
+        @Index(name = "idx_detalle_proveedor_fecha", columnList = "proveedor_id, fecha_pedido, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class DetallePedido {
+    // Ids asignados por bloques (no IDENTITY) para que Hibernate pueda insertar en batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "detalle_pedido_id")
+    @TableGenerator(name = "detalle_pedido_id", table = "generadores_id", pkColumnName = "entidad",
+            valueColumnName = "siguiente_id", pkColumnValue = "detalle_pedido", allocationSize = 50)
     @JsonProperty("id")
     private Long id;
 
@@ -25,6 +31,11 @@ public class DetallePedido {
     @JoinColumn(name = "pedido_id", nullable = false)
     private Pedido pedido;
 
+    // Subpedido del proveedor de la línea (nulo solo en líneas anteriores a los subpedidos)
+    @ManyToOne
+    @JoinColumn(name = "sub_pedido_id")
+    private SubPedido subPedido;
+
     @ManyToOne
     @JoinColumn(name = "producto_id", nullable = false)
     private Producto producto;
@@ -47,4 +58,9 @@ public class DetallePedido {
     @Column(name = "subtotal", nullable = false, precision = 10, scale = 2)
     @JsonProperty("subtotal")
     private BigDecimal subtotal;
+
+    // Copia de pedidos.fecha_pedido para listar las ventas del proveedor por índice sin unir pedidos
+    @Column(name = "fecha_pedido")
+    @JsonProperty("fechaPedido")
+    private LocalDateTime fechaPedido;
 }
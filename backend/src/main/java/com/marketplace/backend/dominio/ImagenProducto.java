@@ -14,8 +14,11 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class ImagenProducto {
+    // Ids asignados por bloques (no IDENTITY) para que Hibernate pueda insertar en batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "imagen_producto_id")
+    @TableGenerator(name = "imagen_producto_id", table = "generadores_id", pkColumnName = "entidad",
+            valueColumnName = "siguiente_id", pkColumnValue = "imagenes_producto", allocationSize = 50)
     @JsonProperty("id")
     private Long id;
 
@@ -0,0 +1,26 @@
+package com.marketplace.backend.dominio;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ajuste de datos de EsquemaInicializador ya ejecutado. La fila se inserta al empezar y se
+ * confirma al terminar; mientras tanto las demás instancias quedan bloqueadas en su INSERT.
+ */
+@Entity
+@Table(name = "migraciones_datos")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MigracionDatos {
+    @Id
+    @Column(name = "nombre", length = 100)
+    private String nombre;
+
+    @Column(name = "fecha", nullable = false)
+    private LocalDateTime fecha;
+}
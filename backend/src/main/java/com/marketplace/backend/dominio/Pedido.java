@@ -13,7 +13,10 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "pedidos")
+@Table(name = "pedidos", indexes = {
+        @Index(name = "idx_pedidos_usuario_fecha", columnList = "usuario_id, fecha_pedido, id"),
+        @Index(name = "idx_pedidos_estado_checkout", columnList = "estado_checkout")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -64,11 +67,30 @@ public class Pedido {
     @JsonProperty("metodoPago")
     private String metodoPago;
 
+    // Avance del checkout asíncrono (los pedidos síncronos nacen COMPLETADO)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado_checkout", length = 20)
+    @JsonProperty("estadoCheckout")
+    private EstadoCheckout estadoCheckout = EstadoCheckout.COMPLETADO;
+
+    @Size(max = 500)
+    @Column(name = "mensaje_checkout", length = 500)
+    @JsonProperty("mensajeCheckout")
+    private String mensajeCheckout;
+
     @PrePersist
     protected void onCreate() {
         fechaPedido = LocalDateTime.now();
     }
 
+    // Enum para el avance del checkout asíncrono
+    public enum EstadoCheckout {
+        EN_COLA,
+        PROCESANDO,
+        COMPLETADO,
+        FALLIDO
+    }
+
     // Enum para el estado del pedido
     public enum EstadoPedido {
         pendiente,
@@ -14,7 +14,15 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "productos")
+@Table(name = "productos", indexes = {
+        // Índices para la paginación por keyset del catálogo público
+        @Index(name = "idx_productos_disp_fecha", columnList = "disponible, fecha_publicacion, id"),
+        @Index(name = "idx_productos_disp_precio", columnList = "disponible, precio_unitario, id"),
+        @Index(name = "idx_productos_disp_calificacion", columnList = "disponible, calificacion_promedio, id"),
+        @Index(name = "idx_productos_categoria_disp_fecha", columnList = "categoria_id, disponible, fecha_publicacion, id"),
+        @Index(name = "idx_productos_subcategoria_disp_fecha", columnList = "subcategoria_id, disponible, fecha_publicacion, id"),
+        @Index(name = "idx_productos_proveedor_disp_fecha", columnList = "proveedor_id, disponible, fecha_publicacion, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -75,7 +83,9 @@ public class Producto {
     @JsonProperty("fechaPublicacion")
     private LocalDateTime fechaPublicacion;
 
-    @Column(name = "calificacion_promedio", precision = 2, scale = 1)
+    // NOT NULL: el catálogo ordena y pagina por esta columna (un NULL quedaría fuera del cursor)
+    @Column(name = "calificacion_promedio", nullable = false, precision = 2, scale = 1,
+            columnDefinition = "DECIMAL(2,1) DEFAULT 0")
     @JsonProperty("calificacionPromedio")
     private BigDecimal calificacionPromedio = BigDecimal.ZERO;
 
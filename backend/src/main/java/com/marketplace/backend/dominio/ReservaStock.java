@@ -0,0 +1,55 @@
+package com.marketplace.backend.dominio;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Registro de unidades reservadas de un producto caliente, escrito en la transacción del
+ * checkout. El conciliador resta las pendientes de productos.stock_disponible, suma la venta
+ * a ventas_diarias y las marca aplicadas; tras una caída el stock real es stock_disponible
+ * menos las pendientes.
+ */
+@Entity
+@Table(name = "reservas_stock", indexes = {
+        @Index(name = "idx_reservas_stock_aplicada", columnList = "aplicada, id"),
+        @Index(name = "idx_reservas_stock_producto", columnList = "producto_id, aplicada")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservaStock {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+
+    @Column(name = "cantidad", nullable = false)
+    private Integer cantidad;
+
+    @Column(name = "fecha", nullable = false)
+    private LocalDateTime fecha;
+
+    @Column(name = "proveedor_id", nullable = false)
+    private Long proveedorId;
+
+    // Día del pedido, el mismo que detalle_pedido.fecha_pedido
+    @Column(name = "fecha_venta", nullable = false)
+    private LocalDate fechaVenta;
+
+    @Column(name = "ingresos", nullable = false, precision = 14, scale = 2)
+    private BigDecimal ingresos;
+
+    @Column(name = "lineas", nullable = false)
+    private Integer lineas;
+
+    @Column(name = "aplicada", nullable = false)
+    private Boolean aplicada = false;
+}
@@ -0,0 +1,38 @@
+package com.marketplace.backend.dominio;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Primera respuesta de una operación enviada con Idempotency-Key.
+ * La clave es el SHA-256 de usuario + operación + clave del cliente y la huella el SHA-256
+ * del cuerpo de la petición. Mientras la primera petición está en curso estado_http es 0.
+ */
+@Entity
+@Table(name = "idempotencia", indexes = {
+        @Index(name = "idx_idempotencia_expira_en", columnList = "expira_en")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RespuestaIdempotente {
+    @Id
+    @Column(name = "clave", length = 64, columnDefinition = "CHAR(64)")
+    private String clave;
+
+    @Column(name = "huella", length = 64, columnDefinition = "CHAR(64)")
+    private String huella;
+
+    @Column(name = "estado_http", nullable = false)
+    private Integer estadoHttp;
+
+    @Column(name = "cuerpo", columnDefinition = "TEXT")
+    private String cuerpo;
+
+    @Column(name = "expira_en", nullable = false)
+    private LocalDateTime expiraEn;
+}
@@ -0,0 +1,63 @@
+package com.marketplace.backend.dominio;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Parte de un pedido que corresponde a un proveedor: sus líneas, subtotal y unidades.
+ * El proveedor lista sus pedidos desde aquí sin recorrer las líneas de otros proveedores.
+ */
+@Entity
+@Table(name = "sub_pedidos", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_sub_pedido_pedido_proveedor", columnNames = {"pedido_id", "proveedor_id"})
+}, indexes = {
+        @Index(name = "idx_sub_pedidos_proveedor_fecha", columnList = "proveedor_id, fecha_pedido, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubPedido {
+    // Ids por bloques, como detalle_pedido, para insertar los subpedidos de un checkout en batch
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "sub_pedidos_id")
+    @TableGenerator(name = "sub_pedidos_id", table = "generadores_id", pkColumnName = "entidad",
+            valueColumnName = "siguiente_id", pkColumnValue = "sub_pedidos", allocationSize = 50)
+    @JsonProperty("id")
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "pedido_id", nullable = false)
+    private Pedido pedido;
+
+    @ManyToOne
+    @JoinColumn(name = "proveedor_id", nullable = false)
+    private Proveedor proveedor;
+
+    @DecimalMin(value = "0.01", message = "El subtotal debe ser mayor a 0")
+    @Column(name = "subtotal", nullable = false, precision = 10, scale = 2)
+    @JsonProperty("subtotal")
+    private BigDecimal subtotal;
+
+    @Min(1)
+    @Column(name = "lineas", nullable = false)
+    @JsonProperty("lineas")
+    private Integer lineas;
+
+    @Min(1)
+    @Column(name = "unidades", nullable = false)
+    @JsonProperty("unidades")
+    private Integer unidades;
+
+    // Copia de pedidos.fecha_pedido para listar por proveedor y fecha sobre el índice
+    @Column(name = "fecha_pedido", nullable = false)
+    @JsonProperty("fechaPedido")
+    private LocalDateTime fechaPedido;
+}
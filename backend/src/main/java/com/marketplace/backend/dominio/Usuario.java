@@ -1,5 +1,6 @@
 package com.marketplace.backend.dominio;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
@@ -13,7 +14,9 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
-@Table(name = "usuarios")
+@Table(name = "usuarios", indexes = {
+        @Index(name = "idx_usuarios_tokens_revocados_en", columnList = "tokens_revocados_en")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 public class Usuario {
@@ -62,6 +65,11 @@ public class Usuario {
     @JsonProperty("fechaRegistro")
     private LocalDateTime fechaRegistro;
 
+    // Los tokens emitidos hasta este instante dejan de ser válidos (cambio de rol)
+    @Column(name = "tokens_revocados_en")
+    @JsonIgnore
+    private LocalDateTime tokensRevocadosEn;
+
     @PrePersist
     protected void onCreate() {
         fechaRegistro = LocalDateTime.now();
@@ -0,0 +1,46 @@
+package com.marketplace.backend.dominio;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Ventas acumuladas de un producto de un proveedor en un día (pedidos no cancelados).
+ * Se actualiza en la misma transacción del checkout y se puede reconstruir desde detalle_pedido.
+ */
+@Entity
+@Table(name = "ventas_diarias",
+        uniqueConstraints = @UniqueConstraint(name = "uk_ventas_diarias_proveedor_producto_fecha",
+                columnNames = {"proveedor_id", "producto_id", "fecha"}),
+        indexes = @Index(name = "idx_ventas_diarias_proveedor_fecha", columnList = "proveedor_id, fecha"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentaDiaria {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "proveedor_id", nullable = false)
+    private Long proveedorId;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+
+    @Column(name = "fecha", nullable = false)
+    private LocalDate fecha;
+
+    @Column(name = "unidades", nullable = false)
+    private Long unidades;
+
+    @Column(name = "ingresos", nullable = false, precision = 14, scale = 2)
+    private BigDecimal ingresos;
+
+    // Líneas de pedido que sumaron a esta fila
+    @Column(name = "lineas", nullable = false)
+    private Long lineas;
+}
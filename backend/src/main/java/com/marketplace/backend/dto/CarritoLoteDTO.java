@@ -0,0 +1,27 @@
+package com.marketplace.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO para agregar o actualizar varias líneas del carrito en una sola petición
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CarritoLoteDTO {
+
+    public static final int MAXIMO_LINEAS = 200;
+
+    @NotEmpty(message = "Debe enviar al menos una línea")
+    @Size(max = MAXIMO_LINEAS, message = "No se pueden enviar más de " + MAXIMO_LINEAS + " líneas")
+    @JsonProperty("items")
+    private List<@Valid AgregarCarritoDTO> items;
+}
@@ -0,0 +1,27 @@
+package com.marketplace.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO con la cantidad de productos de un valor de faceta
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConteoFacetaDTO {
+
+    @JsonProperty("valor")
+    private String valor; // id de categoría/proveedor, unidad o banda de precio
+
+    @JsonProperty("etiqueta")
+    private String etiqueta;
+
+    @JsonProperty("cantidad")
+    private long cantidad;
+
+    @JsonProperty("seleccionado")
+    private boolean seleccionado;
+}
@@ -0,0 +1,60 @@
+package com.marketplace.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Filtros, orden y cursor para listar el catálogo público
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FiltroCatalogoDTO {
+
+    public static final int LIMITE_POR_DEFECTO = 24;
+    public static final int LIMITE_MAXIMO = 100;
+
+    private Long categoriaId;
+
+    private Long subcategoriaId;
+
+    private Long proveedorId;
+
+    private OrdenCatalogo orden = OrdenCatalogo.RECIENTES;
+
+    private String cursor;
+
+    private int limite = LIMITE_POR_DEFECTO;
+
+    /**
+     * Límite que se aplica a la consulta (entre 1 y LIMITE_MAXIMO)
+     */
+    public int limiteEfectivo() {
+        return Math.max(1, Math.min(limite, LIMITE_MAXIMO));
+    }
+
+    /**
+     * Criterios de orden soportados por el catálogo
+     */
+    public enum OrdenCatalogo {
+        RECIENTES,
+        PRECIO_ASC,
+        PRECIO_DESC,
+        CALIFICACION;
+
+        /**
+         * Convierte el parámetro de la URL (ej. "precio_asc") al enum
+         */
+        public static OrdenCatalogo desde(String valor) {
+            if (valor == null || valor.isBlank()) {
+                return RECIENTES;
+            }
+            try {
+                return OrdenCatalogo.valueOf(valor.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Orden inválido: " + valor);
+            }
+        }
+    }
+}
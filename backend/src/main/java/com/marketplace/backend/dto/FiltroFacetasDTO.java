@@ -0,0 +1,83 @@
+package com.marketplace.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filtros por facetas del catálogo público.
+ * Dentro de una misma faceta los valores se combinan con OR y entre facetas con AND.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FiltroFacetasDTO {
+
+    private List<Long> categoriaIds = new ArrayList<>();
+
+    private List<Long> subcategoriaIds = new ArrayList<>();
+
+    private List<Long> proveedorIds = new ArrayList<>();
+
+    private List<String> unidadesMedida = new ArrayList<>();
+
+    private List<BandaPrecio> bandasPrecio = new ArrayList<>();
+
+    private String cursor;
+
+    private int limite = FiltroCatalogoDTO.LIMITE_POR_DEFECTO;
+
+    /**
+     * Rangos de precio unitario usados como faceta (límite inferior incluido, superior excluido)
+     */
+    public enum BandaPrecio {
+        HASTA_10("Hasta S/ 10", null, new BigDecimal("10")),
+        DE_10_A_50("S/ 10 a S/ 50", new BigDecimal("10"), new BigDecimal("50")),
+        DE_50_A_100("S/ 50 a S/ 100", new BigDecimal("50"), new BigDecimal("100")),
+        DE_100_A_500("S/ 100 a S/ 500", new BigDecimal("100"), new BigDecimal("500")),
+        MAS_DE_500("Más de S/ 500", new BigDecimal("500"), null);
+
+        private final String etiqueta;
+        private final BigDecimal minimo;
+        private final BigDecimal maximo;
+
+        BandaPrecio(String etiqueta, BigDecimal minimo, BigDecimal maximo) {
+            this.etiqueta = etiqueta;
+            this.minimo = minimo;
+            this.maximo = maximo;
+        }
+
+        public String getEtiqueta() {
+            return etiqueta;
+        }
+
+        /**
+         * Banda a la que pertenece un precio
+         */
+        public static BandaPrecio de(BigDecimal precio) {
+            for (BandaPrecio banda : values()) {
+                boolean sobreMinimo = banda.minimo == null || precio.compareTo(banda.minimo) >= 0;
+                boolean bajoMaximo = banda.maximo == null || precio.compareTo(banda.maximo) < 0;
+                if (sobreMinimo && bajoMaximo) {
+                    return banda;
+                }
+            }
+            return MAS_DE_500;
+        }
+
+        /**
+         * Convierte el parámetro de la URL (ej. "de_10_a_50") al enum
+         */
+        public static BandaPrecio desde(String valor) {
+            try {
+                return BandaPrecio.valueOf(valor.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Banda de precio inválida: " + valor);
+            }
+        }
+    }
+}
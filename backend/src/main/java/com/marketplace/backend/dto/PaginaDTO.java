@@ -0,0 +1,26 @@
+package com.marketplace.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO para una página de resultados paginada por cursor (keyset)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaDTO<T> {
+
+    @JsonProperty("items")
+    private List<T> items;
+
+    @JsonProperty("siguienteCursor")
+    private String siguienteCursor; // null cuando no hay más resultados
+
+    @JsonProperty("hayMas")
+    private boolean hayMas;
+}
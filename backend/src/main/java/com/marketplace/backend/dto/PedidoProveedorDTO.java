@@ -0,0 +1,42 @@
+package com.marketplace.backend.dto;
+
+import com.marketplace.backend.dominio.Pedido;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Pedido visto por un proveedor: solo su parte (subpedido), sin las líneas de otros proveedores
+ */
+@Data
+@NoArgsConstructor
+public class PedidoProveedorDTO {
+    private Long id; // ID del subpedido
+    private String numeroPedido;
+    private LocalDateTime fechaPedido;
+    private String estadoPedido;
+    private String clienteNombre;
+    private String direccionEntrega;
+    private String telefonoContacto;
+    private Integer lineas;
+    private Integer unidades;
+    private BigDecimal subtotal;
+
+    // Usado por la proyección de SubPedidoRepository.findPedidosPorProveedor
+    public PedidoProveedorDTO(Long id, String numeroPedido, LocalDateTime fechaPedido, Pedido.EstadoPedido estadoPedido,
+                              String clienteNombre, String clienteApellido, String direccionEntrega,
+                              String telefonoContacto, Integer lineas, Integer unidades, BigDecimal subtotal) {
+        this.id = id;
+        this.numeroPedido = numeroPedido;
+        this.fechaPedido = fechaPedido;
+        this.estadoPedido = estadoPedido.toString();
+        this.clienteNombre = clienteNombre + " " + clienteApellido;
+        this.direccionEntrega = direccionEntrega;
+        this.telefonoContacto = telefonoContacto;
+        this.lineas = lineas;
+        this.unidades = unidades;
+        this.subtotal = subtotal;
+    }
+}
@@ -0,0 +1,27 @@
+package com.marketplace.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO con una página de productos filtrados por facetas y los conteos de cada faceta
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoFacetasDTO {
+
+    @JsonProperty("pagina")
+    private PaginaDTO<ProductoDTO> pagina;
+
+    @JsonProperty("total")
+    private long total;
+
+    @JsonProperty("facetas")
+    private Map<String, List<ConteoFacetaDTO>> facetas; // categoria, subcategoria, proveedor, unidadMedida, precio
+}
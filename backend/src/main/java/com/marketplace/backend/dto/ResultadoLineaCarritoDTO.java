@@ -0,0 +1,37 @@
+package com.marketplace.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de una línea de una operación por lotes sobre el carrito
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoLineaCarritoDTO {
+
+    @JsonProperty("productoId")
+    private Long productoId;
+
+    @JsonProperty("exito")
+    private boolean exito;
+
+    // Motivo del rechazo (null si se aplicó)
+    @JsonProperty("mensaje")
+    private String mensaje;
+
+    // Línea resultante del carrito (null si se rechazó)
+    @JsonProperty("item")
+    private CarritoItemDTO item;
+
+    public static ResultadoLineaCarritoDTO aplicada(CarritoItemDTO item) {
+        return new ResultadoLineaCarritoDTO(item.getProductoId(), true, null, item);
+    }
+
+    public static ResultadoLineaCarritoDTO rechazada(Long productoId, String mensaje) {
+        return new ResultadoLineaCarritoDTO(productoId, false, mensaje, null);
+    }
+}
@@ -0,0 +1,28 @@
+package com.marketplace.backend.dto;
+
+import com.marketplace.backend.dominio.Pedido;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Fila del historial de pedidos del comprador (proyección, sin cargar la entidad Pedido)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumenPedidoDTO {
+    private Long id;
+    private String numeroPedido;
+    private LocalDateTime fechaPedido;
+    private Pedido.EstadoPedido estado;
+    private Pedido.EstadoCheckout estadoCheckout;
+    private BigDecimal total;
+    private String direccionEntrega;
+    private String telefonoContacto;
+    private String metodoPago;
+    private Long cantidadLineas;
+}
@@ -0,0 +1,30 @@
+package com.marketplace.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Panel de ventas del proveedor, calculado solo con los acumulados diarios
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumenVentasDTO {
+    private LocalDate desde; // null = desde la primera venta
+    private LocalDate hasta; // null = hasta hoy
+    private long unidades;
+    private BigDecimal ingresos;
+    private List<VentaDia> porDia;
+    private List<ProductoVendido> topProductos;
+
+    public record VentaDia(LocalDate fecha, long unidades, BigDecimal ingresos) {
+    }
+
+    public record ProductoVendido(Long productoId, String nombreProducto, long unidades, BigDecimal ingresos) {
+    }
+}
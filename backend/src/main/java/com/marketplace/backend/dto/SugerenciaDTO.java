@@ -0,0 +1,24 @@
+package com.marketplace.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO para una sugerencia del autocompletado del buscador
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SugerenciaDTO {
+
+    @JsonProperty("texto")
+    private String texto;
+
+    @JsonProperty("tipo")
+    private String tipo; // PRODUCTO, CATEGORIA o SUBCATEGORIA
+
+    @JsonProperty("id")
+    private Long id;
+}
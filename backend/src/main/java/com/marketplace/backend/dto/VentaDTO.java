@@ -1,14 +1,19 @@
 package com.marketplace.backend.dto;
 
+import com.marketplace.backend.dominio.Pedido;
 import lombok.Data;
+import lombok.NoArgsConstructor;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
+@NoArgsConstructor
 public class VentaDTO {
     private Long id; // ID del detalle
     private String numeroPedido;
     private LocalDateTime fechaVenta;
+    private Long productoId;
     private String nombreProducto;
     private String imagenUrl; // Para mostrar la foto chiquita como la de carlinnho
     private Integer cantidad;
@@ -16,4 +21,20 @@ public class VentaDTO {
     private BigDecimal subtotal; // Cuánto ganó en esta venta
     private String estadoPedido;
     private String clienteNombre; // Nombre del comprador
-}
\ No newline at end of file
+
+    // Usado por la proyección de DetallePedidoRepository.findVentasPorProveedor (la imagen se completa aparte)
+    public VentaDTO(Long id, String numeroPedido, LocalDateTime fechaVenta, Pedido.EstadoPedido estadoPedido,
+                    String clienteNombre, String clienteApellido, Long productoId, String nombreProducto,
+                    Integer cantidad, BigDecimal precioUnitario, BigDecimal subtotal) {
+        this.id = id;
+        this.numeroPedido = numeroPedido;
+        this.fechaVenta = fechaVenta;
+        this.estadoPedido = estadoPedido.toString();
+        this.clienteNombre = clienteNombre + " " + clienteApellido;
+        this.productoId = productoId;
+        this.nombreProducto = nombreProducto;
+        this.cantidad = cantidad;
+        this.precioUnitario = precioUnitario;
+        this.subtotal = subtotal;
+    }
+}
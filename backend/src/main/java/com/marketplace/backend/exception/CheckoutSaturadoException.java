@@ -0,0 +1,17 @@
+package com.marketplace.backend.exception;
+
+import lombok.Getter;
+
+/**
+ * La cola del checkout asíncrono está llena; el cliente debe reintentar más tarde.
+ */
+@Getter
+public class CheckoutSaturadoException extends RuntimeException {
+
+    private final int reintentarEnSegundos;
+
+    public CheckoutSaturadoException(int reintentarEnSegundos) {
+        super("Hay demasiados pedidos en proceso, inténtalo de nuevo en unos segundos");
+        this.reintentarEnSegundos = reintentarEnSegundos;
+    }
+}
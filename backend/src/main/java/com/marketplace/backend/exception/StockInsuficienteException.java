@@ -0,0 +1,26 @@
+package com.marketplace.backend.exception;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Uno o más productos del pedido no tienen stock suficiente.
+ * Lleva el detalle de cada línea faltante para que el comprador pueda ajustar su carrito.
+ */
+@Getter
+public class StockInsuficienteException extends RuntimeException {
+
+    private final List<Faltante> faltantes;
+
+    public StockInsuficienteException(List<Faltante> faltantes) {
+        super("Stock insuficiente para: " + faltantes.stream()
+                .map(Faltante::nombreProducto)
+                .collect(Collectors.joining(", ")));
+        this.faltantes = faltantes;
+    }
+
+    public record Faltante(Long productoId, String nombreProducto, int solicitado, int disponible) {
+    }
+}
@@ -0,0 +1,159 @@
+package com.marketplace.backend.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Lectura y escritura por lotes de la tabla carrito con SQL directo (volcado de los carritos
+ * en memoria, operaciones por lotes y limpieza): una sentencia (o un batch) por tipo de
+ * cambio sin cargar las entidades ni sus relaciones EAGER.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CarritoLotesRepository {
+
+    // Upsert de una línea (alta individual y por lotes); CASE y la subconsulta del stock en lugar
+    // de IF y p.* para que también corra en H2 en modo MySQL
+    private static final String SUMAR_CANTIDAD =
+            "INSERT INTO carrito (usuario_id, producto_id, cantidad, fecha_agregado) " +
+            "SELECT ?, p.id, ?, ? FROM productos p " +
+            "WHERE p.id = ? AND p.disponible = TRUE AND ? >= p.cantidad_minima AND ? <= p.stock_disponible " +
+            "ON DUPLICATE KEY UPDATE cantidad = CASE " +
+            "WHEN carrito.cantidad + ? <= (SELECT stock_disponible FROM productos WHERE id = ?) " +
+            "THEN carrito.cantidad + ? ELSE carrito.cantidad END";
+
+    private static final String SELECT_FILAS =
+            "SELECT id, usuario_id, producto_id, cantidad, fecha_agregado FROM carrito ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public record FilaCarrito(Long id, Long usuarioId, Long productoId, int cantidad, LocalDateTime fechaAgregado) {
+    }
+
+    private static final RowMapper<FilaCarrito> MAPEO = (fila, n) -> new FilaCarrito(
+            fila.getLong("id"), fila.getLong("usuario_id"), fila.getLong("producto_id"),
+            fila.getInt("cantidad"), fila.getTimestamp("fecha_agregado").toLocalDateTime());
+
+    /**
+     * Filas del carrito de un usuario en orden de alta
+     */
+    public List<FilaCarrito> buscarPorUsuario(Long usuarioId) {
+        return jdbcTemplate.query(SELECT_FILAS + "WHERE usuario_id = ? ORDER BY id", MAPEO, usuarioId);
+    }
+
+    /**
+     * Filas de los carritos de varios usuarios (para recuperar los ids recién insertados)
+     */
+    public List<FilaCarrito> buscarPorUsuarios(Collection<Long> usuarioIds) {
+        return namedJdbcTemplate.query(SELECT_FILAS + "WHERE usuario_id IN (:ids) ORDER BY id",
+                new MapSqlParameterSource("ids", usuarioIds), MAPEO);
+    }
+
+    public int borrar(Collection<Long> ids) {
+        return namedJdbcTemplate.update("DELETE FROM carrito WHERE id IN (:ids)", new MapSqlParameterSource("ids", ids));
+    }
+
+    /**
+     * Fijar la cantidad de varias filas en un batch. Devuelve los ids que ya no existían.
+     */
+    public Set<Long> actualizarCantidades(Map<Long, Integer> cantidadesPorId) {
+        List<Long> ids = new ArrayList<>(cantidadesPorId.keySet());
+        List<Object[]> parametros = new ArrayList<>(ids.size());
+        ids.forEach(id -> parametros.add(new Object[]{cantidadesPorId.get(id), id}));
+
+        int[] filas = jdbcTemplate.batchUpdate("UPDATE carrito SET cantidad = ? WHERE id = ?", parametros);
+
+        Set<Long> inexistentes = new HashSet<>();
+        for (int i = 0; i < filas.length; i++) {
+            if (filas[i] == 0) {
+                inexistentes.add(ids.get(i));
+            }
+        }
+        return inexistentes;
+    }
+
+    /**
+     * Sumar unidades a la línea (usuario, producto) o crearla, en una sola sentencia.
+     * Solo escribe si el producto está disponible, la cantidad alcanza el mínimo y el total no
+     * supera el stock. Filas afectadas: 1 si insertó, 2 si sumó; 0 si el producto no pasó las
+     * validaciones y 1 también si la línea existía pero el total superaba el stock (sin cambios).
+     */
+    public int sumarCantidad(Long usuarioId, Long productoId, int cantidad, LocalDateTime fechaAlta) {
+        return jdbcTemplate.update(SUMAR_CANTIDAD,
+                parametrosDeSuma(usuarioId, productoId, cantidad, Timestamp.valueOf(fechaAlta)));
+    }
+
+    /**
+     * Sumar unidades a varias líneas (o crearlas) en un batch de upserts, en orden de producto.
+     * Cada sentencia valida disponibilidad, mínimo y stock como el alta individual; devuelve
+     * las filas afectadas por producto (1 insertó, 2 sumó, 0 o 1 sin cambios).
+     */
+    public int[] sumarCantidades(Long usuarioId, SortedMap<Long, Integer> cantidadesPorProducto, LocalDateTime fechaAlta) {
+        Timestamp fecha = Timestamp.valueOf(fechaAlta);
+        List<Object[]> parametros = new ArrayList<>(cantidadesPorProducto.size());
+        cantidadesPorProducto.forEach((productoId, cantidad) ->
+                parametros.add(parametrosDeSuma(usuarioId, productoId, cantidad, fecha)));
+        return jdbcTemplate.batchUpdate(SUMAR_CANTIDAD, parametros);
+    }
+
+    private static Object[] parametrosDeSuma(Long usuarioId, Long productoId, int cantidad, Timestamp fecha) {
+        return new Object[]{usuarioId, cantidad, fecha, productoId, cantidad, cantidad, cantidad, productoId, cantidad};
+    }
+
+    /**
+     * Insertar filas nuevas en un batch (el id de cada FilaCarrito se ignora)
+     */
+    public void insertar(List<FilaCarrito> filas) {
+        List<Object[]> parametros = new ArrayList<>(filas.size());
+        for (FilaCarrito f : filas) {
+            parametros.add(new Object[]{f.usuarioId(), f.productoId(), f.cantidad(), Timestamp.valueOf(f.fechaAgregado())});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO carrito (usuario_id, producto_id, cantidad, fecha_agregado) VALUES (?, ?, ?, ?)",
+                parametros);
+    }
+
+    // ========== LIMPIEZA ==========
+
+    /**
+     * Siguientes líneas (por id) de productos no disponibles o que ya no existen
+     */
+    public List<FilaCarrito> buscarDeProductosNoDisponibles(long despuesDeId, int limite) {
+        return jdbcTemplate.query(
+                "SELECT c.id, c.usuario_id, c.producto_id, c.cantidad, c.fecha_agregado FROM carrito c " +
+                "LEFT JOIN productos p ON p.id = c.producto_id " +
+                "WHERE c.id > ? AND (p.id IS NULL OR p.disponible = FALSE) ORDER BY c.id LIMIT ?",
+                MAPEO, despuesDeId, limite);
+    }
+
+    /**
+     * Siguientes usuarios (por id) cuyo carrito no recibe altas desde antes del límite
+     */
+    public List<Long> buscarUsuariosConCarritoInactivo(long despuesDeUsuarioId, LocalDateTime limite, int cantidad) {
+        return jdbcTemplate.queryForList(
+                "SELECT usuario_id FROM carrito WHERE usuario_id > ? " +
+                "GROUP BY usuario_id HAVING MAX(fecha_agregado) < ? ORDER BY usuario_id LIMIT ?",
+                Long.class, despuesDeUsuarioId, Timestamp.valueOf(limite), cantidad);
+    }
+
+    /**
+     * Borrar los carritos de esos usuarios salvo los que recibieron un alta después del límite
+     * (la subconsulta va en una tabla derivada porque MySQL no deja leer la tabla que se borra)
+     */
+    public int borrarCarritosInactivos(Collection<Long> usuarioIds, LocalDateTime limite) {
+        return namedJdbcTemplate.update(
+                "DELETE FROM carrito WHERE usuario_id IN (:ids) AND usuario_id NOT IN (" +
+                "SELECT usuario_id FROM (SELECT DISTINCT usuario_id FROM carrito " +
+                "WHERE usuario_id IN (:ids) AND fecha_agregado >= :limite) recientes)",
+                new MapSqlParameterSource("ids", usuarioIds).addValue("limite", Timestamp.valueOf(limite)));
+    }
+}
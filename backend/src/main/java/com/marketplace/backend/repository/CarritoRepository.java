@@ -2,14 +2,11 @@ package com.marketplace.backend.repository;
 
 import com.marketplace.backend.dominio.Carrito;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public interface CarritoRepository extends JpaRepository<Carrito, Long> {
@@ -20,9 +17,21 @@ public interface CarritoRepository extends JpaRepository<Carrito, Long> {
     List<Carrito> findByUsuarioId(Long usuarioId);
 
     /**
-     * Buscar un item específico del carrito por usuario y producto
+     * Línea (usuario, producto) con su producto y la URL de su primera imagen: [Carrito, String]
      */
-    Optional<Carrito> findByUsuarioIdAndProductoId(Long usuarioId, Long productoId);
+    @Query("SELECT c, (SELECT i.urlImagen FROM ImagenProducto i WHERE i.id = " +
+           "(SELECT MIN(i2.id) FROM ImagenProducto i2 WHERE i2.producto = p)) " +
+           "FROM Carrito c " +
+           "JOIN FETCH c.usuario " +
+           "JOIN FETCH c.producto p " +
+           "JOIN FETCH p.proveedor pr " +
+           "JOIN FETCH pr.usuario " +
+           "JOIN FETCH p.categoria " +
+           "LEFT JOIN FETCH p.subcategoria s " +
+           "LEFT JOIN FETCH s.categoria " +
+           "WHERE c.usuario.id = :usuarioId AND p.id = :productoId")
+    List<Object[]> findLineaConPrimeraImagen(@Param("usuarioId") Long usuarioId,
+                                             @Param("productoId") Long productoId);
 
     /**
      * Verificar si existe un item en el carrito
@@ -40,17 +49,18 @@ public interface CarritoRepository extends JpaRepository<Carrito, Long> {
     Long countByUsuarioId(Long usuarioId);
 
     /**
-     * Obtener items del carrito con productos disponibles
+     * Items del carrito con productos disponibles y sus relaciones en una sola consulta
+     * (vista del carrito y checkout)
      */
-    @Query("SELECT c FROM Carrito c WHERE c.usuario.id = :usuarioId AND c.producto.disponible = true")
-    List<Carrito> findByUsuarioIdWithAvailableProducts(@Param("usuarioId") Long usuarioId);
-
-    /**
-     * Eliminar items de productos no disponibles
-     */
-    @Modifying // Indica que es una consulta de modificación (DELETE, UPDATE)
-    @Transactional // Requerido para ejecutar cambios en la BD
-    @Query("DELETE FROM Carrito c WHERE c.usuario.id = :usuarioId AND c.producto.disponible = false")
-    void deleteUnavailableProductsByUsuarioId(@Param("usuarioId") Long usuarioId);
+    @Query("SELECT c FROM Carrito c " +
+           "JOIN FETCH c.usuario " +
+           "JOIN FETCH c.producto p " +
+           "JOIN FETCH p.proveedor pr " +
+           "JOIN FETCH pr.usuario " +
+           "JOIN FETCH p.categoria " +
+           "LEFT JOIN FETCH p.subcategoria s " +
+           "LEFT JOIN FETCH s.categoria " +
+           "WHERE c.usuario.id = :usuarioId AND p.disponible = true")
+    List<Carrito> findConProductoDisponible(@Param("usuarioId") Long usuarioId);
 
 }
@@ -1,16 +1,51 @@
 package com.marketplace.backend.repository;
 
 import com.marketplace.backend.dominio.DetallePedido;
+import com.marketplace.backend.dominio.Pedido;
+import com.marketplace.backend.dto.VentaDTO;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface DetallePedidoRepository extends JpaRepository<DetallePedido, Long> {
     
-    // Spring Data JPA es inteligente: navega de DetallePedido -> Pedido -> FechaPedido
-    List<DetallePedido> findByProveedorIdOrderByPedidoFechaPedidoDesc(Long proveedorId);
+    // Ventas del proveedor por keyset (fecha DESC, id DESC) sobre idx_detalle_proveedor_fecha
+    @Query("SELECT new com.marketplace.backend.dto.VentaDTO(d.id, pe.numeroPedido, d.fechaPedido, pe.estado, " +
+           "u.nombre, u.apellido, p.id, p.nombre, d.cantidad, d.precioUnitario, d.subtotal) " +
+           "FROM DetallePedido d JOIN d.pedido pe JOIN pe.usuario u JOIN d.producto p " +
+           "WHERE d.proveedor.id = :proveedorId " +
+           "AND (:desde IS NULL OR d.fechaPedido >= :desde) " +
+           "AND (:hasta IS NULL OR d.fechaPedido < :hasta) " +
+           "AND (:cursorId IS NULL OR d.fechaPedido < :cursorFecha " +
+           "OR (d.fechaPedido = :cursorFecha AND d.id < :cursorId)) " +
+           "ORDER BY d.fechaPedido DESC, d.id DESC")
+    List<VentaDTO> findVentasPorProveedor(@Param("proveedorId") Long proveedorId,
+                                          @Param("desde") LocalDateTime desde,
+                                          @Param("hasta") LocalDateTime hasta,
+                                          @Param("cursorFecha") LocalDateTime cursorFecha,
+                                          @Param("cursorId") Long cursorId,
+                                          Pageable pageable);
+    
+    // Todas las ventas del proveedor en el rango, leídas con cursor para exportar sin cargarlas en memoria
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.marketplace.backend.dto.VentaDTO(d.id, pe.numeroPedido, d.fechaPedido, pe.estado, " +
+           "u.nombre, u.apellido, p.id, p.nombre, d.cantidad, d.precioUnitario, d.subtotal) " +
+           "FROM DetallePedido d JOIN d.pedido pe JOIN pe.usuario u JOIN d.producto p " +
+           "WHERE d.proveedor.id = :proveedorId " +
+           "AND (:desde IS NULL OR d.fechaPedido >= :desde) " +
+           "AND (:hasta IS NULL OR d.fechaPedido < :hasta) " +
+           "ORDER BY d.fechaPedido DESC, d.id DESC")
+    Stream<VentaDTO> streamVentasPorProveedor(@Param("proveedorId") Long proveedorId,
+                                              @Param("desde") LocalDateTime desde,
+                                              @Param("hasta") LocalDateTime hasta);
     
     // ⭐ NUEVO: Método optimizado para obtener detalles con producto y proveedor
     @Query("SELECT d FROM DetallePedido d " +
@@ -18,4 +53,11 @@ public interface DetallePedidoRepository extends JpaRepository<DetallePedido, Lo
            "LEFT JOIN FETCH d.proveedor pr " +
            "WHERE d.pedido.id = :pedidoId")
     List<DetallePedido> findByPedidoIdWithProductoAndProveedor(@Param("pedidoId") Long pedidoId);
-}
\ No newline at end of file
+    
+    // Unidades vendidas por producto, sin contar pedidos en el estado excluido (cancelados)
+    @Query("SELECT d.producto.id, SUM(d.cantidad) FROM DetallePedido d " +
+           "WHERE d.producto.id IN :productoIds AND d.pedido.estado <> :excluido " +
+           "GROUP BY d.producto.id")
+    List<Object[]> sumarCantidadesVendidas(@Param("productoIds") List<Long> productoIds,
+                                           @Param("excluido") Pedido.EstadoPedido excluido);
+}
@@ -6,7 +6,10 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Repository
 public interface ImagenProductoRepository extends JpaRepository<ImagenProducto, Long> {
@@ -21,6 +24,23 @@ public interface ImagenProductoRepository extends JpaRepository<ImagenProducto,
     Long countByProductoId(Long productoId);
 
     // ⭐ NUEVO: Obtener imágenes de múltiples productos (optimización para detalles de pedido)
-    @Query("SELECT i FROM ImagenProducto i WHERE i.producto.id IN :productoIds")
+    // Ordenadas por id para que la primera imagen sea siempre la misma
+    @Query("SELECT i FROM ImagenProducto i WHERE i.producto.id IN :productoIds ORDER BY i.id")
     List<ImagenProducto> findByProductoIdIn(@Param("productoIds") List<Long> productoIds);
-}
\ No newline at end of file
+
+    // Solo la primera imagen (menor id) de cada producto: pares [productoId, urlImagen]
+    @Query("SELECT i.producto.id, i.urlImagen FROM ImagenProducto i WHERE i.id IN (" +
+           "SELECT MIN(i2.id) FROM ImagenProducto i2 WHERE i2.producto.id IN :productoIds GROUP BY i2.producto.id)")
+    List<Object[]> findPrimerasImagenes(@Param("productoIds") Collection<Long> productoIds);
+
+    /**
+     * URL de la primera imagen de cada producto en una sola consulta (los productos sin imagen no aparecen)
+     */
+    default Map<Long, String> findPrimeraImagenPorProducto(Collection<Long> productoIds) {
+        if (productoIds.isEmpty()) {
+            return Map.of();
+        }
+        return findPrimerasImagenes(productoIds).stream()
+                .collect(Collectors.toMap(fila -> (Long) fila[0], fila -> (String) fila[1]));
+    }
+}
@@ -1,18 +1,76 @@
 package com.marketplace.backend.repository;
 
 import com.marketplace.backend.dominio.Pedido;
+import com.marketplace.backend.dto.ResumenPedidoDTO;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface PedidoRepository extends JpaRepository<Pedido, Long> {
-    List<Pedido> findByUsuarioIdOrderByFechaPedidoDesc(Long usuarioId);
+    /**
+     * Historial del comprador por keyset (fecha_pedido DESC, id DESC) sobre idx_pedidos_usuario_fecha
+     */
+    @Query("SELECT new com.marketplace.backend.dto.ResumenPedidoDTO(p.id, p.numeroPedido, p.fechaPedido, " +
+           "p.estado, p.estadoCheckout, p.total, p.direccionEntrega, p.telefonoContacto, p.metodoPago, " +
+           "(SELECT COUNT(d) FROM DetallePedido d WHERE d.pedido.id = p.id)) " +
+           "FROM Pedido p WHERE p.usuario.id = :usuarioId " +
+           "AND (:cursorId IS NULL OR p.fechaPedido < :cursorFecha " +
+           "OR (p.fechaPedido = :cursorFecha AND p.id < :cursorId)) " +
+           "ORDER BY p.fechaPedido DESC, p.id DESC")
+    List<ResumenPedidoDTO> findResumenesPorUsuario(@Param("usuarioId") Long usuarioId,
+                                                   @Param("cursorFecha") LocalDateTime cursorFecha,
+                                                   @Param("cursorId") Long cursorId,
+                                                   Pageable pageable);
+
+    long countByUsuarioId(Long usuarioId);
+
+    // Historial completo del comprador, leído con cursor para exportar sin cargarlo en memoria
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.marketplace.backend.dto.ResumenPedidoDTO(p.id, p.numeroPedido, p.fechaPedido, " +
+           "p.estado, p.estadoCheckout, p.total, p.direccionEntrega, p.telefonoContacto, p.metodoPago, " +
+           "(SELECT COUNT(d) FROM DetallePedido d WHERE d.pedido.id = p.id)) " +
+           "FROM Pedido p WHERE p.usuario.id = :usuarioId " +
+           "ORDER BY p.fechaPedido DESC, p.id DESC")
+    Stream<ResumenPedidoDTO> streamResumenesPorUsuario(@Param("usuarioId") Long usuarioId);
     boolean existsByNumeroPedido(String numeroPedido);
     
     // ⭐ NUEVO: Buscar pedido validando que pertenece al usuario
     @Query("SELECT p FROM Pedido p WHERE p.id = :pedidoId AND p.usuario.id = :usuarioId")
     Optional<Pedido> findByIdAndUsuarioId(@Param("pedidoId") Long pedidoId, @Param("usuarioId") Long usuarioId);
-}
\ No newline at end of file
+    
+    Optional<Pedido> findByNumeroPedidoAndUsuarioId(String numeroPedido, Long usuarioId);
+    
+    // Pedidos del checkout asíncrono que aún no terminaron
+    @Query("SELECT p.id FROM Pedido p WHERE p.estadoCheckout IN :estados ORDER BY p.id")
+    List<Long> findIdsByEstadoCheckoutIn(@Param("estados") List<Pedido.EstadoCheckout> estados);
+    
+    /**
+     * Pedido bloqueado hasta el fin de la transacción: un solo trabajador lo procesa a la vez
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Pedido p WHERE p.id = :pedidoId")
+    Optional<Pedido> findByIdParaActualizar(@Param("pedidoId") Long pedidoId);
+
+    /**
+     * Pasar el checkout al nuevo estado solo si sigue en el esperado; devuelve las filas cambiadas
+     */
+    @Modifying
+    @Query("UPDATE Pedido p SET p.estadoCheckout = :estado, p.mensajeCheckout = :mensaje " +
+           "WHERE p.id = :pedidoId AND p.estadoCheckout = :esperado")
+    int actualizarEstadoCheckout(@Param("pedidoId") Long pedidoId,
+                                 @Param("esperado") Pedido.EstadoCheckout esperado,
+                                 @Param("estado") Pedido.EstadoCheckout estado,
+                                 @Param("mensaje") String mensaje);
+}
@@ -1,9 +1,14 @@
 package com.marketplace.backend.repository;
 
 import com.marketplace.backend.dominio.Producto;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,6 +17,14 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
     
     // Buscar productos por proveedor
     List<Producto> findByProveedorId(Long proveedorId);
+
+    // Buscar productos por proveedor trayendo sus relaciones en la misma consulta
+    @Query("SELECT p FROM Producto p " +
+           "JOIN FETCH p.proveedor pr JOIN FETCH pr.usuario " +
+           "JOIN FETCH p.categoria " +
+           "LEFT JOIN FETCH p.subcategoria s LEFT JOIN FETCH s.categoria " +
+           "WHERE pr.id = :proveedorId ORDER BY p.id")
+    List<Producto> findByProveedorIdConRelaciones(@Param("proveedorId") Long proveedorId);
     
     // Buscar productos por categoría
     List<Producto> findByCategoriaId(Long categoriaId);
@@ -33,4 +46,79 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
     
     // Contar productos de un proveedor
     Long countByProveedorId(Long proveedorId);
-}
\ No newline at end of file
+
+    // ========== CATÁLOGO PÚBLICO PAGINADO POR KEYSET ==========
+    // Los filtros opcionales llegan como null cuando no se aplican.
+    // Proveedor (con su usuario), categoría y subcategoría se traen con JOIN FETCH para
+    // que armar las tarjetas no dispare un SELECT extra por cada relación EAGER.
+    // El cursor (valor + id de la última fila) llega como null en la primera página.
+    // Cada orden se apoya en un índice (disponible, columna_orden, id) de la tabla productos.
+
+    String SELECT_CATALOGO = "SELECT p FROM Producto p " +
+            "JOIN FETCH p.proveedor pr JOIN FETCH pr.usuario " +
+            "JOIN FETCH p.categoria " +
+            "LEFT JOIN FETCH p.subcategoria s LEFT JOIN FETCH s.categoria ";
+
+    String FILTROS_CATALOGO = "p.disponible = true " +
+            "AND (:categoriaId IS NULL OR p.categoria.id = :categoriaId) " +
+            "AND (:subcategoriaId IS NULL OR p.subcategoria.id = :subcategoriaId) " +
+            "AND (:proveedorId IS NULL OR p.proveedor.id = :proveedorId) ";
+
+    // Más recientes primero
+    @Query(SELECT_CATALOGO + "WHERE " + FILTROS_CATALOGO +
+           "AND (:cursorId IS NULL OR p.fechaPublicacion < :cursorFecha " +
+           "OR (p.fechaPublicacion = :cursorFecha AND p.id < :cursorId)) " +
+           "ORDER BY p.fechaPublicacion DESC, p.id DESC")
+    List<Producto> findCatalogoRecientes(@Param("categoriaId") Long categoriaId,
+                                         @Param("subcategoriaId") Long subcategoriaId,
+                                         @Param("proveedorId") Long proveedorId,
+                                         @Param("cursorFecha") LocalDateTime cursorFecha,
+                                         @Param("cursorId") Long cursorId,
+                                         Pageable pageable);
+
+    // Precio de menor a mayor
+    @Query(SELECT_CATALOGO + "WHERE " + FILTROS_CATALOGO +
+           "AND (:cursorId IS NULL OR p.precioUnitario > :cursorPrecio " +
+           "OR (p.precioUnitario = :cursorPrecio AND p.id > :cursorId)) " +
+           "ORDER BY p.precioUnitario ASC, p.id ASC")
+    List<Producto> findCatalogoPrecioAsc(@Param("categoriaId") Long categoriaId,
+                                         @Param("subcategoriaId") Long subcategoriaId,
+                                         @Param("proveedorId") Long proveedorId,
+                                         @Param("cursorPrecio") BigDecimal cursorPrecio,
+                                         @Param("cursorId") Long cursorId,
+                                         Pageable pageable);
+
+    // Precio de mayor a menor
+    @Query(SELECT_CATALOGO + "WHERE " + FILTROS_CATALOGO +
+           "AND (:cursorId IS NULL OR p.precioUnitario < :cursorPrecio " +
+           "OR (p.precioUnitario = :cursorPrecio AND p.id < :cursorId)) " +
+           "ORDER BY p.precioUnitario DESC, p.id DESC")
+    List<Producto> findCatalogoPrecioDesc(@Param("categoriaId") Long categoriaId,
+                                          @Param("subcategoriaId") Long subcategoriaId,
+                                          @Param("proveedorId") Long proveedorId,
+                                          @Param("cursorPrecio") BigDecimal cursorPrecio,
+                                          @Param("cursorId") Long cursorId,
+                                          Pageable pageable);
+
+    // Mejor calificados primero
+    @Query(SELECT_CATALOGO + "WHERE " + FILTROS_CATALOGO +
+           "AND (:cursorId IS NULL OR p.calificacionPromedio < :cursorCalificacion " +
+           "OR (p.calificacionPromedio = :cursorCalificacion AND p.id < :cursorId)) " +
+           "ORDER BY p.calificacionPromedio DESC, p.id DESC")
+    List<Producto> findCatalogoCalificacion(@Param("categoriaId") Long categoriaId,
+                                            @Param("subcategoriaId") Long subcategoriaId,
+                                            @Param("proveedorId") Long proveedorId,
+                                            @Param("cursorCalificacion") BigDecimal cursorCalificacion,
+                                            @Param("cursorId") Long cursorId,
+                                            Pageable pageable);
+
+    // ========== CARGA DE ÍNDICES EN MEMORIA ==========
+
+    // Productos por id con sus relaciones (actualización incremental de índices)
+    @Query(SELECT_CATALOGO + "WHERE p.id IN :ids")
+    List<Producto> findConRelacionesByIdIn(@Param("ids") List<Long> ids);
+
+    // Productos disponibles por lotes ordenados por id (construcción de índices)
+    @Query(SELECT_CATALOGO + "WHERE p.disponible = true AND p.id > :despuesDeId ORDER BY p.id")
+    List<Producto> findDisponiblesConRelacionesDesde(@Param("despuesDeId") Long despuesDeId, Pageable pageable);
+}
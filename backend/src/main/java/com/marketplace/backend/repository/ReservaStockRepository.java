@@ -0,0 +1,85 @@
+package com.marketplace.backend.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Registro de reservas de productos calientes con SQL directo: se agrega una fila por
+ * producto en cada checkout y el conciliador las lee y marca por lotes.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReservaStockRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Reserva sin aplicar con su venta (proveedor, día, ingresos, líneas)
+     */
+    public record Pendiente(Long id, Long productoId, int cantidad,
+                            Long proveedorId, LocalDate fechaVenta, BigDecimal ingresos, int lineas) {
+    }
+
+    /**
+     * Agregar las reservas de un checkout, una por producto con su venta, en un batch
+     * (en la transacción del pedido)
+     */
+    public void registrar(List<VentasDiariasRepository.Acumulado> ventas) {
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> parametros = new ArrayList<>(ventas.size());
+        for (VentasDiariasRepository.Acumulado venta : ventas) {
+            parametros.add(new Object[]{venta.productoId(), venta.unidades(), ahora, venta.proveedorId(),
+                    Date.valueOf(venta.fecha()), venta.ingresos(), venta.lineas()});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO reservas_stock (producto_id, cantidad, fecha, proveedor_id, fecha_venta, ingresos, lineas, aplicada) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, FALSE)",
+                parametros);
+    }
+
+    /**
+     * Stock real de un producto: el de la tabla menos las reservas aún no aplicadas.
+     * Una sola sentencia, así la lectura es consistente aunque el conciliador esté aplicando.
+     */
+    public Optional<Long> obtenerStockConReservas(Long productoId) {
+        List<Long> stock = jdbcTemplate.queryForList(
+                "SELECT p.stock_disponible - COALESCE((SELECT SUM(r.cantidad) FROM reservas_stock r " +
+                "WHERE r.producto_id = p.id AND r.aplicada = FALSE), 0) FROM productos p WHERE p.id = ?",
+                Long.class, productoId);
+        return stock.stream().findFirst();
+    }
+
+    /**
+     * Primeras reservas sin aplicar en orden de id, bloqueadas hasta el fin de la transacción.
+     * SKIP LOCKED salta las que ya tomó el conciliador de otra instancia, así ninguna se resta dos veces.
+     */
+    public List<Pendiente> buscarPendientes(int limite) {
+        return jdbcTemplate.query(
+                "SELECT id, producto_id, cantidad, proveedor_id, fecha_venta, ingresos, lineas " +
+                "FROM reservas_stock WHERE aplicada = FALSE ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED",
+                (fila, n) -> new Pendiente(fila.getLong("id"), fila.getLong("producto_id"), fila.getInt("cantidad"),
+                        fila.getLong("proveedor_id"), fila.getDate("fecha_venta").toLocalDate(),
+                        fila.getBigDecimal("ingresos"), fila.getInt("lineas")),
+                limite);
+    }
+
+    public void marcarAplicadas(Collection<Long> ids) {
+        namedJdbcTemplate.update("UPDATE reservas_stock SET aplicada = TRUE WHERE id IN (:ids) AND aplicada = FALSE",
+                new MapSqlParameterSource("ids", ids));
+    }
+
+    public long contarPendientes() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservas_stock WHERE aplicada = FALSE", Long.class);
+    }
+}
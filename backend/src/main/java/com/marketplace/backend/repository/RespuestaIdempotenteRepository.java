@@ -0,0 +1,63 @@
+package com.marketplace.backend.repository;
+
+import com.marketplace.backend.dominio.RespuestaIdempotente;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface RespuestaIdempotenteRepository extends JpaRepository<RespuestaIdempotente, String> {
+
+    /**
+     * Registrar la clave en curso. Devuelve 0 si la clave ya existe (INSERT IGNORE salta la
+     * fila repetida sin error), así solo una petición la ejecuta.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO idempotencia (clave, huella, estado_http, cuerpo, expira_en) " +
+                   "VALUES (:clave, :huella, 0, NULL, :expiraEn)", nativeQuery = true)
+    int insertarEnCurso(@Param("clave") String clave,
+                         @Param("huella") String huella,
+                         @Param("expiraEn") LocalDateTime expiraEn);
+
+    /**
+     * Guardar la respuesta de una clave en curso
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE RespuestaIdempotente r SET r.estadoHttp = :estadoHttp, r.cuerpo = :cuerpo, r.expiraEn = :expiraEn " +
+           "WHERE r.clave = :clave")
+    int completar(@Param("clave") String clave,
+                  @Param("estadoHttp") int estadoHttp,
+                  @Param("cuerpo") String cuerpo,
+                  @Param("expiraEn") LocalDateTime expiraEn);
+
+    /**
+     * Liberar una clave: la petición falló (o su registro venció) y un reintento debe volver a ejecutarla
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RespuestaIdempotente r WHERE r.clave = :clave")
+    int liberar(@Param("clave") String clave);
+
+    /**
+     * Borrar el registro de una clave solo si ya venció (otra petición pudo reemplazarlo)
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RespuestaIdempotente r WHERE r.clave = :clave AND r.expiraEn < :ahora")
+    int liberarVencida(@Param("clave") String clave, @Param("ahora") LocalDateTime ahora);
+
+    /**
+     * Eliminar las respuestas cuyo plazo de repetición ya venció
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RespuestaIdempotente r WHERE r.expiraEn < :ahora")
+    int deleteVencidas(@Param("ahora") LocalDateTime ahora);
+}
@@ -0,0 +1,78 @@
+package com.marketplace.backend.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+
+/**
+ * Operaciones de stock con SQL directo: el descuento debe ser una actualización
+ * condicional en la base de datos y no un leer-validar-guardar desde la entidad.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StockRepository {
+
+    private static final String DESCONTAR_STOCK =
+            "UPDATE productos SET stock_disponible = stock_disponible - ? " +
+            "WHERE id = ? AND stock_disponible >= ?";
+
+    private static final String RESTAR_STOCK =
+            "UPDATE productos SET stock_disponible = " +
+            "CASE WHEN stock_disponible > ? THEN stock_disponible - ? ELSE 0 END WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Descontar el stock de varios productos en un solo batch, solo donde alcanza.
+     * Las filas se actualizan (y bloquean) en orden ascendente de id, así dos checkouts
+     * con productos en común siempre esperan en el mismo orden y no hay deadlocks.
+     * Devuelve los ids de los productos que no tenían stock suficiente.
+     */
+    public List<Long> descontar(SortedMap<Long, Integer> cantidadesPorProducto) {
+        List<Object[]> parametros = new ArrayList<>(cantidadesPorProducto.size());
+        cantidadesPorProducto.forEach((productoId, cantidad) ->
+                parametros.add(new Object[]{cantidad, productoId, cantidad}));
+
+        int[] filasActualizadas = jdbcTemplate.batchUpdate(DESCONTAR_STOCK, parametros);
+
+        List<Long> sinStock = new ArrayList<>();
+        int i = 0;
+        for (Long productoId : cantidadesPorProducto.keySet()) {
+            if (filasActualizadas[i++] == 0) {
+                sinStock.add(productoId);
+            }
+        }
+        return sinStock;
+    }
+
+    /**
+     * Stock disponible actual de los productos indicados
+     */
+    public Map<Long, Integer> obtenerStock(Collection<Long> productoIds) {
+        Map<Long, Integer> stock = new HashMap<>();
+        namedJdbcTemplate.query(
+                "SELECT id, stock_disponible FROM productos WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", productoIds),
+                fila -> {
+                    stock.put(fila.getLong("id"), fila.getInt("stock_disponible"));
+                });
+        return stock;
+    }
+
+    /**
+     * Restar unidades ya reservadas (conciliación de productos calientes) en orden ascendente
+     * de id como el descuento del checkout. Las reservas ya se vendieron y se restan siempre,
+     * pero si el proveedor bajó el stock por debajo de ellas el resultado queda en cero.
+     */
+    public void restar(SortedMap<Long, Long> unidadesPorProducto) {
+        List<Object[]> parametros = new ArrayList<>(unidadesPorProducto.size());
+        unidadesPorProducto.forEach((productoId, unidades) ->
+                parametros.add(new Object[]{unidades, unidades, productoId}));
+        jdbcTemplate.batchUpdate(RESTAR_STOCK, parametros);
+    }
+}
@@ -0,0 +1,32 @@
+package com.marketplace.backend.repository;
+
+import com.marketplace.backend.dominio.SubPedido;
+import com.marketplace.backend.dto.PedidoProveedorDTO;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SubPedidoRepository extends JpaRepository<SubPedido, Long> {
+
+    // Pedidos del proveedor por keyset (fecha DESC, id DESC) sobre idx_sub_pedidos_proveedor_fecha
+    @Query("SELECT new com.marketplace.backend.dto.PedidoProveedorDTO(s.id, pe.numeroPedido, s.fechaPedido, " +
+           "pe.estado, u.nombre, u.apellido, pe.direccionEntrega, pe.telefonoContacto, " +
+           "s.lineas, s.unidades, s.subtotal) " +
+           "FROM SubPedido s JOIN s.pedido pe JOIN pe.usuario u " +
+           "WHERE s.proveedor.id = :proveedorId " +
+           "AND (:desde IS NULL OR s.fechaPedido >= :desde) " +
+           "AND (:hasta IS NULL OR s.fechaPedido < :hasta) " +
+           "AND (:cursorId IS NULL OR s.fechaPedido < :cursorFecha " +
+           "OR (s.fechaPedido = :cursorFecha AND s.id < :cursorId)) " +
+           "ORDER BY s.fechaPedido DESC, s.id DESC")
+    List<PedidoProveedorDTO> findPedidosPorProveedor(@Param("proveedorId") Long proveedorId,
+                                                     @Param("desde") LocalDateTime desde,
+                                                     @Param("hasta") LocalDateTime hasta,
+                                                     @Param("cursorFecha") LocalDateTime cursorFecha,
+                                                     @Param("cursorId") Long cursorId,
+                                                     Pageable pageable);
+}
@@ -3,6 +3,8 @@ package com.marketplace.backend.repository;
 import com.marketplace.backend.dominio.Usuario;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
@@ -11,4 +13,7 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 
     // Verificar si existe un email
     boolean existsByEmail(String email);
+
+    // Usuarios con tokens revocados después de la fecha indicada
+    List<Usuario> findByTokensRevocadosEnAfter(LocalDateTime desde);
 }
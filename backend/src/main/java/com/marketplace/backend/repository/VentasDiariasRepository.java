@@ -0,0 +1,195 @@
+package com.marketplace.backend.repository;
+
+import com.marketplace.backend.dto.ResumenVentasDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Acumulados de ventas por proveedor, producto y día (tabla ventas_diarias).
+ * Se escriben con SQL directo: sumar sobre la fila existente evita leerla y
+ * no pierde ventas cuando dos checkouts tocan el mismo producto a la vez.
+ */
+@Repository
+@RequiredArgsConstructor
+public class VentasDiariasRepository {
+
+    private static final String SUMAR =
+            "UPDATE ventas_diarias SET unidades = unidades + ?, ingresos = ingresos + ?, lineas = lineas + ? " +
+            "WHERE proveedor_id = ? AND producto_id = ? AND fecha = ?";
+
+    private static final String INSERTAR =
+            "INSERT INTO ventas_diarias (proveedor_id, producto_id, fecha, unidades, ingresos, lineas) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String RECALCULAR =
+            "INSERT INTO ventas_diarias (proveedor_id, producto_id, fecha, unidades, ingresos, lineas) " +
+            "SELECT d.proveedor_id, d.producto_id, CAST(d.fecha_pedido AS DATE), " +
+            "SUM(d.cantidad), SUM(d.subtotal), COUNT(*) " +
+            "FROM detalle_pedido d JOIN pedidos p ON p.id = d.pedido_id " +
+            "WHERE p.estado <> 'cancelado' AND d.proveedor_id = ? AND d.fecha_pedido >= ? AND d.fecha_pedido < ? " +
+            "GROUP BY d.proveedor_id, d.producto_id, CAST(d.fecha_pedido AS DATE)";
+
+    // Las reservas calientes sin aplicar ya están en detalle_pedido y el conciliador las sumará
+    private static final String PENDIENTES =
+            "FROM reservas_stock r WHERE r.aplicada = FALSE AND r.proveedor_id = ventas_diarias.proveedor_id " +
+            "AND r.producto_id = ventas_diarias.producto_id AND r.fecha_venta = ventas_diarias.fecha";
+
+    private static final String DESCONTAR_PENDIENTES =
+            "UPDATE ventas_diarias SET " +
+            "unidades = unidades - (SELECT SUM(r.cantidad) " + PENDIENTES + "), " +
+            "ingresos = ingresos - (SELECT SUM(r.ingresos) " + PENDIENTES + "), " +
+            "lineas = lineas - (SELECT SUM(r.lineas) " + PENDIENTES + ") " +
+            "WHERE proveedor_id = ? AND fecha >= ? AND fecha < ? AND EXISTS (SELECT 1 " + PENDIENTES + ")";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record Rango(LocalDate desde, LocalDate hasta) {
+    }
+
+    public record Acumulado(Long proveedorId, Long productoId, LocalDate fecha,
+                            long unidades, BigDecimal ingresos, long lineas) {
+    }
+
+    /**
+     * Sumar los acumulados en un batch de UPDATE; las filas que aún no existen se insertan.
+     * Los acumulados deben venir ordenados por producto para bloquear las filas en el mismo
+     * orden que el descuento de stock.
+     */
+    public void acumular(List<Acumulado> acumulados) {
+        List<Object[]> parametros = new ArrayList<>(acumulados.size());
+        for (Acumulado a : acumulados) {
+            parametros.add(new Object[]{a.unidades(), a.ingresos(), a.lineas(),
+                    a.proveedorId(), a.productoId(), Date.valueOf(a.fecha())});
+        }
+        int[] filas = jdbcTemplate.batchUpdate(SUMAR, parametros);
+
+        for (int i = 0; i < filas.length; i++) {
+            if (filas[i] == 0) {
+                insertarOSumar(acumulados.get(i), parametros.get(i));
+            }
+        }
+    }
+
+    /**
+     * Proveedores siguientes (por id) para recorrerlos de a lotes
+     */
+    public List<Long> buscarProveedores(long despuesDeId, int limite) {
+        return jdbcTemplate.queryForList("SELECT id FROM proveedores WHERE id > ? ORDER BY id LIMIT ?",
+                Long.class, despuesDeId, limite);
+    }
+
+    /**
+     * Primer y último día con ventas o acumulados del proveedor (null si no tiene ninguno),
+     * leídos de los índices por proveedor y fecha
+     */
+    public Rango rangoDeFechas(Long proveedorId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT (SELECT MIN(fecha_pedido) FROM detalle_pedido WHERE proveedor_id = ?), " +
+                "(SELECT MAX(fecha_pedido) FROM detalle_pedido WHERE proveedor_id = ?), " +
+                "(SELECT MIN(fecha) FROM ventas_diarias WHERE proveedor_id = ?), " +
+                "(SELECT MAX(fecha) FROM ventas_diarias WHERE proveedor_id = ?)",
+                (fila, n) -> {
+                    LocalDate desde = menor(dia(fila.getTimestamp(1)), dia(fila.getDate(3)));
+                    LocalDate hasta = mayor(dia(fila.getTimestamp(2)), dia(fila.getDate(4)));
+                    return desde == null ? null : new Rango(desde, hasta);
+                },
+                proveedorId, proveedorId, proveedorId, proveedorId);
+    }
+
+    /**
+     * Recalcular desde detalle_pedido los acumulados de un proveedor en los días [desde, hasta),
+     * sin las ventas de productos calientes que el conciliador todavía no sumó.
+     * Devuelve el número de filas generadas.
+     */
+    public int reconstruirTramo(Long proveedorId, LocalDate desde, LocalDate hasta) {
+        Date desdeDia = Date.valueOf(desde);
+        Date hastaDia = Date.valueOf(hasta);
+        jdbcTemplate.update("DELETE FROM ventas_diarias WHERE proveedor_id = ? AND fecha >= ? AND fecha < ?",
+                proveedorId, desdeDia, hastaDia);
+        int filas = jdbcTemplate.update(RECALCULAR, proveedorId,
+                Timestamp.valueOf(desde.atStartOfDay()), Timestamp.valueOf(hasta.atStartOfDay()));
+        jdbcTemplate.update(DESCONTAR_PENDIENTES, proveedorId, desdeDia, hastaDia);
+        return filas;
+    }
+
+    /**
+     * Unidades e ingresos por día en el rango [desde, hasta] (límites opcionales)
+     */
+    public List<ResumenVentasDTO.VentaDia> obtenerPorDia(Long proveedorId, LocalDate desde, LocalDate hasta) {
+        List<Object> parametros = new ArrayList<>();
+        String filtro = filtroProveedorYRango("", proveedorId, desde, hasta, parametros);
+        return jdbcTemplate.query(
+                "SELECT fecha, SUM(unidades) AS unidades, SUM(ingresos) AS ingresos FROM ventas_diarias " +
+                "WHERE " + filtro + " GROUP BY fecha ORDER BY fecha",
+                (fila, n) -> new ResumenVentasDTO.VentaDia(fila.getDate("fecha").toLocalDate(),
+                        fila.getLong("unidades"), fila.getBigDecimal("ingresos")),
+                parametros.toArray());
+    }
+
+    /**
+     * Productos con más ingresos en el rango [desde, hasta] (límites opcionales)
+     */
+    public List<ResumenVentasDTO.ProductoVendido> obtenerTopProductos(Long proveedorId, LocalDate desde, LocalDate hasta, int limite) {
+        List<Object> parametros = new ArrayList<>();
+        String filtro = filtroProveedorYRango("v.", proveedorId, desde, hasta, parametros);
+        parametros.add(limite);
+        return jdbcTemplate.query(
+                "SELECT v.producto_id, p.nombre, SUM(v.unidades) AS unidades, SUM(v.ingresos) AS ingresos " +
+                "FROM ventas_diarias v JOIN productos p ON p.id = v.producto_id " +
+                "WHERE " + filtro + " GROUP BY v.producto_id, p.nombre " +
+                "ORDER BY SUM(v.ingresos) DESC, v.producto_id LIMIT ?",
+                (fila, n) -> new ResumenVentasDTO.ProductoVendido(fila.getLong("producto_id"), fila.getString("nombre"),
+                        fila.getLong("unidades"), fila.getBigDecimal("ingresos")),
+                parametros.toArray());
+    }
+
+    private void insertarOSumar(Acumulado a, Object[] parametrosSuma) {
+        try {
+            jdbcTemplate.update(INSERTAR, a.proveedorId(), a.productoId(), Date.valueOf(a.fecha()),
+                    a.unidades(), a.ingresos(), a.lineas());
+        } catch (DuplicateKeyException e) {
+            // Otro checkout creó la fila entre el UPDATE y el INSERT
+            jdbcTemplate.update(SUMAR, parametrosSuma);
+        }
+    }
+
+    private static LocalDate dia(Timestamp valor) {
+        return valor == null ? null : valor.toLocalDateTime().toLocalDate();
+    }
+
+    private static LocalDate dia(Date valor) {
+        return valor == null ? null : valor.toLocalDate();
+    }
+
+    private static LocalDate menor(LocalDate a, LocalDate b) {
+        return a == null ? b : b == null || a.isBefore(b) ? a : b;
+    }
+
+    private static LocalDate mayor(LocalDate a, LocalDate b) {
+        return a == null ? b : b == null || a.isAfter(b) ? a : b;
+    }
+
+    private static String filtroProveedorYRango(String alias, Long proveedorId, LocalDate desde, LocalDate hasta,
+                                                List<Object> parametros) {
+        StringBuilder filtro = new StringBuilder(alias).append("proveedor_id = ?");
+        parametros.add(proveedorId);
+        if (desde != null) {
+            filtro.append(" AND ").append(alias).append("fecha >= ?");
+            parametros.add(Date.valueOf(desde));
+        }
+        if (hasta != null) {
+            filtro.append(" AND ").append(alias).append("fecha <= ?");
+            parametros.add(Date.valueOf(hasta));
+        }
+        return filtro.toString();
+    }
+}
@@ -0,0 +1,164 @@
+package com.marketplace.backend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.marketplace.backend.repository.UsuarioRepository;
+import io.jsonwebtoken.JwtException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché de tokens ya verificados, indexada por el SHA-256 del token.
+ * Cada entrada vence exactamente en el exp del token, así que nunca se acepta un token vencido.
+ * Cuando cambia el rol de un usuario se revocan todos sus tokens emitidos hasta ese momento:
+ * en esta instancia al confirmarse el cambio y en las demás al releer usuarios.tokens_revocados_en,
+ * cada intervalo-ms como máximo.
+ */
+@Component
+@Slf4j
+public class CacheTokensVerificados {
+
+    private final JwtUtil jwtUtil;
+    private final UsuarioRepository usuarioRepository;
+    private final Cache<String, TokenVerificado> tokens;
+
+    // Una transacción fija tokens_revocados_en antes de su commit: al releer se vuelve a
+    // mirar este margen hacia atrás para no perder las que se confirmaron tarde
+    private static final Duration MARGEN_RELECTURA = Duration.ofMinutes(1);
+
+    // Usuario -> instante hasta el que sus tokens están revocados
+    private final Map<Long, Instant> revocaciones = new ConcurrentHashMap<>();
+
+    private volatile LocalDateTime ultimaLectura;
+
+    public CacheTokensVerificados(JwtUtil jwtUtil,
+                                  UsuarioRepository usuarioRepository,
+                                  @Value("${seguridad.cache-tokens.tamanio-maximo:10000}") long tamanioMaximo) {
+        this.jwtUtil = jwtUtil;
+        this.usuarioRepository = usuarioRepository;
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfter(new Expiry<String, TokenVerificado>() {
+                    @Override
+                    public long expireAfterCreate(String clave, TokenVerificado token, long ahora) {
+                        return Math.max(0, Duration.between(Instant.now(), token.expiraEn()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String clave, TokenVerificado token, long ahora, long restante) {
+                        return restante;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String clave, TokenVerificado token, long ahora, long restante) {
+                        return restante;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Recuperar las revocaciones que aún pueden afectar a tokens vigentes
+     */
+    @PostConstruct
+    public void cargarRevocaciones() {
+        leerRevocaciones(LocalDateTime.now().minus(JwtUtil.EXPIRATION_TIME, ChronoUnit.MILLIS));
+        log.info("Revocaciones de tokens cargadas: {}", revocaciones.size());
+    }
+
+    /**
+     * Traer las revocaciones hechas en otras instancias desde la última lectura
+     */
+    @Scheduled(fixedDelayString = "${seguridad.revocaciones.intervalo-ms:5000}")
+    public void refrescarRevocaciones() {
+        leerRevocaciones(ultimaLectura.minus(MARGEN_RELECTURA));
+    }
+
+    private void leerRevocaciones(LocalDateTime desde) {
+        LocalDateTime inicio = LocalDateTime.now();
+        usuarioRepository.findByTokensRevocadosEnAfter(desde).forEach(usuario ->
+                registrarRevocacion(usuario.getId(),
+                        usuario.getTokensRevocadosEn().atZone(ZoneId.systemDefault()).toInstant()));
+        ultimaLectura = inicio;
+    }
+
+    /**
+     * Devuelve el usuario del token, verificando la firma solo la primera vez que se ve el token.
+     * Lanza JwtException si el token no es válido, venció o fue revocado.
+     */
+    public UsuarioAutenticado verificar(String token) {
+        TokenVerificado verificado = tokens.get(digerir(token), clave -> jwtUtil.verificar(token));
+
+        if (!verificado.expiraEn().isAfter(Instant.now())) {
+            throw new JwtException("Token expirado");
+        }
+        Instant revocadoHasta = revocaciones.get(verificado.usuario().userId());
+        if (revocadoHasta != null && !verificado.emitidoEn().isAfter(revocadoHasta)) {
+            throw new JwtException("Token revocado");
+        }
+        return verificado.usuario();
+    }
+
+    /**
+     * Revocar los tokens del usuario después del commit del cambio de rol, para que
+     * tampoco sobrevivan los emitidos mientras la transacción seguía abierta
+     */
+    @TransactionalEventListener
+    public void alRevocarTokens(TokensRevocadosEvent evento) {
+        registrarRevocacion(evento.usuarioId(), Instant.now());
+        tokens.asMap().values().removeIf(token -> evento.usuarioId().equals(token.usuario().userId()));
+        log.info("Tokens del usuario {} revocados", evento.usuarioId());
+    }
+
+    /**
+     * Métricas de la caché para el panel administrativo
+     */
+    public Map<String, Object> estadisticas() {
+        CacheStats stats = tokens.stats();
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("tokens", tokens.estimatedSize());
+        datos.put("aciertos", stats.hitCount());
+        datos.put("fallos", stats.missCount());
+        datos.put("tasaAciertos", stats.hitRate());
+        datos.put("desalojos", stats.evictionCount());
+        datos.put("usuariosRevocados", revocaciones.size());
+        return datos;
+    }
+
+    private void registrarRevocacion(Long usuarioId, Instant instante) {
+        revocaciones.merge(usuarioId, instante, (actual, nuevo) -> nuevo.isAfter(actual) ? nuevo : actual);
+
+        // Las revocaciones más antiguas que la vida de un token ya no afectan a ninguno
+        Instant limite = Instant.now().minusMillis(JwtUtil.EXPIRATION_TIME);
+        revocaciones.values().removeIf(revocado -> revocado.isBefore(limite));
+    }
+
+    private static String digerir(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -18,7 +18,7 @@ import java.util.Collections;
 @RequiredArgsConstructor
 
 public class JwtAuthenticationFilter extends OncePerRequestFilter{
-     private final JwtUtil jwtUtil;
+     private final CacheTokensVerificados cacheTokens;
 
     @Override
     protected void doFilterInternal(
@@ -39,28 +39,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter{
             // Extraer el token (quitar "Bearer ")
             String token = authHeader.substring(7);
 
-            // Validar el token
-            if (jwtUtil.validarToken(token)) {
-                // Extraer información del token
-                String email = jwtUtil.extraerEmail(token);
-                String rol = jwtUtil.extraerRol(token);
+            // Verificar el token (o reutilizar una verificación previa) y extraer el usuario
+            UsuarioAutenticado usuario = cacheTokens.verificar(token);
 
-                // Crear la autoridad con el rol
-                SimpleGrantedAuthority authority = new SimpleGrantedAuthority("ROLE_" + rol.toUpperCase());
+            // Crear la autoridad con el rol
+            SimpleGrantedAuthority authority = new SimpleGrantedAuthority("ROLE_" + usuario.rol().toUpperCase());
 
-                // Crear el objeto de autenticación
-                UsernamePasswordAuthenticationToken authentication = 
-                    new UsernamePasswordAuthenticationToken(
-                        email,
-                        null,
-                        Collections.singletonList(authority)
-                    );
+            // Crear el objeto de autenticación con el usuario como principal
+            UsernamePasswordAuthenticationToken authentication = 
+                new UsernamePasswordAuthenticationToken(
+                    usuario,
+                    null,
+                    Collections.singletonList(authority)
+                );
 
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                // Establecer la autenticación en el contexto de seguridad
-                SecurityContextHolder.getContext().setAuthentication(authentication);
-            }
+            // Establecer la autenticación en el contexto de seguridad
+            SecurityContextHolder.getContext().setAuthentication(authentication);
         } catch (Exception e) {
             System.err.println("Error al procesar el token JWT: " + e.getMessage());
         }
@@ -1,11 +1,13 @@
 package com.marketplace.backend.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -15,73 +17,55 @@ public class JwtUtil {
     
     // Clave secreta para firmar el token (en producción usar variables de entorno)
     private static final String SECRET_KEY = "TuClaveSecretaSuperSeguraDeAlMenos256BitsParaHS256AlgorithmQueEsMuyLarga";
-    private static final long EXPIRATION_TIME = 86400000; // 24 horas en milisegundos
+    static final long EXPIRATION_TIME = 86400000; // 24 horas en milisegundos
+
+    // Instante de emisión en milisegundos: el iat solo guarda segundos y una revocación
+    // no debe alcanzar a un token emitido después dentro del mismo segundo
+    private static final String EMITIDO_MS = "emitidoMs";
     
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
-    }
+    // La clave y el parser son inmutables y seguros entre hilos: se construyen una sola vez
+    private final SecretKey signingKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private final JwtParser parser = Jwts.parser().verifyWith(signingKey).build();
     
     /**
      * Genera un token JWT para un usuario
      */
     public String generarToken(String email, Long userId, String rol) {
+        long ahora = System.currentTimeMillis();
         Map<String, Object> claims = new HashMap<>();
         claims.put("userId", userId);
         claims.put("rol", rol);
+        claims.put(EMITIDO_MS, ahora);
         
         return Jwts.builder()
                 .claims(claims)
                 .subject(email)
-                .issuedAt(new Date())
-                .expiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .signWith(getSigningKey())
+                .issuedAt(new Date(ahora))
+                .expiration(new Date(ahora + EXPIRATION_TIME))
+                .signWith(signingKey)
                 .compact();
     }
     
     /**
-     * Valida si un token es válido
-     */
-    public boolean validarToken(String token) {
-        try {
-            Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
-    }
-    
-    /**
-     * Extrae el email del token
-     */
-    public String extraerEmail(String token) {
-        return extraerClaims(token).getSubject();
-    }
-    
-    /**
-     * Extrae el userId del token
-     */
-    public Long extraerUserId(String token) {
-        return extraerClaims(token).get("userId", Long.class);
-    }
-
-    /**
-     * Extrae el rol del token
+     * Verifica la firma y la expiración una sola vez y devuelve el usuario del token
+     * con su vigencia. Lanza JwtException si el token no es válido.
      */
-    public String extraerRol(String token) {
-        return extraerClaims(token).get("rol", String.class);
+    public TokenVerificado verificar(String token) {
+        Claims claims = extraerClaims(token);
+        UsuarioAutenticado usuario = new UsuarioAutenticado(
+                claims.get("userId", Long.class),
+                claims.getSubject(),
+                claims.get("rol", String.class));
+        // Los tokens emitidos antes de existir emitidoMs solo traen el iat
+        Long emitidoMs = claims.get(EMITIDO_MS, Long.class);
+        Instant emitidoEn = emitidoMs != null ? Instant.ofEpochMilli(emitidoMs) : claims.getIssuedAt().toInstant();
+        return new TokenVerificado(usuario, emitidoEn, claims.getExpiration().toInstant());
     }
     
     /**
      * Extrae todos los claims del token
      */
     private Claims extraerClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
 }
@@ -0,0 +1,9 @@
+package com.marketplace.backend.security;
+
+import java.time.Instant;
+
+/**
+ * Resultado de verificar un token: el usuario y su vigencia (iat / exp)
+ */
+public record TokenVerificado(UsuarioAutenticado usuario, Instant emitidoEn, Instant expiraEn) {
+}
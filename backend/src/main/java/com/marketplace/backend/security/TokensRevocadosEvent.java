@@ -0,0 +1,7 @@
+package com.marketplace.backend.security;
+
+/**
+ * Se publica cuando cambia el rol de un usuario: sus tokens emitidos hasta el commit dejan de valer
+ */
+public record TokensRevocadosEvent(Long usuarioId) {
+}
@@ -0,0 +1,9 @@
+package com.marketplace.backend.security;
+
+/**
+ * Datos del usuario autenticado extraídos del token JWT una sola vez por petición.
+ * Se guarda como principal en el SecurityContext y los controladores lo reciben con
+ * {@code @AuthenticationPrincipal UsuarioAutenticado}.
+ */
+public record UsuarioAutenticado(Long userId, String email, String rol) {
+}
@@ -0,0 +1,82 @@
+package com.marketplace.backend.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Análisis de texto en español para la búsqueda de productos:
+ * minúsculas, eliminación de tildes, palabras vacías y un stemming ligero
+ * (plurales y género) para que "Tomates" encuentre "tomate" y "arroces" encuentre "arroz".
+ */
+public final class AnalizadorEspanol {
+
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^a-z0-9]+");
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "a", "al", "ante", "con", "contra", "de", "del", "desde", "el", "en", "entre", "es",
+            "hacia", "hasta", "la", "las", "le", "lo", "los", "mas", "o", "para", "pero", "por",
+            "que", "se", "sin", "so", "sobre", "su", "sus", "tras", "u", "un", "una", "unas",
+            "uno", "unos", "y", "x");
+
+    private AnalizadorEspanol() {
+    }
+
+    /**
+     * Convierte un texto en la lista de términos que se indexan o buscan
+     */
+    public static List<String> analizar(String texto) {
+        List<String> terminos = new ArrayList<>();
+        if (texto == null || texto.isBlank()) {
+            return terminos;
+        }
+        for (String token : SEPARADORES.split(normalizar(texto))) {
+            if (token.isEmpty() || PALABRAS_VACIAS.contains(token)) {
+                continue;
+            }
+            terminos.add(raiz(token));
+        }
+        return terminos;
+    }
+
+    /**
+     * Minúsculas y sin tildes ni diéresis ("Ñandú" -> "nandu")
+     */
+    public static String normalizar(String texto) {
+        String sinTildes = MARCAS_DIACRITICAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return sinTildes.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Stemming ligero del español: primero quita el plural y luego la vocal final de género
+     * ("papas" -> "papa" -> "pap", "frijoles" -> "frijole" -> "frijol", "arroces" -> "arroz").
+     * "-ces" vuelve a "z" solo tras vocal (nueces, lápices); tras consonante el singular
+     * termina en "ce" ("dulces" -> "dulce" -> "dulc").
+     */
+    static String raiz(String palabra) {
+        String singular = palabra;
+        int n = palabra.length();
+        if (n >= 5 && palabra.endsWith("eses")) {
+            singular = palabra.substring(0, n - 2);
+        } else if (n >= 5 && palabra.endsWith("ces") && esVocal(palabra.charAt(n - 4))) {
+            singular = palabra.substring(0, n - 3) + "z";
+        } else if (n >= 4 && palabra.charAt(n - 1) == 's' && esVocal(palabra.charAt(n - 2))) {
+            singular = palabra.substring(0, n - 1);
+        }
+
+        int m = singular.length();
+        char ultima = singular.charAt(m - 1);
+        if (m >= 4 && (ultima == 'o' || ultima == 'a' || ultima == 'e')) {
+            return singular.substring(0, m - 1);
+        }
+        return singular;
+    }
+
+    private static boolean esVocal(char c) {
+        return c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u';
+    }
+}
@@ -0,0 +1,576 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.repository.CarritoLotesRepository;
+import com.marketplace.backend.repository.CarritoLotesRepository.FilaCarrito;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * Carritos en memoria con escritura diferida (carrito.almacen=memoria).
+ * Las altas, cambios de cantidad y bajas se aplican sobre un mapa concurrente y un volcado
+ * periódico los escribe en la tabla carrito por lotes; al apagar se vuelca lo pendiente.
+ * El checkout vuelca el carrito del comprador dentro de su propia transacción
+ * ({@link #volcarParaCheckout}), así siempre lee la última versión.
+ * Cada instancia tiene sus propios carritos: con varias instancias el usuario debe quedar
+ * asignado siempre a la misma.
+ */
+@Slf4j
+@Component
+public class CarritoEnMemoria {
+
+    private final CarritoLotesRepository lotesRepository;
+    private final TransactionTemplate transaccion;
+    private final boolean activo;
+    private final Duration inactividad;
+    private final int carritosPorLote;
+
+    private final ConcurrentHashMap<Long, CarritoUsuario> carritos = new ConcurrentHashMap<>();
+    // Los items aún no escritos se identifican con ids negativos
+    private final AtomicLong idsTemporales = new AtomicLong();
+
+    private final AtomicLong lotesVolcados = new AtomicLong();
+    private final AtomicLong filasEscritas = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+
+    public CarritoEnMemoria(CarritoLotesRepository lotesRepository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${carrito.almacen:bd}") String almacen,
+                            @Value("${carrito.memoria.inactividad-minutos:30}") long inactividadMinutos,
+                            @Value("${carrito.memoria.carritos-por-lote:200}") int carritosPorLote) {
+        this.lotesRepository = lotesRepository;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.activo = "memoria".equalsIgnoreCase(almacen);
+        this.inactividad = Duration.ofMinutes(inactividadMinutos);
+        this.carritosPorLote = carritosPorLote;
+    }
+
+    /**
+     * Línea del carrito tal como la ve el servicio (id negativo si aún no está en la tabla)
+     */
+    public record Linea(Long id, Long productoId, int cantidad, LocalDateTime fechaAgregado) {
+    }
+
+    public boolean activo() {
+        return activo;
+    }
+
+    // ========== LECTURAS Y CAMBIOS ==========
+
+    public List<Linea> lineas(Long usuarioId) {
+        return conCarrito(usuarioId, carrito -> carrito.items.values().stream().map(Item::linea).toList());
+    }
+
+    public Optional<Linea> buscar(Long usuarioId, Long itemId) {
+        return conCarrito(usuarioId, carrito -> carrito.buscar(itemId).map(Item::linea));
+    }
+
+    public int contar(Long usuarioId) {
+        return conCarrito(usuarioId, carrito -> carrito.items.size());
+    }
+
+    /**
+     * Sumar unidades de un producto (o agregarlo). La nueva cantidad total se valida bajo
+     * el bloqueo del carrito, así dos altas simultáneas no superan el stock validado.
+     */
+    public Linea agregar(Long usuarioId, Long productoId, int cantidad, IntConsumer validarCantidadTotal) {
+        return conCarrito(usuarioId, carrito -> {
+            Item item = carrito.items.get(productoId);
+            int nuevaCantidad = item != null ? item.cantidad + cantidad : cantidad;
+            validarCantidadTotal.accept(nuevaCantidad);
+
+            if (item == null) {
+                item = new Item(idsTemporales.decrementAndGet(), productoId, nuevaCantidad, LocalDateTime.now());
+                carrito.items.put(productoId, item);
+            }
+            item.cantidad = nuevaCantidad;
+            item.version = ++carrito.version;
+            return item.linea();
+        });
+    }
+
+    public Linea actualizarCantidad(Long usuarioId, Long itemId, int cantidad) {
+        return conCarrito(usuarioId, carrito -> {
+            Item item = carrito.buscar(itemId)
+                    .orElseThrow(() -> new RuntimeException("Item del carrito no encontrado"));
+            item.cantidad = cantidad;
+            item.version = ++carrito.version;
+            return item.linea();
+        });
+    }
+
+    public void eliminar(Long usuarioId, Long itemId) {
+        conCarrito(usuarioId, carrito -> {
+            Item item = carrito.buscar(itemId)
+                    .orElseThrow(() -> new RuntimeException("Item del carrito no encontrado"));
+            carrito.quitar(item);
+            return null;
+        });
+    }
+
+    public void vaciar(Long usuarioId) {
+        conCarrito(usuarioId, carrito -> {
+            new ArrayList<>(carrito.items.values()).forEach(carrito::quitar);
+            return null;
+        });
+    }
+
+    // ========== CHECKOUT ==========
+
+    /**
+     * Escribir los cambios pendientes del carrito dentro de la transacción del checkout, que
+     * así lee la última versión. Se anotan como escritos solo si la transacción confirma; si
+     * revierte siguen pendientes. El volcado periódico no toca este carrito hasta entonces.
+     * Debe llamarse antes de leer el carrito. No hace nada si el almacén es la base de datos.
+     */
+    public void volcarParaCheckout(Long usuarioId) {
+        if (!activo) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("El volcado del carrito para checkout requiere una transacción");
+        }
+        ClaveCheckout clave = new ClaveCheckout(usuarioId);
+        if (TransactionSynchronizationManager.hasResource(clave)) {
+            return;
+        }
+
+        CarritoUsuario carrito = bloquearParaVolcar(usuarioId);
+        VolcadoCheckout checkout;
+        try {
+            Volcado volcado;
+            synchronized (carrito) {
+                volcado = tomar(carrito);
+            }
+            checkout = new VolcadoCheckout(clave, volcado, escribir(List.of(volcado)));
+        } catch (RuntimeException e) {
+            carrito.volcado.unlock();
+            throw e;
+        }
+        TransactionSynchronizationManager.bindResource(clave, checkout);
+        TransactionSynchronizationManager.registerSynchronization(checkout);
+    }
+
+    /**
+     * El checkout vació el carrito en la tabla: al confirmar se quitan de memoria los items
+     * que entraron en el pedido. Los agregados después del volcado se conservan.
+     */
+    public void vaciarAlConfirmar(Long usuarioId) {
+        if (!activo) {
+            return;
+        }
+        Object checkout = TransactionSynchronizationManager.getResource(new ClaveCheckout(usuarioId));
+        if (checkout instanceof VolcadoCheckout volcadoCheckout) {
+            volcadoCheckout.vaciado = true;
+        } else {
+            // Sin volcado previo no se sabe qué vio el checkout: se descarta y se recarga de la tabla
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    descartar(usuarioId);
+                }
+            });
+        }
+    }
+
+    // ========== VOLCADO PERIÓDICO ==========
+
+    /**
+     * Escribir los carritos con cambios en lotes de carrito.memoria.carritos-por-lote, una
+     * transacción por lote. Los carritos limpios e inactivos se quitan de memoria.
+     */
+    @Scheduled(fixedDelayString = "${carrito.memoria.intervalo-volcado-ms:2000}")
+    public void volcarPendientes() {
+        if (!activo) {
+            return;
+        }
+        Instant limiteInactividad = Instant.now().minus(inactividad);
+        List<Volcado> lote = new ArrayList<>();
+        for (CarritoUsuario carrito : carritos.values()) {
+            // Si un checkout lo tiene tomado, lo escribe él
+            if (!carrito.volcado.tryLock()) {
+                continue;
+            }
+            Volcado volcado = null;
+            synchronized (carrito) {
+                if (carrito.sucio()) {
+                    volcado = tomar(carrito);
+                } else if (carrito.ultimoUso.isBefore(limiteInactividad)) {
+                    carrito.retirado = true;
+                    carritos.remove(carrito.usuarioId, carrito);
+                }
+            }
+            if (volcado == null) {
+                carrito.volcado.unlock();
+                continue;
+            }
+            lote.add(volcado);
+            if (lote.size() == carritosPorLote) {
+                volcarLote(lote);
+                lote = new ArrayList<>();
+            }
+        }
+        if (!lote.isEmpty()) {
+            volcarLote(lote);
+        }
+    }
+
+    /**
+     * Filas borradas por fuera (limpieza de carritos): los carritos de esos usuarios sin
+     * cambios pendientes se quitan de memoria y se recargan de la tabla en el próximo uso.
+     * Los que tienen cambios se enteran al volcar (las filas ya no existen).
+     */
+    public void descartarSinCambios(Collection<Long> usuarioIds) {
+        if (!activo) {
+            return;
+        }
+        for (Long usuarioId : usuarioIds) {
+            CarritoUsuario carrito = carritos.get(usuarioId);
+            if (carrito == null || !carrito.volcado.tryLock()) {
+                continue;
+            }
+            try {
+                synchronized (carrito) {
+                    if (!carrito.sucio()) {
+                        carrito.retirado = true;
+                        carritos.remove(usuarioId, carrito);
+                    }
+                }
+            } finally {
+                carrito.volcado.unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        volcarPendientes();
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("activo", activo);
+        datos.put("carritos", carritos.size());
+        datos.put("pendientes", carritos.values().stream().filter(CarritoUsuario::sucioSinBloqueo).count());
+        datos.put("lotesVolcados", lotesVolcados.get());
+        datos.put("filasEscritas", filasEscritas.get());
+        datos.put("fallos", fallos.get());
+        return datos;
+    }
+
+    private void volcarLote(List<Volcado> lote) {
+        try {
+            escribirYConfirmar(lote);
+        } catch (RuntimeException e) {
+            fallos.incrementAndGet();
+            if (lote.size() == 1) {
+                log.error("No se pudo volcar el carrito del usuario {}", lote.get(0).carrito().usuarioId, e);
+            } else {
+                // Se reintenta de a un carrito para que uno con problemas no frene a los demás
+                log.warn("Falló el volcado de {} carritos, se reintenta uno por uno: {}", lote.size(), e.getMessage());
+                for (Volcado volcado : lote) {
+                    try {
+                        escribirYConfirmar(List.of(volcado));
+                    } catch (RuntimeException ex) {
+                        fallos.incrementAndGet();
+                        log.error("No se pudo volcar el carrito del usuario {}", volcado.carrito().usuarioId, ex);
+                    }
+                }
+            }
+        } finally {
+            lote.forEach(volcado -> volcado.carrito().volcado.unlock());
+        }
+    }
+
+    private void escribirYConfirmar(List<Volcado> lote) {
+        Resultado resultado = transaccion.execute(estado -> escribir(lote));
+        lote.forEach(volcado -> confirmar(volcado, resultado));
+        lotesVolcados.incrementAndGet();
+    }
+
+    // ========== INTERNOS ==========
+
+    /**
+     * Ejecutar sobre el carrito vigente del usuario (cargándolo de la tabla si no está)
+     * con su monitor tomado
+     */
+    private <T> T conCarrito(Long usuarioId, Function<CarritoUsuario, T> accion) {
+        while (true) {
+            CarritoUsuario carrito = carritos.computeIfAbsent(usuarioId, this::cargar);
+            synchronized (carrito) {
+                // Un carrito retirado por inactividad se vuelve a cargar
+                if (!carrito.retirado) {
+                    carrito.ultimoUso = Instant.now();
+                    return accion.apply(carrito);
+                }
+            }
+        }
+    }
+
+    private CarritoUsuario bloquearParaVolcar(Long usuarioId) {
+        while (true) {
+            CarritoUsuario carrito = carritos.computeIfAbsent(usuarioId, this::cargar);
+            carrito.volcado.lock();
+            synchronized (carrito) {
+                if (!carrito.retirado) {
+                    carrito.ultimoUso = Instant.now();
+                    return carrito;
+                }
+            }
+            carrito.volcado.unlock();
+        }
+    }
+
+    private CarritoUsuario cargar(Long usuarioId) {
+        CarritoUsuario carrito = new CarritoUsuario(usuarioId);
+        for (FilaCarrito fila : lotesRepository.buscarPorUsuario(usuarioId)) {
+            Item item = new Item(idsTemporales.decrementAndGet(), fila.productoId(), fila.cantidad(), fila.fechaAgregado());
+            item.idPersistido = fila.id();
+            if (carrito.items.putIfAbsent(fila.productoId(), item) != null) {
+                // Fila repetida del mismo producto: queda la primera
+                carrito.borrados.add(fila.id());
+            }
+        }
+        return carrito;
+    }
+
+    private void descartar(Long usuarioId) {
+        CarritoUsuario carrito = carritos.get(usuarioId);
+        if (carrito != null) {
+            synchronized (carrito) {
+                carrito.retirado = true;
+                carritos.remove(usuarioId, carrito);
+            }
+        }
+    }
+
+    /**
+     * Foto de los cambios pendientes (con el monitor del carrito tomado)
+     */
+    private Volcado tomar(CarritoUsuario carrito) {
+        List<Alta> altas = new ArrayList<>();
+        Map<Long, Integer> cantidades = new HashMap<>();
+        for (Item item : carrito.items.values()) {
+            if (item.version > carrito.versionVolcada) {
+                if (item.idPersistido == null) {
+                    altas.add(new Alta(item, new FilaCarrito(null, carrito.usuarioId, item.productoId,
+                            item.cantidad, item.fechaAgregado)));
+                } else {
+                    cantidades.put(item.idPersistido, item.cantidad);
+                }
+            }
+        }
+        return new Volcado(carrito, carrito.version, altas, cantidades, Set.copyOf(carrito.borrados));
+    }
+
+    /**
+     * Escribir los volcados en la transacción actual: bajas, cambios de cantidad y altas,
+     * una sentencia o un batch por tipo. Las bajas van primero para poder volver a dar de
+     * alta un producto quitado.
+     */
+    private Resultado escribir(List<Volcado> lote) {
+        Set<Long> borrados = new HashSet<>();
+        Map<Long, Integer> cantidades = new HashMap<>();
+        List<Alta> altas = new ArrayList<>();
+        for (Volcado volcado : lote) {
+            borrados.addAll(volcado.borrados());
+            cantidades.putAll(volcado.cantidades());
+            altas.addAll(volcado.altas());
+        }
+
+        if (!borrados.isEmpty()) {
+            lotesRepository.borrar(borrados);
+        }
+        Set<Long> inexistentes = cantidades.isEmpty() ? Set.of() : lotesRepository.actualizarCantidades(cantidades);
+
+        Map<Item, Long> idsNuevos = new IdentityHashMap<>();
+        if (!altas.isEmpty()) {
+            lotesRepository.insertar(altas.stream().map(Alta::fila).toList());
+
+            // El id recién generado es el mayor de cada (usuario, producto)
+            Map<List<Long>, Long> idPorUsuarioYProducto = new HashMap<>();
+            Set<Long> usuarioIds = new HashSet<>();
+            altas.forEach(alta -> usuarioIds.add(alta.fila().usuarioId()));
+            for (FilaCarrito fila : lotesRepository.buscarPorUsuarios(usuarioIds)) {
+                idPorUsuarioYProducto.merge(List.of(fila.usuarioId(), fila.productoId()), fila.id(), Math::max);
+            }
+            for (Alta alta : altas) {
+                idsNuevos.put(alta.item(), idPorUsuarioYProducto.get(
+                        List.of(alta.fila().usuarioId(), alta.fila().productoId())));
+            }
+        }
+
+        filasEscritas.addAndGet(borrados.size() + cantidades.size() + altas.size());
+        return new Resultado(idsNuevos, inexistentes);
+    }
+
+    /**
+     * Anotar como escrito lo que entró en el volcado. Los cambios posteriores a la foto
+     * quedan pendientes para el siguiente.
+     */
+    private void confirmar(Volcado volcado, Resultado resultado) {
+        CarritoUsuario carrito = volcado.carrito();
+        synchronized (carrito) {
+            for (Alta alta : volcado.altas()) {
+                Long id = resultado.idsNuevos().get(alta.item());
+                if (id == null) {
+                    continue;
+                }
+                if (alta.item().quitado) {
+                    // Se quitó mientras se insertaba
+                    carrito.borrados.add(id);
+                } else {
+                    alta.item().idPersistido = id;
+                }
+            }
+            // Filas borradas fuera de este almacén (p. ej. un checkout en otra instancia)
+            if (!resultado.inexistentes().isEmpty()) {
+                carrito.items.values().removeIf(item -> {
+                    boolean borrado = item.idPersistido != null && resultado.inexistentes().contains(item.idPersistido);
+                    item.quitado |= borrado;
+                    return borrado;
+                });
+            }
+            carrito.borrados.removeAll(volcado.borrados());
+            carrito.versionVolcada = Math.max(carrito.versionVolcada, volcado.version());
+        }
+    }
+
+    private record ClaveCheckout(Long usuarioId) {
+    }
+
+    private record Alta(Item item, FilaCarrito fila) {
+    }
+
+    private record Volcado(CarritoUsuario carrito, long version, List<Alta> altas,
+                           Map<Long, Integer> cantidades, Set<Long> borrados) {
+    }
+
+    private record Resultado(Map<Item, Long> idsNuevos, Set<Long> inexistentes) {
+    }
+
+    /**
+     * Volcado hecho dentro de la transacción de un checkout; se confirma (y, si el pedido
+     * vació el carrito, se quitan los items comprados) cuando la transacción termina
+     */
+    private class VolcadoCheckout implements TransactionSynchronization {
+        private final ClaveCheckout clave;
+        private final Volcado volcado;
+        private final Resultado resultado;
+        private boolean vaciado;
+
+        VolcadoCheckout(ClaveCheckout clave, Volcado volcado, Resultado resultado) {
+            this.clave = clave;
+            this.volcado = volcado;
+            this.resultado = resultado;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            CarritoUsuario carrito = volcado.carrito();
+            try {
+                TransactionSynchronizationManager.unbindResourceIfPossible(clave);
+                if (status != STATUS_COMMITTED) {
+                    return;
+                }
+                confirmar(volcado, resultado);
+                if (vaciado) {
+                    synchronized (carrito) {
+                        carrito.items.values().removeIf(item -> {
+                            item.quitado |= item.version <= volcado.version();
+                            return item.quitado;
+                        });
+                        // El checkout borró todas las filas: lo agregado después vuelve a ser un alta
+                        carrito.items.values().forEach(item -> item.idPersistido = null);
+                        carrito.borrados.clear();
+                    }
+                }
+            } finally {
+                carrito.volcado.unlock();
+            }
+        }
+    }
+
+    private static final class CarritoUsuario {
+        final Long usuarioId;
+        // Por producto, en orden de alta
+        final Map<Long, Item> items = new LinkedHashMap<>();
+        // Ids de filas quitadas que falta borrar
+        final Set<Long> borrados = new HashSet<>();
+        // Un solo volcado a la vez por carrito (periódico o de checkout)
+        final ReentrantLock volcado = new ReentrantLock();
+        long version;
+        long versionVolcada;
+        boolean retirado;
+        Instant ultimoUso = Instant.now();
+
+        CarritoUsuario(Long usuarioId) {
+            this.usuarioId = usuarioId;
+        }
+
+        boolean sucio() {
+            return version > versionVolcada || !borrados.isEmpty();
+        }
+
+        boolean sucioSinBloqueo() {
+            synchronized (this) {
+                return sucio();
+            }
+        }
+
+        Optional<Item> buscar(Long itemId) {
+            return items.values().stream().filter(item -> item.tieneId(itemId)).findFirst();
+        }
+
+        void quitar(Item item) {
+            items.remove(item.productoId);
+            item.quitado = true;
+            if (item.idPersistido != null) {
+                borrados.add(item.idPersistido);
+            }
+            version++;
+        }
+    }
+
+    private static final class Item {
+        final long idTemporal;
+        final Long productoId;
+        final LocalDateTime fechaAgregado;
+        Long idPersistido;
+        int cantidad;
+        long version;
+        boolean quitado;
+
+        Item(long idTemporal, Long productoId, int cantidad, LocalDateTime fechaAgregado) {
+            this.idTemporal = idTemporal;
+            this.productoId = productoId;
+            this.cantidad = cantidad;
+            this.fechaAgregado = fechaAgregado;
+        }
+
+        // El id temporal sigue valiendo después del volcado para quien ya lo tenía
+        boolean tieneId(Long id) {
+            return id.equals(idPersistido) || id == idTemporal;
+        }
+
+        Linea linea() {
+            return new Linea(idPersistido != null ? idPersistido : idTemporal, productoId, cantidad, fechaAgregado);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.marketplace.backend.service;
+
+/**
+ * Evento publicado cuando cambian las líneas del carrito de un usuario (alta, baja,
+ * vaciado o checkout). Los oyentes lo reciben después del commit de la transacción.
+ *
+ * @param usuarioId dueño del carrito
+ */
+public record CarritoModificadoEvent(Long usuarioId) {
+}
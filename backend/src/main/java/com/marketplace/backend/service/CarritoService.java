@@ -1,24 +1,34 @@
 package com.marketplace.backend.service;
 import com.marketplace.backend.dominio.Carrito;
-import com.marketplace.backend.dominio.ImagenProducto;
 import com.marketplace.backend.dominio.Producto;
-import com.marketplace.backend.dominio.Usuario;
 import com.marketplace.backend.dto.AgregarCarritoDTO;
 import com.marketplace.backend.dto.ActualizarCantidadDTO;
 import com.marketplace.backend.dto.CarritoItemDTO;
 import com.marketplace.backend.dto.CarritoResumenDTO;
+import com.marketplace.backend.dto.ResultadoLineaCarritoDTO;
+import com.marketplace.backend.repository.CarritoLotesRepository;
+import com.marketplace.backend.repository.CarritoLotesRepository.FilaCarrito;
 import com.marketplace.backend.repository.CarritoRepository;
 import com.marketplace.backend.repository.ImagenProductoRepository;
 import com.marketplace.backend.repository.ProductoRepository;
-import com.marketplace.backend.repository.UsuarioRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 @Service
 @RequiredArgsConstructor
@@ -26,106 +36,340 @@ import java.util.stream.Collectors;
 public class CarritoService {
 private final CarritoRepository carritoRepository;
     private final ProductoRepository productoRepository;
-    private final UsuarioRepository usuarioRepository;
     private final ImagenProductoRepository imagenProductoRepository;
+    private final CarritoLotesRepository carritoLotesRepository;
+    private final CarritoEnMemoria carritoEnMemoria;
+    private final ContadorCarrito contadorCarrito;
+    private final ApplicationEventPublisher eventPublisher;
     
     /**
      * Agregar producto al carrito
-     * Si el producto ya existe, suma las cantidades
+     * Si el producto ya existe, suma las cantidades (sobre la misma fila gracias al índice
+     * único usuario-producto). Dos sentencias: el upsert y la lectura de la línea.
      */
     @Transactional
     public CarritoItemDTO agregarProducto(Long usuarioId, AgregarCarritoDTO dto) {
         log.info("Usuario {} agregando producto {} al carrito", usuarioId, dto.getProductoId());
         
-        // Verificar usuario
-        Usuario usuario = usuarioRepository.findById(usuarioId)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+        if (carritoEnMemoria.activo()) {
+            return agregarEnMemoria(usuarioId, dto);
+        }
+        
+        // 1. Sumar (o crear) la línea validando disponibilidad, mínimo y stock en la misma sentencia
+        LocalDateTime fechaAlta = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        int filas = carritoLotesRepository.sumarCantidad(usuarioId, dto.getProductoId(), dto.getCantidad(), fechaAlta);
+        
+        // 2. Leer la línea con su producto y su primera imagen
+        List<Object[]> lineas = carritoRepository.findLineaConPrimeraImagen(usuarioId, dto.getProductoId());
+        Carrito carrito = lineas.isEmpty() ? null : (Carrito) lineas.get(0)[0];
+        
+        // 1 fila afectada también es una línea existente que no cambió: solo la insertada lleva esta fecha
+        boolean escrita = filas == 2 || (filas == 1 && carrito != null && fechaAlta.equals(carrito.getFechaAgregado()));
+        if (!escrita) {
+            throw motivoDeRechazo(dto, carrito);
+        }
+        
+        log.info("Producto {} en el carrito, cantidad: {}", dto.getProductoId(), carrito.getCantidad());
+        if (filas == 1) {
+            // Línea nueva: cambia el contador del carrito
+            eventPublisher.publishEvent(new CarritoModificadoEvent(usuarioId));
+        }
+        return convertirACarritoItemDTO(carrito, (String) lineas.get(0)[1]);
+    }
+    
+    /**
+     * Explicar por qué no se pudo agregar (solo en el caso de error se carga el producto)
+     */
+    private RuntimeException motivoDeRechazo(AgregarCarritoDTO dto, Carrito existente) {
+        Producto producto = existente != null ? existente.getProducto()
+                : productoRepository.findById(dto.getProductoId())
+                        .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
         
-        // Verificar producto
+        if (!producto.getDisponible()) {
+            return new RuntimeException("El producto no está disponible");
+        }
+        validarCantidad(producto, dto.getCantidad());
+        if (existente != null) {
+            return new RuntimeException("Stock insuficiente para agregar más unidades. Disponible: " + producto.getStockDisponible());
+        }
+        return new RuntimeException("No se pudo agregar el producto al carrito");
+    }
+    
+    /**
+     * Agregar en el carrito en memoria: mismas validaciones, sin escribir en la tabla
+     */
+    private CarritoItemDTO agregarEnMemoria(Long usuarioId, AgregarCarritoDTO dto) {
         Producto producto = productoRepository.findById(dto.getProductoId())
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
-        
-        // Validar que el producto esté disponible
         if (!producto.getDisponible()) {
             throw new RuntimeException("El producto no está disponible");
         }
+        validarCantidad(producto, dto.getCantidad());
         
-        // Validar cantidad mínima
-        if (dto.getCantidad() < producto.getCantidadMinima()) {
-            throw new RuntimeException("La cantidad mínima de compra es " + producto.getCantidadMinima());
+        CarritoEnMemoria.Linea linea = carritoEnMemoria.agregar(usuarioId, producto.getId(), dto.getCantidad(),
+                cantidadTotal -> {
+                    if (cantidadTotal > producto.getStockDisponible()) {
+                        throw new RuntimeException("Stock insuficiente para agregar más unidades. Disponible: " + producto.getStockDisponible());
+                    }
+                });
+        return convertirACarritoItemDTO(aCarrito(linea, producto));
+    }
+    
+    /**
+     * Agregar varias líneas en una transacción (un producto repetido en la petición suma
+     * sus cantidades). Las que no pasan las validaciones se informan sin frenar a las demás.
+     */
+    @Transactional
+    public List<ResultadoLineaCarritoDTO> agregarProductos(Long usuarioId, List<AgregarCarritoDTO> lineas) {
+        log.info("Usuario {} agregando {} líneas al carrito", usuarioId, lineas.size());
+        return aplicarLote(usuarioId, lineas, true);
+    }
+    
+    /**
+     * Fijar la cantidad de varias líneas ya presentes en el carrito, identificadas por producto
+     */
+    @Transactional
+    public List<ResultadoLineaCarritoDTO> actualizarCantidades(Long usuarioId, List<AgregarCarritoDTO> lineas) {
+        log.info("Usuario {} actualizando {} líneas del carrito", usuarioId, lineas.size());
+        return aplicarLote(usuarioId, lineas, false);
+    }
+    
+    /**
+     * Lote de altas (sumar=true) o de cambios de cantidad: una consulta para los productos y
+     * los cambios en un batch. Las altas en la tabla son upserts que suman sobre la fila con el
+     * stock validado en la misma sentencia, así no pisan altas concurrentes del mismo usuario.
+     */
+    private List<ResultadoLineaCarritoDTO> aplicarLote(Long usuarioId, List<AgregarCarritoDTO> lineas, boolean sumar) {
+        Map<Long, Integer> solicitadas = new LinkedHashMap<>();
+        lineas.forEach(linea -> solicitadas.merge(linea.getProductoId(), linea.getCantidad(),
+                sumar ? Integer::sum : (anterior, nueva) -> nueva));
+        
+        Map<Long, Producto> productos = new HashMap<>();
+        productoRepository.findConRelacionesByIdIn(new ArrayList<>(solicitadas.keySet()))
+                .forEach(producto -> productos.put(producto.getId(), producto));
+        // Las altas en la tabla no necesitan las líneas actuales: el upsert suma sobre ellas
+        boolean enTabla = !carritoEnMemoria.activo();
+        Map<Long, FilaCarrito> actuales = sumar && enTabla ? Map.of() : filasDelCarrito(usuarioId);
+        
+        // Validar todas las líneas: cantidad final (o a sumar) por producto o motivo del rechazo
+        Map<Long, Integer> validas = new LinkedHashMap<>();
+        Map<Long, String> rechazos = new HashMap<>();
+        solicitadas.forEach((productoId, cantidad) -> {
+            try {
+                validas.put(productoId, cantidadFinal(productos.get(productoId), actuales.get(productoId), cantidad, sumar));
+            } catch (RuntimeException e) {
+                rechazos.put(productoId, e.getMessage());
+            }
+        });
+        
+        Map<Long, FilaCarrito> resultantes;
+        if (!enTabla) {
+            resultantes = aplicarEnMemoria(usuarioId, validas, solicitadas, actuales, productos, rechazos, sumar);
+        } else if (sumar) {
+            resultantes = sumarEnTabla(usuarioId, validas, productos, rechazos);
+        } else {
+            resultantes = actualizarEnTabla(usuarioId, validas, actuales, rechazos);
         }
         
-        // Validar stock
-        if (dto.getCantidad() > producto.getStockDisponible()) {
-            throw new RuntimeException("Stock insuficiente. Disponible: " + producto.getStockDisponible());
+        Map<Long, String> imagenes = imagenProductoRepository.findPrimeraImagenPorProducto(resultantes.keySet());
+        List<ResultadoLineaCarritoDTO> resultados = new ArrayList<>(solicitadas.size());
+        for (Long productoId : solicitadas.keySet()) {
+            FilaCarrito fila = resultantes.get(productoId);
+            if (fila == null) {
+                resultados.add(ResultadoLineaCarritoDTO.rechazada(productoId, rechazos.get(productoId)));
+            } else {
+                Carrito item = new Carrito(fila.id(), null, productos.get(productoId), fila.cantidad(), fila.fechaAgregado());
+                resultados.add(ResultadoLineaCarritoDTO.aplicada(convertirACarritoItemDTO(item, imagenes.get(productoId))));
+            }
         }
+        log.info("Lote del carrito del usuario {}: {} aplicadas, {} rechazadas",
+                usuarioId, resultantes.size(), solicitadas.size() - resultantes.size());
+        return resultados;
+    }
+    
+    private int cantidadFinal(Producto producto, FilaCarrito actual, int cantidad, boolean sumar) {
+        if (producto == null) {
+            throw new RuntimeException("Producto no encontrado");
+        }
+        if (!sumar) {
+            if (actual == null) {
+                throw new RuntimeException("El producto no está en el carrito");
+            }
+            validarCantidad(producto, cantidad);
+            return cantidad;
+        }
+        if (!producto.getDisponible()) {
+            throw new RuntimeException("El producto no está disponible");
+        }
+        validarCantidad(producto, cantidad);
+        if (actual == null) {
+            return cantidad;
+        }
+        if (actual.cantidad() + cantidad > producto.getStockDisponible()) {
+            throw new RuntimeException("Stock insuficiente para agregar más unidades. Disponible: " + producto.getStockDisponible());
+        }
+        return actual.cantidad() + cantidad;
+    }
+    
+    /**
+     * Batch de upserts en orden de producto y una lectura de las líneas resultantes. Como en
+     * el alta individual, una fila afectada con la fecha de esta alta es una línea nueva y una
+     * sin cambios es un rechazo por stock.
+     */
+    private Map<Long, FilaCarrito> sumarEnTabla(Long usuarioId, Map<Long, Integer> validas,
+                                                Map<Long, Producto> productos, Map<Long, String> rechazos) {
+        Map<Long, FilaCarrito> resultantes = new HashMap<>();
+        if (validas.isEmpty()) {
+            return resultantes;
+        }
+        SortedMap<Long, Integer> incrementos = new TreeMap<>(validas);
+        LocalDateTime fechaAlta = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        int[] filas = carritoLotesRepository.sumarCantidades(usuarioId, incrementos, fechaAlta);
+        Map<Long, FilaCarrito> actuales = filasDelCarrito(usuarioId);
         
-        // Verificar si ya existe en el carrito
-        Carrito carrito = carritoRepository.findByUsuarioIdAndProductoId(usuarioId, dto.getProductoId())
-                .orElse(null);
+        boolean altas = false;
+        int i = 0;
+        for (Long productoId : incrementos.keySet()) {
+            int afectadas = filas[i++];
+            FilaCarrito fila = actuales.get(productoId);
+            boolean nueva = afectadas == 1 && fila != null && fechaAlta.equals(fila.fechaAgregado());
+            if (afectadas == 2 || nueva) {
+                resultantes.put(productoId, fila);
+                altas |= nueva;
+            } else {
+                rechazos.put(productoId, "Stock insuficiente para agregar más unidades. Disponible: "
+                        + productos.get(productoId).getStockDisponible());
+            }
+        }
+        if (altas) {
+            eventPublisher.publishEvent(new CarritoModificadoEvent(usuarioId));
+        }
+        return resultantes;
+    }
+    
+    private Map<Long, FilaCarrito> actualizarEnTabla(Long usuarioId, Map<Long, Integer> validas,
+                                                     Map<Long, FilaCarrito> actuales, Map<Long, String> rechazos) {
+        Map<Long, Integer> cambios = new HashMap<>();
+        validas.forEach((productoId, cantidad) -> cambios.put(actuales.get(productoId).id(), cantidad));
         
-        if (carrito != null) {
-            // Ya existe, sumar cantidades
-            int nuevaCantidad = carrito.getCantidad() + dto.getCantidad();
-            
-            // Validar que la nueva cantidad no exceda el stock
-            if (nuevaCantidad > producto.getStockDisponible()) {
-                throw new RuntimeException("Stock insuficiente para agregar más unidades. Disponible: " + producto.getStockDisponible());
+        Set<Long> borradas = cambios.isEmpty() ? Set.of() : carritoLotesRepository.actualizarCantidades(cambios);
+        Map<Long, FilaCarrito> resultantes = new HashMap<>();
+        validas.forEach((productoId, cantidad) -> {
+            FilaCarrito fila = actuales.get(productoId);
+            if (borradas.contains(fila.id())) {
+                rechazos.put(productoId, "Item del carrito no encontrado");
+            } else {
+                resultantes.put(productoId, new FilaCarrito(fila.id(), usuarioId, productoId, cantidad, fila.fechaAgregado()));
+            }
+        });
+        return resultantes;
+    }
+    
+    private Map<Long, FilaCarrito> aplicarEnMemoria(Long usuarioId, Map<Long, Integer> validas, Map<Long, Integer> solicitadas,
+                                                    Map<Long, FilaCarrito> actuales, Map<Long, Producto> productos,
+                                                    Map<Long, String> rechazos, boolean sumar) {
+        Map<Long, FilaCarrito> resultantes = new HashMap<>();
+        validas.forEach((productoId, cantidad) -> {
+            int stock = productos.get(productoId).getStockDisponible();
+            try {
+                // El carrito pudo cambiar desde la lectura: la suma se vuelve a validar bajo su bloqueo
+                CarritoEnMemoria.Linea linea = sumar
+                        ? carritoEnMemoria.agregar(usuarioId, productoId, solicitadas.get(productoId), total -> {
+                            if (total > stock) {
+                                throw new RuntimeException("Stock insuficiente para agregar más unidades. Disponible: " + stock);
+                            }
+                        })
+                        : carritoEnMemoria.actualizarCantidad(usuarioId, actuales.get(productoId).id(), cantidad);
+                resultantes.put(productoId, aFila(usuarioId, linea));
+            } catch (RuntimeException e) {
+                rechazos.put(productoId, e.getMessage());
             }
-            
-            carrito.setCantidad(nuevaCantidad);
-            log.info("Producto {} ya existía en carrito, nueva cantidad: {}", dto.getProductoId(), nuevaCantidad);
+        });
+        return resultantes;
+    }
+    
+    /**
+     * Líneas actuales del carrito por producto (de memoria o de la tabla, sin cargar entidades)
+     */
+    private Map<Long, FilaCarrito> filasDelCarrito(Long usuarioId) {
+        Map<Long, FilaCarrito> filas = new HashMap<>();
+        if (carritoEnMemoria.activo()) {
+            carritoEnMemoria.lineas(usuarioId).forEach(linea -> filas.put(linea.productoId(), aFila(usuarioId, linea)));
         } else {
-            // Nuevo item
-            carrito = new Carrito();
-            carrito.setUsuario(usuario);
-            carrito.setProducto(producto);
-            carrito.setCantidad(dto.getCantidad());
-            log.info("Nuevo item agregado al carrito");
+            carritoLotesRepository.buscarPorUsuario(usuarioId).forEach(fila -> filas.put(fila.productoId(), fila));
         }
-        
-        Carrito guardado = carritoRepository.save(carrito);
-        return convertirACarritoItemDTO(guardado);
+        return filas;
+    }
+    
+    private FilaCarrito aFila(Long usuarioId, CarritoEnMemoria.Linea linea) {
+        return new FilaCarrito(linea.id(), usuarioId, linea.productoId(), linea.cantidad(), linea.fechaAgregado());
     }
     
     /**
      * Obtener carrito completo del usuario
+     * Una consulta con producto y proveedor, otra para las primeras imágenes y los totales en una pasada
      */
     @Transactional(readOnly = true)
     public CarritoResumenDTO obtenerCarrito(Long usuarioId) {
-        log.info("Obteniendo carrito del usuario {}", usuarioId);
-        
-        List<Carrito> items = carritoRepository.findByUsuarioIdWithAvailableProducts(usuarioId);
-        
-        List<CarritoItemDTO> itemsDTO = items.stream()
-                .map(this::convertirACarritoItemDTO)
-                .collect(Collectors.toList());
+        log.debug("Obteniendo carrito del usuario {}", usuarioId);
         
-        // Calcular totales
-        int cantidadTotal = itemsDTO.size();
-        int cantidadProductos = itemsDTO.stream()
-                .mapToInt(CarritoItemDTO::getCantidad)
-                .sum();
-        BigDecimal subtotal = itemsDTO.stream()
-                .map(CarritoItemDTO::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        List<Carrito> items = carritoEnMemoria.activo()
+                ? itemsEnMemoria(usuarioId, true)
+                : carritoRepository.findConProductoDisponible(usuarioId);
+        Map<Long, String> imagenes = imagenProductoRepository.findPrimeraImagenPorProducto(
+                items.stream().map(item -> item.getProducto().getId()).toList());
         
-        // Contar proveedores distintos
-        long totalProveedores = itemsDTO.stream()
-                .map(CarritoItemDTO::getProveedorId)
-                .distinct()
-                .count();
+        List<CarritoItemDTO> itemsDTO = new ArrayList<>(items.size());
+        int cantidadProductos = 0;
+        BigDecimal subtotal = BigDecimal.ZERO;
+        Set<Long> proveedores = new HashSet<>();
+        for (Carrito item : items) {
+            CarritoItemDTO dto = convertirACarritoItemDTO(item, imagenes.get(item.getProducto().getId()));
+            itemsDTO.add(dto);
+            cantidadProductos += dto.getCantidad();
+            subtotal = subtotal.add(dto.getSubtotal());
+            proveedores.add(dto.getProveedorId());
+        }
         
         CarritoResumenDTO resumen = new CarritoResumenDTO();
         resumen.setItems(itemsDTO);
-        resumen.setCantidadTotal(cantidadTotal);
+        resumen.setCantidadTotal(itemsDTO.size());
         resumen.setCantidadProductos(cantidadProductos);
         resumen.setSubtotal(subtotal);
-        resumen.setTotalProveedores((int) totalProveedores);
+        resumen.setTotalProveedores(proveedores.size());
         
         return resumen;
     }
     
+    /**
+     * Items del carrito en memoria con sus productos (y relaciones) en una consulta
+     */
+    private List<Carrito> itemsEnMemoria(Long usuarioId, boolean soloDisponibles) {
+        List<CarritoEnMemoria.Linea> lineas = carritoEnMemoria.lineas(usuarioId);
+        if (lineas.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Producto> productos = new HashMap<>();
+        productoRepository.findConRelacionesByIdIn(lineas.stream().map(CarritoEnMemoria.Linea::productoId).toList())
+                .forEach(producto -> productos.put(producto.getId(), producto));
+        
+        List<Carrito> items = new ArrayList<>(lineas.size());
+        for (CarritoEnMemoria.Linea linea : lineas) {
+            Producto producto = productos.get(linea.productoId());
+            if (producto != null && (!soloDisponibles || producto.getDisponible())) {
+                items.add(aCarrito(linea, producto));
+            }
+        }
+        return items;
+    }
+    
+    /**
+     * Item no persistido para reutilizar la conversión a DTO
+     */
+    private Carrito aCarrito(CarritoEnMemoria.Linea linea, Producto producto) {
+        return new Carrito(linea.id(), null, producto, linea.cantidad(), linea.fechaAgregado());
+    }
+    
     /**
      * Actualizar cantidad de un producto en el carrito
      */
@@ -133,6 +377,16 @@ private final CarritoRepository carritoRepository;
     public CarritoItemDTO actualizarCantidad(Long usuarioId,Long carritoId, ActualizarCantidadDTO dto) {
         log.info("Actualizando cantidad del item {} del usuario {}", carritoId, usuarioId);
         
+        if (carritoEnMemoria.activo()) {
+            CarritoEnMemoria.Linea linea = carritoEnMemoria.buscar(usuarioId, carritoId)
+                    .orElseThrow(() -> new RuntimeException("Item del carrito no encontrado"));
+            Producto producto = productoRepository.findById(linea.productoId())
+                    .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+            validarCantidad(producto, dto.getCantidad());
+            return convertirACarritoItemDTO(aCarrito(
+                    carritoEnMemoria.actualizarCantidad(usuarioId, carritoId, dto.getCantidad()), producto));
+        }
+        
         Carrito carrito = carritoRepository.findById(carritoId)
                 .orElseThrow(() -> new RuntimeException("Item del carrito no encontrado"));
         
@@ -141,17 +395,7 @@ private final CarritoRepository carritoRepository;
             throw new RuntimeException("No tienes permiso para modificar este item");
         }
         
-        Producto producto = carrito.getProducto();
-        
-        // Validar cantidad mínima
-        if (dto.getCantidad() < producto.getCantidadMinima()) {
-            throw new RuntimeException("La cantidad mínima de compra es " + producto.getCantidadMinima());
-        }
-        
-        // Validar stock
-        if (dto.getCantidad() > producto.getStockDisponible()) {
-            throw new RuntimeException("Stock insuficiente. Disponible: " + producto.getStockDisponible());
-        }
+        validarCantidad(carrito.getProducto(), dto.getCantidad());
         
         carrito.setCantidad(dto.getCantidad());
         Carrito actualizado = carritoRepository.save(carrito);
@@ -167,6 +411,11 @@ private final CarritoRepository carritoRepository;
     public void eliminarProducto(Long usuarioId,Long carritoId) {
         log.info("Eliminando item {} del carrito del usuario {}", carritoId, usuarioId);
         
+        if (carritoEnMemoria.activo()) {
+            carritoEnMemoria.eliminar(usuarioId, carritoId);
+            return;
+        }
+        
         Carrito carrito = carritoRepository.findById(carritoId)
                 .orElseThrow(() -> new RuntimeException("Item del carrito no encontrado"));
         
@@ -176,6 +425,7 @@ private final CarritoRepository carritoRepository;
         }
         
         carritoRepository.delete(carrito);
+        eventPublisher.publishEvent(new CarritoModificadoEvent(usuarioId));
         log.info("Item eliminado del carrito");
     }
     
@@ -185,32 +435,44 @@ private final CarritoRepository carritoRepository;
     @Transactional
     public void vaciarCarrito(Long usuarioId) {
         log.info("Vaciando carrito del usuario {}", usuarioId);
+        if (carritoEnMemoria.activo()) {
+            carritoEnMemoria.vaciar(usuarioId);
+            return;
+        }
         carritoRepository.deleteByUsuarioId(usuarioId);
+        eventPublisher.publishEvent(new CarritoModificadoEvent(usuarioId));
         log.info("Carrito vaciado");
     }
     
     /**
-     * Limpiar productos no disponibles del carrito
+     * Contar items en el carrito (contador en caché, sin transacción en los aciertos)
      */
-    @Transactional
-    public void limpiarProductosNoDisponibles(Long usuarioId) {
-        log.info("Limpiando productos no disponibles del usuario {}", usuarioId);
-        carritoRepository.deleteUnavailableProductsByUsuarioId(usuarioId);
-        log.info("Productos no disponibles eliminados");
+    public Long contarItems(Long usuarioId) {
+        return contadorCarrito.obtener(usuarioId);
     }
     
     /**
-     * Contar items en el carrito
+     * Validar cantidad mínima y stock disponible
      */
-    @Transactional(readOnly = true)
-    public Long contarItems(Long usuarioId) {
-        return carritoRepository.countByUsuarioId(usuarioId);
+    private void validarCantidad(Producto producto, int cantidad) {
+        if (cantidad < producto.getCantidadMinima()) {
+            throw new RuntimeException("La cantidad mínima de compra es " + producto.getCantidadMinima());
+        }
+        if (cantidad > producto.getStockDisponible()) {
+            throw new RuntimeException("Stock insuficiente. Disponible: " + producto.getStockDisponible());
+        }
     }
     
     /**
      * Convertir Carrito a CarritoItemDTO
      */
     private CarritoItemDTO convertirACarritoItemDTO(Carrito carrito) {
+        Long productoId = carrito.getProducto().getId();
+        return convertirACarritoItemDTO(carrito,
+                imagenProductoRepository.findPrimeraImagenPorProducto(List.of(productoId)).get(productoId));
+    }
+    
+    private CarritoItemDTO convertirACarritoItemDTO(Carrito carrito, String imagenUrl) {
         Producto producto = carrito.getProducto();
         
         CarritoItemDTO dto = new CarritoItemDTO();
@@ -234,10 +496,7 @@ private final CarritoRepository carritoRepository;
         dto.setNombreEmpresa(producto.getProveedor().getNombreEmpresa());
         
         // Primera imagen del producto
-        List<ImagenProducto> imagenes = imagenProductoRepository.findByProductoId(producto.getId());
-        if (!imagenes.isEmpty()) {
-            dto.setImagenUrl(imagenes.get(0).getUrlImagen());
-        }
+        dto.setImagenUrl(imagenUrl);
         
         dto.setDisponible(producto.getDisponible());
         dto.setFechaAgregado(carrito.getFechaAgregado());
@@ -0,0 +1,166 @@
+package com.marketplace.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.marketplace.backend.dto.FiltroCatalogoDTO;
+import com.marketplace.backend.dto.PaginaDTO;
+import com.marketplace.backend.dto.ProductoDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caché en memoria de las páginas del catálogo público.
+ * Acotada por peso (cantidad de productos guardados) y con métricas de aciertos,
+ * fallos y desalojos. Se invalida después del commit de cada cambio del catálogo:
+ * entera si cambió un producto, o solo las páginas que muestran los productos cuyo
+ * stock cambió, ubicadas con un índice inverso producto -> páginas.
+ */
+@Component
+@Slf4j
+public class CatalogoCache {
+
+    private final Cache<ClaveCatalogo, PaginaDTO<ProductoDTO>> paginas;
+
+    // Se incrementa en cada invalidación total: una carga que empezó antes del cambio
+    // queda guardada bajo una versión vieja y nunca se vuelve a leer
+    private final AtomicLong version = new AtomicLong();
+
+    // Producto -> páginas guardadas que lo muestran
+    private final Map<Long, Set<ClaveCatalogo>> clavesPorProducto = new ConcurrentHashMap<>();
+
+    // Invalidaciones de stock: contador y última en la que entró cada producto, para
+    // descartar una carga que empezó antes del commit y terminó después de invalidar
+    private final AtomicLong invalidacionesStock = new AtomicLong();
+    private final Map<Long, Long> ultimaInvalidacion = new ConcurrentHashMap<>();
+
+    public CatalogoCache(@Value("${catalogo.cache.peso-maximo:50000}") long pesoMaximo,
+                         @Value("${catalogo.cache.expiracion-minutos:10}") long expiracionMinutos) {
+        this.paginas = Caffeine.newBuilder()
+                .maximumWeight(pesoMaximo)
+                .weigher((ClaveCatalogo clave, PaginaDTO<ProductoDTO> pagina) -> pagina.getItems().size() + 1)
+                .expireAfterWrite(Duration.ofMinutes(expiracionMinutos))
+                .removalListener((ClaveCatalogo clave, PaginaDTO<ProductoDTO> pagina, RemovalCause causa) ->
+                        desregistrar(clave, pagina))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Devuelve la página guardada o la carga una sola vez aunque lleguen
+     * muchas peticiones iguales al mismo tiempo
+     */
+    public PaginaDTO<ProductoDTO> obtener(FiltroCatalogoDTO filtro, Supplier<PaginaDTO<ProductoDTO>> cargador) {
+        FiltroCatalogoDTO.OrdenCatalogo orden = filtro.getOrden() != null
+                ? filtro.getOrden() : FiltroCatalogoDTO.OrdenCatalogo.RECIENTES;
+        ClaveCatalogo clave = new ClaveCatalogo(version.get(), filtro.getCategoriaId(), filtro.getSubcategoriaId(),
+                filtro.getProveedorId(), orden, filtro.getCursor(), filtro.limiteEfectivo());
+        return paginas.get(clave, c -> cargarVigente(clave, cargador));
+    }
+
+    /**
+     * Cargar la página y registrarla en el índice inverso. Si mientras se cargaba se invalidó
+     * el stock de alguno de sus productos, la lectura pudo ser anterior al commit y se repite.
+     */
+    private PaginaDTO<ProductoDTO> cargarVigente(ClaveCatalogo clave, Supplier<PaginaDTO<ProductoDTO>> cargador) {
+        while (true) {
+            long inicio = invalidacionesStock.get();
+            PaginaDTO<ProductoDTO> pagina = cargador.get();
+            registrar(clave, pagina);
+            boolean vigente = pagina.getItems().stream()
+                    .noneMatch(producto -> ultimaInvalidacion.getOrDefault(producto.getId(), 0L) > inicio);
+            if (vigente) {
+                return pagina;
+            }
+            desregistrar(clave, pagina);
+        }
+    }
+
+    /**
+     * Invalida después del commit: todo el catálogo si cambió un producto,
+     * o solo las páginas que contienen los productos si únicamente cambió su stock
+     */
+    @TransactionalEventListener
+    public void alModificarCatalogo(CatalogoModificadoEvent evento) {
+        if (evento.soloStock()) {
+            invalidarProductos(evento.productoIds());
+        } else {
+            invalidarTodo();
+        }
+    }
+
+    public void invalidarTodo() {
+        version.incrementAndGet();
+        paginas.invalidateAll();
+        clavesPorProducto.clear();
+        log.debug("Caché del catálogo invalidada por completo");
+    }
+
+    private void invalidarProductos(List<Long> productoIds) {
+        // Primero se marca la invalidación y después se buscan las páginas: una carga en curso
+        // o ya quedó registrada (y se quita aquí) o verá la marca y se repetirá
+        long invalidacion = invalidacionesStock.incrementAndGet();
+        productoIds.forEach(id -> ultimaInvalidacion.put(id, invalidacion));
+        for (Long id : productoIds) {
+            Set<ClaveCatalogo> claves = clavesPorProducto.remove(id);
+            if (claves != null) {
+                paginas.invalidateAll(claves);
+            }
+        }
+        log.debug("Caché del catálogo invalidada para productos {}", productoIds);
+    }
+
+    private void registrar(ClaveCatalogo clave, PaginaDTO<ProductoDTO> pagina) {
+        for (ProductoDTO producto : pagina.getItems()) {
+            clavesPorProducto.compute(producto.getId(), (id, claves) -> {
+                Set<ClaveCatalogo> conjunto = claves != null ? claves : ConcurrentHashMap.newKeySet();
+                conjunto.add(clave);
+                return conjunto;
+            });
+        }
+    }
+
+    private void desregistrar(ClaveCatalogo clave, PaginaDTO<ProductoDTO> pagina) {
+        if (clave == null || pagina == null) {
+            return;
+        }
+        for (ProductoDTO producto : pagina.getItems()) {
+            clavesPorProducto.computeIfPresent(producto.getId(), (id, claves) -> {
+                claves.remove(clave);
+                return claves.isEmpty() ? null : claves;
+            });
+        }
+    }
+
+    /**
+     * Métricas de la caché para el panel administrativo
+     */
+    public Map<String, Object> estadisticas() {
+        CacheStats stats = paginas.stats();
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("paginas", paginas.estimatedSize());
+        datos.put("aciertos", stats.hitCount());
+        datos.put("fallos", stats.missCount());
+        datos.put("tasaAciertos", stats.hitRate());
+        datos.put("desalojos", stats.evictionCount());
+        datos.put("pesoDesalojado", stats.evictionWeight());
+        datos.put("tiempoPromedioCargaMs", stats.averageLoadPenalty() / 1_000_000.0);
+        return datos;
+    }
+
+    private record ClaveCatalogo(long version, Long categoriaId, Long subcategoriaId, Long proveedorId,
+                                 FiltroCatalogoDTO.OrdenCatalogo orden, String cursor, int limite) {
+    }
+}
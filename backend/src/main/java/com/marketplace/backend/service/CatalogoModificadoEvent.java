@@ -0,0 +1,21 @@
+package com.marketplace.backend.service;
+
+import java.util.List;
+
+/**
+ * Evento publicado cuando cambian productos del catálogo.
+ * Los oyentes lo reciben después del commit de la transacción que lo publicó.
+ *
+ * @param productoIds productos afectados
+ * @param soloStock   true si únicamente cambió el stock (checkout)
+ */
+public record CatalogoModificadoEvent(List<Long> productoIds, boolean soloStock) {
+
+    public static CatalogoModificadoEvent deProducto(Long productoId) {
+        return new CatalogoModificadoEvent(List.of(productoId), false);
+    }
+
+    public static CatalogoModificadoEvent deStock(List<Long> productoIds) {
+        return new CatalogoModificadoEvent(List.copyOf(productoIds), true);
+    }
+}
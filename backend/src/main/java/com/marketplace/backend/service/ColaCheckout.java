@@ -0,0 +1,158 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.dominio.Pedido;
+import com.marketplace.backend.dto.CrearPedidoDTO;
+import com.marketplace.backend.exception.CheckoutSaturadoException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checkout asíncrono: el pedido se registra EN_COLA y un grupo fijo de trabajadores
+ * (hilos virtuales) lo completa después. La capacidad de la cola está acotada; cuando
+ * se llena, el checkout se rechaza en lugar de acumular conexiones y memoria.
+ */
+@Slf4j
+@Component
+public class ColaCheckout {
+
+    private static final int REINTENTAR_EN_SEGUNDOS = 5;
+
+    private final PedidoService pedidoService;
+    private final int trabajadores;
+    private final int capacidad;
+
+    // Un permiso por pedido en cola o en proceso
+    private final Semaphore cupos;
+    private final LinkedBlockingQueue<Long> cola = new LinkedBlockingQueue<>();
+    private final List<Thread> hilos = new ArrayList<>();
+
+    private final AtomicLong completados = new AtomicLong();
+    private final AtomicLong fallidos = new AtomicLong();
+    private final AtomicLong rechazados = new AtomicLong();
+
+    private volatile boolean activa;
+
+    public ColaCheckout(PedidoService pedidoService,
+                        @Value("${checkout.async.trabajadores:8}") int trabajadores,
+                        @Value("${checkout.async.capacidad-cola:1000}") int capacidad) {
+        this.pedidoService = pedidoService;
+        this.trabajadores = trabajadores;
+        this.capacidad = capacidad;
+        this.cupos = new Semaphore(capacidad);
+    }
+
+    /**
+     * Registrar el pedido EN_COLA y encolarlo. Si no hay cupo no se crea nada.
+     */
+    public Pedido encolar(Long usuarioId, CrearPedidoDTO dto) {
+        if (!cupos.tryAcquire()) {
+            rechazados.incrementAndGet();
+            throw new CheckoutSaturadoException(REINTENTAR_EN_SEGUNDOS);
+        }
+        Pedido pedido;
+        try {
+            pedido = pedidoService.registrarPedidoEnCola(usuarioId, dto);
+        } catch (RuntimeException e) {
+            cupos.release();
+            throw e;
+        }
+        cola.add(pedido.getId());
+        return pedido;
+    }
+
+    /**
+     * Arrancar los trabajadores y reencolar lo que quedó pendiente antes de reiniciar
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void iniciar() {
+        activa = true;
+        for (int i = 0; i < trabajadores; i++) {
+            hilos.add(Thread.ofVirtual().name("checkout-" + i).start(this::atender));
+        }
+        Thread.ofVirtual().name("checkout-recuperacion").start(this::recuperarPendientes);
+    }
+
+    @PreDestroy
+    public synchronized void detener() {
+        activa = false;
+        hilos.forEach(Thread::interrupt);
+        hilos.clear();
+        // Los pedidos que sigan EN_COLA se recuperan en el próximo arranque
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("trabajadores", trabajadores);
+        datos.put("capacidad", capacidad);
+        datos.put("enCola", cola.size());
+        datos.put("enCurso", capacidad - cupos.availablePermits());
+        datos.put("completados", completados.get());
+        datos.put("fallidos", fallidos.get());
+        datos.put("rechazados", rechazados.get());
+        return datos;
+    }
+
+    private void atender() {
+        while (activa) {
+            Long pedidoId;
+            try {
+                pedidoId = cola.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                procesar(pedidoId);
+            } finally {
+                cupos.release();
+            }
+        }
+    }
+
+    private void procesar(Long pedidoId) {
+        try {
+            pedidoService.marcarProcesando(pedidoId);
+            if (pedidoService.procesarPedidoEnCola(pedidoId)) {
+                completados.incrementAndGet();
+            }
+        } catch (Exception e) {
+            fallidos.incrementAndGet();
+            log.warn("Checkout del pedido {} fallido: {}", pedidoId, e.getMessage());
+            try {
+                pedidoService.marcarFallido(pedidoId, e.getMessage());
+            } catch (Exception ex) {
+                log.error("No se pudo registrar el fallo del pedido {}", pedidoId, ex);
+            }
+        }
+    }
+
+    private void recuperarPendientes() {
+        try {
+            List<Long> pendientes = pedidoService.obtenerPedidosPendientesDeProcesar();
+            for (Long pedidoId : pendientes) {
+                // Espera cupo: la recuperación también respeta la capacidad de la cola
+                cupos.acquire();
+                cola.add(pedidoId);
+            }
+            if (!pendientes.isEmpty()) {
+                log.info("Reencolados {} pedidos pendientes de checkout", pendientes.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("No se pudieron recuperar los pedidos pendientes de checkout", e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.marketplace.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.marketplace.backend.repository.CarritoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cantidad de líneas del carrito por usuario para el contador de la barra de navegación.
+ * Se carga al primer pedido, vence tras un tiempo sin consultas y se descarta después del
+ * commit de cada cambio del carrito (la siguiente consulta la vuelve a contar), así nunca
+ * queda un valor anterior a un cambio ya confirmado.
+ * Con el carrito en memoria se cuenta ahí mismo, sin caché.
+ */
+@Component
+public class ContadorCarrito {
+
+    private final CarritoRepository carritoRepository;
+    private final CarritoEnMemoria carritoEnMemoria;
+    private final Cache<Long, Long> cantidades;
+
+    public ContadorCarrito(CarritoRepository carritoRepository,
+                           CarritoEnMemoria carritoEnMemoria,
+                           @Value("${carrito.contador.tamanio-maximo:100000}") long tamanioMaximo,
+                           @Value("${carrito.contador.inactividad-minutos:30}") long inactividadMinutos) {
+        this.carritoRepository = carritoRepository;
+        this.carritoEnMemoria = carritoEnMemoria;
+        this.cantidades = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterAccess(Duration.ofMinutes(inactividadMinutos))
+                .recordStats()
+                .build();
+    }
+
+    public long obtener(Long usuarioId) {
+        if (carritoEnMemoria.activo()) {
+            return carritoEnMemoria.contar(usuarioId);
+        }
+        return cantidades.get(usuarioId, carritoRepository::countByUsuarioId);
+    }
+
+    /**
+     * Descartar después del commit. Si una carga estaba en curso, Caffeine espera a que
+     * termine y también la descarta.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarCarrito(CarritoModificadoEvent evento) {
+        cantidades.invalidate(evento.usuarioId());
+    }
+
+    public Map<String, Object> estadisticas() {
+        CacheStats stats = cantidades.stats();
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("usuarios", cantidades.estimatedSize());
+        datos.put("aciertos", stats.hitCount());
+        datos.put("fallos", stats.missCount());
+        datos.put("tasaAciertos", stats.hitRate());
+        return datos;
+    }
+}
@@ -0,0 +1,104 @@
+package com.marketplace.backend.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Unidades disponibles de un producto repartidas en franjas independientes. Cada reserva
+ * descuenta con compare-and-set de una franja elegida al azar, así los hilos concurrentes
+ * casi nunca compiten por la misma celda. Nunca entrega más unidades que el total.
+ */
+final class ContadorRayado {
+
+    // Cada franja ocupa su propia línea de caché (8 longs = 64 bytes)
+    private static final int SEPARACION = 8;
+
+    private final AtomicLongArray celdas;
+    private final int franjas;
+
+    ContadorRayado(long unidades, int franjas) {
+        this.franjas = franjas;
+        this.celdas = new AtomicLongArray(franjas * SEPARACION);
+        for (int i = 0; i < franjas; i++) {
+            celdas.set(i * SEPARACION, unidades / franjas + (i == 0 ? unidades % franjas : 0));
+        }
+    }
+
+    /**
+     * Reservar las unidades si alcanzan. Primero busca una franja que las tenga; si ninguna
+     * alcanza sola las junta de varias y, si el total no llega, devuelve lo tomado.
+     */
+    boolean reservar(int cantidad) {
+        int inicio = ThreadLocalRandom.current().nextInt(franjas);
+        for (int i = 0; i < franjas; i++) {
+            int celda = ((inicio + i) % franjas) * SEPARACION;
+            long actual;
+            while ((actual = celdas.get(celda)) >= cantidad) {
+                if (celdas.compareAndSet(celda, actual, actual - cantidad)) {
+                    return true;
+                }
+            }
+        }
+
+        long[] tomado = new long[franjas];
+        long faltan = cantidad;
+        for (int i = 0; i < franjas && faltan > 0; i++) {
+            int franja = (inicio + i) % franjas;
+            int celda = franja * SEPARACION;
+            long actual;
+            while ((actual = celdas.get(celda)) > 0) {
+                long parte = Math.min(actual, faltan);
+                if (celdas.compareAndSet(celda, actual, actual - parte)) {
+                    tomado[franja] = parte;
+                    faltan -= parte;
+                    break;
+                }
+            }
+        }
+        if (faltan == 0) {
+            return true;
+        }
+        for (int franja = 0; franja < franjas; franja++) {
+            if (tomado[franja] > 0) {
+                celdas.addAndGet(franja * SEPARACION, tomado[franja]);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sumar unidades (devolución de una reserva o reposición)
+     */
+    void devolver(long cantidad) {
+        celdas.addAndGet(ThreadLocalRandom.current().nextInt(franjas) * SEPARACION, cantidad);
+    }
+
+    /**
+     * Quitar hasta esa cantidad de unidades (reducción de stock). Si hay menos, queda en cero.
+     */
+    void retirar(long cantidad) {
+        long faltan = cantidad;
+        for (int i = 0; i < franjas && faltan > 0; i++) {
+            int celda = i * SEPARACION;
+            long actual;
+            while ((actual = celdas.get(celda)) > 0) {
+                long parte = Math.min(actual, faltan);
+                if (celdas.compareAndSet(celda, actual, actual - parte)) {
+                    faltan -= parte;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Total disponible (aproximado si hay reservas en curso)
+     */
+    long disponible() {
+        long total = 0;
+        for (int i = 0; i < franjas; i++) {
+            total += celdas.get(i * SEPARACION);
+        }
+        return total;
+    }
+}
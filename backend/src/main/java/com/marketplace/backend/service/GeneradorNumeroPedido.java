@@ -0,0 +1,118 @@
+package com.marketplace.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Números de pedido únicos y ordenados por tiempo, sin consultar la base de datos.
+ * Cada número es un entero de 63 bits: 41 bits de milisegundos desde 2024-01-01,
+ * 10 bits de nodo y 12 bits de secuencia (4096 números por milisegundo y nodo),
+ * codificado en Base32 de Crockford con el prefijo PED- (p. ej. PED-0A8JG07Q00W00).
+ * Con varias instancias cada una necesita su NODO_ID: sin él solo se arranca (con el nodo 0)
+ * sin perfil activo o con un perfil de una sola instancia.
+ */
+@Component
+@Slf4j
+public class GeneradorNumeroPedido {
+
+    private static final long EPOCA = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+    private static final int BITS_NODO = 10;
+    private static final int BITS_SECUENCIA = 12;
+    private static final long MAX_NODO = (1L << BITS_NODO) - 1;
+    private static final long MAX_SECUENCIA = (1L << BITS_SECUENCIA) - 1;
+
+    private static final char[] ALFABETO = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int LONGITUD = 13; // ceil(63 / 5)
+
+    // Perfiles que corren una sola instancia y pueden usar el nodo 0 por defecto
+    private static final Set<String> PERFILES_UN_NODO = Set.of("local", "dev", "test");
+
+    private final long nodo;
+    private final LongSupplier reloj;
+
+    // Último milisegundo usado y su secuencia: (milisegundo << BITS_SECUENCIA) | secuencia
+    private final AtomicLong ultimo = new AtomicLong();
+
+    @Autowired
+    public GeneradorNumeroPedido(@Value("${pedidos.numero.nodo:}") String nodo, Environment entorno) {
+        this(resolverNodo(nodo, entorno.getActiveProfiles()), System::currentTimeMillis);
+    }
+
+    GeneradorNumeroPedido(long nodo, LongSupplier reloj) {
+        if (nodo < 0 || nodo > MAX_NODO) {
+            throw new IllegalArgumentException("pedidos.numero.nodo debe estar entre 0 y " + MAX_NODO);
+        }
+        this.nodo = nodo;
+        this.reloj = reloj;
+        log.info("Generador de números de pedido en el nodo {}", nodo);
+    }
+
+    /**
+     * Nodo configurado, o 0 si no hay NODO_ID y la aplicación corre sin perfil o con uno de
+     * una sola instancia. Con otro perfil se falla: dos instancias en el mismo nodo generarían
+     * números repetidos en el mismo milisegundo.
+     */
+    static long resolverNodo(String nodo, String[] perfiles) {
+        if (nodo != null && !nodo.isBlank()) {
+            return Long.parseLong(nodo.trim());
+        }
+        if (perfiles.length > 0 && Arrays.stream(perfiles).noneMatch(PERFILES_UN_NODO::contains)) {
+            throw new IllegalStateException("Falta NODO_ID (pedidos.numero.nodo) con los perfiles "
+                    + String.join(",", perfiles) + ": cada instancia necesita un nodo distinto");
+        }
+        log.warn("NODO_ID no está definido: se usa el nodo 0, válido solo con una instancia");
+        return 0;
+    }
+
+    public String generar() {
+        return "PED-" + codificar(siguienteId());
+    }
+
+    /**
+     * Siguiente id del nodo, estrictamente creciente. Si se agota la secuencia de un
+     * milisegundo (o el reloj retrocede) se toma el milisegundo siguiente en lugar de esperar.
+     */
+    long siguienteId() {
+        long ahora = reloj.getAsLong() - EPOCA;
+        while (true) {
+            long actual = ultimo.get();
+            long milisegundo = actual >>> BITS_SECUENCIA;
+            long siguiente;
+            if (ahora > milisegundo) {
+                siguiente = ahora << BITS_SECUENCIA;
+            } else if ((actual & MAX_SECUENCIA) < MAX_SECUENCIA) {
+                siguiente = actual + 1;
+            } else {
+                siguiente = (milisegundo + 1) << BITS_SECUENCIA;
+            }
+            if (ultimo.compareAndSet(actual, siguiente)) {
+                long secuencia = siguiente & MAX_SECUENCIA;
+                return ((siguiente >>> BITS_SECUENCIA) << (BITS_NODO + BITS_SECUENCIA))
+                        | (nodo << BITS_SECUENCIA)
+                        | secuencia;
+            }
+        }
+    }
+
+    /**
+     * Base32 de Crockford con longitud fija, para que el orden alfabético sea el cronológico
+     */
+    static String codificar(long id) {
+        char[] caracteres = new char[LONGITUD];
+        for (int i = LONGITUD - 1; i >= 0; i--) {
+            caracteres[i] = ALFABETO[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(caracteres);
+    }
+}
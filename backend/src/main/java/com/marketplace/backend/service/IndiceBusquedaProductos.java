@@ -0,0 +1,311 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.dto.ProductoDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice invertido en memoria para la búsqueda de productos disponibles.
+ * Indexa nombre, descripción, categoría, subcategoría y proveedor con análisis en español
+ * y ordena los resultados con BM25. Las búsquedas nunca consultan la base de datos.
+ */
+@Component
+public class IndiceBusquedaProductos extends IndiceCatalogo {
+
+    // Parámetros de BM25
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    // Peso de cada campo en la frecuencia del término
+    private static final float PESO_NOMBRE = 3.0f;
+    private static final float PESO_CATEGORIA = 1.5f;
+    private static final float PESO_PROVEEDOR = 1.0f;
+    private static final float PESO_DESCRIPCION = 1.0f;
+
+    public static final int LIMITE_MAXIMO = 50;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Término -> documentos que lo contienen
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    // Documentos por id interno (los huecos se reutilizan)
+    private final List<Documento> documentos = new ArrayList<>();
+    private float[] longitudes = new float[1024];
+    private final Map<Long, Integer> docPorProducto = new HashMap<>();
+    private final Deque<Integer> docsLibres = new ArrayDeque<>();
+    private double longitudTotal;
+
+    public IndiceBusquedaProductos(ProductoService productoService) {
+        super(productoService);
+    }
+
+    /**
+     * Resultado de una búsqueda: productos ordenados por relevancia y total de coincidencias
+     */
+    public record ResultadoBusqueda(List<ProductoDTO> productos, int total) {
+    }
+
+    // ========== BÚSQUEDA ==========
+
+    /**
+     * Buscar productos por texto libre ordenados por relevancia (BM25)
+     */
+    public ResultadoBusqueda buscar(String consulta, int limite) {
+        List<String> terminos = AnalizadorEspanol.analizar(consulta).stream().distinct().toList();
+        int k = Math.max(1, Math.min(limite, LIMITE_MAXIMO));
+
+        lock.readLock().lock();
+        try {
+            int totalDocs = docPorProducto.size();
+            if (terminos.isEmpty() || totalDocs == 0) {
+                return new ResultadoBusqueda(List.of(), 0);
+            }
+
+            float longitudPromedio = (float) (longitudTotal / totalDocs);
+            Puntajes puntajes = new Puntajes();
+
+            for (String termino : terminos) {
+                Postings lista = postings.get(termino);
+                if (lista == null) {
+                    continue;
+                }
+                float idf = (float) Math.log(1 + (totalDocs - lista.size + 0.5) / (lista.size + 0.5));
+                for (int i = 0; i < lista.size; i++) {
+                    int doc = lista.docs[i];
+                    float tf = lista.frecuencias[i];
+                    float normalizacion = K1 * (1 - B + B * longitudes[doc] / longitudPromedio);
+                    puntajes.sumar(doc, idf * tf * (K1 + 1) / (tf + normalizacion));
+                }
+            }
+
+            // Top-k con un montículo de mínimos
+            PriorityQueue<long[]> mejores = new PriorityQueue<>(k + 1,
+                    Comparator.comparingDouble((long[] e) -> Float.intBitsToFloat((int) e[1])));
+            puntajes.recorrer((doc, puntaje) -> {
+                if (mejores.size() < k) {
+                    mejores.add(new long[]{doc, Float.floatToIntBits(puntaje)});
+                } else if (puntaje > Float.intBitsToFloat((int) mejores.peek()[1])) {
+                    mejores.poll();
+                    mejores.add(new long[]{doc, Float.floatToIntBits(puntaje)});
+                }
+            });
+
+            LinkedList<ProductoDTO> productos = new LinkedList<>();
+            while (!mejores.isEmpty()) {
+                productos.addFirst(documentos.get((int) mejores.poll()[0]).producto());
+            }
+            return new ResultadoBusqueda(new ArrayList<>(productos), puntajes.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Métricas del índice para el panel administrativo
+     */
+    public Map<String, Object> estadisticas() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("listo", estaListo());
+            datos.put("productos", docPorProducto.size());
+            datos.put("terminos", postings.size());
+            return datos;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========== ACTUALIZACIÓN ==========
+
+    @Override
+    protected String nombreIndice() {
+        return "indice-busqueda";
+    }
+
+    @Override
+    protected void escribir(List<ProductoDTO> productos, List<Long> eliminados) {
+        lock.writeLock().lock();
+        try {
+            eliminados.forEach(this::quitar);
+            productos.forEach(this::indexar);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void indexar(ProductoDTO producto) {
+        quitar(producto.getId());
+        if (!Boolean.TRUE.equals(producto.getDisponible())) {
+            return;
+        }
+
+        Map<String, Float> frecuencias = new HashMap<>();
+        float longitud = 0;
+        longitud += agregarCampo(frecuencias, producto.getNombre(), PESO_NOMBRE);
+        longitud += agregarCampo(frecuencias, producto.getCategoriaNombre(), PESO_CATEGORIA);
+        longitud += agregarCampo(frecuencias, producto.getSubcategoriaNombre(), PESO_CATEGORIA);
+        longitud += agregarCampo(frecuencias, producto.getNombreEmpresa(), PESO_PROVEEDOR);
+        longitud += agregarCampo(frecuencias, producto.getDescripcion(), PESO_DESCRIPCION);
+
+        int doc = docsLibres.isEmpty() ? documentos.size() : docsLibres.pop();
+        if (doc == documentos.size()) {
+            documentos.add(null);
+        }
+        if (doc >= longitudes.length) {
+            longitudes = Arrays.copyOf(longitudes, longitudes.length * 2);
+        }
+
+        String[] terminos = frecuencias.keySet().toArray(new String[0]);
+        int[] posiciones = new int[terminos.length];
+        for (int j = 0; j < terminos.length; j++) {
+            posiciones[j] = postings.computeIfAbsent(terminos[j], t -> new Postings())
+                    .agregar(doc, frecuencias.get(terminos[j]), j);
+        }
+        documentos.set(doc, new Documento(producto, terminos, posiciones));
+        longitudes[doc] = longitud;
+        longitudTotal += longitud;
+        docPorProducto.put(producto.getId(), doc);
+    }
+
+    private void quitar(Long productoId) {
+        Integer doc = docPorProducto.remove(productoId);
+        if (doc == null) {
+            return;
+        }
+        Documento documento = documentos.get(doc);
+        for (int j = 0; j < documento.terminos().length; j++) {
+            Postings lista = postings.get(documento.terminos()[j]);
+            int posicion = documento.posiciones()[j];
+            lista.quitar(posicion);
+            if (posicion < lista.size) {
+                // La última entrada pasó a ocupar el hueco: su documento anota la nueva posición
+                documentos.get(lista.docs[posicion]).posiciones()[lista.ranuras[posicion]] = posicion;
+            }
+            if (lista.size == 0) {
+                postings.remove(documento.terminos()[j]);
+            }
+        }
+        longitudTotal -= longitudes[doc];
+        longitudes[doc] = 0;
+        documentos.set(doc, null);
+        docsLibres.push(doc);
+    }
+
+    private float agregarCampo(Map<String, Float> frecuencias, String texto, float peso) {
+        List<String> terminos = AnalizadorEspanol.analizar(texto);
+        for (String termino : terminos) {
+            frecuencias.merge(termino, peso, Float::sum);
+        }
+        return terminos.size() * peso;
+    }
+
+    // ========== ESTRUCTURAS INTERNAS ==========
+
+    /**
+     * Documento indexado; posiciones[j] es su lugar en los postings de terminos[j]
+     */
+    private record Documento(ProductoDTO producto, String[] terminos, int[] posiciones) {
+    }
+
+    /**
+     * Lista de documentos de un término con su frecuencia ponderada (arreglos primitivos).
+     * ranuras[i] es el índice del término en Documento.terminos, para que quitar una entrada
+     * sea O(1) sin recorrer la lista.
+     */
+    private static final class Postings {
+        int[] docs = new int[4];
+        float[] frecuencias = new float[4];
+        int[] ranuras = new int[4];
+        int size;
+
+        /**
+         * Agrega la entrada al final y devuelve su posición
+         */
+        int agregar(int doc, float frecuencia, int ranura) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frecuencias = Arrays.copyOf(frecuencias, size * 2);
+                ranuras = Arrays.copyOf(ranuras, size * 2);
+            }
+            docs[size] = doc;
+            frecuencias[size] = frecuencia;
+            ranuras[size] = ranura;
+            return size++;
+        }
+
+        /**
+         * Quita la entrada de esa posición moviendo la última a su lugar
+         */
+        void quitar(int posicion) {
+            size--;
+            docs[posicion] = docs[size];
+            frecuencias[posicion] = frecuencias[size];
+            ranuras[posicion] = ranuras[size];
+        }
+    }
+
+    /**
+     * Acumulador de puntajes por documento (tabla hash de direccionamiento abierto)
+     */
+    private static final class Puntajes {
+        private int[] claves = new int[64]; // doc + 1; 0 = vacío
+        private float[] valores = new float[64];
+        private int size;
+
+        void sumar(int doc, float puntaje) {
+            if ((size + 1) * 2 > claves.length) {
+                crecer();
+            }
+            int i = posicion(doc + 1, claves);
+            if (claves[i] == 0) {
+                claves[i] = doc + 1;
+                size++;
+            }
+            valores[i] += puntaje;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void recorrer(Visitante visitante) {
+            for (int i = 0; i < claves.length; i++) {
+                if (claves[i] != 0) {
+                    visitante.visitar(claves[i] - 1, valores[i]);
+                }
+            }
+        }
+
+        private void crecer() {
+            int[] clavesViejas = claves;
+            float[] valoresViejos = valores;
+            claves = new int[clavesViejas.length * 2];
+            valores = new float[clavesViejas.length * 2];
+            for (int i = 0; i < clavesViejas.length; i++) {
+                if (clavesViejas[i] != 0) {
+                    int j = posicion(clavesViejas[i], claves);
+                    claves[j] = clavesViejas[i];
+                    valores[j] = valoresViejos[i];
+                }
+            }
+        }
+
+        private static int posicion(int clave, int[] tabla) {
+            int mascara = tabla.length - 1;
+            int i = (clave * 0x9E3779B9) & mascara;
+            while (tabla[i] != 0 && tabla[i] != clave) {
+                i = (i + 1) & mascara;
+            }
+            return i;
+        }
+
+        @FunctionalInterface
+        interface Visitante {
+            void visitar(int doc, float puntaje);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.dto.ProductoDTO;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Base de los índices en memoria derivados del catálogo.
+ * Se encarga de la carga inicial por lotes y de aplicar los cambios del catálogo
+ * después de cada commit; cada índice solo decide cómo escribir los productos.
+ * Los cambios se aplican en un hilo propio del índice: el hilo que hizo el commit
+ * (por ejemplo un checkout) todavía tiene su conexión y no debe pedir otra.
+ */
+@Slf4j
+public abstract class IndiceCatalogo {
+
+    private static final int TAMANIO_LOTE = 1000;
+
+    protected final ProductoService productoService;
+
+    private volatile boolean listo;
+    private volatile boolean construyendo;
+
+    // Productos modificados mientras se construye el índice; se recargan al terminar
+    private final Set<Long> pendientes = ConcurrentHashMap.newKeySet();
+
+    // Productos por recargar tras un commit; varios eventos seguidos se aplican en una sola carga
+    private final Set<Long> porActualizar = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean actualizacionProgramada = new AtomicBoolean();
+    private final ExecutorService actualizador = Executors.newSingleThreadExecutor(Thread.ofVirtual().factory());
+
+    protected IndiceCatalogo(ProductoService productoService) {
+        this.productoService = productoService;
+    }
+
+    /**
+     * Reemplazar o quitar productos del índice (los no disponibles también se quitan)
+     */
+    protected abstract void escribir(List<ProductoDTO> productos, List<Long> eliminados);
+
+    protected abstract String nombreIndice();
+
+    public boolean estaListo() {
+        return listo;
+    }
+
+    /**
+     * Construir el índice en segundo plano al iniciar la aplicación
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void construirAlIniciar() {
+        Thread.ofVirtual().name(nombreIndice()).start(this::reconstruir);
+    }
+
+    /**
+     * Cargar todos los productos disponibles por lotes ordenados por id
+     */
+    public void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        construyendo = true;
+        pendientes.clear();
+        try {
+            long ultimoId = 0;
+            int total = 0;
+            List<ProductoDTO> lote;
+            do {
+                lote = productoService.obtenerLoteDisponibles(ultimoId, TAMANIO_LOTE);
+                escribir(lote, List.of());
+                if (!lote.isEmpty()) {
+                    ultimoId = lote.get(lote.size() - 1).getId();
+                    total += lote.size();
+                }
+            } while (lote.size() == TAMANIO_LOTE);
+
+            construyendo = false;
+            actualizar(new ArrayList<>(pendientes));
+            pendientes.clear();
+            listo = true;
+            log.info("Índice {} construido: {} productos en {} ms",
+                    nombreIndice(), total, System.currentTimeMillis() - inicio);
+        } catch (Exception e) {
+            construyendo = false;
+            log.error("Error al construir el índice {}: {}", nombreIndice(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Mantener el índice al día después del commit de cada cambio del catálogo.
+     * El stock no se indexa, así que los avisos del checkout (solo stock) se ignoran.
+     */
+    @TransactionalEventListener
+    public void alModificarCatalogo(CatalogoModificadoEvent evento) {
+        if (evento.soloStock()) {
+            return;
+        }
+        if (construyendo) {
+            pendientes.addAll(evento.productoIds());
+        }
+        porActualizar.addAll(evento.productoIds());
+        if (actualizacionProgramada.compareAndSet(false, true)) {
+            enSegundoPlano(this::actualizarPendientes);
+        }
+    }
+
+    /**
+     * Ejecutar un cambio del índice en su hilo, en el orden en que llegan
+     */
+    protected void enSegundoPlano(Runnable tarea) {
+        actualizador.execute(() -> {
+            try {
+                tarea.run();
+            } catch (Exception e) {
+                log.error("Error al actualizar el índice {}: {}", nombreIndice(), e.getMessage(), e);
+            }
+        });
+    }
+
+    private void actualizarPendientes() {
+        actualizacionProgramada.set(false);
+        List<Long> productoIds = new ArrayList<>(porActualizar);
+        porActualizar.removeAll(productoIds);
+        actualizar(productoIds);
+    }
+
+    @PreDestroy
+    public void detener() {
+        actualizador.shutdownNow();
+    }
+
+    /**
+     * Recargar productos desde la base de datos: los que ya no existen se quitan del índice
+     */
+    public void actualizar(List<Long> productoIds) {
+        if (productoIds.isEmpty()) {
+            return;
+        }
+        List<ProductoDTO> productos = productoService.obtenerProductosPorIds(productoIds);
+        Set<Long> encontrados = productos.stream().map(ProductoDTO::getId).collect(Collectors.toSet());
+        List<Long> eliminados = productoIds.stream().filter(id -> !encontrados.contains(id)).toList();
+        escribir(productos, eliminados);
+    }
+}
@@ -0,0 +1,276 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.dto.*;
+import com.marketplace.backend.dto.FiltroFacetasDTO.BandaPrecio;
+import com.marketplace.backend.util.CursorUtil;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Índice de facetas del catálogo con bitmaps comprimidos (Roaring).
+ * Cada valor de faceta guarda el conjunto de ids de productos disponibles, de modo que
+ * cualquier combinación de filtros y los conteos por faceta se resuelven con operaciones
+ * de bitmaps en memoria, sin GROUP BY sobre la base de datos.
+ */
+@Component
+public class IndiceFacetas extends IndiceCatalogo {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final RoaringBitmap disponibles = new RoaringBitmap();
+    private final Faceta<Long> categorias = new Faceta<>(String::valueOf);
+    private final Faceta<Long> subcategorias = new Faceta<>(String::valueOf);
+    private final Faceta<Long> proveedores = new Faceta<>(String::valueOf);
+    private final Faceta<String> unidades = new Faceta<>(Function.identity());
+    private final Faceta<BandaPrecio> bandas = new Faceta<>(Enum::name);
+
+    // Valores indexados de cada producto, para poder quitarlo sin consultar la base de datos
+    private final Map<Integer, ValoresProducto> valoresPorProducto = new HashMap<>();
+
+    public IndiceFacetas(ProductoService productoService) {
+        super(productoService);
+    }
+
+    // ========== CONSULTA ==========
+
+    /**
+     * Filtrar el catálogo por facetas: devuelve una página de productos (más recientes primero)
+     * y los conteos de cada faceta. Los conteos de una faceta ignoran su propio filtro para
+     * que el comprador vea cuántos productos obtendría al sumar otro valor.
+     */
+    public ResultadoFacetasDTO filtrar(FiltroFacetasDTO filtro) {
+        int limite = Math.max(1, Math.min(filtro.getLimite(), FiltroCatalogoDTO.LIMITE_MAXIMO));
+        long antesDeId = filtro.getCursor() != null
+                ? Long.parseLong(CursorUtil.decodificar(filtro.getCursor(), 1)[0])
+                : Integer.MAX_VALUE + 1L;
+        List<String> unidadesSeleccionadas = filtro.getUnidadesMedida().stream()
+                .map(IndiceFacetas::normalizarUnidad).toList();
+
+        List<Long> idsPagina = new ArrayList<>();
+        long total;
+        Map<String, List<ConteoFacetaDTO>> facetas = new LinkedHashMap<>();
+
+        lock.readLock().lock();
+        try {
+            RoaringBitmap[] selecciones = {
+                    categorias.seleccion(filtro.getCategoriaIds()),
+                    subcategorias.seleccion(filtro.getSubcategoriaIds()),
+                    proveedores.seleccion(filtro.getProveedorIds()),
+                    unidades.seleccion(unidadesSeleccionadas),
+                    bandas.seleccion(filtro.getBandasPrecio())
+            };
+
+            facetas.put("categoria", categorias.conteos(excepto(selecciones, 0), filtro.getCategoriaIds()));
+            facetas.put("subcategoria", subcategorias.conteos(excepto(selecciones, 1), filtro.getSubcategoriaIds()));
+            facetas.put("proveedor", proveedores.conteos(excepto(selecciones, 2), filtro.getProveedorIds()));
+            facetas.put("unidadMedida", unidades.conteos(excepto(selecciones, 3), unidadesSeleccionadas));
+            facetas.put("precio", bandas.conteos(excepto(selecciones, 4), filtro.getBandasPrecio()));
+
+            RoaringBitmap resultado = excepto(selecciones, -1);
+            total = resultado.getLongCardinality();
+
+            // Página por cursor: ids menores al último entregado, de mayor a menor
+            resultado.remove(antesDeId, 1L << 32);
+            IntIterator iterador = resultado.getReverseIntIterator();
+            while (iterador.hasNext() && idsPagina.size() <= limite) {
+                idsPagina.add((long) iterador.next());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        boolean hayMas = idsPagina.size() > limite;
+        if (hayMas) {
+            idsPagina = idsPagina.subList(0, limite);
+        }
+        String siguienteCursor = hayMas ? CursorUtil.codificar(idsPagina.get(idsPagina.size() - 1)) : null;
+
+        return new ResultadoFacetasDTO(
+                new PaginaDTO<>(cargarEnOrden(idsPagina), siguienteCursor, hayMas), total, facetas);
+    }
+
+    /**
+     * Métricas del índice para el panel administrativo
+     */
+    public Map<String, Object> estadisticas() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("listo", estaListo());
+            datos.put("productos", disponibles.getCardinality());
+            datos.put("valoresFaceta", categorias.bitmaps.size() + subcategorias.bitmaps.size()
+                    + proveedores.bitmaps.size() + unidades.bitmaps.size() + bandas.bitmaps.size());
+            datos.put("bytes", disponibles.getSizeInBytes() + categorias.bytes() + subcategorias.bytes()
+                    + proveedores.bytes() + unidades.bytes() + bandas.bytes());
+            return datos;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Intersección de los productos disponibles con todas las selecciones salvo la indicada
+     */
+    private RoaringBitmap excepto(RoaringBitmap[] selecciones, int omitida) {
+        RoaringBitmap base = disponibles.clone();
+        for (int i = 0; i < selecciones.length; i++) {
+            if (i != omitida && selecciones[i] != null) {
+                base.and(selecciones[i]);
+            }
+        }
+        return base;
+    }
+
+    /**
+     * Cargar los productos de la página conservando el orden del índice
+     */
+    private List<ProductoDTO> cargarEnOrden(List<Long> ids) {
+        Map<Long, ProductoDTO> porId = new HashMap<>();
+        productoService.obtenerProductosPorIds(ids).forEach(p -> porId.put(p.getId(), p));
+        return ids.stream().map(porId::get).filter(Objects::nonNull).toList();
+    }
+
+    // ========== ACTUALIZACIÓN ==========
+
+    @Override
+    protected String nombreIndice() {
+        return "indice-facetas";
+    }
+
+    @Override
+    protected void escribir(List<ProductoDTO> productos, List<Long> eliminados) {
+        lock.writeLock().lock();
+        try {
+            eliminados.forEach(id -> quitar(Math.toIntExact(id)));
+            productos.forEach(this::indexar);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void indexar(ProductoDTO producto) {
+        int id = Math.toIntExact(producto.getId());
+        quitar(id);
+        if (!Boolean.TRUE.equals(producto.getDisponible())) {
+            return;
+        }
+
+        ValoresProducto valores = new ValoresProducto(
+                producto.getCategoriaId(),
+                producto.getSubcategoriaId(),
+                producto.getProveedorId(),
+                normalizarUnidad(producto.getUnidadMedida()),
+                BandaPrecio.de(producto.getPrecioUnitario()));
+
+        disponibles.add(id);
+        categorias.agregar(valores.categoriaId(), id, producto.getCategoriaNombre());
+        subcategorias.agregar(valores.subcategoriaId(), id, producto.getSubcategoriaNombre());
+        proveedores.agregar(valores.proveedorId(), id, producto.getNombreEmpresa());
+        unidades.agregar(valores.unidad(), id, valores.unidad());
+        bandas.agregar(valores.banda(), id, valores.banda().getEtiqueta());
+        valoresPorProducto.put(id, valores);
+    }
+
+    private void quitar(int id) {
+        ValoresProducto valores = valoresPorProducto.remove(id);
+        if (valores == null) {
+            return;
+        }
+        disponibles.remove(id);
+        categorias.quitar(valores.categoriaId(), id);
+        subcategorias.quitar(valores.subcategoriaId(), id);
+        proveedores.quitar(valores.proveedorId(), id);
+        unidades.quitar(valores.unidad(), id);
+        bandas.quitar(valores.banda(), id);
+    }
+
+    private static String normalizarUnidad(String unidad) {
+        return unidad == null ? null : unidad.trim().toLowerCase();
+    }
+
+    // ========== ESTRUCTURAS INTERNAS ==========
+
+    private record ValoresProducto(Long categoriaId, Long subcategoriaId, Long proveedorId,
+                                   String unidad, BandaPrecio banda) {
+    }
+
+    /**
+     * Bitmaps de una faceta: un conjunto de ids de producto por cada valor
+     */
+    private static final class Faceta<K> {
+        private final Map<K, RoaringBitmap> bitmaps = new HashMap<>();
+        private final Map<K, String> etiquetas = new HashMap<>();
+        private final Function<K, String> aTexto;
+
+        Faceta(Function<K, String> aTexto) {
+            this.aTexto = aTexto;
+        }
+
+        void agregar(K valor, int id, String etiqueta) {
+            if (valor == null) {
+                return;
+            }
+            bitmaps.computeIfAbsent(valor, v -> new RoaringBitmap()).add(id);
+            if (etiqueta != null) {
+                etiquetas.put(valor, etiqueta);
+            }
+        }
+
+        void quitar(K valor, int id) {
+            if (valor == null) {
+                return;
+            }
+            RoaringBitmap bitmap = bitmaps.get(valor);
+            if (bitmap != null) {
+                bitmap.remove(id);
+                if (bitmap.isEmpty()) {
+                    bitmaps.remove(valor);
+                    etiquetas.remove(valor);
+                }
+            }
+        }
+
+        /**
+         * Unión de los valores seleccionados; null cuando la faceta no filtra
+         */
+        RoaringBitmap seleccion(List<K> valores) {
+            if (valores.isEmpty()) {
+                return null;
+            }
+            RoaringBitmap union = new RoaringBitmap();
+            for (K valor : valores) {
+                RoaringBitmap bitmap = bitmaps.get(valor);
+                if (bitmap != null) {
+                    union.or(bitmap);
+                }
+            }
+            return union;
+        }
+
+        /**
+         * Cantidad de productos de cada valor dentro de la base, de mayor a menor
+         */
+        List<ConteoFacetaDTO> conteos(RoaringBitmap base, List<K> seleccionados) {
+            List<ConteoFacetaDTO> conteos = new ArrayList<>();
+            for (Map.Entry<K, RoaringBitmap> entrada : bitmaps.entrySet()) {
+                long cantidad = RoaringBitmap.andCardinality(base, entrada.getValue());
+                boolean seleccionado = seleccionados.contains(entrada.getKey());
+                if (cantidad > 0 || seleccionado) {
+                    conteos.add(new ConteoFacetaDTO(aTexto.apply(entrada.getKey()),
+                            etiquetas.get(entrada.getKey()), cantidad, seleccionado));
+                }
+            }
+            conteos.sort(Comparator.comparingLong(ConteoFacetaDTO::getCantidad).reversed());
+            return conteos;
+        }
+
+        long bytes() {
+            return bitmaps.values().stream().mapToLong(RoaringBitmap::getLongSizeInBytes).sum();
+        }
+    }
+}
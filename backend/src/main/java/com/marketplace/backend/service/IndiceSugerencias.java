@@ -0,0 +1,453 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.dto.ProductoDTO;
+import com.marketplace.backend.dto.SugerenciaDTO;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Autocompletado del buscador sobre nombres de productos, categorías y subcategorías.
+ * Es un trie de caracteres normalizados donde cada nodo guarda sus mejores sugerencias
+ * ordenadas por unidades vendidas, así que responder un prefijo es recorrer el trie
+ * y copiar una lista ya calculada. Las unidades vendidas se leen al cargar cada producto
+ * y después se suman con las de cada checkout, sin volver a consultar el historial.
+ */
+@Component
+public class IndiceSugerencias extends IndiceCatalogo {
+
+    public static final int LIMITE_MAXIMO = 10;
+
+    // Se indexa desde el inicio de las primeras palabras ("integral" sugiere "Arroz integral");
+    // las claves se cortan porque casi nadie escribe más antes de elegir una sugerencia
+    private static final int MAX_INICIOS_POR_TEXTO = 3;
+    private static final int LARGO_MAXIMO_CLAVE = 24;
+
+    private static final Entrada[] SIN_ENTRADAS = new Entrada[0];
+    private static final char[] SIN_LETRAS = new char[0];
+    private static final Nodo[] SIN_HIJOS = new Nodo[0];
+
+    private static final Comparator<Entrada> POR_RELEVANCIA = Comparator
+            .comparingLong((Entrada e) -> e.peso).reversed()
+            .thenComparingInt(e -> e.texto.length())
+            .thenComparing(e -> e.texto)
+            .thenComparing(e -> e.tipo)
+            .thenComparingLong(e -> e.id);
+
+    public enum TipoSugerencia {
+        CATEGORIA, SUBCATEGORIA, PRODUCTO
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Nodo raiz = new Nodo();
+
+    private final Map<Long, Entrada> productos = new HashMap<>();
+    private final Map<Long, Entrada> categorias = new HashMap<>();
+    private final Map<Long, Entrada> subcategorias = new HashMap<>();
+
+    public IndiceSugerencias(ProductoService productoService) {
+        super(productoService);
+    }
+
+    // ========== CONSULTA ==========
+
+    /**
+     * Sugerencias para lo que el usuario lleva escrito, las más vendidas primero
+     */
+    public List<SugerenciaDTO> sugerir(String prefijo, int limite) {
+        String clave = normalizar(prefijo);
+        if (clave.isEmpty()) {
+            return List.of();
+        }
+        if (clave.length() > LARGO_MAXIMO_CLAVE) {
+            clave = clave.substring(0, LARGO_MAXIMO_CLAVE);
+        }
+        int k = Math.max(1, Math.min(limite, LIMITE_MAXIMO));
+
+        lock.readLock().lock();
+        try {
+            Nodo nodo = raiz;
+            for (int i = 0; i < clave.length() && nodo != null; i++) {
+                nodo = nodo.hijo(clave.charAt(i));
+            }
+            if (nodo == null) {
+                return List.of();
+            }
+            List<SugerenciaDTO> sugerencias = new ArrayList<>(k);
+            for (int i = 0; i < Math.min(k, nodo.cantidadMejores); i++) {
+                Entrada entrada = nodo.mejores[i];
+                sugerencias.add(new SugerenciaDTO(entrada.texto, entrada.tipo.name(), entrada.id));
+            }
+            return sugerencias;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Métricas del índice para el panel administrativo
+     */
+    public Map<String, Object> estadisticas() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("listo", estaListo());
+            datos.put("productos", productos.size());
+            datos.put("categorias", categorias.size());
+            datos.put("subcategorias", subcategorias.size());
+            return datos;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========== ACTUALIZACIÓN ==========
+
+    @Override
+    protected String nombreIndice() {
+        return "indice-sugerencias";
+    }
+
+    /**
+     * Sumar al peso de cada producto las unidades que se acaban de vender
+     */
+    @TransactionalEventListener
+    public void alVender(ProductosVendidosEvent evento) {
+        enSegundoPlano(() -> sumarVentas(evento.unidades()));
+    }
+
+    private void sumarVentas(Map<Long, Long> unidades) {
+        lock.writeLock().lock();
+        try {
+            Agregados cambiosCategoria = new Agregados();
+            Agregados cambiosSubcategoria = new Agregados();
+            unidades.forEach((productoId, vendidas) -> {
+                Entrada actual = productos.get(productoId);
+                if (actual == null) {
+                    return;
+                }
+                quitarProducto(productoId, cambiosCategoria, cambiosSubcategoria);
+                Entrada nueva = new Entrada(TipoSugerencia.PRODUCTO, productoId, actual.texto, actual.peso + vendidas);
+                nueva.categoriaId = actual.categoriaId;
+                nueva.subcategoriaId = actual.subcategoriaId;
+                agregarEntrada(nueva, null, null, cambiosCategoria, cambiosSubcategoria);
+            });
+            aplicar(cambiosCategoria, categorias, TipoSugerencia.CATEGORIA);
+            aplicar(cambiosSubcategoria, subcategorias, TipoSugerencia.SUBCATEGORIA);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void escribir(List<ProductoDTO> lote, List<Long> eliminados) {
+        // Los productos ya indexados conservan su peso; solo se consulta el de los nuevos
+        Map<Long, Long> ventas = new HashMap<>();
+        List<Long> nuevos = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (ProductoDTO producto : lote) {
+                Entrada actual = productos.get(producto.getId());
+                if (actual != null) {
+                    ventas.put(producto.getId(), actual.peso);
+                } else {
+                    nuevos.add(producto.getId());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        ventas.putAll(productoService.obtenerUnidadesVendidas(nuevos));
+
+        lock.writeLock().lock();
+        try {
+            // Los pesos de categorías y subcategorías se acumulan y se aplican una vez por lote
+            Agregados cambiosCategoria = new Agregados();
+            Agregados cambiosSubcategoria = new Agregados();
+
+            eliminados.forEach(id -> quitarProducto(id, cambiosCategoria, cambiosSubcategoria));
+            for (ProductoDTO producto : lote) {
+                quitarProducto(producto.getId(), cambiosCategoria, cambiosSubcategoria);
+                if (Boolean.TRUE.equals(producto.getDisponible())) {
+                    agregarProducto(producto, ventas.getOrDefault(producto.getId(), 0L),
+                            cambiosCategoria, cambiosSubcategoria);
+                }
+            }
+
+            aplicar(cambiosCategoria, categorias, TipoSugerencia.CATEGORIA);
+            aplicar(cambiosSubcategoria, subcategorias, TipoSugerencia.SUBCATEGORIA);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void agregarProducto(ProductoDTO producto, long unidadesVendidas,
+                                 Agregados cambiosCategoria, Agregados cambiosSubcategoria) {
+        Entrada entrada = new Entrada(TipoSugerencia.PRODUCTO, producto.getId(), producto.getNombre(), unidadesVendidas);
+        entrada.categoriaId = producto.getCategoriaId();
+        entrada.subcategoriaId = producto.getSubcategoriaId();
+        agregarEntrada(entrada, producto.getCategoriaNombre(), producto.getSubcategoriaNombre(),
+                cambiosCategoria, cambiosSubcategoria);
+    }
+
+    private void agregarEntrada(Entrada entrada, String categoriaNombre, String subcategoriaNombre,
+                                Agregados cambiosCategoria, Agregados cambiosSubcategoria) {
+        insertar(entrada);
+        productos.put(entrada.id, entrada);
+
+        cambiosCategoria.sumar(entrada.categoriaId, categoriaNombre, entrada.peso, 1);
+        cambiosSubcategoria.sumar(entrada.subcategoriaId, subcategoriaNombre, entrada.peso, 1);
+    }
+
+    private void quitarProducto(Long productoId, Agregados cambiosCategoria, Agregados cambiosSubcategoria) {
+        Entrada entrada = productos.remove(productoId);
+        if (entrada == null) {
+            return;
+        }
+        eliminar(entrada);
+        cambiosCategoria.sumar(entrada.categoriaId, null, -entrada.peso, -1);
+        cambiosSubcategoria.sumar(entrada.subcategoriaId, null, -entrada.peso, -1);
+    }
+
+    /**
+     * Reemplazar las entradas de categorías o subcategorías cuyo peso cambió
+     */
+    private void aplicar(Agregados cambios, Map<Long, Entrada> entradas, TipoSugerencia tipo) {
+        for (Map.Entry<Long, long[]> cambio : cambios.deltas.entrySet()) {
+            Long id = cambio.getKey();
+            Entrada actual = entradas.remove(id);
+            long peso = cambio.getValue()[0];
+            long cantidadProductos = cambio.getValue()[1];
+            String nombre = cambios.nombres.get(id);
+            if (actual != null) {
+                eliminar(actual);
+                peso += actual.peso;
+                cantidadProductos += actual.cantidadProductos;
+                nombre = nombre != null ? nombre : actual.texto;
+            }
+            // Solo se sugieren categorías con productos disponibles
+            if (cantidadProductos <= 0 || nombre == null) {
+                continue;
+            }
+            Entrada nueva = new Entrada(tipo, id, nombre, peso);
+            nueva.cantidadProductos = cantidadProductos;
+            insertar(nueva);
+            entradas.put(id, nueva);
+        }
+    }
+
+    // ========== TRIE ==========
+
+    private void insertar(Entrada entrada) {
+        for (String clave : claves(entrada.texto)) {
+            Nodo nodo = raiz;
+            nodo.ofrecer(entrada);
+            for (int i = 0; i < clave.length(); i++) {
+                nodo = nodo.hijoOCrear(clave.charAt(i));
+                nodo.ofrecer(entrada);
+            }
+            nodo.agregarTerminal(entrada);
+        }
+    }
+
+    /**
+     * Quitar una entrada y recalcular, de abajo hacia arriba, solo los nodos que la tenían entre sus mejores
+     */
+    private void eliminar(Entrada entrada) {
+        for (String clave : claves(entrada.texto)) {
+            Nodo[] camino = new Nodo[clave.length() + 1];
+            camino[0] = raiz;
+            for (int i = 0; i < clave.length() && camino[i] != null; i++) {
+                camino[i + 1] = camino[i].hijo(clave.charAt(i));
+            }
+            Nodo terminal = camino[clave.length()];
+            if (terminal == null) {
+                continue;
+            }
+            terminal.quitarTerminal(entrada);
+            for (int i = clave.length(); i >= 0; i--) {
+                Nodo nodo = camino[i];
+                if (nodo.contieneEntreMejores(entrada)) {
+                    nodo.recalcularMejores();
+                }
+                if (i > 0 && nodo.estaVacio()) {
+                    camino[i - 1].quitarHijo(clave.charAt(i - 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Claves del trie para un texto: desde el inicio y desde cada una de las primeras palabras
+     */
+    private static Set<String> claves(String texto) {
+        String normalizado = normalizar(texto);
+        Set<String> claves = new LinkedHashSet<>();
+        int inicio = 0;
+        while (inicio >= 0 && inicio < normalizado.length() && claves.size() < MAX_INICIOS_POR_TEXTO) {
+            String clave = normalizado.substring(inicio);
+            claves.add(clave.length() > LARGO_MAXIMO_CLAVE ? clave.substring(0, LARGO_MAXIMO_CLAVE) : clave);
+            int espacio = normalizado.indexOf(' ', inicio);
+            inicio = espacio < 0 ? -1 : espacio + 1;
+        }
+        return claves;
+    }
+
+    private static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        return AnalizadorEspanol.normalizar(texto).replaceAll("[^a-z0-9]+", " ").trim();
+    }
+
+    // ========== ESTRUCTURAS INTERNAS ==========
+
+    private static final class Entrada {
+        final TipoSugerencia tipo;
+        final Long id;
+        final String texto;
+        final long peso; // unidades vendidas
+        Long categoriaId;
+        Long subcategoriaId;
+        long cantidadProductos;
+
+        Entrada(TipoSugerencia tipo, Long id, String texto, long peso) {
+            this.tipo = tipo;
+            this.id = id;
+            this.texto = texto;
+            this.peso = peso;
+        }
+    }
+
+    /**
+     * Cambios de peso y cantidad de productos por categoría (o subcategoría) dentro de un lote
+     */
+    private static final class Agregados {
+        final Map<Long, long[]> deltas = new HashMap<>();
+        final Map<Long, String> nombres = new HashMap<>();
+
+        void sumar(Long id, String nombre, long peso, long cantidadProductos) {
+            if (id == null) {
+                return;
+            }
+            long[] delta = deltas.computeIfAbsent(id, k -> new long[2]);
+            delta[0] += peso;
+            delta[1] += cantidadProductos;
+            if (nombre != null) {
+                nombres.put(id, nombre);
+            }
+        }
+    }
+
+    private static final class Nodo {
+        char[] letras = SIN_LETRAS;
+        Nodo[] hijos = SIN_HIJOS;
+        List<Entrada> terminales;
+        // Crece a medida que hace falta: la mayoría de los nodos profundos tiene una o dos entradas
+        Entrada[] mejores = SIN_ENTRADAS;
+        int cantidadMejores;
+
+        Nodo hijo(char letra) {
+            for (int i = 0; i < letras.length; i++) {
+                if (letras[i] == letra) {
+                    return hijos[i];
+                }
+            }
+            return null;
+        }
+
+        Nodo hijoOCrear(char letra) {
+            Nodo hijo = hijo(letra);
+            if (hijo == null) {
+                hijo = new Nodo();
+                letras = Arrays.copyOf(letras, letras.length + 1);
+                hijos = Arrays.copyOf(hijos, hijos.length + 1);
+                letras[letras.length - 1] = letra;
+                hijos[hijos.length - 1] = hijo;
+            }
+            return hijo;
+        }
+
+        void quitarHijo(char letra) {
+            for (int i = 0; i < letras.length; i++) {
+                if (letras[i] == letra) {
+                    int ultimo = letras.length - 1;
+                    letras[i] = letras[ultimo];
+                    hijos[i] = hijos[ultimo];
+                    letras = Arrays.copyOf(letras, ultimo);
+                    hijos = Arrays.copyOf(hijos, ultimo);
+                    return;
+                }
+            }
+        }
+
+        void agregarTerminal(Entrada entrada) {
+            if (terminales == null) {
+                terminales = new ArrayList<>(1);
+            }
+            terminales.add(entrada);
+        }
+
+        void quitarTerminal(Entrada entrada) {
+            if (terminales != null) {
+                terminales.remove(entrada);
+            }
+        }
+
+        boolean estaVacio() {
+            return cantidadMejores == 0 && hijos.length == 0 && (terminales == null || terminales.isEmpty());
+        }
+
+        boolean contieneEntreMejores(Entrada entrada) {
+            for (int i = 0; i < cantidadMejores; i++) {
+                if (mejores[i] == entrada) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Insertar la entrada en la lista ordenada si está entre las mejores del nodo
+         */
+        void ofrecer(Entrada entrada) {
+            if (contieneEntreMejores(entrada)) {
+                return;
+            }
+            if (cantidadMejores == LIMITE_MAXIMO
+                    && POR_RELEVANCIA.compare(entrada, mejores[cantidadMejores - 1]) >= 0) {
+                return;
+            }
+            if (cantidadMejores == mejores.length && mejores.length < LIMITE_MAXIMO) {
+                mejores = Arrays.copyOf(mejores, Math.min(Math.max(2 * mejores.length, 1), LIMITE_MAXIMO));
+            }
+            int posicion = cantidadMejores < mejores.length ? cantidadMejores : mejores.length - 1;
+            while (posicion > 0 && POR_RELEVANCIA.compare(entrada, mejores[posicion - 1]) < 0) {
+                mejores[posicion] = mejores[posicion - 1];
+                posicion--;
+            }
+            mejores[posicion] = entrada;
+            if (cantidadMejores < mejores.length) {
+                cantidadMejores++;
+            }
+        }
+
+        /**
+         * Las mejores de un nodo salen de sus entradas terminales y de las mejores de sus hijos
+         */
+        void recalcularMejores() {
+            mejores = SIN_ENTRADAS;
+            cantidadMejores = 0;
+            if (terminales != null) {
+                terminales.forEach(this::ofrecer);
+            }
+            for (Nodo hijo : hijos) {
+                for (int i = 0; i < hijo.cantidadMejores; i++) {
+                    ofrecer(hijo.mejores[i]);
+                }
+            }
+        }
+    }
+}
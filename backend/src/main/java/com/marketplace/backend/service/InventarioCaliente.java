@@ -0,0 +1,259 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.repository.ReservaStockRepository;
+import com.marketplace.backend.repository.StockRepository;
+import com.marketplace.backend.repository.VentasDiariasRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stock en memoria de productos calientes (ventas relámpago, stock.caliente.productos).
+ * El checkout reserva sus unidades en un {@link ContadorRayado} sin tocar la fila del
+ * producto y agrega la reserva, con su venta, a reservas_stock en su transacción; el
+ * conciliador resta las reservas confirmadas de productos.stock_disponible y las suma a
+ * ventas_diarias por lotes, así el checkout no bloquea ninguna fila compartida del producto.
+ * Si la transacción del pedido revierte, las unidades vuelven al contador.
+ * Los contadores se cargan al primer uso como stock de la tabla menos reservas pendientes,
+ * así tras un reinicio o una caída parten del valor correcto. Cada instancia tiene sus
+ * propios contadores: un producto caliente debe venderse desde una sola instancia.
+ */
+@Slf4j
+@Component
+public class InventarioCaliente {
+
+    private final ReservaStockRepository reservaStockRepository;
+    private final StockRepository stockRepository;
+    private final VentasDiariasRepository ventasDiariasRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transaccion;
+    private final int franjas;
+    private final int reservasPorLote;
+
+    private final Set<Long> productos = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Long, ContadorRayado> contadores = new ConcurrentHashMap<>();
+
+    private final AtomicLong reservas = new AtomicLong();
+    private final AtomicLong rechazos = new AtomicLong();
+    private final AtomicLong devoluciones = new AtomicLong();
+    private final AtomicLong reservasAplicadas = new AtomicLong();
+    private volatile boolean pendientesDrenadas;
+
+    public InventarioCaliente(ReservaStockRepository reservaStockRepository,
+                              StockRepository stockRepository,
+                              VentasDiariasRepository ventasDiariasRepository,
+                              ApplicationEventPublisher eventPublisher,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${stock.caliente.productos:}") String productosCalientes,
+                              @Value("${stock.caliente.franjas:16}") int franjas,
+                              @Value("${stock.caliente.reservas-por-lote:5000}") int reservasPorLote) {
+        this.reservaStockRepository = reservaStockRepository;
+        this.stockRepository = stockRepository;
+        this.ventasDiariasRepository = ventasDiariasRepository;
+        this.eventPublisher = eventPublisher;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.franjas = franjas;
+        this.reservasPorLote = reservasPorLote;
+        Arrays.stream(productosCalientes.split(","))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .forEach(id -> activar(Long.valueOf(id)));
+    }
+
+    /**
+     * Tratar un producto como caliente (al iniciar, desde la configuración)
+     */
+    void activar(Long productoId) {
+        productos.add(productoId);
+    }
+
+    public boolean esCaliente(Long productoId) {
+        return productos.contains(productoId);
+    }
+
+    /**
+     * Reservar las unidades de los productos calientes, todas o ninguna, dentro de la
+     * transacción del checkout. Devuelve los productos sin stock suficiente (y entonces no
+     * reserva nada). Las unidades se devuelven al contador si la transacción no confirma;
+     * el checkout las registra con {@link #registrarVentas} al crear los detalles.
+     */
+    public List<Long> reservar(SortedMap<Long, Integer> cantidadesPorProducto) {
+        if (cantidadesPorProducto.isEmpty()) {
+            return List.of();
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("La reserva de productos calientes requiere una transacción");
+        }
+
+        Map<Long, Integer> reservadas = new LinkedHashMap<>();
+        List<Long> sinStock = new ArrayList<>();
+        cantidadesPorProducto.forEach((productoId, cantidad) -> {
+            if (contador(productoId).reservar(cantidad)) {
+                reservadas.put(productoId, cantidad);
+            } else {
+                sinStock.add(productoId);
+            }
+        });
+        if (!sinStock.isEmpty()) {
+            reservadas.forEach((productoId, cantidad) -> contador(productoId).devolver(cantidad));
+            rechazos.incrementAndGet();
+            return sinStock;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    reservadas.forEach((productoId, cantidad) -> contador(productoId).devolver(cantidad));
+                    devoluciones.incrementAndGet();
+                }
+            }
+        });
+        reservas.incrementAndGet();
+        return List.of();
+    }
+
+    /**
+     * Registrar en reservas_stock lo vendido de cada producto caliente, en la transacción
+     * del checkout; el conciliador lo resta del stock y lo suma a ventas_diarias
+     */
+    public void registrarVentas(List<VentasDiariasRepository.Acumulado> ventas) {
+        if (!ventas.isEmpty()) {
+            reservaStockRepository.registrar(ventas);
+        }
+    }
+
+    /**
+     * Stock disponible en memoria de productos calientes
+     */
+    public Map<Long, Integer> obtenerStock(Collection<Long> productoIds) {
+        Map<Long, Integer> stock = new HashMap<>();
+        productoIds.forEach(id -> stock.put(id, (int) Math.max(0, contador(id).disponible())));
+        return stock;
+    }
+
+    /**
+     * El proveedor cambió stock_disponible: al confirmar se suma (o resta) la diferencia al
+     * contador. No hace nada si el producto no es caliente o su contador aún no se cargó.
+     */
+    public void ajustarAlConfirmar(Long productoId, int diferencia) {
+        if (diferencia == 0 || !esCaliente(productoId)) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ContadorRayado contador = contadores.get(productoId);
+                if (contador == null) {
+                    return;
+                }
+                if (diferencia > 0) {
+                    contador.devolver(diferencia);
+                } else {
+                    contador.retirar(-diferencia);
+                }
+            }
+        });
+    }
+
+    // ========== CONCILIACIÓN ==========
+
+    /**
+     * Restar de productos.stock_disponible las reservas confirmadas, un lote por transacción:
+     * una actualización por producto (en orden de id), una suma a ventas_diarias por producto
+     * y día, y las reservas quedan aplicadas.
+     * Sin productos calientes configurados solo corre una vez, para aplicar las reservas
+     * que hubieran quedado de una configuración anterior.
+     */
+    @Scheduled(fixedDelayString = "${stock.caliente.intervalo-conciliacion-ms:500}")
+    public void conciliar() {
+        if (productos.isEmpty()) {
+            if (pendientesDrenadas) {
+                return;
+            }
+            pendientesDrenadas = true;
+        }
+        int aplicadas;
+        do {
+            Integer lote = transaccion.execute(estado -> aplicarLote());
+            aplicadas = lote != null ? lote : 0;
+        } while (aplicadas == reservasPorLote);
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("productos", productos);
+        Map<Long, Long> disponibles = new TreeMap<>();
+        contadores.forEach((id, contador) -> disponibles.put(id, contador.disponible()));
+        datos.put("disponibles", disponibles);
+        datos.put("reservas", reservas.get());
+        datos.put("rechazos", rechazos.get());
+        datos.put("devoluciones", devoluciones.get());
+        datos.put("reservasAplicadas", reservasAplicadas.get());
+        datos.put("reservasPendientes", reservaStockRepository.contarPendientes());
+        return datos;
+    }
+
+    private int aplicarLote() {
+        List<ReservaStockRepository.Pendiente> pendientes = reservaStockRepository.buscarPendientes(reservasPorLote);
+        if (pendientes.isEmpty()) {
+            return 0;
+        }
+        SortedMap<Long, Long> unidades = new TreeMap<>();
+        Map<List<Object>, VentasDiariasRepository.Acumulado> ventas = new HashMap<>();
+        List<Long> ids = new ArrayList<>(pendientes.size());
+        for (ReservaStockRepository.Pendiente pendiente : pendientes) {
+            unidades.merge(pendiente.productoId(), (long) pendiente.cantidad(), Long::sum);
+            ids.add(pendiente.id());
+            ventas.merge(List.of(pendiente.productoId(), pendiente.fechaVenta()),
+                    new VentasDiariasRepository.Acumulado(pendiente.proveedorId(), pendiente.productoId(),
+                            pendiente.fechaVenta(), pendiente.cantidad(), pendiente.ingresos(), pendiente.lineas()),
+                    InventarioCaliente::sumar);
+        }
+        stockRepository.restar(unidades);
+        // En orden de producto, como el descuento de stock
+        ventasDiariasRepository.acumular(ventas.values().stream()
+                .sorted(Comparator.comparing(VentasDiariasRepository.Acumulado::productoId)
+                        .thenComparing(VentasDiariasRepository.Acumulado::fecha))
+                .toList());
+        reservaStockRepository.marcarAplicadas(ids);
+        reservasAplicadas.addAndGet(ids.size());
+
+        // Refresca el stock que muestra el catálogo después del commit
+        eventPublisher.publishEvent(CatalogoModificadoEvent.deStock(new ArrayList<>(unidades.keySet())));
+        log.debug("Conciliadas {} reservas de {} productos calientes", ids.size(), unidades.size());
+        return ids.size();
+    }
+
+    private static VentasDiariasRepository.Acumulado sumar(VentasDiariasRepository.Acumulado a,
+                                                          VentasDiariasRepository.Acumulado b) {
+        return new VentasDiariasRepository.Acumulado(a.proveedorId(), a.productoId(), a.fecha(),
+                a.unidades() + b.unidades(), a.ingresos().add(b.ingresos()), a.lineas() + b.lineas());
+    }
+
+    /**
+     * Contador del producto; el primer uso lo carga fuera del mapa (la consulta no debe correr
+     * dentro de computeIfAbsent) y, si otro hilo se adelantó, se queda con el de ese hilo
+     */
+    private ContadorRayado contador(Long productoId) {
+        ContadorRayado contador = contadores.get(productoId);
+        if (contador != null) {
+            return contador;
+        }
+        long stock = reservaStockRepository.obtenerStockConReservas(productoId)
+                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+        ContadorRayado cargado = new ContadorRayado(Math.max(0, stock), franjas);
+        ContadorRayado previo = contadores.putIfAbsent(productoId, cargado);
+        return previo != null ? previo : cargado;
+    }
+}
@@ -0,0 +1,143 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.repository.CarritoLotesRepository;
+import com.marketplace.backend.repository.CarritoLotesRepository.FilaCarrito;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Limpieza periódica de la tabla carrito: quita las líneas de productos no disponibles o
+ * eliminados y los carritos sin altas desde hace carrito.limpieza.abandono-dias.
+ * Recorre la tabla en orden de clave y borra en lotes cortos, cada sentencia en su propia
+ * transacción, para no retener bloqueos mientras los usuarios siguen comprando.
+ */
+@Slf4j
+@Component
+public class LimpiezaCarritos {
+
+    private final CarritoLotesRepository lotesRepository;
+    private final CarritoEnMemoria carritoEnMemoria;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int lineasPorLote;
+    private final int usuariosPorLote;
+    private final Duration abandono;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+    private final AtomicLong ejecuciones = new AtomicLong();
+    private final AtomicLong lineasNoDisponiblesBorradas = new AtomicLong();
+    private final AtomicLong lineasAbandonadasBorradas = new AtomicLong();
+    private volatile Map<String, Object> ultimaEjecucion = Map.of();
+
+    public LimpiezaCarritos(CarritoLotesRepository lotesRepository,
+                            CarritoEnMemoria carritoEnMemoria,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${carrito.limpieza.lote:500}") int lineasPorLote,
+                            @Value("${carrito.limpieza.abandono-dias:60}") long abandonoDias) {
+        this.lotesRepository = lotesRepository;
+        this.carritoEnMemoria = carritoEnMemoria;
+        this.eventPublisher = eventPublisher;
+        this.lineasPorLote = lineasPorLote;
+        // Un carrito tiene varias líneas: los abandonados se borran de a menos usuarios
+        this.usuariosPorLote = Math.max(1, lineasPorLote / 10);
+        this.abandono = Duration.ofDays(abandonoDias);
+    }
+
+    @Scheduled(fixedDelayString = "${carrito.limpieza.intervalo-ms:3600000}",
+            initialDelayString = "${carrito.limpieza.intervalo-ms:3600000}")
+    public void limpiar() {
+        if (!enCurso.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long inicio = System.nanoTime();
+            int noDisponibles = borrarLineasNoDisponibles();
+            int abandonadas = borrarCarritosAbandonados(LocalDateTime.now().minus(abandono));
+            long duracionMs = (System.nanoTime() - inicio) / 1_000_000;
+
+            ejecuciones.incrementAndGet();
+            lineasNoDisponiblesBorradas.addAndGet(noDisponibles);
+            lineasAbandonadasBorradas.addAndGet(abandonadas);
+            Map<String, Object> ejecucion = new LinkedHashMap<>();
+            ejecucion.put("fecha", LocalDateTime.now());
+            ejecucion.put("lineasNoDisponibles", noDisponibles);
+            ejecucion.put("lineasAbandonadas", abandonadas);
+            ejecucion.put("duracionMs", duracionMs);
+            ultimaEjecucion = ejecucion;
+
+            log.info("Limpieza de carritos: {} líneas de productos no disponibles y {} de carritos abandonados borradas en {} ms",
+                    noDisponibles, abandonadas, duracionMs);
+        } catch (RuntimeException e) {
+            log.error("Falló la limpieza de carritos", e);
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("abandonoDias", abandono.toDays());
+        datos.put("lineasPorLote", lineasPorLote);
+        datos.put("ejecuciones", ejecuciones.get());
+        datos.put("lineasNoDisponiblesBorradas", lineasNoDisponiblesBorradas.get());
+        datos.put("lineasAbandonadasBorradas", lineasAbandonadasBorradas.get());
+        datos.put("ultimaEjecucion", ultimaEjecucion);
+        return datos;
+    }
+
+    /**
+     * Líneas de productos no disponibles o eliminados, de a un lote por id creciente
+     */
+    int borrarLineasNoDisponibles() {
+        int borradas = 0;
+        long ultimoId = 0;
+        List<FilaCarrito> filas;
+        do {
+            filas = lotesRepository.buscarDeProductosNoDisponibles(ultimoId, lineasPorLote);
+            if (filas.isEmpty()) {
+                break;
+            }
+            ultimoId = filas.get(filas.size() - 1).id();
+            borradas += lotesRepository.borrar(filas.stream().map(FilaCarrito::id).toList());
+            avisar(filas.stream().map(FilaCarrito::usuarioId).collect(Collectors.toSet()));
+        } while (filas.size() == lineasPorLote);
+        return borradas;
+    }
+
+    /**
+     * Carritos cuya última alta es anterior al límite, de a un lote de usuarios por id creciente.
+     * El borrado vuelve a comprobar la fecha por si el usuario agregó algo entre medio.
+     */
+    int borrarCarritosAbandonados(LocalDateTime limite) {
+        int borradas = 0;
+        long ultimoUsuarioId = 0;
+        List<Long> usuarioIds;
+        do {
+            usuarioIds = lotesRepository.buscarUsuariosConCarritoInactivo(ultimoUsuarioId, limite, usuariosPorLote);
+            if (usuarioIds.isEmpty()) {
+                break;
+            }
+            ultimoUsuarioId = usuarioIds.get(usuarioIds.size() - 1);
+            borradas += lotesRepository.borrarCarritosInactivos(usuarioIds, limite);
+            avisar(usuarioIds);
+        } while (usuarioIds.size() == usuariosPorLote);
+        return borradas;
+    }
+
+    /**
+     * Invalidar el contador de esos usuarios y recargar sus carritos en memoria
+     */
+    private void avisar(Collection<Long> usuarioIds) {
+        carritoEnMemoria.descartarSinCambios(usuarioIds);
+        usuarioIds.forEach(usuarioId -> eventPublisher.publishEvent(new CarritoModificadoEvent(usuarioId)));
+    }
+}
@@ -1,33 +1,60 @@
 package com.marketplace.backend.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.marketplace.backend.dominio.*;
 import com.marketplace.backend.dto.CrearPedidoDTO;
 import com.marketplace.backend.dto.DetallePedidoDTO;
+import com.marketplace.backend.dto.PaginaDTO;
 import com.marketplace.backend.dto.PedidoDetalleCompletoDTO;
+import com.marketplace.backend.dto.ResumenPedidoDTO;
+import com.marketplace.backend.exception.StockInsuficienteException;
 import com.marketplace.backend.repository.*;
+import com.marketplace.backend.util.CursorUtil;
+import com.marketplace.backend.util.ExportadorFilas;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PedidoService {
 
+    public static final int LIMITE_HISTORIAL_POR_DEFECTO = 20;
+    private static final int LIMITE_MAXIMO_HISTORIAL = 100;
+
     private final PedidoRepository pedidoRepository;
     private final DetallePedidoRepository detallePedidoRepository;
+    private final SubPedidoRepository subPedidoRepository;
     private final CarritoRepository carritoRepository;
     private final ProductoRepository productoRepository;
     private final UsuarioRepository usuarioRepository;
     private final ImagenProductoRepository imagenProductoRepository;
+    private final StockRepository stockRepository;
+    private final InventarioCaliente inventarioCaliente;
+    private final VentasDiariasRepository ventasDiariasRepository;
+    private final GeneradorNumeroPedido generadorNumeroPedido;
+    private final CarritoEnMemoria carritoEnMemoria;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public Pedido crearPedido(Long usuarioId, CrearPedidoDTO dto) {
@@ -38,75 +65,346 @@ public class PedidoService {
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
         // 2. Obtener items del carrito
-        List<Carrito> itemsCarrito = carritoRepository.findByUsuarioIdWithAvailableProducts(usuarioId);
+        List<Carrito> itemsCarrito = obtenerCarritoParaCheckout(usuarioId);
+
+        // 3. Reservar stock con descuentos condicionales, en un batch y en orden de id
+        reservarStock(itemsCarrito);
+
+        // 4. Crear cabecera del Pedido
+        Pedido pedido = nuevoPedido(usuario, dto, calcularTotal(itemsCarrito));
+        pedido.setEstadoCheckout(Pedido.EstadoCheckout.COMPLETADO);
+        pedido = pedidoRepository.save(pedido);
+
+        // 5-7. Detalles, carrito y aviso del cambio de stock
+        registrarDetalles(pedido, itemsCarrito);
+
+        log.info("Pedido {} creado con éxito por un total de {}", pedido.getNumeroPedido(), pedido.getTotal());
+        return pedido;
+    }
+
+    // ========== CHECKOUT ASÍNCRONO ==========
+
+    /**
+     * Registrar un pedido EN_COLA con el total estimado del carrito actual.
+     * El stock y los detalles se procesan después en {@link #procesarPedidoEnCola}.
+     */
+    @Transactional
+    public Pedido registrarPedidoEnCola(Long usuarioId, CrearPedidoDTO dto) {
+        Usuario usuario = usuarioRepository.findById(usuarioId)
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+        List<Carrito> itemsCarrito = obtenerCarritoParaCheckout(usuarioId);
+
+        Pedido pedido = nuevoPedido(usuario, dto, calcularTotal(itemsCarrito));
+        pedido.setEstadoCheckout(Pedido.EstadoCheckout.EN_COLA);
+        pedido = pedidoRepository.save(pedido);
+
+        log.info("Pedido {} en cola para usuario {}", pedido.getNumeroPedido(), usuarioId);
+        return pedido;
+    }
+
+    /**
+     * Marcar el pedido EN_COLA como PROCESANDO en su propia transacción para que el cliente lo vea
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void marcarProcesando(Long pedidoId) {
+        pedidoRepository.actualizarEstadoCheckout(pedidoId, Pedido.EstadoCheckout.EN_COLA,
+                Pedido.EstadoCheckout.PROCESANDO, null);
+    }
+
+    /**
+     * Completar un pedido encolado con el carrito vigente: reserva stock, crea los detalles
+     * y vacía el carrito. El pedido se lee bloqueado y se vuelve a comprobar su estado, así
+     * dos trabajadores (o dos instancias que lo recuperaron al iniciar) no lo procesan dos
+     * veces. Devuelve false si ya estaba completado o fallido.
+     */
+    @Transactional
+    public boolean procesarPedidoEnCola(Long pedidoId) {
+        Pedido pedido = pedidoRepository.findByIdParaActualizar(pedidoId)
+                .orElseThrow(() -> new RuntimeException("Pedido no encontrado"));
+        if (!estaPendiente(pedido)) {
+            return false;
+        }
+
+        Long usuarioId = pedido.getUsuario().getId();
+        List<Carrito> itemsCarrito = obtenerCarritoParaCheckout(usuarioId);
+        reservarStock(itemsCarrito);
+
+        // El carrito pudo cambiar mientras el pedido esperaba en la cola
+        pedido.setTotal(calcularTotal(itemsCarrito));
+        pedido.setEstadoCheckout(Pedido.EstadoCheckout.COMPLETADO);
+        pedido.setMensajeCheckout(null);
+        registrarDetalles(pedido, itemsCarrito);
+
+        log.info("Pedido {} procesado por un total de {}", pedido.getNumeroPedido(), pedido.getTotal());
+        return true;
+    }
+
+    /**
+     * Registrar el fallo de un pedido encolado (el pedido queda cancelado). No toca un
+     * pedido que otro trabajador ya completó.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void marcarFallido(Long pedidoId, String mensaje) {
+        pedidoRepository.findByIdParaActualizar(pedidoId).filter(this::estaPendiente).ifPresent(pedido -> {
+            pedido.setEstadoCheckout(Pedido.EstadoCheckout.FALLIDO);
+            pedido.setMensajeCheckout(mensaje != null && mensaje.length() > 500 ? mensaje.substring(0, 500) : mensaje);
+            pedido.setEstado(Pedido.EstadoPedido.cancelado);
+        });
+    }
+
+    /**
+     * Estado del checkout de un pedido del usuario (consulta periódica del cliente)
+     */
+    @Transactional(readOnly = true)
+    public Pedido obtenerEstadoCheckout(String numeroPedido, Long usuarioId) {
+        return pedidoRepository.findByNumeroPedidoAndUsuarioId(numeroPedido, usuarioId)
+                .orElseThrow(() -> new RuntimeException("Pedido no encontrado"));
+    }
+
+    /**
+     * Ids de pedidos que quedaron en cola o a medio procesar (para reencolar al iniciar)
+     */
+    @Transactional(readOnly = true)
+    public List<Long> obtenerPedidosPendientesDeProcesar() {
+        return pedidoRepository.findIdsByEstadoCheckoutIn(
+                List.of(Pedido.EstadoCheckout.EN_COLA, Pedido.EstadoCheckout.PROCESANDO));
+    }
+
+    private boolean estaPendiente(Pedido pedido) {
+        return pedido.getEstadoCheckout() == Pedido.EstadoCheckout.EN_COLA
+                || pedido.getEstadoCheckout() == Pedido.EstadoCheckout.PROCESANDO;
+    }
+
+    // ========== PASOS DEL CHECKOUT ==========
+
+    private List<Carrito> obtenerCarritoParaCheckout(Long usuarioId) {
+        // Con el carrito en memoria, escribir lo pendiente en esta transacción antes de leerlo
+        carritoEnMemoria.volcarParaCheckout(usuarioId);
+        List<Carrito> itemsCarrito = carritoRepository.findConProductoDisponible(usuarioId);
 
         if (itemsCarrito.isEmpty()) {
             throw new RuntimeException("El carrito está vacío");
         }
+        return itemsCarrito;
+    }
 
-        // --- CORRECCIÓN: CALCULAR TOTAL ANTES DE GUARDAR ---
+    private BigDecimal calcularTotal(List<Carrito> itemsCarrito) {
         BigDecimal totalCalculado = BigDecimal.ZERO;
         for (Carrito item : itemsCarrito) {
             BigDecimal subtotalItem = item.getProducto().getPrecioUnitario()
                     .multiply(new BigDecimal(item.getCantidad()));
             totalCalculado = totalCalculado.add(subtotalItem);
         }
+        return totalCalculado;
+    }
 
-        // 3. Crear cabecera del Pedido
+    private Pedido nuevoPedido(Usuario usuario, CrearPedidoDTO dto, BigDecimal total) {
         Pedido pedido = new Pedido();
         pedido.setUsuario(usuario);
-        pedido.setNumeroPedido(generarNumeroPedido());
+        pedido.setNumeroPedido(generadorNumeroPedido.generar());
         pedido.setFechaPedido(LocalDateTime.now());
         pedido.setEstado(Pedido.EstadoPedido.pendiente); // Usar el enum que tengas (PENDIENTE o pendiente)
         pedido.setDireccionEntrega(dto.getDireccionEntrega());
         pedido.setTelefonoContacto(dto.getTelefonoContacto());
         pedido.setMetodoPago(dto.getMetodoPago() != null ? dto.getMetodoPago() : "TARJETA");
 
-        // Asignamos el total calculado para pasar la validación @DecimalMin
-        pedido.setTotal(totalCalculado);
-
-        // Guardamos el pedido (Ahora sí pasará porque total > 0)
-        pedido = pedidoRepository.save(pedido);
+        // El total se calcula antes de guardar para pasar la validación @DecimalMin
+        pedido.setTotal(total);
+        return pedido;
+    }
 
-        // 4. Procesar items y crear DetallePedido (y actualizar stock)
+    /**
+     * Crear los subpedidos por proveedor y sus detalles, vaciar el carrito y avisar del cambio de stock
+     */
+    private void registrarDetalles(Pedido pedido, List<Carrito> itemsCarrito) {
+        // 5. Un subpedido por proveedor (en orden de aparición en el carrito) y sus líneas;
+        //    ambos se insertan en batch al hacer flush
+        Map<Long, SubPedido> subPedidos = new LinkedHashMap<>();
+        List<DetallePedido> detalles = new ArrayList<>(itemsCarrito.size());
         for (Carrito item : itemsCarrito) {
             Producto producto = item.getProducto();
+            BigDecimal subtotal = producto.getPrecioUnitario().multiply(new BigDecimal(item.getCantidad()));
 
-            // Validar stock nuevamente
-            if (producto.getStockDisponible() < item.getCantidad()) {
-                throw new RuntimeException("Stock insuficiente para: " + producto.getNombre());
-            }
-
-            // Descontar Stock
-            producto.setStockDisponible(producto.getStockDisponible() - item.getCantidad());
-            productoRepository.save(producto);
+            SubPedido subPedido = subPedidos.computeIfAbsent(producto.getProveedor().getId(),
+                    proveedorId -> nuevoSubPedido(pedido, producto.getProveedor()));
+            subPedido.setSubtotal(subPedido.getSubtotal().add(subtotal));
+            subPedido.setLineas(subPedido.getLineas() + 1);
+            subPedido.setUnidades(subPedido.getUnidades() + item.getCantidad());
 
-            // Crear Detalle
             DetallePedido detalle = new DetallePedido();
             detalle.setPedido(pedido);
+            detalle.setSubPedido(subPedido);
             detalle.setProducto(producto);
             detalle.setProveedor(producto.getProveedor());
             detalle.setCantidad(item.getCantidad());
             detalle.setPrecioUnitario(producto.getPrecioUnitario());
-            detalle.setSubtotal(producto.getPrecioUnitario().multiply(new BigDecimal(item.getCantidad())));
+            detalle.setSubtotal(subtotal);
+            detalle.setFechaPedido(pedido.getFechaPedido());
+            detalles.add(detalle);
+        }
+        subPedidoRepository.saveAll(subPedidos.values());
+        detallePedidoRepository.saveAll(detalles);
+
+        // 5b. Sumar a los acumulados diarios del proveedor (los de productos calientes los suma el conciliador)
+        acumularVentasDiarias(detalles);
+
+        // 6. Vaciar carrito
+        carritoRepository.deleteByUsuarioId(pedido.getUsuario().getId());
+        carritoEnMemoria.vaciarAlConfirmar(pedido.getUsuario().getId());
+        eventPublisher.publishEvent(new CarritoModificadoEvent(pedido.getUsuario().getId()));
+
+        // 7. Avisar del cambio de stock (invalida la caché del catálogo tras el commit)
+        eventPublisher.publishEvent(CatalogoModificadoEvent.deStock(itemsCarrito.stream()
+                .map(item -> item.getProducto().getId())
+                .collect(Collectors.toList())));
+        eventPublisher.publishEvent(new ProductosVendidosEvent(itemsCarrito.stream()
+                .collect(Collectors.toMap(item -> item.getProducto().getId(),
+                        item -> (long) item.getCantidad(), Long::sum))));
+    }
 
-            detallePedidoRepository.save(detalle);
+    private SubPedido nuevoSubPedido(Pedido pedido, Proveedor proveedor) {
+        SubPedido subPedido = new SubPedido();
+        subPedido.setPedido(pedido);
+        subPedido.setProveedor(proveedor);
+        subPedido.setSubtotal(BigDecimal.ZERO);
+        subPedido.setLineas(0);
+        subPedido.setUnidades(0);
+        subPedido.setFechaPedido(pedido.getFechaPedido());
+        return subPedido;
+    }
+
+    /**
+     * Agrupar las líneas por producto (en orden de id, como el descuento de stock) y sumarlas
+     * a ventas_diarias. Las de productos calientes se registran con su reserva y las suma el
+     * conciliador, así el checkout no compite por la fila del día de ese producto.
+     */
+    private void acumularVentasDiarias(List<DetallePedido> detalles) {
+        SortedMap<Long, VentasDiariasRepository.Acumulado> porProducto = new TreeMap<>();
+        for (DetallePedido detalle : detalles) {
+            Long productoId = detalle.getProducto().getId();
+            VentasDiariasRepository.Acumulado linea = new VentasDiariasRepository.Acumulado(
+                    detalle.getProveedor().getId(), productoId, detalle.getFechaPedido().toLocalDate(),
+                    detalle.getCantidad(), detalle.getSubtotal(), 1);
+            porProducto.merge(productoId, linea, (a, b) -> new VentasDiariasRepository.Acumulado(
+                    a.proveedorId(), a.productoId(), a.fecha(),
+                    a.unidades() + b.unidades(), a.ingresos().add(b.ingresos()), a.lineas() + b.lineas()));
         }
 
-        // 5. Vaciar carrito
-        carritoRepository.deleteByUsuarioId(usuarioId);
+        Map<Boolean, List<VentasDiariasRepository.Acumulado>> porTipo = porProducto.values().stream()
+                .collect(Collectors.partitioningBy(venta -> inventarioCaliente.esCaliente(venta.productoId())));
+        inventarioCaliente.registrarVentas(porTipo.get(true));
+        if (!porTipo.get(false).isEmpty()) {
+            ventasDiariasRepository.acumular(porTipo.get(false));
+        }
+    }
 
-        log.info("Pedido {} creado con éxito por un total de {}", pedido.getNumeroPedido(), totalCalculado);
-        return pedido;
+    /**
+     * Descontar el stock de todas las líneas o ninguna. Si algún producto no alcanza se lanza
+     * StockInsuficienteException con el detalle de cada línea y la transacción revierte los
+     * descuentos ya aplicados. Las líneas de todos los subpedidos van en el mismo batch en
+     * orden de id: reservar por proveedor en paralelo rompería ese orden (y el todo o nada).
+     */
+    private void reservarStock(List<Carrito> itemsCarrito) {
+        SortedMap<Long, Integer> cantidades = new TreeMap<>();
+        Map<Long, Producto> productos = new HashMap<>();
+        for (Carrito item : itemsCarrito) {
+            cantidades.merge(item.getProducto().getId(), item.getCantidad(), Integer::sum);
+            productos.put(item.getProducto().getId(), item.getProducto());
+        }
+
+        // Los productos calientes se reservan en memoria; si alguno no alcanza no se bloquean filas
+        SortedMap<Long, Integer> enTabla = new TreeMap<>(cantidades);
+        SortedMap<Long, Integer> calientes = new TreeMap<>(cantidades);
+        enTabla.keySet().removeIf(inventarioCaliente::esCaliente);
+        calientes.keySet().removeAll(enTabla.keySet());
+
+        List<Long> sinStock = inventarioCaliente.reservar(calientes);
+        Map<Long, Integer> stockActual;
+        if (!sinStock.isEmpty()) {
+            stockActual = inventarioCaliente.obtenerStock(sinStock);
+        } else {
+            sinStock = enTabla.isEmpty() ? List.of() : stockRepository.descontar(enTabla);
+            if (sinStock.isEmpty()) {
+                return;
+            }
+            stockActual = stockRepository.obtenerStock(sinStock);
+        }
+
+        List<StockInsuficienteException.Faltante> faltantes = sinStock.stream()
+                .map(id -> new StockInsuficienteException.Faltante(
+                        id,
+                        productos.get(id).getNombre(),
+                        cantidades.get(id),
+                        stockActual.getOrDefault(id, 0)))
+                .collect(Collectors.toList());
+        throw new StockInsuficienteException(faltantes);
+    }
+
+    /**
+     * Historial de pedidos del comprador paginado por cursor (más recientes primero)
+     */
+    @Transactional(readOnly = true)
+    public PaginaDTO<ResumenPedidoDTO> obtenerResumenPedidos(Long usuarioId, String cursor, int limite) {
+        limite = Math.max(1, Math.min(limite, LIMITE_MAXIMO_HISTORIAL));
+
+        LocalDateTime cursorFecha = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] partes = CursorUtil.decodificar(cursor, 2);
+            try {
+                cursorFecha = LocalDateTime.parse(partes[0]);
+                cursorId = Long.valueOf(partes[1]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+        }
+
+        // Se pide una fila extra para saber si existe una página siguiente
+        List<ResumenPedidoDTO> resumenes = pedidoRepository.findResumenesPorUsuario(
+                usuarioId, cursorFecha, cursorId, PageRequest.of(0, limite + 1));
+
+        boolean hayMas = resumenes.size() > limite;
+        if (hayMas) {
+            resumenes = resumenes.subList(0, limite);
+        }
+
+        String siguienteCursor = null;
+        if (hayMas) {
+            ResumenPedidoDTO ultimo = resumenes.get(resumenes.size() - 1);
+            siguienteCursor = CursorUtil.codificar(ultimo.getFechaPedido(), ultimo.getId());
+        }
+        return new PaginaDTO<>(resumenes, siguienteCursor, hayMas);
     }
 
-    private String generarNumeroPedido() {
-        return "PED-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    /**
+     * Escribir el historial completo del comprador en la salida a medida que llega del cursor.
+     * Se llama desde el hilo del StreamingResponseBody: la transacción dura lo que dura la descarga.
+     */
+    @Transactional(readOnly = true)
+    public long exportarPedidos(Long usuarioId, ExportadorFilas.Formato formato, OutputStream salida) {
+        ExportadorFilas exportador = new ExportadorFilas(formato, salida, objectMapper,
+                "numeroPedido", "fecha", "estado", "total", "lineas", "metodoPago", "direccionEntrega");
+        long filas = 0;
+        try (Stream<ResumenPedidoDTO> pedidos = pedidoRepository.streamResumenesPorUsuario(usuarioId)) {
+            Iterator<ResumenPedidoDTO> iterador = pedidos.iterator();
+            while (iterador.hasNext()) {
+                ResumenPedidoDTO pedido = iterador.next();
+                exportador.escribir(pedido.getNumeroPedido(), pedido.getFechaPedido(), pedido.getEstado(),
+                        pedido.getTotal(), pedido.getCantidadLineas(), pedido.getMetodoPago(),
+                        pedido.getDireccionEntrega());
+                filas++;
+            }
+        }
+        exportador.terminar();
+        return filas;
     }
 
+    /**
+     * Total de pedidos del comprador (solo se pide con la primera página)
+     */
     @Transactional(readOnly = true)
-    public List<Pedido> obtenerPedidosUsuario(Long usuarioId) {
-        return pedidoRepository.findByUsuarioIdOrderByFechaPedidoDesc(usuarioId);
+    public long contarPedidosUsuario(Long usuarioId) {
+        return pedidoRepository.countByUsuarioId(usuarioId);
     }
 
     // ⭐ NUEVO MÉTODO: Obtener detalle completo de un pedido
@@ -3,12 +3,24 @@ package com.marketplace.backend.service;
 import com.marketplace.backend.dominio.*;
 import com.marketplace.backend.dto.*;
 import com.marketplace.backend.repository.*;
+import com.marketplace.backend.util.CursorUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,6 +33,11 @@ public class ProductoService {
     private final ProveedorRepository proveedorRepository;
     private final CategoriaRepository categoriaRepository;
     private final SubcategoriaRepository subcategoriaRepository;
+    private final DetallePedidoRepository detallePedidoRepository;
+    private final CatalogoCache catalogoCache;
+    private final InventarioCaliente inventarioCaliente;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PlatformTransactionManager transactionManager;
     
     /**
      * Crear producto (solo proveedor)
@@ -66,15 +83,18 @@ public class ProductoService {
         
         // Guardar imágenes si existen
         if (dto.getImagenesUrls() != null && !dto.getImagenesUrls().isEmpty()) {
+            List<ImagenProducto> imagenes = new ArrayList<>();
             for (String url : dto.getImagenesUrls()) {
                 ImagenProducto imagen = new ImagenProducto();
                 imagen.setProducto(productoGuardado);
                 imagen.setUrlImagen(url);
-                imagenProductoRepository.save(imagen);
+                imagenes.add(imagen);
             }
+            imagenProductoRepository.saveAll(imagenes);
             log.info("Se guardaron {} imágenes para el producto", dto.getImagenesUrls().size());
         }
         
+        eventPublisher.publishEvent(CatalogoModificadoEvent.deProducto(productoGuardado.getId()));
         return convertirADTO(productoGuardado);
     }
     
@@ -88,10 +108,7 @@ public class ProductoService {
         Proveedor proveedor = proveedorRepository.findByUsuarioId(usuarioId)
                 .orElseThrow(() -> new RuntimeException("No eres un proveedor"));
         
-        return productoRepository.findByProveedorId(proveedor.getId())
-                .stream()
-                .map(this::convertirADTO)
-                .collect(Collectors.toList());
+        return convertirADTOs(productoRepository.findByProveedorIdConRelaciones(proveedor.getId()));
     }
     
     /**
@@ -141,12 +158,17 @@ public class ProductoService {
         if (dto.getPrecioUnitario() != null) producto.setPrecioUnitario(dto.getPrecioUnitario());
         if (dto.getUnidadMedida() != null) producto.setUnidadMedida(dto.getUnidadMedida());
         if (dto.getCantidadMinima() != null) producto.setCantidadMinima(dto.getCantidadMinima());
-        if (dto.getStockDisponible() != null) producto.setStockDisponible(dto.getStockDisponible());
+        if (dto.getStockDisponible() != null) {
+            // Con el producto caliente el contador en memoria recibe la misma diferencia
+            inventarioCaliente.ajustarAlConfirmar(productoId, dto.getStockDisponible() - producto.getStockDisponible());
+            producto.setStockDisponible(dto.getStockDisponible());
+        }
         if (dto.getDisponible() != null) producto.setDisponible(dto.getDisponible());
         
         Producto actualizado = productoRepository.save(producto);
         log.info("Producto {} actualizado exitosamente", productoId);
         
+        eventPublisher.publishEvent(CatalogoModificadoEvent.deProducto(productoId));
         return convertirADTO(actualizado);
     }
     
@@ -169,6 +191,7 @@ public class ProductoService {
         // Eliminar producto
         productoRepository.delete(producto);
         
+        eventPublisher.publishEvent(CatalogoModificadoEvent.deProducto(productoId));
         log.info("Producto {} eliminado exitosamente", productoId);
     }
     
@@ -192,6 +215,7 @@ public class ProductoService {
         ImagenProducto guardada = imagenProductoRepository.save(imagen);
         log.info("Imagen agregada con ID: {}", guardada.getId());
         
+        eventPublisher.publishEvent(CatalogoModificadoEvent.deProducto(productoId));
         return convertirAImagenDTO(guardada);
     }
     
@@ -218,29 +242,168 @@ public class ProductoService {
         }
         
         imagenProductoRepository.delete(imagen);
+        eventPublisher.publishEvent(CatalogoModificadoEvent.deProducto(productoId));
         log.info("Imagen {} eliminada exitosamente", imagenId);
     }
     
     /**
-     * Obtener todos los productos (público)
+     * Obtener una página del catálogo público (paginación por keyset)
+     * Aplica filtros opcionales de categoría, subcategoría y proveedor.
+     * Se sirve desde la caché; solo un fallo abre transacción y usa una conexión.
+     */
+    public PaginaDTO<ProductoDTO> obtenerCatalogo(FiltroCatalogoDTO filtro) {
+        return catalogoCache.obtener(filtro, () -> {
+            TransactionTemplate lectura = new TransactionTemplate(transactionManager);
+            lectura.setReadOnly(true);
+            return lectura.execute(status -> cargarCatalogo(filtro));
+        });
+    }
+    
+    /**
+     * Cargar una página del catálogo desde la base de datos
+     */
+    private PaginaDTO<ProductoDTO> cargarCatalogo(FiltroCatalogoDTO filtro) {
+        int limite = filtro.limiteEfectivo();
+        FiltroCatalogoDTO.OrdenCatalogo orden = filtro.getOrden() != null
+                ? filtro.getOrden() : FiltroCatalogoDTO.OrdenCatalogo.RECIENTES;
+
+        // Se pide una fila extra para saber si existe una página siguiente
+        Pageable pageable = PageRequest.of(0, limite + 1);
+
+        Long cursorId = null;
+        String cursorValor = null;
+        if (filtro.getCursor() != null && !filtro.getCursor().isBlank()) {
+            String[] partes = CursorUtil.decodificar(filtro.getCursor(), 3);
+            if (!orden.name().equals(partes[0])) {
+                throw new IllegalArgumentException("El cursor no corresponde al orden solicitado");
+            }
+            cursorValor = partes[1];
+            cursorId = parsearCursor(partes[2], Long::valueOf);
+        }
+
+        List<Producto> productos = switch (orden) {
+            case RECIENTES -> productoRepository.findCatalogoRecientes(
+                    filtro.getCategoriaId(), filtro.getSubcategoriaId(), filtro.getProveedorId(),
+                    cursorId != null ? parsearCursor(cursorValor, LocalDateTime::parse) : null,
+                    cursorId, pageable);
+            case PRECIO_ASC -> productoRepository.findCatalogoPrecioAsc(
+                    filtro.getCategoriaId(), filtro.getSubcategoriaId(), filtro.getProveedorId(),
+                    cursorId != null ? parsearCursor(cursorValor, BigDecimal::new) : null,
+                    cursorId, pageable);
+            case PRECIO_DESC -> productoRepository.findCatalogoPrecioDesc(
+                    filtro.getCategoriaId(), filtro.getSubcategoriaId(), filtro.getProveedorId(),
+                    cursorId != null ? parsearCursor(cursorValor, BigDecimal::new) : null,
+                    cursorId, pageable);
+            case CALIFICACION -> productoRepository.findCatalogoCalificacion(
+                    filtro.getCategoriaId(), filtro.getSubcategoriaId(), filtro.getProveedorId(),
+                    cursorId != null ? parsearCursor(cursorValor, BigDecimal::new) : null,
+                    cursorId, pageable);
+        };
+
+        boolean hayMas = productos.size() > limite;
+        if (hayMas) {
+            productos = productos.subList(0, limite);
+        }
+
+        List<ProductoDTO> items = convertirADTOs(productos);
+
+        String siguienteCursor = null;
+        if (hayMas) {
+            Producto ultimo = productos.get(productos.size() - 1);
+            siguienteCursor = CursorUtil.codificar(orden.name(), valorDeOrden(ultimo, orden), ultimo.getId());
+        }
+
+        return new PaginaDTO<>(items, siguienteCursor, hayMas);
+    }
+
+    /**
+     * Obtener un producto disponible con sus imágenes (página pública del producto)
      */
     @Transactional(readOnly = true)
-    public List<ProductoDTO> obtenerTodosLosProductos() {
-        return productoRepository.findByDisponibleTrue()
+    public ProductoDTO obtenerProductoPublico(Long productoId) {
+        return productoRepository.findConRelacionesByIdIn(List.of(productoId)).stream()
+                .filter(Producto::getDisponible)
+                .findFirst()
+                .map(producto -> convertirADTOs(List.of(producto)).get(0))
+                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+    }
+
+    /**
+     * Obtener productos por id con sus imágenes (carga de índices en memoria)
+     * Usa una transacción nueva porque se llama desde oyentes posteriores al commit
+     */
+    @Transactional(readOnly = true, propagation = Propagation.REQUIRES_NEW)
+    public List<ProductoDTO> obtenerProductosPorIds(List<Long> productoIds) {
+        if (productoIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return convertirADTOs(productoRepository.findConRelacionesByIdIn(productoIds));
+    }
+    
+    /**
+     * Obtener un lote de productos disponibles ordenados por id (construcción de índices)
+     */
+    @Transactional(readOnly = true, propagation = Propagation.REQUIRES_NEW)
+    public List<ProductoDTO> obtenerLoteDisponibles(Long despuesDeId, int limite) {
+        return convertirADTOs(productoRepository.findDisponiblesConRelacionesDesde(
+                despuesDeId, PageRequest.of(0, limite)));
+    }
+    
+    /**
+     * Unidades vendidas de cada producto en pedidos no cancelados (peso de las sugerencias)
+     */
+    @Transactional(readOnly = true, propagation = Propagation.REQUIRES_NEW)
+    public Map<Long, Long> obtenerUnidadesVendidas(List<Long> productoIds) {
+        if (productoIds.isEmpty()) {
+            return Map.of();
+        }
+        return detallePedidoRepository.sumarCantidadesVendidas(productoIds, Pedido.EstadoPedido.cancelado)
                 .stream()
-                .map(this::convertirADTO)
-                .collect(Collectors.toList());
+                .collect(Collectors.toMap(fila -> (Long) fila[0], fila -> ((Number) fila[1]).longValue()));
     }
     
     /**
-     * Obtener productos por categoría (público)
+     * Valor de la columna de orden que se guarda en el cursor
      */
-    @Transactional(readOnly = true)
-    public List<ProductoDTO> obtenerProductosPorCategoria(Long categoriaId) {
-        return productoRepository.findByCategoriaId(categoriaId)
+    private Object valorDeOrden(Producto producto, FiltroCatalogoDTO.OrdenCatalogo orden) {
+        return switch (orden) {
+            case RECIENTES -> producto.getFechaPublicacion();
+            case PRECIO_ASC, PRECIO_DESC -> producto.getPrecioUnitario().toPlainString();
+            case CALIFICACION -> producto.getCalificacionPromedio().toPlainString();
+        };
+    }
+
+    private <T> T parsearCursor(String valor, Function<String, T> parser) {
+        try {
+            return parser.apply(valor);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+    
+    /**
+     * Convertir una lista de productos a DTOs (lectura de catálogo)
+     * Las relaciones deben venir cargadas con JOIN FETCH; las imágenes de todos
+     * los productos se obtienen en UNA sola consulta, sin importar cuántos sean.
+     */
+    private List<ProductoDTO> convertirADTOs(List<Producto> productos) {
+        if (productos.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        List<Long> productoIds = productos.stream()
+                .map(Producto::getId)
+                .collect(Collectors.toList());
+        
+        Map<Long, List<ImagenProductoDTO>> imagenesPorProducto = imagenProductoRepository
+                .findByProductoIdIn(productoIds)
                 .stream()
-                .filter(Producto::getDisponible)
-                .map(this::convertirADTO)
+                .map(this::convertirAImagenDTO)
+                .collect(Collectors.groupingBy(ImagenProductoDTO::getProductoId));
+        
+        return productos.stream()
+                .map(producto -> convertirADTO(producto,
+                        imagenesPorProducto.getOrDefault(producto.getId(), new ArrayList<>())))
                 .collect(Collectors.toList());
     }
     
@@ -248,6 +411,17 @@ public class ProductoService {
      * Convertir Producto a DTO
      */
     private ProductoDTO convertirADTO(Producto producto) {
+        List<ImagenProductoDTO> imagenes = imagenProductoRepository.findByProductoId(producto.getId())
+                .stream()
+                .map(this::convertirAImagenDTO)
+                .collect(Collectors.toList());
+        return convertirADTO(producto, imagenes);
+    }
+    
+    /**
+     * Convertir Producto a DTO con sus imágenes ya cargadas
+     */
+    private ProductoDTO convertirADTO(Producto producto, List<ImagenProductoDTO> imagenes) {
         ProductoDTO dto = new ProductoDTO();
         dto.setId(producto.getId());
         dto.setProveedorId(producto.getProveedor().getId());
@@ -269,12 +443,6 @@ public class ProductoService {
         dto.setDisponible(producto.getDisponible());
         dto.setFechaPublicacion(producto.getFechaPublicacion());
         dto.setCalificacionPromedio(producto.getCalificacionPromedio());
-        
-        // Obtener imágenes
-        List<ImagenProductoDTO> imagenes = imagenProductoRepository.findByProductoId(producto.getId())
-                .stream()
-                .map(this::convertirAImagenDTO)
-                .collect(Collectors.toList());
         dto.setImagenes(imagenes);
         
         return dto;
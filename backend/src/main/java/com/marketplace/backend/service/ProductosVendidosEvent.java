@@ -0,0 +1,12 @@
+package com.marketplace.backend.service;
+
+import java.util.Map;
+
+/**
+ * Evento publicado por el checkout con las unidades vendidas de cada producto.
+ * Los oyentes lo reciben después del commit de la transacción del pedido.
+ *
+ * @param unidades unidades vendidas por id de producto
+ */
+public record ProductosVendidosEvent(Map<Long, Long> unidades) {
+}
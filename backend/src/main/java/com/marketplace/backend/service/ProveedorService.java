@@ -7,11 +7,14 @@ import com.marketplace.backend.dto.ProveedorDTO;
 import com.marketplace.backend.dto.SolicitudProveedorDTO;
 import com.marketplace.backend.repository.ProveedorRepository;
 import com.marketplace.backend.repository.UsuarioRepository;
+import com.marketplace.backend.security.TokensRevocadosEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -22,6 +25,7 @@ public class ProveedorService {
     
     private final ProveedorRepository proveedorRepository;
     private final UsuarioRepository usuarioRepository;
+    private final ApplicationEventPublisher eventPublisher;
     
     /**
      * Usuario solicita ser proveedor
@@ -134,6 +138,7 @@ public class ProveedorService {
         if (estado == Proveedor.EstadoProveedor.APROBADO) {
             Usuario usuario = proveedor.getUsuario();
             usuario.setRol(Usuario.RolUsuario.proveedor);
+            revocarTokens(usuario);
             usuarioRepository.save(usuario);
             log.info("Usuario {} cambiado a rol PROVEEDOR", usuario.getId());
         }
@@ -143,6 +148,7 @@ public class ProveedorService {
             Usuario usuario = proveedor.getUsuario();
             if (usuario.getRol() == Usuario.RolUsuario.proveedor) {
                 usuario.setRol(Usuario.RolUsuario.usuario);
+                revocarTokens(usuario);
                 usuarioRepository.save(usuario);
                 log.info("Usuario {} cambiado a rol USUARIO", usuario.getId());
             }
@@ -163,11 +169,20 @@ public class ProveedorService {
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
         
         usuario.setRol(dto.getRol());
+        revocarTokens(usuario);
         usuarioRepository.save(usuario);
         
         log.info("Rol de usuario {} actualizado a {}", usuarioId, dto.getRol());
     }
     
+    /**
+     * Invalidar los tokens vigentes del usuario para que el nuevo rol aplique de inmediato
+     */
+    private void revocarTokens(Usuario usuario) {
+        usuario.setTokensRevocadosEn(LocalDateTime.now());
+        eventPublisher.publishEvent(new TokensRevocadosEvent(usuario.getId()));
+    }
+    
     /**
      * Convertir Proveedor a DTO
      */
@@ -0,0 +1,299 @@
+package com.marketplace.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marketplace.backend.dominio.RespuestaIdempotente;
+import com.marketplace.backend.repository.RespuestaIdempotenteRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Soporte del header Idempotency-Key: la primera petición con una clave hace el trabajo
+ * y las repetidas dentro del plazo reciben la misma respuesta. Las repeticiones concurrentes
+ * esperan el resultado de la que está en curso en lugar de volver a ejecutarla.
+ * Antes de ejecutar, la clave se registra en curso en la tabla idempotencia (un INSERT que
+ * no inserta nada si ya existe), así entre instancias también la ejecuta una sola petición.
+ * Las respuestas exitosas quedan guardadas para sobrevivir reinicios; los errores liberan la
+ * clave, así que un reintento posterior vuelve a intentarlo. Una clave cuya acción ya terminó
+ * bien nunca se libera: si no se pudo guardar la respuesta se reintenta en la limpieza.
+ * Reusar la clave con otro cuerpo de petición se rechaza con 422.
+ */
+@Component
+@Slf4j
+public class RegistroIdempotencia {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final String HEADER_REPETIDA = "Idempotent-Replayed";
+    private static final int LONGITUD_MAXIMA_CLAVE = 255;
+    // estado_http de una clave registrada cuya petición aún no terminó
+    private static final int EN_CURSO = 0;
+
+    private final RespuestaIdempotenteRepository repository;
+    private final ObjectMapper objectMapper;
+    private final Duration vigencia;
+    private final Duration retencionEnMemoria;
+    private final Duration plazoEnCurso;
+
+    // Peticiones en curso y respuestas recientes; la tabla cubre el resto del plazo
+    private final Map<String, Entrada> enMemoria = new ConcurrentHashMap<>();
+
+    // Respuestas exitosas que no se pudieron guardar en la tabla; limpiar() las reintenta
+    private final Map<String, ResponseEntity<Map<String, Object>>> sinGuardar = new ConcurrentHashMap<>();
+
+    private final AtomicLong ejecutadas = new AtomicLong();
+    private final AtomicLong repetidas = new AtomicLong();
+    private final AtomicLong rechazadas = new AtomicLong();
+
+    private record Entrada(CompletableFuture<ResponseEntity<Map<String, Object>>> respuesta, String huella,
+                           Instant creada) {
+    }
+
+    public RegistroIdempotencia(RespuestaIdempotenteRepository repository,
+                                ObjectMapper objectMapper,
+                                @Value("${idempotencia.vigencia-horas:24}") long vigenciaHoras,
+                                @Value("${idempotencia.memoria-minutos:10}") long memoriaMinutos,
+                                @Value("${idempotencia.en-curso-minutos:5}") long enCursoMinutos) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.vigencia = Duration.ofHours(vigenciaHoras);
+        this.retencionEnMemoria = Duration.ofMinutes(memoriaMinutos);
+        this.plazoEnCurso = Duration.ofMinutes(enCursoMinutos);
+    }
+
+    /**
+     * Ejecutar la acción una sola vez por usuario, operación y clave; peticion es el cuerpo
+     * recibido (se compara su huella con la de la primera petición).
+     * Sin clave la acción se ejecuta siempre.
+     */
+    public ResponseEntity<Map<String, Object>> ejecutar(Long usuarioId, String operacion, String clave, Object peticion,
+                                                        Supplier<ResponseEntity<Map<String, Object>>> accion) {
+        if (clave == null || clave.isBlank()) {
+            return accion.get();
+        }
+        if (clave.length() > LONGITUD_MAXIMA_CLAVE) {
+            return error(HttpStatus.BAD_REQUEST, HEADER + " no puede superar " + LONGITUD_MAXIMA_CLAVE + " caracteres");
+        }
+
+        String hash = digerir(usuarioId + ":" + operacion + ":" + clave);
+        String huella = huella(peticion);
+        Entrada propia = new Entrada(new CompletableFuture<>(), huella, Instant.now());
+        Entrada existente = enMemoria.putIfAbsent(hash, propia);
+        if (existente != null) {
+            if (!existente.huella().equals(huella)) {
+                return otraPeticion();
+            }
+            return repetir(esperar(existente.respuesta()));
+        }
+
+        ResponseEntity<Map<String, Object>> respuesta;
+        try {
+            ResponseEntity<Map<String, Object>> registrada = reservar(hash, huella);
+            if (registrada != null) {
+                if (!registrada.getStatusCode().is2xxSuccessful()) {
+                    // 409 o 422: no se recuerda, la clave pertenece a otra petición
+                    enMemoria.remove(hash, propia);
+                }
+                propia.respuesta().complete(registrada);
+                return registrada;
+            }
+
+            ejecutadas.incrementAndGet();
+            respuesta = accion.get();
+        } catch (RuntimeException e) {
+            enMemoria.remove(hash, propia);
+            propia.respuesta().completeExceptionally(e);
+            liberarTrasError(hash);
+            throw e;
+        }
+
+        if (respuesta.getStatusCode().is2xxSuccessful()) {
+            // La acción ya confirmó: aunque guardar falle la clave queda en curso, no se libera
+            propia.respuesta().complete(respuesta);
+            guardarOReintentar(hash, respuesta);
+        } else {
+            liberarTrasError(hash);
+            enMemoria.remove(hash, propia);
+            propia.respuesta().complete(respuesta);
+        }
+        return respuesta;
+    }
+
+    /**
+     * Quitar de memoria las respuestas ya resueltas y borrar de la tabla las vencidas
+     */
+    @Scheduled(fixedDelayString = "${idempotencia.limpieza-ms:300000}")
+    public void limpiar() {
+        sinGuardar.forEach(this::guardarOReintentar);
+
+        Instant limite = Instant.now().minus(retencionEnMemoria);
+        enMemoria.entrySet().removeIf(e -> e.getValue().respuesta().isDone() && e.getValue().creada().isBefore(limite)
+                && !sinGuardar.containsKey(e.getKey()));
+
+        int borradas = repository.deleteVencidas(LocalDateTime.now());
+        if (borradas > 0) {
+            log.debug("Eliminadas {} respuestas idempotentes vencidas", borradas);
+        }
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("enMemoria", enMemoria.size());
+        datos.put("ejecutadas", ejecutadas.get());
+        datos.put("repetidas", repetidas.get());
+        datos.put("rechazadas", rechazadas.get());
+        datos.put("sinGuardar", sinGuardar.size());
+        datos.put("vigenciaHoras", vigencia.toHours());
+        return datos;
+    }
+
+    /**
+     * Registrar la clave en curso. Devuelve null si esta petición la obtuvo; si no, la
+     * respuesta para el cliente: la guardada, 409 si otra petición la está ejecutando o 422
+     * si la clave se usó con otro cuerpo. Un registro vencido se borra y se vuelve a intentar.
+     */
+    private ResponseEntity<Map<String, Object>> reservar(String hash, String huella) {
+        for (int intento = 0; intento < 2; intento++) {
+            LocalDateTime ahora = LocalDateTime.now();
+            if (repository.insertarEnCurso(hash, huella, ahora.plus(plazoEnCurso)) == 1) {
+                return null;
+            }
+            RespuestaIdempotente registrada = repository.findById(hash).orElse(null);
+            if (registrada == null) {
+                continue;
+            }
+            if (!registrada.getExpiraEn().isAfter(ahora)) {
+                repository.liberarVencida(hash, ahora);
+                continue;
+            }
+            if (registrada.getHuella() != null && !registrada.getHuella().equals(huella)) {
+                return otraPeticion();
+            }
+            if (registrada.getEstadoHttp() == EN_CURSO) {
+                return enCurso();
+            }
+            return repetir(leer(registrada));
+        }
+        return enCurso();
+    }
+
+    private ResponseEntity<Map<String, Object>> esperar(CompletableFuture<ResponseEntity<Map<String, Object>>> respuesta) {
+        try {
+            return respuesta.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> repetir(ResponseEntity<Map<String, Object>> original) {
+        if (original.getHeaders().containsKey(HEADER_REPETIDA)) {
+            return original;
+        }
+        repetidas.incrementAndGet();
+        return ResponseEntity.status(original.getStatusCode())
+                .headers(original.getHeaders())
+                .header(HEADER_REPETIDA, "true")
+                .body(original.getBody());
+    }
+
+    private ResponseEntity<Map<String, Object>> otraPeticion() {
+        rechazadas.incrementAndGet();
+        return error(HttpStatus.UNPROCESSABLE_ENTITY, HEADER + " ya se usó con otra petición");
+    }
+
+    private ResponseEntity<Map<String, Object>> enCurso() {
+        rechazadas.incrementAndGet();
+        return error(HttpStatus.CONFLICT, "Hay una petición con la misma " + HEADER + " en curso, reintente en unos segundos");
+    }
+
+    private static ResponseEntity<Map<String, Object>> error(HttpStatus estado, String mensaje) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", false);
+        response.put("message", mensaje);
+        return ResponseEntity.status(estado).body(response);
+    }
+
+    private ResponseEntity<Map<String, Object>> leer(RespuestaIdempotente registrada) {
+        Map<String, Object> cuerpo = null;
+        try {
+            if (registrada.getCuerpo() != null) {
+                cuerpo = objectMapper.readValue(registrada.getCuerpo(), new TypeReference<Map<String, Object>>() {});
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Respuesta idempotente ilegible, se repite sin cuerpo: {}", e.getMessage());
+        }
+        return ResponseEntity.status(HttpStatus.valueOf(registrada.getEstadoHttp())).body(cuerpo);
+    }
+
+    private void guardar(String hash, ResponseEntity<Map<String, Object>> respuesta) {
+        String cuerpo = null;
+        try {
+            cuerpo = respuesta.getBody() == null ? null : objectMapper.writeValueAsString(respuesta.getBody());
+        } catch (JsonProcessingException e) {
+            log.warn("No se pudo serializar la respuesta idempotente: {}", e.getMessage());
+        }
+        repository.completar(hash, respuesta.getStatusCode().value(), cuerpo, LocalDateTime.now().plus(vigencia));
+    }
+
+    /**
+     * Guardar la respuesta de una acción que terminó bien; si la tabla falla la clave sigue
+     * en curso (otras instancias responden 409) y la respuesta se reintenta en la limpieza
+     */
+    private void guardarOReintentar(String hash, ResponseEntity<Map<String, Object>> respuesta) {
+        try {
+            guardar(hash, respuesta);
+            sinGuardar.remove(hash, respuesta);
+        } catch (RuntimeException e) {
+            log.warn("No se pudo guardar la respuesta idempotente, se reintentará: {}", e.getMessage());
+            sinGuardar.put(hash, respuesta);
+        }
+    }
+
+    private void liberarTrasError(String hash) {
+        try {
+            repository.liberar(hash);
+        } catch (RuntimeException e) {
+            // Vence sola al terminar el plazo en curso
+            log.warn("No se pudo liberar la clave idempotente: {}", e.getMessage());
+        }
+    }
+
+    private String huella(Object peticion) {
+        try {
+            return digerir(objectMapper.writeValueAsString(peticion));
+        } catch (JsonProcessingException e) {
+            return digerir(String.valueOf(peticion));
+        }
+    }
+
+    private static String digerir(String valor) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(valor.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
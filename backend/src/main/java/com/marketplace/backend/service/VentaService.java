@@ -1,63 +1,258 @@
 package com.marketplace.backend.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.marketplace.backend.dominio.*;
+import com.marketplace.backend.dto.PaginaDTO;
+import com.marketplace.backend.dto.PedidoProveedorDTO;
+import com.marketplace.backend.dto.ResumenVentasDTO;
 import com.marketplace.backend.dto.VentaDTO;
 import com.marketplace.backend.repository.*;
+import com.marketplace.backend.util.CursorUtil;
+import com.marketplace.backend.util.ExportadorFilas;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class VentaService {
 
+    public static final int LIMITE_POR_DEFECTO = 50;
+    private static final int LIMITE_MAXIMO = 200;
+    public static final int TOP_PRODUCTOS_POR_DEFECTO = 5;
+    private static final int LIMITE_TOP_PRODUCTOS = 50;
+    // Reconstrucción de ventas_diarias: días por transacción y proveedores por consulta
+    private static final int TRAMO_DIAS = 31;
+    private static final int PROVEEDORES_POR_LOTE = 100;
+
     private final DetallePedidoRepository detallePedidoRepository;
+    private final SubPedidoRepository subPedidoRepository;
     private final ProveedorRepository proveedorRepository;
     private final ImagenProductoRepository imagenProductoRepository; // Para la foto
+    private final VentasDiariasRepository ventasDiariasRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
 
+    /**
+     * Ventas del proveedor paginadas por cursor (más recientes primero).
+     * El rango de fechas es opcional e incluye ambos días.
+     */
     @Transactional(readOnly = true)
-    public List<VentaDTO> obtenerVentasPorProveedor(Long usuarioId) {
+    public PaginaDTO<VentaDTO> obtenerVentasPorProveedor(Long usuarioId, LocalDate desde, LocalDate hasta,
+                                                         String cursor, int limite) {
+        validarRango(desde, hasta);
+        limite = Math.max(1, Math.min(limite, LIMITE_MAXIMO));
+
         // 1. Buscar el proveedor asociado al usuario
         Proveedor proveedor = proveedorRepository.findByUsuarioId(usuarioId)
                 .orElseThrow(() -> new RuntimeException("No se encontró un perfil de proveedor para este usuario"));
 
-        // 2. Obtener los detalles de pedido de este proveedor
-        // OJO: Casteamos a Integer si tu Entidad Proveedor usa Integer ID, si usa Long quita el .intValue()
-        List<DetallePedido> ventas = detallePedidoRepository.findByProveedorIdOrderByPedidoFechaPedidoDesc(proveedor.getId());
-
-        // 3. Convertir a DTOs
-        return ventas.stream().map(this::convertirADTO).collect(Collectors.toList());
-    }
-
-    private VentaDTO convertirADTO(DetallePedido detalle) {
-        VentaDTO dto = new VentaDTO();
-        dto.setId(detalle.getId());
-        
-        Pedido pedido = detalle.getPedido();
-        Producto producto = detalle.getProducto();
-        
-        dto.setNumeroPedido(pedido.getNumeroPedido());
-        dto.setFechaVenta(pedido.getFechaPedido());
-        dto.setEstadoPedido(pedido.getEstado().toString());
-        
-        // Datos del cliente
-        dto.setClienteNombre(pedido.getUsuario().getNombre() + " " + pedido.getUsuario().getApellido());
-        
-        // Datos del producto
-        dto.setNombreProducto(producto.getNombre());
-        dto.setCantidad(detalle.getCantidad());
-        dto.setPrecioUnitario(detalle.getPrecioUnitario());
-        dto.setSubtotal(detalle.getSubtotal());
-        
-        // Obtener primera imagen
-        List<ImagenProducto> imagenes = imagenProductoRepository.findByProductoId(producto.getId());
-        if (!imagenes.isEmpty()) {
-            dto.setImagenUrl(imagenes.get(0).getUrlImagen());
-        }
-        
-        return dto;
-    }
-}
\ No newline at end of file
+        LocalDateTime cursorFecha = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] partes = CursorUtil.decodificar(cursor, 2);
+            try {
+                cursorFecha = LocalDateTime.parse(partes[0]);
+                cursorId = Long.valueOf(partes[1]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+        }
+
+        // 2. Una sola consulta con pedido, cliente y producto (se pide una fila extra para saber si hay más)
+        List<VentaDTO> ventas = detallePedidoRepository.findVentasPorProveedor(proveedor.getId(),
+                desde != null ? desde.atStartOfDay() : null,
+                hasta != null ? hasta.plusDays(1).atStartOfDay() : null,
+                cursorFecha, cursorId, PageRequest.of(0, limite + 1));
+
+        boolean hayMas = ventas.size() > limite;
+        if (hayMas) {
+            ventas = ventas.subList(0, limite);
+        }
+
+        // 3. Primera imagen de cada producto en una sola consulta
+        asignarImagenes(ventas);
+
+        String siguienteCursor = null;
+        if (hayMas) {
+            VentaDTO ultima = ventas.get(ventas.size() - 1);
+            siguienteCursor = CursorUtil.codificar(ultima.getFechaVenta(), ultima.getId());
+        }
+        return new PaginaDTO<>(ventas, siguienteCursor, hayMas);
+    }
+
+    /**
+     * Pedidos del proveedor (solo su subpedido de cada uno) paginados por cursor, más recientes
+     * primero. Una fila por pedido sin recorrer detalle_pedido.
+     */
+    @Transactional(readOnly = true)
+    public PaginaDTO<PedidoProveedorDTO> obtenerPedidosPorProveedor(Long usuarioId, LocalDate desde, LocalDate hasta,
+                                                                    String cursor, int limite) {
+        validarRango(desde, hasta);
+        limite = Math.max(1, Math.min(limite, LIMITE_MAXIMO));
+        Proveedor proveedor = proveedorRepository.findByUsuarioId(usuarioId)
+                .orElseThrow(() -> new RuntimeException("No se encontró un perfil de proveedor para este usuario"));
+
+        LocalDateTime cursorFecha = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] partes = CursorUtil.decodificar(cursor, 2);
+            try {
+                cursorFecha = LocalDateTime.parse(partes[0]);
+                cursorId = Long.valueOf(partes[1]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+        }
+
+        List<PedidoProveedorDTO> pedidos = subPedidoRepository.findPedidosPorProveedor(proveedor.getId(),
+                desde != null ? desde.atStartOfDay() : null,
+                hasta != null ? hasta.plusDays(1).atStartOfDay() : null,
+                cursorFecha, cursorId, PageRequest.of(0, limite + 1));
+
+        boolean hayMas = pedidos.size() > limite;
+        if (hayMas) {
+            pedidos = pedidos.subList(0, limite);
+        }
+
+        String siguienteCursor = null;
+        if (hayMas) {
+            PedidoProveedorDTO ultimo = pedidos.get(pedidos.size() - 1);
+            siguienteCursor = CursorUtil.codificar(ultimo.getFechaPedido(), ultimo.getId());
+        }
+        return new PaginaDTO<>(pedidos, siguienteCursor, hayMas);
+    }
+
+    /**
+     * Panel del proveedor: totales, serie diaria y productos más vendidos del rango,
+     * leídos solo de ventas_diarias (sin recorrer detalle_pedido)
+     */
+    @Transactional(readOnly = true)
+    public ResumenVentasDTO obtenerResumen(Long usuarioId, LocalDate desde, LocalDate hasta, int topProductos) {
+        validarRango(desde, hasta);
+        Proveedor proveedor = proveedorRepository.findByUsuarioId(usuarioId)
+                .orElseThrow(() -> new RuntimeException("No se encontró un perfil de proveedor para este usuario"));
+
+        List<ResumenVentasDTO.VentaDia> porDia = ventasDiariasRepository.obtenerPorDia(proveedor.getId(), desde, hasta);
+        long unidades = 0;
+        BigDecimal ingresos = BigDecimal.ZERO;
+        for (ResumenVentasDTO.VentaDia dia : porDia) {
+            unidades += dia.unidades();
+            ingresos = ingresos.add(dia.ingresos());
+        }
+
+        List<ResumenVentasDTO.ProductoVendido> top = ventasDiariasRepository.obtenerTopProductos(
+                proveedor.getId(), desde, hasta, Math.max(1, Math.min(topProductos, LIMITE_TOP_PRODUCTOS)));
+
+        return new ResumenVentasDTO(desde, hasta, unidades, ingresos, porDia, top);
+    }
+
+    /**
+     * Recalcular los acumulados diarios desde el historial (de un proveedor o de todos)
+     * para conciliarlos con detalle_pedido. Se recorre proveedor por proveedor y de a
+     * TRAMO_DIAS días, cada tramo en su propia transacción, para no bloquear detalle_pedido
+     * ni ventas_diarias mientras siguen entrando pedidos.
+     */
+    public int reconstruirVentasDiarias(Long proveedorId) {
+        int filas = 0;
+        if (proveedorId != null) {
+            filas = reconstruirProveedor(proveedorId);
+        } else {
+            long ultimoId = 0;
+            List<Long> proveedores;
+            do {
+                proveedores = ventasDiariasRepository.buscarProveedores(ultimoId, PROVEEDORES_POR_LOTE);
+                for (Long id : proveedores) {
+                    filas += reconstruirProveedor(id);
+                    ultimoId = id;
+                }
+            } while (proveedores.size() == PROVEEDORES_POR_LOTE);
+        }
+        log.info("Ventas diarias reconstruidas{}: {} filas",
+                proveedorId != null ? " del proveedor " + proveedorId : "", filas);
+        return filas;
+    }
+
+    private int reconstruirProveedor(Long proveedorId) {
+        VentasDiariasRepository.Rango rango = ventasDiariasRepository.rangoDeFechas(proveedorId);
+        if (rango == null) {
+            return 0;
+        }
+        int filas = 0;
+        for (LocalDate desde = rango.desde(); !desde.isAfter(rango.hasta()); desde = desde.plusDays(TRAMO_DIAS)) {
+            LocalDate inicio = desde;
+            Integer tramo = transactionTemplate.execute(estado ->
+                    ventasDiariasRepository.reconstruirTramo(proveedorId, inicio, inicio.plusDays(TRAMO_DIAS)));
+            filas += tramo != null ? tramo : 0;
+        }
+        return filas;
+    }
+
+    /**
+     * Validar la exportación antes de empezar a escribir la respuesta y devolver el proveedor
+     */
+    @Transactional(readOnly = true)
+    public Long prepararExportacion(Long usuarioId, LocalDate desde, LocalDate hasta) {
+        validarRango(desde, hasta);
+        return proveedorRepository.findByUsuarioId(usuarioId)
+                .map(Proveedor::getId)
+                .orElseThrow(() -> new RuntimeException("No se encontró un perfil de proveedor para este usuario"));
+    }
+
+    /**
+     * Escribir las ventas del rango en la salida a medida que llegan del cursor de la base de datos.
+     * Se llama desde el hilo del StreamingResponseBody: la transacción dura lo que dura la descarga.
+     */
+    @Transactional(readOnly = true)
+    public long exportarVentas(Long proveedorId, LocalDate desde, LocalDate hasta,
+                               ExportadorFilas.Formato formato, OutputStream salida) {
+        ExportadorFilas exportador = new ExportadorFilas(formato, salida, objectMapper,
+                "fecha", "numeroPedido", "estado", "cliente", "productoId", "producto",
+                "cantidad", "precioUnitario", "subtotal");
+        long filas = 0;
+        try (Stream<VentaDTO> ventas = detallePedidoRepository.streamVentasPorProveedor(proveedorId,
+                desde != null ? desde.atStartOfDay() : null,
+                hasta != null ? hasta.plusDays(1).atStartOfDay() : null)) {
+            Iterator<VentaDTO> iterador = ventas.iterator();
+            while (iterador.hasNext()) {
+                VentaDTO venta = iterador.next();
+                exportador.escribir(venta.getFechaVenta(), venta.getNumeroPedido(), venta.getEstadoPedido(),
+                        venta.getClienteNombre(), venta.getProductoId(), venta.getNombreProducto(),
+                        venta.getCantidad(), venta.getPrecioUnitario(), venta.getSubtotal());
+                filas++;
+            }
+        }
+        exportador.terminar();
+        log.info("Exportadas {} ventas del proveedor {} en {}", filas, proveedorId, formato);
+        return filas;
+    }
+
+    private static void validarRango(LocalDate desde, LocalDate hasta) {
+        if (desde != null && hasta != null && desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("La fecha inicial no puede ser posterior a la final");
+        }
+    }
+
+    private void asignarImagenes(List<VentaDTO> ventas) {
+        if (ventas.isEmpty()) {
+            return;
+        }
+        List<Long> productoIds = ventas.stream().map(VentaDTO::getProductoId).distinct().toList();
+
+        Map<Long, String> primeraImagen = imagenProductoRepository.findPrimeraImagenPorProducto(productoIds);
+        ventas.forEach(venta -> venta.setImagenUrl(primeraImagen.get(venta.getProductoId())));
+    }
+}
@@ -0,0 +1,46 @@
+package com.marketplace.backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Utilidades para cursores de paginación por keyset.
+ * El cursor es opaco para el cliente: Base64 URL-safe de los valores de la
+ * última fila entregada separados por "|".
+ */
+public final class CursorUtil {
+
+    private static final String SEPARADOR = "|";
+
+    private CursorUtil() {
+    }
+
+    /**
+     * Codifica los valores de la última fila en un cursor opaco
+     */
+    public static String codificar(Object... valores) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < valores.length; i++) {
+            if (i > 0) sb.append(SEPARADOR);
+            sb.append(valores[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un cursor validando el número de partes esperadas
+     */
+    public static String[] decodificar(String cursor, int partesEsperadas) {
+        try {
+            String plano = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = plano.split("\\" + SEPARADOR, -1);
+            if (partes.length != partesEsperadas) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            return partes;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+}
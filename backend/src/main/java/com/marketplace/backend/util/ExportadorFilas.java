@@ -0,0 +1,134 @@
+package com.marketplace.backend.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Escribe filas de una exportación directamente en la salida (CSV o NDJSON),
+ * sin acumularlas: la memoria usada no depende del número de filas.
+ */
+public final class ExportadorFilas {
+
+    public enum Formato {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String tipoContenido;
+        private final String extension;
+
+        Formato(String tipoContenido, String extension) {
+            this.tipoContenido = tipoContenido;
+            this.extension = extension;
+        }
+
+        public String getTipoContenido() {
+            return tipoContenido;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Formato desde(String valor) {
+            if (valor == null || valor.isBlank()) {
+                return CSV;
+            }
+            try {
+                return Formato.valueOf(valor.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Formato de exportación no soportado: " + valor);
+            }
+        }
+    }
+
+    private final Formato formato;
+    private final BufferedWriter salida;
+    private final ObjectMapper objectMapper;
+    private final String[] columnas;
+
+    public ExportadorFilas(Formato formato, OutputStream salida, ObjectMapper objectMapper, String... columnas) {
+        this.formato = formato;
+        this.salida = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+        this.objectMapper = objectMapper;
+        this.columnas = columnas;
+        if (formato == Formato.CSV) {
+            escribirLinea(String.join(",", columnas));
+        }
+    }
+
+    /**
+     * Escribir una fila con un valor por columna, en el mismo orden
+     */
+    public void escribir(Object... valores) {
+        if (formato == Formato.CSV) {
+            StringBuilder linea = new StringBuilder();
+            for (int i = 0; i < valores.length; i++) {
+                if (i > 0) linea.append(',');
+                linea.append(celdaCsv(valores[i]));
+            }
+            escribirLinea(linea.toString());
+        } else {
+            Map<String, Object> fila = new LinkedHashMap<>();
+            for (int i = 0; i < columnas.length; i++) {
+                fila.put(columnas[i], valores[i]);
+            }
+            try {
+                escribirLinea(objectMapper.writeValueAsString(fila));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("No se pudo serializar la fila", e);
+            }
+        }
+    }
+
+    /**
+     * Vaciar el búfer en la respuesta (no cierra la salida, eso lo hace el contenedor)
+     */
+    public void terminar() {
+        try {
+            salida.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void escribirLinea(String linea) {
+        try {
+            salida.write(linea);
+            salida.write('\n');
+        } catch (IOException e) {
+            // Normalmente el cliente canceló la descarga
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String celdaCsv(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor instanceof BigDecimal numero) {
+            return numero.toPlainString();
+        }
+        if (valor instanceof Number) {
+            return valor.toString();
+        }
+        String texto = valor.toString();
+        // Evitar que una hoja de cálculo interprete el texto como fórmula
+        if (!texto.isEmpty() && "=+-@".indexOf(texto.charAt(0)) >= 0) {
+            texto = "'" + texto;
+        }
+        if (texto.indexOf(',') >= 0 || texto.indexOf('"') >= 0 || texto.indexOf('\n') >= 0 || texto.indexOf('\r') >= 0) {
+            return "\"" + texto.replace("\"", "\"\"") + "\"";
+        }
+        return texto;
+    }
+}
@@ -0,0 +1,81 @@
+package com.marketplace.backend.security;
+
+import com.marketplace.backend.dominio.Usuario;
+import com.marketplace.backend.repository.UsuarioRepository;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CacheTokensVerificadosTest {
+
+    private final UsuarioRepository usuarioRepository = mock(UsuarioRepository.class);
+    private final JwtUtil jwtUtil = spy(new JwtUtil());
+    private CacheTokensVerificados cache;
+
+    @BeforeEach
+    void crearCache() {
+        when(usuarioRepository.findByTokensRevocadosEnAfter(any())).thenReturn(List.of());
+        cache = new CacheTokensVerificados(jwtUtil, usuarioRepository, 100);
+        cache.cargarRevocaciones();
+    }
+
+    @Test
+    void laFirmaSeVerificaUnaSolaVezPorToken() {
+        String token = jwtUtil.generarToken("ana@test.com", 1L, "usuario");
+
+        assertEquals(1L, cache.verificar(token).userId());
+        assertEquals(1L, cache.verificar(token).userId());
+        verify(jwtUtil, times(1)).verificar(token);
+    }
+
+    @Test
+    void unTokenVencidoSeRechazaAunqueEsteEnCache() throws Exception {
+        UsuarioAutenticado usuario = new UsuarioAutenticado(1L, "ana@test.com", "usuario");
+        doReturn(new TokenVerificado(usuario, Instant.now(), Instant.now().plusMillis(100)))
+                .when(jwtUtil).verificar("corto");
+
+        assertEquals(1L, cache.verificar("corto").userId());
+        Thread.sleep(150);
+        assertThrows(JwtException.class, () -> cache.verificar("corto"));
+    }
+
+    @Test
+    void laRevocacionNoAlcanzaAlTokenDelNuevoLogin() throws Exception {
+        String anterior = jwtUtil.generarToken("ana@test.com", 1L, "usuario");
+        String otroUsuario = jwtUtil.generarToken("luis@test.com", 2L, "usuario");
+        cache.verificar(anterior);
+
+        Thread.sleep(2);
+        cache.alRevocarTokens(new TokensRevocadosEvent(1L));
+        Thread.sleep(2);
+        String nuevo = jwtUtil.generarToken("ana@test.com", 1L, "proveedor");
+
+        assertThrows(JwtException.class, () -> cache.verificar(anterior));
+        assertEquals("proveedor", cache.verificar(nuevo).rol());
+        assertEquals(2L, cache.verificar(otroUsuario).userId());
+    }
+
+    @Test
+    void lasRevocacionesDeOtraInstanciaSeLeenDeLaBase() throws Exception {
+        String token = jwtUtil.generarToken("ana@test.com", 1L, "usuario");
+        cache.verificar(token);
+        Thread.sleep(2);
+
+        Usuario usuario = new Usuario();
+        usuario.setId(1L);
+        usuario.setTokensRevocadosEn(LocalDateTime.now());
+        when(usuarioRepository.findByTokensRevocadosEnAfter(any())).thenReturn(List.of(usuario));
+        cache.refrescarRevocaciones();
+
+        assertThrows(JwtException.class, () -> cache.verificar(token));
+    }
+}
@@ -0,0 +1,28 @@
+package com.marketplace.backend.service;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AnalizadorEspanolTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "tomate, Tomates",
+            "papa, papas",
+            "frijol, frijoles",
+            "limón, limones",
+            "mes, meses",
+            "arroz, arroces",
+            "nuez, nueces",
+            "lápiz, lápices",
+            "maíz, maíces",
+            "pez, peces",
+            "dulce, dulces",
+            "durazno, duraznos"
+    })
+    void singularYPluralTienenLaMismaRaiz(String singular, String plural) {
+        assertEquals(AnalizadorEspanol.analizar(singular), AnalizadorEspanol.analizar(plural));
+    }
+}
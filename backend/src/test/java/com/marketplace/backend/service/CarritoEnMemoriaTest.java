@@ -0,0 +1,130 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.config.EsquemaInicializador;
+import com.marketplace.backend.dominio.*;
+import com.marketplace.backend.dto.ActualizarCantidadDTO;
+import com.marketplace.backend.dto.AgregarCarritoDTO;
+import com.marketplace.backend.dto.CrearPedidoDTO;
+import com.marketplace.backend.repository.CarritoLotesRepository;
+import com.marketplace.backend.repository.ReservaStockRepository;
+import com.marketplace.backend.repository.StockRepository;
+import com.marketplace.backend.repository.VentasDiariasRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Carrito con escritura diferida: los cambios llegan a la tabla en el volcado y el
+ * checkout ve siempre la última versión. Transacciones reales para que se ejecuten
+ * las sincronizaciones de commit.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({CarritoService.class, PedidoService.class, GeneradorNumeroPedido.class, StockRepository.class,
+        VentasDiariasRepository.class, CarritoEnMemoria.class, CarritoLotesRepository.class, ContadorCarrito.class,
+        EsquemaInicializador.class, InventarioCaliente.class, ReservaStockRepository.class, VentaService.class,
+        DatosPrueba.class})
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "carrito.almacen=memoria"
+})
+class CarritoEnMemoriaTest {
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private CarritoEnMemoria carritoEnMemoria;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    private TransactionTemplate transaccion;
+
+    @BeforeEach
+    void prepararTransaccion() {
+        transaccion = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void losCambiosSeVuelcanYElCheckoutVeLaUltimaVersion() {
+        List<Long> productoIds = transaccion.execute(estado -> datos.crearProductos(2, 100));
+        Long arroz = productoIds.get(0);
+        Long frejol = productoIds.get(1);
+        Long usuarioId = transaccion.execute(estado -> datos.crearUsuario(Usuario.RolUsuario.usuario).getId());
+
+        Long itemArroz = carritoService.agregarProducto(usuarioId, new AgregarCarritoDTO(arroz, 2)).getId();
+        carritoService.agregarProducto(usuarioId, new AgregarCarritoDTO(frejol, 3));
+        carritoService.actualizarCantidad(usuarioId, itemArroz, new ActualizarCantidadDTO(5));
+        assertEquals(Map.of(), filasDelCarrito(usuarioId));
+
+        carritoEnMemoria.volcarPendientes();
+        assertEquals(Map.of(arroz, 5, frejol, 3), filasDelCarrito(usuarioId));
+
+        // Sin volcar: el checkout escribe el cambio en su transacción antes de leer el carrito
+        carritoService.eliminarProducto(usuarioId, itemArroz);
+        Pedido pedido = pedidoService.crearPedido(usuarioId, pedido());
+        assertEquals(Map.of(frejol, 3), lineasDelPedido(pedido.getId()));
+        assertEquals(0L, carritoService.contarItems(usuarioId));
+
+        carritoService.agregarProducto(usuarioId, new AgregarCarritoDTO(arroz, 1));
+        carritoEnMemoria.volcarPendientes();
+        assertEquals(Map.of(arroz, 1), filasDelCarrito(usuarioId));
+        assertTrue(carritoService.obtenerCarrito(usuarioId).getItems().get(0).getId() > 0);
+    }
+
+    private Map<Long, Integer> filasDelCarrito(Long usuarioId) {
+        return cantidadesPorProducto("SELECT producto_id, cantidad FROM carrito WHERE usuario_id = ?", usuarioId);
+    }
+
+    private Map<Long, Integer> lineasDelPedido(Long pedidoId) {
+        return cantidadesPorProducto("SELECT producto_id, cantidad FROM detalle_pedido WHERE pedido_id = ?", pedidoId);
+    }
+
+    private Map<Long, Integer> cantidadesPorProducto(String sql, Long id) {
+        Map<Long, Integer> cantidades = new HashMap<>();
+        jdbcTemplate.query(sql, fila -> {
+            cantidades.put(fila.getLong("producto_id"), fila.getInt("cantidad"));
+        }, id);
+        return cantidades;
+    }
+
+    private CrearPedidoDTO pedido() {
+        CrearPedidoDTO dto = new CrearPedidoDTO();
+        dto.setDireccionEntrega("Av. Siempre Viva 123");
+        dto.setTelefonoContacto("999888777");
+        return dto;
+    }
+}
@@ -0,0 +1,193 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.dominio.*;
+import com.marketplace.backend.dto.AgregarCarritoDTO;
+import com.marketplace.backend.dto.CarritoResumenDTO;
+import com.marketplace.backend.dto.ResultadoLineaCarritoDTO;
+import com.marketplace.backend.repository.CarritoLotesRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Import({CarritoService.class, CarritoEnMemoria.class, CarritoLotesRepository.class, ContadorCarrito.class,
+        LimpiezaCarritos.class, DatosPrueba.class})
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false",
+        // Las altas por lote usan el upsert de MySQL (INSERT ... ON DUPLICATE KEY UPDATE)
+        "spring.test.database.replace=none",
+        "spring.datasource.url=jdbc:h2:mem:carrito;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "carrito.limpieza.lote=2"
+})
+class CarritoServiceTest {
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private LimpiezaCarritos limpiezaCarritos;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void carritoUsaDosConsultasSinImportarCuantosItemsTenga() {
+        Usuario comprador = datos.crearUsuario(Usuario.RolUsuario.usuario);
+        Categoria categoria = datos.crearCategoria();
+        Proveedor agro = datos.crearProveedor();
+        Proveedor granja = datos.crearProveedor();
+
+        agregarAlCarrito(comprador, agro, categoria, 2);
+        assertEquals(2, contarConsultasDelCarrito(comprador.getId(), 2));
+
+        agregarAlCarrito(comprador, granja, categoria, 18);
+        assertEquals(2, contarConsultasDelCarrito(comprador.getId(), 20));
+
+        CarritoResumenDTO carrito = carritoService.obtenerCarrito(comprador.getId());
+        assertEquals(2, carrito.getTotalProveedores());
+        assertEquals(40, carrito.getCantidadProductos());
+        assertEquals(0, new BigDecimal("400.00").compareTo(carrito.getSubtotal()));
+        carrito.getItems().forEach(item -> assertEquals(
+                "https://img.test/" + item.getProductoId() + "-0.jpg", item.getImagenUrl()));
+    }
+
+    @Test
+    void agregarCreaLaLineaSumaYRechazaSiSuperaElStock() {
+        Usuario comprador = datos.crearUsuario(Usuario.RolUsuario.usuario);
+        Long productoId = datos.crearProducto(datos.crearProveedor(), datos.crearCategoria(), "Quinua",
+                new BigDecimal("10.00"), 5).getId();
+        em.flush();
+        em.clear();
+
+        // Cada alta es una petición propia: sin la línea leída por la anterior en el contexto
+        assertEquals(2, carritoService.agregarProducto(comprador.getId(), new AgregarCarritoDTO(productoId, 2)).getCantidad());
+        em.clear();
+        assertEquals(5, carritoService.agregarProducto(comprador.getId(), new AgregarCarritoDTO(productoId, 3)).getCantidad());
+        em.clear();
+
+        RuntimeException rechazo = assertThrows(RuntimeException.class,
+                () -> carritoService.agregarProducto(comprador.getId(), new AgregarCarritoDTO(productoId, 1)));
+        assertTrue(rechazo.getMessage().startsWith("Stock insuficiente"));
+
+        em.clear();
+        assertEquals(List.of(5), em.getEntityManager()
+                .createQuery("SELECT c.cantidad FROM Carrito c WHERE c.usuario.id = :usuario", Integer.class)
+                .setParameter("usuario", comprador.getId()).getResultList());
+    }
+
+    @Test
+    void loteAgregaSumaYRechazaPorLinea() {
+        Usuario comprador = datos.crearUsuario(Usuario.RolUsuario.usuario);
+        Proveedor agro = datos.crearProveedor();
+        Categoria categoria = datos.crearCategoria();
+        agregarAlCarrito(comprador, agro, categoria, 2);
+        Long quinua = datos.crearProducto(agro, categoria, "Quinua").getId();
+        List<Carrito> existentes = em.getEntityManager()
+                .createQuery("SELECT c FROM Carrito c ORDER BY c.id", Carrito.class).getResultList();
+        Long arroz = existentes.get(0).getProducto().getId();
+        Long frejol = existentes.get(1).getProducto().getId();
+        em.flush();
+        em.clear();
+
+        List<ResultadoLineaCarritoDTO> resultados = carritoService.agregarProductos(comprador.getId(), List.of(
+                new AgregarCarritoDTO(arroz, 3),
+                new AgregarCarritoDTO(quinua, 1),
+                new AgregarCarritoDTO(-1L, 1),
+                new AgregarCarritoDTO(frejol, 200),
+                new AgregarCarritoDTO(quinua, 2)));
+
+        assertEquals(List.of(arroz, quinua, -1L, frejol),
+                resultados.stream().map(ResultadoLineaCarritoDTO::getProductoId).toList());
+        assertEquals(5, resultados.get(0).getItem().getCantidad());
+        assertEquals(3, resultados.get(1).getItem().getCantidad());
+        assertEquals("Producto no encontrado", resultados.get(2).getMensaje());
+        assertFalse(resultados.get(3).isExito());
+
+        CarritoResumenDTO carrito = carritoService.obtenerCarrito(comprador.getId());
+        assertEquals(10, carrito.getCantidadProductos());
+        assertEquals(resultados.get(1).getItem().getId(), carrito.getItems().get(2).getId());
+    }
+
+    @Test
+    void limpiezaBorraLineasNoDisponiblesYCarritosAbandonadosPorLotes() {
+        Usuario activo = datos.crearUsuario(Usuario.RolUsuario.usuario);
+        Usuario abandonado = datos.crearUsuario(Usuario.RolUsuario.usuario);
+        Proveedor agro = datos.crearProveedor();
+        Categoria categoria = datos.crearCategoria();
+        agregarAlCarrito(activo, agro, categoria, 4);
+        agregarAlCarrito(abandonado, agro, categoria, 1);
+        List<Carrito> lineas = em.getEntityManager()
+                .createQuery("SELECT c FROM Carrito c WHERE c.usuario = :usuario ORDER BY c.id", Carrito.class)
+                .setParameter("usuario", activo).getResultList();
+        lineas.subList(0, 3).forEach(linea -> linea.getProducto().setDisponible(false));
+        em.flush();
+        em.getEntityManager()
+                .createNativeQuery("UPDATE carrito SET fecha_agregado = :fecha WHERE usuario_id = :usuario")
+                .setParameter("fecha", LocalDateTime.now().minusDays(61))
+                .setParameter("usuario", abandonado.getId())
+                .executeUpdate();
+        em.clear();
+
+        assertEquals(3, limpiezaCarritos.borrarLineasNoDisponibles());
+        assertEquals(1, limpiezaCarritos.borrarCarritosAbandonados(LocalDateTime.now().minusDays(60)));
+
+        assertEquals(List.of(lineas.get(3).getId()), em.getEntityManager()
+                .createQuery("SELECT c.id FROM Carrito c", Long.class).getResultList());
+    }
+
+    private long contarConsultasDelCarrito(Long usuarioId, int itemsEsperados) {
+        em.flush();
+        em.clear();
+
+        Statistics estadisticas = emf.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+
+        CarritoResumenDTO carrito = carritoService.obtenerCarrito(usuarioId);
+
+        assertEquals(itemsEsperados, carrito.getItems().size());
+        return estadisticas.getPrepareStatementCount();
+    }
+
+    private void agregarAlCarrito(Usuario comprador, Proveedor proveedor, Categoria categoria, int productos) {
+        for (int i = 0; i < productos; i++) {
+            Producto producto = datos.crearProducto(proveedor, categoria, "Producto " + i);
+
+            for (int j = 0; j < 2; j++) {
+                ImagenProducto imagen = new ImagenProducto();
+                imagen.setProducto(producto);
+                imagen.setUrlImagen("https://img.test/" + producto.getId() + "-" + j + ".jpg");
+                em.persist(imagen);
+            }
+
+            Carrito item = new Carrito();
+            item.setUsuario(comprador);
+            item.setProducto(producto);
+            item.setCantidad(2);
+            em.persist(item);
+        }
+    }
+}
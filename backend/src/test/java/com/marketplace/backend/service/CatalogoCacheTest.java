@@ -0,0 +1,91 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.dto.FiltroCatalogoDTO;
+import com.marketplace.backend.dto.PaginaDTO;
+import com.marketplace.backend.dto.ProductoDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CatalogoCacheTest {
+
+    private final CatalogoCache cache = new CatalogoCache(1000, 10);
+    private final AtomicInteger cargas = new AtomicInteger();
+
+    @Test
+    void unCambioDeStockInvalidaSoloLasPaginasDeEseProducto() {
+        FiltroCatalogoDTO primera = filtro(null);
+        FiltroCatalogoDTO segunda = filtro("cursor");
+        cache.obtener(primera, pagina(1L, 2L));
+        cache.obtener(segunda, pagina(3L, 4L));
+        assertEquals(2, cargas.get());
+
+        cache.alModificarCatalogo(CatalogoModificadoEvent.deStock(List.of(2L)));
+        cache.obtener(primera, pagina(1L, 2L));
+        cache.obtener(segunda, pagina(3L, 4L));
+        assertEquals(3, cargas.get());
+
+        cache.alModificarCatalogo(CatalogoModificadoEvent.deStock(List.of(99L)));
+        cache.obtener(primera, pagina(1L, 2L));
+        assertEquals(3, cargas.get());
+
+        cache.alModificarCatalogo(CatalogoModificadoEvent.deProducto(99L));
+        cache.obtener(segunda, pagina(3L, 4L));
+        assertEquals(4, cargas.get());
+    }
+
+    @Test
+    void unaCargaQueSeCruzaConElCommitNoQuedaGuardada() {
+        FiltroCatalogoDTO filtro = filtro(null);
+        // La primera carga lee el stock anterior y el commit se invalida antes de que termine
+        Supplier<PaginaDTO<ProductoDTO>> cargador = () -> {
+            PaginaDTO<ProductoDTO> pagina = pagina(1L, 2L).get();
+            if (cargas.get() == 1) {
+                pagina.getItems().get(0).setStockDisponible(10);
+                cache.alModificarCatalogo(CatalogoModificadoEvent.deStock(List.of(1L)));
+            }
+            return pagina;
+        };
+
+        assertEquals(5, cache.obtener(filtro, cargador).getItems().get(0).getStockDisponible());
+        assertEquals(2, cargas.get());
+        assertEquals(5, cache.obtener(filtro, cargador).getItems().get(0).getStockDisponible());
+        assertEquals(2, cargas.get());
+    }
+
+    @Test
+    void losLimitesFueraDeRangoCompartenLaPaginaDelMaximo() {
+        FiltroCatalogoDTO maximo = filtro(null);
+        maximo.setLimite(FiltroCatalogoDTO.LIMITE_MAXIMO);
+        FiltroCatalogoDTO excesivo = filtro(null);
+        excesivo.setLimite(10_000);
+
+        cache.obtener(maximo, pagina(1L));
+        cache.obtener(excesivo, pagina(1L));
+        assertEquals(1, cargas.get());
+    }
+
+    private static FiltroCatalogoDTO filtro(String cursor) {
+        FiltroCatalogoDTO filtro = new FiltroCatalogoDTO();
+        filtro.setCursor(cursor);
+        return filtro;
+    }
+
+    private Supplier<PaginaDTO<ProductoDTO>> pagina(Long... ids) {
+        return () -> {
+            cargas.incrementAndGet();
+            List<ProductoDTO> productos = Arrays.stream(ids).map(id -> {
+                ProductoDTO producto = new ProductoDTO();
+                producto.setId(id);
+                producto.setStockDisponible(5);
+                return producto;
+            }).toList();
+            return new PaginaDTO<>(productos, null, false);
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package com.marketplace.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContadorRayadoTest {
+
+    @Test
+    void repartePorFranjasYJuntaVariasCuandoNingunaAlcanza() {
+        // 10 unidades en 4 franjas: 4, 2, 2, 2
+        ContadorRayado contador = new ContadorRayado(10, 4);
+        assertEquals(10, contador.disponible());
+
+        assertTrue(contador.reservar(7));
+        assertEquals(3, contador.disponible());
+
+        // No alcanza: lo tomado de las franjas se devuelve
+        assertFalse(contador.reservar(4));
+        assertEquals(3, contador.disponible());
+
+        assertTrue(contador.reservar(3));
+        assertEquals(0, contador.disponible());
+        assertFalse(contador.reservar(1));
+    }
+
+    @Test
+    void retirarNoBajaDeCero() {
+        ContadorRayado contador = new ContadorRayado(5, 3);
+        contador.retirar(2);
+        assertEquals(3, contador.disponible());
+
+        contador.retirar(10);
+        assertEquals(0, contador.disponible());
+        assertFalse(contador.reservar(1));
+
+        contador.devolver(2);
+        assertTrue(contador.reservar(2));
+    }
+
+    @Test
+    void reservasConcurrentesNuncaEntreganMasQueElTotal() throws Exception {
+        int unidades = 1_000;
+        ContadorRayado contador = new ContadorRayado(unidades, 8);
+
+        ExecutorService hilos = Executors.newFixedThreadPool(16);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Integer>> resultados = new ArrayList<>();
+        for (int h = 0; h < 16; h++) {
+            int cantidad = h % 3 + 1;
+            resultados.add(hilos.submit(() -> {
+                largada.await();
+                int reservadas = 0;
+                for (int i = 0; i < 200; i++) {
+                    if (contador.reservar(cantidad)) {
+                        reservadas += cantidad;
+                    }
+                    // Algunas reservas se devuelven, como un checkout que revierte
+                    if (i % 10 == 0 && contador.reservar(1)) {
+                        contador.devolver(1);
+                    }
+                }
+                return reservadas;
+            }));
+        }
+        largada.countDown();
+
+        int reservadas = 0;
+        for (Future<Integer> resultado : resultados) {
+            reservadas += resultado.get(30, TimeUnit.SECONDS);
+        }
+        hilos.shutdown();
+
+        assertTrue(reservadas <= unidades);
+        assertEquals(unidades - reservadas, contador.disponible());
+    }
+}
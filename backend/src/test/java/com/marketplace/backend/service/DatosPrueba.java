@@ -0,0 +1,98 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.dominio.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Datos comunes de las pruebas con base de datos: se agrega con @Import y crea las entidades
+ * con el EntityManager de la transacción en curso (la de la prueba o la que abra el llamador).
+ * Emails, RUC y nombres de categoría llevan un número propio para no chocar con los índices
+ * únicos cuando las pruebas confirman sus transacciones.
+ */
+class DatosPrueba {
+
+    private static final AtomicLong SECUENCIA = new AtomicLong();
+
+    private final EntityManager em;
+    private final JdbcTemplate jdbcTemplate;
+
+    DatosPrueba(EntityManager em, JdbcTemplate jdbcTemplate) {
+        this.em = em;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * La columna proveedores.estado se define como ENUM en minúsculas y el enum Java usa
+     * mayúsculas; en H2 la columna se pasa a VARCHAR una vez por contexto para poder leer
+     * los proveedores.
+     */
+    @PostConstruct
+    void prepararEsquema() {
+        jdbcTemplate.execute("ALTER TABLE proveedores ALTER COLUMN estado SET DATA TYPE VARCHAR(20)");
+    }
+
+    Usuario crearUsuario(Usuario.RolUsuario rol) {
+        Usuario usuario = new Usuario();
+        usuario.setEmail(rol + "-" + SECUENCIA.incrementAndGet() + "@test.com");
+        usuario.setPassword("secreto");
+        usuario.setNombre("Ana");
+        usuario.setApellido("Pérez");
+        usuario.setRol(rol);
+        em.persist(usuario);
+        return usuario;
+    }
+
+    Proveedor crearProveedor() {
+        long numero = SECUENCIA.incrementAndGet();
+        Proveedor proveedor = new Proveedor();
+        proveedor.setUsuario(crearUsuario(Usuario.RolUsuario.proveedor));
+        proveedor.setRuc(String.format("20%09d", numero));
+        proveedor.setNombreEmpresa("Empresa " + numero);
+        proveedor.setEstado(Proveedor.EstadoProveedor.APROBADO);
+        em.persist(proveedor);
+        return proveedor;
+    }
+
+    Categoria crearCategoria() {
+        Categoria categoria = new Categoria();
+        categoria.setNombre("Granos " + SECUENCIA.incrementAndGet());
+        em.persist(categoria);
+        return categoria;
+    }
+
+    Producto crearProducto(Proveedor proveedor, Categoria categoria, String nombre, BigDecimal precio, int stock) {
+        Producto producto = new Producto();
+        producto.setProveedor(proveedor);
+        producto.setCategoria(categoria);
+        producto.setNombre(nombre);
+        producto.setPrecioUnitario(precio);
+        producto.setUnidadMedida("kg");
+        producto.setStockDisponible(stock);
+        em.persist(producto);
+        return producto;
+    }
+
+    Producto crearProducto(Proveedor proveedor, Categoria categoria, String nombre) {
+        return crearProducto(proveedor, categoria, nombre, new BigDecimal("10.00"), 100);
+    }
+
+    /**
+     * Productos de un proveedor y una categoría nuevos, a 10.00 cada uno
+     */
+    List<Long> crearProductos(int cantidad, int stock) {
+        Proveedor proveedor = crearProveedor();
+        Categoria categoria = crearCategoria();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            ids.add(crearProducto(proveedor, categoria, "Producto " + i, new BigDecimal("10.00"), stock).getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,81 @@
+package com.marketplace.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeneradorNumeroPedidoTest {
+
+    private static final long AHORA = Instant.parse("2026-03-01T12:00:00Z").toEpochMilli();
+
+    @Test
+    void idsCrecenAunqueElRelojRetroceda() {
+        AtomicLong reloj = new AtomicLong(AHORA);
+        GeneradorNumeroPedido generador = new GeneradorNumeroPedido(7, reloj::get);
+
+        long anterior = generador.siguienteId();
+        for (int i = 0; i < 10_000; i++) {
+            if (i == 5_000) {
+                reloj.addAndGet(-1_000);
+            } else if (i % 100 == 0) {
+                reloj.incrementAndGet();
+            }
+            long id = generador.siguienteId();
+            assertTrue(id > anterior);
+            assertEquals(7, (id >>> 12) & 1023);
+            anterior = id;
+        }
+    }
+
+    @Test
+    void alAgotarLaSecuenciaPasaAlMilisegundoSiguiente() {
+        GeneradorNumeroPedido generador = new GeneradorNumeroPedido(3, () -> AHORA);
+
+        long primero = generador.siguienteId();
+        long milisegundo = primero >>> 22;
+        for (int secuencia = 1; secuencia < 4096; secuencia++) {
+            long id = generador.siguienteId();
+            assertEquals(milisegundo, id >>> 22);
+            assertEquals(secuencia, id & 4095);
+        }
+
+        long desbordado = generador.siguienteId();
+        assertEquals(milisegundo + 1, desbordado >>> 22);
+        assertEquals(0, desbordado & 4095);
+    }
+
+    @Test
+    void elOrdenAlfabeticoEsElNumerico() {
+        Random aleatorio = new Random(42);
+        List<Long> ids = new ArrayList<>(List.of(0L, 1L, 31L, 32L, Long.MAX_VALUE));
+        for (int i = 0; i < 1_000; i++) {
+            ids.add(aleatorio.nextLong() >>> 1);
+        }
+
+        List<Long> porTexto = new ArrayList<>(ids);
+        porTexto.sort(Comparator.comparing(GeneradorNumeroPedido::codificar));
+        ids.sort(null);
+
+        assertEquals(ids, porTexto);
+        assertEquals("0000000000000", GeneradorNumeroPedido.codificar(0));
+        assertEquals("7ZZZZZZZZZZZZ", GeneradorNumeroPedido.codificar(Long.MAX_VALUE));
+    }
+
+    @Test
+    void sinNodoSoloArrancaConUnaInstancia() {
+        assertEquals(0, GeneradorNumeroPedido.resolverNodo("", new String[0]));
+        assertEquals(0, GeneradorNumeroPedido.resolverNodo(null, new String[]{"local"}));
+        assertEquals(12, GeneradorNumeroPedido.resolverNodo("12", new String[]{"prod"}));
+        assertThrows(IllegalStateException.class,
+                () -> GeneradorNumeroPedido.resolverNodo("", new String[]{"prod"}));
+    }
+}
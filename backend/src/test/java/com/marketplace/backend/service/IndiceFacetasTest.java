@@ -0,0 +1,109 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.dto.ConteoFacetaDTO;
+import com.marketplace.backend.dto.FiltroFacetasDTO;
+import com.marketplace.backend.dto.ProductoDTO;
+import com.marketplace.backend.dto.ResultadoFacetasDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IndiceFacetasTest {
+
+    // Productos que devuelve la "base de datos" al recargar
+    private final Map<Long, ProductoDTO> catalogo = new HashMap<>();
+    private IndiceFacetas indice;
+
+    @BeforeEach
+    void crearIndice() {
+        ProductoService productoService = mock(ProductoService.class);
+        when(productoService.obtenerProductosPorIds(anyList())).thenAnswer(invocacion -> {
+            List<Long> ids = invocacion.getArgument(0);
+            return ids.stream().map(catalogo::get).filter(Objects::nonNull).toList();
+        });
+        indice = new IndiceFacetas(productoService);
+    }
+
+    @Test
+    void losConteosSiguenAlCrearModificarYEliminarProductos() {
+        guardar(producto(1L, 10L, 100L, "kg", "5.00"));
+        guardar(producto(2L, 10L, 100L, "kg", "20.00"));
+        guardar(producto(3L, 20L, 200L, "Unidad", "20.00"));
+        indice.actualizar(List.of(1L, 2L, 3L));
+
+        assertEquals(3, filtrar().getTotal());
+        assertEquals(Map.of("10", 2L, "20", 1L), conteos("categoria"));
+        assertEquals(Map.of("kg", 2L, "unidad", 1L), conteos("unidadMedida"));
+        assertEquals(Map.of("HASTA_10", 1L, "DE_10_A_50", 2L), conteos("precio"));
+
+        // El producto 2 cambia de categoría y de precio: deja de contar en los valores anteriores
+        guardar(producto(2L, 20L, 100L, "kg", "75.00"));
+        indice.actualizar(List.of(2L));
+        assertEquals(Map.of("10", 1L, "20", 2L), conteos("categoria"));
+        assertEquals(Map.of("HASTA_10", 1L, "DE_10_A_50", 1L, "DE_50_A_100", 1L), conteos("precio"));
+
+        // Un producto no disponible y uno eliminado salen de todas las facetas
+        catalogo.get(3L).setDisponible(false);
+        catalogo.remove(1L);
+        indice.actualizar(List.of(1L, 3L));
+        assertEquals(1, filtrar().getTotal());
+        assertEquals(Map.of("20", 1L), conteos("categoria"));
+        assertEquals(Map.of("100", 1L), conteos("proveedor"));
+        assertEquals(Map.of("kg", 1L), conteos("unidadMedida"));
+        assertEquals(Map.of("DE_50_A_100", 1L), conteos("precio"));
+    }
+
+    @Test
+    void losConteosDeUnaFacetaIgnoranSuPropioFiltro() {
+        guardar(producto(1L, 10L, 100L, "kg", "5.00"));
+        guardar(producto(2L, 10L, 200L, "kg", "5.00"));
+        guardar(producto(3L, 20L, 200L, "kg", "5.00"));
+        indice.actualizar(List.of(1L, 2L, 3L));
+
+        FiltroFacetasDTO filtro = new FiltroFacetasDTO();
+        filtro.setCategoriaIds(List.of(10L));
+        ResultadoFacetasDTO resultado = indice.filtrar(filtro);
+
+        assertEquals(2, resultado.getTotal());
+        assertEquals(Map.of("10", 2L, "20", 1L), conteos(resultado, "categoria"));
+        assertEquals(Map.of("100", 1L, "200", 1L), conteos(resultado, "proveedor"));
+    }
+
+    private ResultadoFacetasDTO filtrar() {
+        return indice.filtrar(new FiltroFacetasDTO());
+    }
+
+    private Map<String, Long> conteos(String faceta) {
+        return conteos(filtrar(), faceta);
+    }
+
+    private static Map<String, Long> conteos(ResultadoFacetasDTO resultado, String faceta) {
+        Map<String, Long> conteos = new HashMap<>();
+        for (ConteoFacetaDTO conteo : resultado.getFacetas().get(faceta)) {
+            conteos.put(conteo.getValor(), conteo.getCantidad());
+        }
+        return conteos;
+    }
+
+    private void guardar(ProductoDTO producto) {
+        catalogo.put(producto.getId(), producto);
+    }
+
+    private static ProductoDTO producto(Long id, Long categoriaId, Long proveedorId, String unidad, String precio) {
+        ProductoDTO producto = new ProductoDTO();
+        producto.setId(id);
+        producto.setCategoriaId(categoriaId);
+        producto.setProveedorId(proveedorId);
+        producto.setUnidadMedida(unidad);
+        producto.setPrecioUnitario(new BigDecimal(precio));
+        producto.setDisponible(true);
+        return producto;
+    }
+}
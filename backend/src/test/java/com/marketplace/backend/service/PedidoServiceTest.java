@@ -0,0 +1,352 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.config.EsquemaInicializador;
+import com.marketplace.backend.dominio.*;
+import com.marketplace.backend.dto.CrearPedidoDTO;
+import com.marketplace.backend.exception.StockInsuficienteException;
+import com.marketplace.backend.repository.CarritoLotesRepository;
+import com.marketplace.backend.repository.ReservaStockRepository;
+import com.marketplace.backend.repository.StockRepository;
+import com.marketplace.backend.repository.VentasDiariasRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pruebas de checkout con transacciones reales (sin el rollback automático de @DataJpaTest)
+ * para poder ejecutar compradores concurrentes.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({PedidoService.class, GeneradorNumeroPedido.class, StockRepository.class, VentasDiariasRepository.class,
+        CarritoEnMemoria.class, CarritoLotesRepository.class, EsquemaInicializador.class, InventarioCaliente.class,
+        ReservaStockRepository.class, VentaService.class, DatosPrueba.class})
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.marketplace.backend.service.PedidoServiceTest$ContadorSentencias",
+        "spring.jpa.show-sql=false"
+})
+class PedidoServiceTest {
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private InventarioCaliente inventarioCaliente;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    private TransactionTemplate transaccion;
+
+    @BeforeEach
+    void prepararTransaccion() {
+        transaccion = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void compradoresConcurrentesNoSobrevendenNiSeBloquean() throws Exception {
+        int compradores = 200;
+        int stockInicial = 50;
+
+        List<Long> productoIds = transaccion.execute(estado -> datos.crearProductos(3, stockInicial));
+        List<Long> usuarioIds = transaccion.execute(estado -> crearCompradoresConCarrito(compradores, productoIds));
+
+        ExecutorService hilos = Executors.newFixedThreadPool(32);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Boolean>> resultados = new ArrayList<>();
+        for (Long usuarioId : usuarioIds) {
+            resultados.add(hilos.submit(() -> {
+                largada.await();
+                try {
+                    pedidoService.crearPedido(usuarioId, pedido());
+                    return true;
+                } catch (StockInsuficienteException e) {
+                    return false;
+                }
+            }));
+        }
+        largada.countDown();
+
+        // Cualquier otra excepción (deadlock, timeout de bloqueo) hace fallar la prueba
+        int exitosos = 0;
+        for (Future<Boolean> resultado : resultados) {
+            if (resultado.get(60, TimeUnit.SECONDS)) {
+                exitosos++;
+            }
+        }
+        hilos.shutdown();
+
+        assertEquals(stockInicial, exitosos);
+        Map<Long, Integer> stockFinal = stockRepository.obtenerStock(productoIds);
+        productoIds.forEach(id -> assertEquals(0, stockFinal.get(id)));
+
+        Number vendidos = (Number) em.createNativeQuery(
+                        "SELECT COALESCE(SUM(cantidad), 0) FROM detalle_pedido WHERE producto_id IN (:ids)")
+                .setParameter("ids", productoIds)
+                .getSingleResult();
+        assertEquals(stockInicial * productoIds.size(), vendidos.intValue());
+    }
+
+    @Test
+    void productoCalienteNoSobrevendeYLaConciliacionDejaLaTablaAlDia() throws Exception {
+        int compradores = 500;
+        int stockInicial = 300;
+
+        Long productoId = transaccion.execute(estado -> datos.crearProductos(1, stockInicial)).get(0);
+        List<Long> usuarioIds = transaccion.execute(estado -> crearCompradoresConCarrito(compradores, List.of(productoId)));
+        inventarioCaliente.activar(productoId);
+
+        ExecutorService hilos = Executors.newFixedThreadPool(64);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Boolean>> resultados = new ArrayList<>();
+        for (Long usuarioId : usuarioIds) {
+            resultados.add(hilos.submit(() -> {
+                largada.await();
+                try {
+                    pedidoService.crearPedido(usuarioId, pedido());
+                    return true;
+                } catch (StockInsuficienteException e) {
+                    return false;
+                }
+            }));
+        }
+        largada.countDown();
+
+        int exitosos = 0;
+        for (Future<Boolean> resultado : resultados) {
+            if (resultado.get(60, TimeUnit.SECONDS)) {
+                exitosos++;
+            }
+        }
+        hilos.shutdown();
+
+        assertEquals(stockInicial, exitosos);
+        assertEquals(0, inventarioCaliente.obtenerStock(List.of(productoId)).get(productoId));
+
+        inventarioCaliente.conciliar();
+        assertEquals(0, stockRepository.obtenerStock(List.of(productoId)).get(productoId));
+        assertEquals(0L, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM reservas_stock WHERE aplicada = FALSE", Long.class));
+
+        // El conciliador sumó las ventas calientes a ventas_diarias: coinciden con la reconstrucción
+        Long proveedorId = em.find(Producto.class, productoId).getProveedor().getId();
+        List<Map<String, Object>> incrementales = ventasDiarias(proveedorId);
+        ventaService.reconstruirVentasDiarias(proveedorId);
+        assertEquals(1, incrementales.size());
+        assertEquals((long) stockInicial, ((Number) incrementales.get(0).get("unidades")).longValue());
+        assertEquals(incrementales, ventasDiarias(proveedorId));
+    }
+
+    @Test
+    void conciliacionNoDejaStockNegativoSiElProveedorLoBajo() {
+        Long productoId = transaccion.execute(estado -> datos.crearProductos(1, 10)).get(0);
+        Long usuarioId = transaccion.execute(estado -> crearCompradorConCarrito(List.of(productoId), 0));
+        jdbcTemplate.update("UPDATE carrito SET cantidad = 5 WHERE usuario_id = ?", usuarioId);
+        inventarioCaliente.activar(productoId);
+        pedidoService.crearPedido(usuarioId, pedido());
+
+        // El proveedor deja 2 unidades en la tabla con 5 reservas todavía sin conciliar
+        transaccion.executeWithoutResult(estado -> {
+            jdbcTemplate.update("UPDATE productos SET stock_disponible = 2 WHERE id = ?", productoId);
+            inventarioCaliente.ajustarAlConfirmar(productoId, -8);
+        });
+        assertEquals(0, inventarioCaliente.obtenerStock(List.of(productoId)).get(productoId));
+
+        inventarioCaliente.conciliar();
+        assertEquals(0, stockRepository.obtenerStock(List.of(productoId)).get(productoId));
+    }
+
+    @Test
+    void ventasDiariasIncrementalesCoincidenConLaReconstruccion() throws Exception {
+        List<Long> productoIds = transaccion.execute(estado -> datos.crearProductos(3, 100));
+        List<Long> usuarioIds = transaccion.execute(estado -> crearCompradoresConCarrito(40, productoIds));
+
+        // Compradores concurrentes: varios intentan crear la misma fila del día a la vez
+        ExecutorService hilos = Executors.newFixedThreadPool(8);
+        List<Future<Pedido>> resultados = new ArrayList<>();
+        for (Long usuarioId : usuarioIds) {
+            resultados.add(hilos.submit(() -> pedidoService.crearPedido(usuarioId, pedido())));
+        }
+        for (Future<Pedido> resultado : resultados) {
+            resultado.get(60, TimeUnit.SECONDS);
+        }
+        hilos.shutdown();
+
+        Long proveedorId = em.find(Producto.class, productoIds.get(0)).getProveedor().getId();
+        List<Map<String, Object>> incrementales = ventasDiarias(proveedorId);
+        ventaService.reconstruirVentasDiarias(proveedorId);
+
+        assertEquals(productoIds.size(), incrementales.size());
+        assertEquals(incrementales, ventasDiarias(proveedorId));
+    }
+
+    private List<Map<String, Object>> ventasDiarias(Long proveedorId) {
+        return jdbcTemplate.queryForList("SELECT producto_id, fecha, unidades, ingresos, lineas " +
+                "FROM ventas_diarias WHERE proveedor_id = ? ORDER BY producto_id, fecha", proveedorId);
+    }
+
+    @Test
+    void checkoutEscribeLasLineasEnBatchSinImportarCuantasSean() {
+        List<Long> productoIds = transaccion.execute(estado -> datos.crearProductos(20, 100));
+        List<Long> compradores = transaccion.execute(estado -> List.of(
+                crearCompradorConCarrito(productoIds.subList(0, 1), 0),
+                crearCompradorConCarrito(productoIds.subList(0, 2), 0),
+                crearCompradorConCarrito(productoIds, 0)));
+
+        // Calentamiento: la primera inserción reserva el bloque de ids
+        pedidoService.crearPedido(compradores.get(0), pedido());
+
+        assertEquals(sentenciasDelCheckout(compradores.get(1)), sentenciasDelCheckout(compradores.get(2)));
+    }
+
+    @Test
+    void checkoutConVariosProveedoresCreaUnSubpedidoPorProveedor() {
+        List<Long> agro = transaccion.execute(estado -> datos.crearProductos(2, 100));
+        List<Long> granja = transaccion.execute(estado -> datos.crearProductos(3, 100));
+        List<Long> productoIds = new ArrayList<>(agro);
+        productoIds.addAll(granja);
+        Long usuarioId = transaccion.execute(estado -> crearCompradorConCarrito(productoIds, 1));
+
+        Pedido pedido = pedidoService.crearPedido(usuarioId, pedido());
+
+        List<Map<String, Object>> subPedidos = jdbcTemplate.queryForList(
+                "SELECT s.lineas, s.unidades, s.subtotal, " +
+                "(SELECT COUNT(*) FROM detalle_pedido d WHERE d.sub_pedido_id = s.id " +
+                "AND d.proveedor_id = s.proveedor_id) AS detalles " +
+                "FROM sub_pedidos s WHERE s.pedido_id = ? ORDER BY s.lineas", pedido.getId());
+        assertEquals(2, subPedidos.size());
+        assertEquals(List.of(2, 3), subPedidos.stream().map(s -> ((Number) s.get("lineas")).intValue()).toList());
+        assertEquals(List.of(2L, 3L), subPedidos.stream().map(s -> ((Number) s.get("detalles")).longValue()).toList());
+        assertEquals(0, new BigDecimal("30.00").compareTo((BigDecimal) subPedidos.get(1).get("subtotal")));
+        assertEquals(0, pedido.getTotal().compareTo(new BigDecimal("50.00")));
+    }
+
+    @Test
+    void pedidoEnColaLoProcesaUnSoloTrabajador() throws Exception {
+        List<Long> productoIds = transaccion.execute(estado -> datos.crearProductos(2, 100));
+        Long usuarioId = transaccion.execute(estado -> crearCompradorConCarrito(productoIds, 0));
+        Long pedidoId = pedidoService.registrarPedidoEnCola(usuarioId, pedido()).getId();
+
+        // Como dos instancias que recuperan el mismo pedido al iniciar
+        ExecutorService hilos = Executors.newFixedThreadPool(4);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Boolean>> resultados = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            resultados.add(hilos.submit(() -> {
+                largada.await();
+                pedidoService.marcarProcesando(pedidoId);
+                return pedidoService.procesarPedidoEnCola(pedidoId);
+            }));
+        }
+        largada.countDown();
+
+        int procesados = 0;
+        for (Future<Boolean> resultado : resultados) {
+            if (resultado.get(60, TimeUnit.SECONDS)) {
+                procesados++;
+            }
+        }
+        hilos.shutdown();
+
+        assertEquals(1, procesados);
+        assertEquals(1L, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM detalle_pedido WHERE pedido_id = ? AND producto_id = ?",
+                Long.class, pedidoId, productoIds.get(0)));
+        assertEquals(99, stockRepository.obtenerStock(productoIds).get(productoIds.get(0)));
+
+        pedidoService.marcarFallido(pedidoId, "reintento tardío");
+        assertEquals("COMPLETADO", jdbcTemplate.queryForObject(
+                "SELECT estado_checkout FROM pedidos WHERE id = ?", String.class, pedidoId));
+    }
+
+    private int sentenciasDelCheckout(Long usuarioId) {
+        ContadorSentencias.SENTENCIAS.set(0);
+        pedidoService.crearPedido(usuarioId, pedido());
+        return ContadorSentencias.SENTENCIAS.get();
+    }
+
+    /**
+     * Cuenta las sentencias que Hibernate prepara (una por batch), sin el generador de ids
+     */
+    public static class ContadorSentencias implements StatementInspector {
+        static final AtomicInteger SENTENCIAS = new AtomicInteger();
+
+        @Override
+        public String inspect(String sql) {
+            if (!sql.contains("generadores_id")) {
+                SENTENCIAS.incrementAndGet();
+            }
+            return sql;
+        }
+    }
+
+    private CrearPedidoDTO pedido() {
+        CrearPedidoDTO dto = new CrearPedidoDTO();
+        dto.setDireccionEntrega("Av. Siempre Viva 123");
+        dto.setTelefonoContacto("999888777");
+        return dto;
+    }
+
+    /**
+     * Cada comprador tiene todos los productos en su carrito, agregados en distinto orden
+     */
+    private List<Long> crearCompradoresConCarrito(int cantidad, List<Long> productoIds) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            ids.add(crearCompradorConCarrito(productoIds, i));
+        }
+        return ids;
+    }
+
+    private Long crearCompradorConCarrito(List<Long> productoIds, int desplazamiento) {
+        Usuario usuario = datos.crearUsuario(Usuario.RolUsuario.usuario);
+        for (int j = 0; j < productoIds.size(); j++) {
+            Carrito item = new Carrito();
+            item.setUsuario(usuario);
+            item.setProducto(em.getReference(Producto.class,
+                    productoIds.get((desplazamiento + j) % productoIds.size())));
+            item.setCantidad(1);
+            em.persist(item);
+        }
+        return usuario.getId();
+    }
+}
@@ -0,0 +1,170 @@
+package com.marketplace.backend.service;
+
+import com.marketplace.backend.dominio.*;
+import com.marketplace.backend.dto.FiltroCatalogoDTO;
+import com.marketplace.backend.dto.PaginaDTO;
+import com.marketplace.backend.dto.ProductoDTO;
+import com.marketplace.backend.repository.ReservaStockRepository;
+import com.marketplace.backend.repository.StockRepository;
+import com.marketplace.backend.repository.VentasDiariasRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Import({ProductoService.class, CatalogoCache.class, InventarioCaliente.class, ReservaStockRepository.class,
+        StockRepository.class, VentasDiariasRepository.class, DatosPrueba.class})
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+class ProductoServiceTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private DatosPrueba datos;
+
+    @Test
+    void catalogoUsaDosConsultasSinImportarElTamanioDeLaPagina() {
+        Proveedor proveedor = datos.crearProveedor();
+        Categoria categoria = datos.crearCategoria();
+        Subcategoria subcategoria = crearSubcategoria(categoria);
+
+        crearProductos(proveedor, categoria, subcategoria, 5);
+        assertEquals(2, contarConsultasDelCatalogo(5));
+
+        crearProductos(proveedor, categoria, subcategoria, 45);
+        assertEquals(2, contarConsultasDelCatalogo(50));
+    }
+
+    @Test
+    void paginacionPorCursorRecorreTodoElCatalogoSinRepetir() {
+        Proveedor proveedor = datos.crearProveedor();
+        Categoria categoria = datos.crearCategoria();
+        crearProductos(proveedor, categoria, crearSubcategoria(categoria), 20);
+        em.flush();
+        em.clear();
+
+        FiltroCatalogoDTO filtro = new FiltroCatalogoDTO();
+        filtro.setOrden(FiltroCatalogoDTO.OrdenCatalogo.PRECIO_DESC);
+        filtro.setLimite(7);
+
+        Set<Long> vistos = new HashSet<>();
+        BigDecimal precioAnterior = null;
+        PaginaDTO<ProductoDTO> pagina;
+        do {
+            pagina = productoService.obtenerCatalogo(filtro);
+            for (ProductoDTO producto : pagina.getItems()) {
+                assertTrue(vistos.add(producto.getId()));
+                if (precioAnterior != null) {
+                    assertTrue(producto.getPrecioUnitario().compareTo(precioAnterior) <= 0);
+                }
+                precioAnterior = producto.getPrecioUnitario();
+            }
+            filtro.setCursor(pagina.getSiguienteCursor());
+        } while (pagina.isHayMas());
+
+        assertEquals(20, vistos.size());
+    }
+
+    @Test
+    void ordenPorCalificacionIncluyeLosProductosSinResenas() {
+        Proveedor proveedor = datos.crearProveedor();
+        Categoria categoria = datos.crearCategoria();
+        for (int i = 0; i < 10; i++) {
+            Producto producto = datos.crearProducto(proveedor, categoria, "Producto " + i);
+            // Solo algunos tienen reseñas; el resto queda en 0 y empata
+            if (i % 3 == 0) {
+                producto.setCalificacionPromedio(new BigDecimal("4.5"));
+            }
+        }
+        em.flush();
+        em.clear();
+
+        FiltroCatalogoDTO filtro = new FiltroCatalogoDTO();
+        filtro.setProveedorId(proveedor.getId());
+        filtro.setOrden(FiltroCatalogoDTO.OrdenCatalogo.CALIFICACION);
+        filtro.setLimite(3);
+
+        Set<Long> vistos = new HashSet<>();
+        BigDecimal calificacionAnterior = null;
+        PaginaDTO<ProductoDTO> pagina;
+        do {
+            pagina = productoService.obtenerCatalogo(filtro);
+            for (ProductoDTO producto : pagina.getItems()) {
+                assertTrue(vistos.add(producto.getId()));
+                if (calificacionAnterior != null) {
+                    assertTrue(producto.getCalificacionPromedio().compareTo(calificacionAnterior) <= 0);
+                }
+                calificacionAnterior = producto.getCalificacionPromedio();
+            }
+            filtro.setCursor(pagina.getSiguienteCursor());
+        } while (pagina.isHayMas());
+
+        assertEquals(10, vistos.size());
+    }
+
+    private long contarConsultasDelCatalogo(int productosEsperados) {
+        em.flush();
+        em.clear();
+        catalogoCache.invalidarTodo();
+
+        Statistics estadisticas = emf.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+
+        FiltroCatalogoDTO filtro = new FiltroCatalogoDTO();
+        filtro.setLimite(FiltroCatalogoDTO.LIMITE_MAXIMO);
+        PaginaDTO<ProductoDTO> pagina = productoService.obtenerCatalogo(filtro);
+
+        assertEquals(productosEsperados, pagina.getItems().size());
+        pagina.getItems().forEach(p -> assertEquals(2, p.getImagenes().size()));
+        return estadisticas.getPrepareStatementCount();
+    }
+
+    private Subcategoria crearSubcategoria(Categoria categoria) {
+        Subcategoria subcategoria = new Subcategoria();
+        subcategoria.setCategoria(categoria);
+        subcategoria.setNombre("Arroz");
+        return em.persist(subcategoria);
+    }
+
+    private void crearProductos(Proveedor proveedor, Categoria categoria, Subcategoria subcategoria, int cantidad) {
+        for (int i = 0; i < cantidad; i++) {
+            Producto producto = datos.crearProducto(proveedor, categoria, "Producto " + i,
+                    new BigDecimal("10.00").add(BigDecimal.valueOf(i)), 100);
+            producto.setSubcategoria(subcategoria);
+
+            for (int j = 0; j < 2; j++) {
+                ImagenProducto imagen = new ImagenProducto();
+                imagen.setProducto(producto);
+                imagen.setUrlImagen("https://img.test/" + i + "-" + j + ".jpg");
+                em.persist(imagen);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.marketplace.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marketplace.backend.repository.RespuestaIdempotenteRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Dos registros sobre la misma tabla hacen de dos instancias de la aplicación
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        // El registro de la clave usa INSERT IGNORE de MySQL
+        "spring.test.database.replace=none",
+        "spring.datasource.url=jdbc:h2:mem:idempotencia;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+class RegistroIdempotenciaTest {
+
+    @Autowired
+    private RespuestaIdempotenteRepository repository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void laClaveSeEjecutaUnaVezEntreInstanciasYNoAdmiteOtroCuerpo() throws Exception {
+        RegistroIdempotencia instanciaA = new RegistroIdempotencia(repository, objectMapper, 24, 10, 5);
+        RegistroIdempotencia instanciaB = new RegistroIdempotencia(repository, objectMapper, 24, 10, 5);
+        AtomicInteger ejecuciones = new AtomicInteger();
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch terminar = new CountDownLatch(1);
+
+        CompletableFuture<ResponseEntity<Map<String, Object>>> primera = CompletableFuture.supplyAsync(() ->
+                instanciaA.ejecutar(1L, "checkout", "clave-1", List.of("pedido", 1), () -> {
+                    ejecuciones.incrementAndGet();
+                    enCurso.countDown();
+                    try {
+                        terminar.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return ResponseEntity.ok(Map.of("success", true));
+                }));
+        assertTrue(enCurso.await(10, TimeUnit.SECONDS));
+
+        // La otra instancia no la vuelve a ejecutar mientras sigue en curso
+        assertEquals(HttpStatus.CONFLICT, instanciaB.ejecutar(1L, "checkout", "clave-1", List.of("pedido", 1),
+                () -> respuestaNoEsperada(ejecuciones)).getStatusCode());
+        terminar.countDown();
+        assertEquals(HttpStatus.OK, primera.get(10, TimeUnit.SECONDS).getStatusCode());
+
+        ResponseEntity<Map<String, Object>> repetida = instanciaB.ejecutar(1L, "checkout", "clave-1",
+                List.of("pedido", 1), () -> respuestaNoEsperada(ejecuciones));
+        assertEquals(HttpStatus.OK, repetida.getStatusCode());
+        assertEquals("true", repetida.getHeaders().getFirst("Idempotent-Replayed"));
+        assertEquals(true, repetida.getBody().get("success"));
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, instanciaB.ejecutar(1L, "checkout", "clave-1",
+                List.of("pedido", 2), () -> respuestaNoEsperada(ejecuciones)).getStatusCode());
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void unErrorLiberaLaClaveParaElReintento() {
+        RegistroIdempotencia registro = new RegistroIdempotencia(repository, objectMapper, 24, 10, 5);
+
+        ResponseEntity<Map<String, Object>> fallida = registro.ejecutar(2L, "carrito-agregar", "clave-2", "cuerpo",
+                () -> ResponseEntity.badRequest().body(Map.of("success", false)));
+        ResponseEntity<Map<String, Object>> reintento = registro.ejecutar(2L, "carrito-agregar", "clave-2", "cuerpo",
+                () -> ResponseEntity.status(HttpStatus.CREATED).body(Map.of("success", true)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, fallida.getStatusCode());
+        assertEquals(HttpStatus.CREATED, reintento.getStatusCode());
+    }
+
+    @Test
+    void siNoSePuedeGuardarLaRespuestaLaClaveNoSeLibera() {
+        // La tabla falla justo al guardar la primera respuesta y después vuelve
+        RespuestaIdempotenteRepository conFalla = mock(RespuestaIdempotenteRepository.class,
+                AdditionalAnswers.delegatesTo(repository));
+        doAnswer(invocacion -> {
+            throw new DataAccessResourceFailureException("sin conexión");
+        }).doAnswer(AdditionalAnswers.delegatesTo(repository))
+                .when(conFalla).completar(anyString(), anyInt(), any(), any());
+        RegistroIdempotencia instanciaA = new RegistroIdempotencia(conFalla, objectMapper, 24, 10, 5);
+        RegistroIdempotencia instanciaB = new RegistroIdempotencia(repository, objectMapper, 24, 10, 5);
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        ResponseEntity<Map<String, Object>> primera = instanciaA.ejecutar(3L, "checkout", "clave-3", "cuerpo", () -> {
+            ejecuciones.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("success", true));
+        });
+        assertEquals(HttpStatus.CREATED, primera.getStatusCode());
+
+        // El pedido ya se creó: la misma instancia lo repite y la otra ve la clave en curso
+        assertEquals(HttpStatus.CREATED, instanciaA.ejecutar(3L, "checkout", "clave-3", "cuerpo",
+                () -> respuestaNoEsperada(ejecuciones)).getStatusCode());
+        assertEquals(HttpStatus.CONFLICT, instanciaB.ejecutar(3L, "checkout", "clave-3", "cuerpo",
+                () -> respuestaNoEsperada(ejecuciones)).getStatusCode());
+
+        instanciaA.limpiar();
+        ResponseEntity<Map<String, Object>> repetida = instanciaB.ejecutar(3L, "checkout", "clave-3", "cuerpo",
+                () -> respuestaNoEsperada(ejecuciones));
+        assertEquals(HttpStatus.CREATED, repetida.getStatusCode());
+        assertEquals("true", repetida.getHeaders().getFirst("Idempotent-Replayed"));
+        assertEquals(1, ejecuciones.get());
+    }
+
+    private static ResponseEntity<Map<String, Object>> respuestaNoEsperada(AtomicInteger ejecuciones) {
+        ejecuciones.incrementAndGet();
+        return ResponseEntity.ok(Map.of("success", false));
+    }
+}
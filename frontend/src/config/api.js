@@ -29,6 +29,7 @@ export const API_ENDPOINTS = {
 
   // Productos - Público
   PUBLIC_PRODUCTOS: `${API_BASE_URL}/public/productos`,
+  PUBLIC_PRODUCTO: (productoId) => `${API_BASE_URL}/public/productos/${productoId}`,
   PUBLIC_PRODUCTOS_CATEGORIA: (categoriaId) => `${API_BASE_URL}/public/productos/categoria/${categoriaId}`,
 
   // Categorías - Público
@@ -43,7 +44,6 @@ export const API_ENDPOINTS = {
   CARRITO_ACTUALIZAR: (carritoId) => `${API_BASE_URL}/usuario/carrito/${carritoId}`,
   CARRITO_ELIMINAR: (carritoId) => `${API_BASE_URL}/usuario/carrito/${carritoId}`,
   CARRITO_VACIAR: `${API_BASE_URL}/usuario/carrito`,
-  CARRITO_LIMPIAR: `${API_BASE_URL}/usuario/carrito/limpiar`,
 
   // ⭐ NUEVO: Pedidos
   PEDIDOS_MIS_PEDIDOS: `${API_BASE_URL}/pedidos/mis-pedidos`,
@@ -40,6 +40,17 @@ export const CartProvider = ({ children }) => {
     }
   };
 
+  /**
+   * Tomar el contador de la cabecera de la respuesta; si no vino, pedirlo
+   */
+  const updateCountFrom = async (result) => {
+    if (result?.carritoItems != null) {
+      setCartCount(result.carritoItems);
+    } else {
+      await loadCartCount();
+    }
+  };
+
   /**
    * Agregar producto al carrito
    */
@@ -52,8 +63,8 @@ export const CartProvider = ({ children }) => {
         return false;
       }
 
-      await cartService.agregarProducto({ productoId, cantidad });
-      await loadCartCount();
+      const result = await cartService.agregarProducto({ productoId, cantidad });
+      await updateCountFrom(result);
       
       toast.success('Producto agregado al carrito');
       return true;
@@ -65,6 +76,31 @@ export const CartProvider = ({ children }) => {
     }
   };
 
+  /**
+   * Agregar varias líneas en una sola petición; devuelve el resultado de cada producto
+   */
+  const addManyToCart = async (items) => {
+    try {
+      setLoading(true);
+      const result = await cartService.agregarProductos(items);
+      await updateCountFrom(result);
+
+      const { aplicadas, rechazadas } = result.data;
+      if (rechazadas > 0) {
+        toast.error(`${rechazadas} productos no se pudieron agregar`);
+      }
+      if (aplicadas > 0) {
+        toast.success(`${aplicadas} productos agregados al carrito`);
+      }
+      return result.data.resultados;
+    } catch (error) {
+      toast.error(error.message || 'Error al agregar productos');
+      return null;
+    } finally {
+      setLoading(false);
+    }
+  };
+
   /**
    * Actualizar cantidad de un item
    */
@@ -88,8 +124,8 @@ export const CartProvider = ({ children }) => {
   const removeFromCart = async (carritoId) => {
     try {
       setLoading(true);
-      await cartService.eliminarProducto(carritoId);
-      await loadCartCount();
+      const result = await cartService.eliminarProducto(carritoId);
+      await updateCountFrom(result);
       toast.success('Producto eliminado del carrito');
       return true;
     } catch (error) {
@@ -129,6 +165,7 @@ export const CartProvider = ({ children }) => {
     cartCount,
     loading,
     addToCart,
+    addManyToCart,
     updateQuantity,
     removeFromCart,
     clearCart,
@@ -1,5 +1,5 @@
 import React, { useState, useEffect } from "react";
-import { TrendingUp, Calendar, Package, User, DollarSign, Search } from "lucide-react";
+import { TrendingUp, Calendar, Package, User, DollarSign, Search, Download } from "lucide-react";
 import ventaService from "../services/ventaService";
 import toast from "react-hot-toast";
 
@@ -7,30 +7,64 @@ export default function MisVentas() {
   const [ventas, setVentas] = useState([]);
   const [loading, setLoading] = useState(true);
   const [filtro, setFiltro] = useState("");
+  const [desde, setDesde] = useState("");
+  const [hasta, setHasta] = useState("");
+  const [siguienteCursor, setSiguienteCursor] = useState(null);
+  const [cargandoMas, setCargandoMas] = useState(false);
+  const [resumen, setResumen] = useState(null);
 
   useEffect(() => {
     cargarVentas();
-  }, []);
+  }, [desde, hasta]);
 
   const cargarVentas = async () => {
     try {
-      const data = await ventaService.obtenerMisVentas();
-      setVentas(data);
+      const [pagina, resumenRango] = await Promise.all([
+        ventaService.obtenerMisVentas({ desde, hasta }),
+        ventaService.obtenerResumen({ desde, hasta }),
+      ]);
+      setVentas(pagina.data);
+      setResumen(resumenRango);
+      setSiguienteCursor(pagina.hayMas ? pagina.siguienteCursor : null);
     } catch (error) {
       console.error(error);
-      toast.error("No se pudo cargar el historial de ventas");
+      toast.error(error.message || "No se pudo cargar el historial de ventas");
     } finally {
       setLoading(false);
     }
   };
 
+  const exportar = async () => {
+    try {
+      await ventaService.exportarVentas({ desde, hasta, formato: "csv" });
+    } catch (error) {
+      console.error(error);
+      toast.error(error.message || "No se pudieron exportar las ventas");
+    }
+  };
+
+  const cargarMas = async () => {
+    try {
+      setCargandoMas(true);
+      const pagina = await ventaService.obtenerMisVentas({ desde, hasta, cursor: siguienteCursor });
+      setVentas((anteriores) => [...anteriores, ...pagina.data]);
+      setSiguienteCursor(pagina.hayMas ? pagina.siguienteCursor : null);
+    } catch (error) {
+      console.error(error);
+      toast.error("No se pudieron cargar más ventas");
+    } finally {
+      setCargandoMas(false);
+    }
+  };
+
   // Filtrar ventas por nombre de producto o número de pedido
   const ventasFiltradas = ventas.filter(v => 
     v.nombreProducto.toLowerCase().includes(filtro.toLowerCase()) ||
     v.numeroPedido.toLowerCase().includes(filtro.toLowerCase())
   );
 
-  const totalIngresos = ventas.reduce((acc, curr) => acc + curr.subtotal, 0);
+  // Del resumen del rango: la tabla solo tiene las páginas ya cargadas
+  const totalIngresos = resumen ? Number(resumen.ingresos) : 0;
 
   if (loading) {
     return (
@@ -76,6 +110,36 @@ export default function MisVentas() {
               onChange={(e) => setFiltro(e.target.value)}
             />
           </div>
+          <div className="flex flex-col sm:flex-row gap-4 mt-4">
+            <label className="flex items-center gap-2 text-sm text-gray-600">
+              <Calendar size={16} className="text-gray-400" />
+              Desde
+              <input
+                type="date"
+                className="px-3 py-2 border border-gray-200 rounded-lg focus:ring-2 focus:ring-orange-500 outline-none"
+                value={desde}
+                max={hasta || undefined}
+                onChange={(e) => setDesde(e.target.value)}
+              />
+            </label>
+            <label className="flex items-center gap-2 text-sm text-gray-600">
+              Hasta
+              <input
+                type="date"
+                className="px-3 py-2 border border-gray-200 rounded-lg focus:ring-2 focus:ring-orange-500 outline-none"
+                value={hasta}
+                min={desde || undefined}
+                onChange={(e) => setHasta(e.target.value)}
+              />
+            </label>
+            <button
+              onClick={exportar}
+              className="sm:ml-auto flex items-center justify-center gap-2 px-4 py-2 border border-gray-300 rounded-lg hover:bg-gray-50 transition text-sm font-medium text-gray-700"
+            >
+              <Download size={16} />
+              Exportar CSV
+            </button>
+          </div>
         </div>
 
         {/* Tabla de Ventas */}
@@ -162,6 +226,16 @@ export default function MisVentas() {
             </table>
           </div>
         </div>
+
+        {siguienteCursor && (
+          <button
+            onClick={cargarMas}
+            disabled={cargandoMas}
+            className="w-full mt-6 py-3 border border-gray-300 rounded-lg bg-white hover:bg-gray-50 transition font-medium text-gray-700 disabled:opacity-50"
+          >
+            {cargandoMas ? "Cargando..." : "Cargar más ventas"}
+          </button>
+        )}
       </div>
     </div>
   );
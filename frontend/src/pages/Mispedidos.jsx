@@ -8,6 +8,8 @@ export default function Mispedidos() {
   const navigate = useNavigate();
   const [pedidos, setPedidos] = useState([]);
   const [loading, setLoading] = useState(true);
+  const [cargandoMas, setCargandoMas] = useState(false);
+  const [siguienteCursor, setSiguienteCursor] = useState(null);
   const [expandedPedido, setExpandedPedido] = useState(null);
 
   useEffect(() => {
@@ -17,8 +19,9 @@ export default function Mispedidos() {
   const fetchPedidos = async () => {
     try {
       setLoading(true);
-      const data = await pedidoService.obtenerMisPedidos();
-      setPedidos(data);
+      const pagina = await pedidoService.obtenerMisPedidos();
+      setPedidos(pagina.data);
+      setSiguienteCursor(pagina.hayMas ? pagina.siguienteCursor : null);
     } catch (error) {
       console.error("Error:", error);
       toast.error("No se pudieron cargar tus pedidos");
@@ -27,6 +30,20 @@ export default function Mispedidos() {
     }
   };
 
+  const cargarMas = async () => {
+    try {
+      setCargandoMas(true);
+      const pagina = await pedidoService.obtenerMisPedidos(siguienteCursor);
+      setPedidos((anteriores) => [...anteriores, ...pagina.data]);
+      setSiguienteCursor(pagina.hayMas ? pagina.siguienteCursor : null);
+    } catch (error) {
+      console.error("Error:", error);
+      toast.error("No se pudieron cargar más pedidos");
+    } finally {
+      setCargandoMas(false);
+    }
+  };
+
   const toggleDetalle = (pedidoId) => {
     setExpandedPedido(expandedPedido === pedidoId ? null : pedidoId);
   };
@@ -183,6 +200,16 @@ export default function Mispedidos() {
                 )}
               </div>
             ))}
+
+            {siguienteCursor && (
+              <button
+                onClick={cargarMas}
+                disabled={cargandoMas}
+                className="w-full py-3 border border-gray-300 rounded-lg bg-white hover:bg-gray-50 transition font-medium text-gray-700 disabled:opacity-50"
+              >
+                {cargandoMas ? "Cargando..." : "Cargar más pedidos"}
+              </button>
+            )}
           </div>
         )}
       </div>
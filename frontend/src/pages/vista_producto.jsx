@@ -39,32 +39,25 @@ export default function VistaProducto() {
         return;
       }
 
-      const productosResponse = await productoService.obtenerProductosPublicos();
-      const productosData = productosResponse.data || productosResponse;
-
-      console.log("Productos cargados:", productosData?.length);
-
-      if (Array.isArray(productosData)) {
-        const productoEncontrado = productosData.find(
-          (p) => p.id === parseInt(productoId)
-        );
-        
-        console.log("Producto encontrado:", productoEncontrado);
-
-        if (productoEncontrado) {
-          setProducto(productoEncontrado);
-          // Establecer cantidad inicial como la mínima del producto
-          setCantidad(productoEncontrado.cantidadMinima || 1);
-        } else {
-          console.error("Producto no encontrado con ID:", productoId);
-          toast.error("Producto no encontrado");
-          setTimeout(() => {
-            window.location.href = "/catalogo";
-          }, 1000);
-        }
+      let productoEncontrado = null;
+      try {
+        const productoResponse = await productoService.obtenerProductoPublico(productoId);
+        productoEncontrado = productoResponse.data;
+      } catch (error) {
+        console.error("Producto no encontrado con ID:", productoId, error);
+      }
+
+      console.log("Producto encontrado:", productoEncontrado);
+
+      if (productoEncontrado) {
+        setProducto(productoEncontrado);
+        // Establecer cantidad inicial como la mínima del producto
+        setCantidad(productoEncontrado.cantidadMinima || 1);
       } else {
-        console.error("Los productos no son un array");
-        toast.error("Error al cargar productos");
+        toast.error("Producto no encontrado");
+        setTimeout(() => {
+          window.location.href = "/catalogo";
+        }, 1000);
       }
     } catch (error) {
       console.error("Error en cargarProducto:", error);
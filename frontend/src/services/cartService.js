@@ -16,6 +16,16 @@ const cartService = {
     return token;
   },
 
+  /**
+   * Cantidad de líneas del carrito que el backend envía en la cabecera X-Carrito-Items
+   * @param {Response} response
+   * @returns {number|null} null si la respuesta no la trae
+   */
+  leerContador(response) {
+    const valor = response.headers.get('X-Carrito-Items');
+    return valor !== null ? Number(valor) : null;
+  },
+
   /**
    * Agregar producto al carrito
    * @param {Object} data - {productoId, cantidad}
@@ -40,13 +50,57 @@ const cartService = {
         throw new Error(result.message || 'Error al agregar producto');
       }
 
-      return result;
+      return { ...result, carritoItems: this.leerContador(response) };
     } catch (error) {
       console.error('Error en agregarProducto:', error);
       throw error;
     }
   },
 
+  /**
+   * Agregar varias líneas en una sola petición
+   * @param {Array<Object>} items - [{productoId, cantidad}]
+   * @returns {Promise<Object>} data.resultados trae el resultado de cada producto
+   */
+  async agregarProductos(items) {
+    return this.enviarLote('POST', items, 'Error al agregar productos');
+  },
+
+  /**
+   * Fijar la cantidad de varias líneas del carrito (por producto)
+   * @param {Array<Object>} items - [{productoId, cantidad}]
+   * @returns {Promise<Object>}
+   */
+  async actualizarCantidades(items) {
+    return this.enviarLote('PUT', items, 'Error al actualizar cantidades');
+  },
+
+  async enviarLote(method, items, mensajeError) {
+    try {
+      const token = this.getToken();
+
+      const response = await fetch(`${API_BASE_URL}/usuario/carrito/lote`, {
+        method,
+        headers: {
+          'Content-Type': 'application/json',
+          'Authorization': `Bearer ${token}`,
+        },
+        body: JSON.stringify({ items }),
+      });
+
+      const result = await response.json();
+
+      if (!response.ok) {
+        throw new Error(result.message || mensajeError);
+      }
+
+      return { ...result, carritoItems: this.leerContador(response) };
+    } catch (error) {
+      console.error('Error en enviarLote:', error);
+      throw error;
+    }
+  },
+
   /**
    * Obtener carrito completo
    * @returns {Promise<Object>}
@@ -157,7 +211,7 @@ const cartService = {
         throw new Error(result.message || 'Error al eliminar producto');
       }
 
-      return result;
+      return { ...result, carritoItems: this.leerContador(response) };
     } catch (error) {
       console.error('Error en eliminarProducto:', error);
       throw error;
@@ -192,34 +246,6 @@ const cartService = {
     }
   },
 
-  /**
-   * Limpiar productos no disponibles
-   * @returns {Promise<Object>}
-   */
-  async limpiarNoDisponibles() {
-    try {
-      const token = this.getToken();
-
-      const response = await fetch(`${API_BASE_URL}/usuario/carrito/limpiar`, {
-        method: 'POST',
-        headers: {
-          'Authorization': `Bearer ${token}`,
-        },
-      });
-
-      const result = await response.json();
-
-      if (!response.ok) {
-        throw new Error(result.message || 'Error al limpiar productos');
-      }
-
-      return result;
-    } catch (error) {
-      console.error('Error en limpiarNoDisponibles:', error);
-      throw error;
-    }
-  },
-
   /**
    * Realizar el pedido (Checkout)
    * @param {Object} datosEntrega - { direccionEntrega, telefonoContacto, metodoPago }
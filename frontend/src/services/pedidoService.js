@@ -14,14 +14,16 @@ const pedidoService = {
   },
 
   /**
-   * Obtiene todos los pedidos del usuario autenticado
-   * @returns {Promise<Array>} Lista de pedidos
+   * Obtiene una página del historial de pedidos del usuario autenticado
+   * @param {string|null} cursor - Cursor devuelto por la página anterior (null para la primera)
+   * @returns {Promise<Object>} { data, siguienteCursor, hayMas, totalPedidos }
    */
-  async obtenerMisPedidos() {
+  async obtenerMisPedidos(cursor = null) {
     try {
       const token = this.getToken();
+      const params = cursor ? `?cursor=${encodeURIComponent(cursor)}` : '';
 
-      const response = await fetch(`${API_BASE_URL}/pedidos/mis-pedidos`, {
+      const response = await fetch(`${API_BASE_URL}/pedidos/mis-pedidos${params}`, {
         method: 'GET',
         headers: {
           'Authorization': `Bearer ${token}`,
@@ -241,23 +241,71 @@ const productoService = {
   },
 
   /**
-   * Obtiene todos los productos públicos
-   * @returns {Promise<Array>} Lista de productos
+   * Obtiene una página del catálogo público
+   * @param {Object} opciones - { cursor, limite, orden, categoriaId } (todas opcionales)
+   * @returns {Promise<Object>} { data, siguienteCursor, hayMas }
+   */
+  async obtenerPaginaProductos({ cursor, limite, orden, categoriaId } = {}) {
+    const params = new URLSearchParams();
+    if (cursor) params.append('cursor', cursor);
+    if (limite) params.append('limite', limite);
+    if (orden) params.append('orden', orden);
+    if (categoriaId) params.append('categoriaId', categoriaId);
+    const query = params.toString() ? `?${params.toString()}` : '';
+
+    const response = await fetch(`${API_ENDPOINTS.PUBLIC_PRODUCTOS}${query}`, {
+      method: 'GET',
+    });
+
+    if (!response.ok) {
+      throw new Error('Error al obtener productos');
+    }
+
+    return response.json();
+  },
+
+  /**
+   * Obtiene todos los productos públicos recorriendo las páginas del catálogo
+   * @returns {Promise<Object>} { success, data } con la lista completa
    */
   async obtenerProductosPublicos() {
     try {
-      const response = await fetch(API_ENDPOINTS.PUBLIC_PRODUCTOS, {
+      const productos = [];
+      let cursor = null;
+      let hayMas = true;
+      while (hayMas) {
+        const pagina = await this.obtenerPaginaProductos({ cursor, limite: 100 });
+        productos.push(...(pagina.data || []));
+        cursor = pagina.siguienteCursor;
+        hayMas = pagina.hayMas && cursor;
+      }
+      return { success: true, data: productos };
+    } catch (error) {
+      console.error('Error en obtenerProductosPublicos:', error);
+      throw error;
+    }
+  },
+
+  /**
+   * Obtiene un producto disponible por su ID
+   * @param {number} productoId - ID del producto
+   * @returns {Promise<Object>} { success, data }
+   */
+  async obtenerProductoPublico(productoId) {
+    try {
+      const response = await fetch(API_ENDPOINTS.PUBLIC_PRODUCTO(productoId), {
         method: 'GET',
       });
 
+      const data = await response.json();
+
       if (!response.ok) {
-        throw new Error('Error al obtener productos');
+        throw new Error(data.message || 'Producto no encontrado');
       }
 
-      const data = await response.json();
       return data;
     } catch (error) {
-      console.error('Error en obtenerProductosPublicos:', error);
+      console.error('Error en obtenerProductoPublico:', error);
       throw error;
     }
   },
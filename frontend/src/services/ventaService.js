@@ -1,9 +1,20 @@
 import { API_BASE_URL } from '../config/api';
 
 const ventaService = {
-  async obtenerMisVentas() {
+  /**
+   * Una página de ventas del proveedor
+   * @param {Object} opciones - { desde, hasta, cursor } (fechas en formato YYYY-MM-DD, todas opcionales)
+   * @returns {Promise<Object>} { data, siguienteCursor, hayMas }
+   */
+  async obtenerMisVentas({ desde, hasta, cursor } = {}) {
     const token = localStorage.getItem('token');
-    const response = await fetch(`${API_BASE_URL}/proveedor/ventas`, {
+    const params = new URLSearchParams();
+    if (desde) params.append('desde', desde);
+    if (hasta) params.append('hasta', hasta);
+    if (cursor) params.append('cursor', cursor);
+    const query = params.toString() ? `?${params.toString()}` : '';
+
+    const response = await fetch(`${API_BASE_URL}/proveedor/ventas${query}`, {
       method: 'GET',
       headers: {
         'Authorization': `Bearer ${token}`,
@@ -16,6 +27,92 @@ const ventaService = {
     }
 
     return response.json();
+  },
+
+  /**
+   * Una página de pedidos del proveedor (solo su parte de cada pedido)
+   * @param {Object} opciones - { desde, hasta, cursor } (fechas en formato YYYY-MM-DD, todas opcionales)
+   * @returns {Promise<Object>} { data, siguienteCursor, hayMas }
+   */
+  async obtenerMisPedidos({ desde, hasta, cursor } = {}) {
+    const token = localStorage.getItem('token');
+    const params = new URLSearchParams();
+    if (desde) params.append('desde', desde);
+    if (hasta) params.append('hasta', hasta);
+    if (cursor) params.append('cursor', cursor);
+    const query = params.toString() ? `?${params.toString()}` : '';
+
+    const response = await fetch(`${API_BASE_URL}/proveedor/ventas/pedidos${query}`, {
+      method: 'GET',
+      headers: {
+        'Authorization': `Bearer ${token}`,
+      },
+    });
+
+    if (!response.ok) {
+      const errorData = await response.json();
+      throw new Error(errorData.message || 'Error al obtener pedidos');
+    }
+
+    return response.json();
+  },
+
+  /**
+   * Totales, serie diaria y productos más vendidos del rango (calculados con los acumulados diarios)
+   * @param {Object} opciones - { desde, hasta } en formato YYYY-MM-DD (opcionales)
+   */
+  async obtenerResumen({ desde, hasta } = {}) {
+    const token = localStorage.getItem('token');
+    const params = new URLSearchParams();
+    if (desde) params.append('desde', desde);
+    if (hasta) params.append('hasta', hasta);
+    const query = params.toString() ? `?${params.toString()}` : '';
+
+    const response = await fetch(`${API_BASE_URL}/proveedor/ventas/resumen${query}`, {
+      method: 'GET',
+      headers: {
+        'Authorization': `Bearer ${token}`,
+      },
+    });
+
+    if (!response.ok) {
+      const errorData = await response.json();
+      throw new Error(errorData.message || 'Error al obtener el resumen de ventas');
+    }
+
+    const data = await response.json();
+    return data.data;
+  },
+
+  /**
+   * Descarga todas las ventas del rango como archivo (el servidor las envía en streaming)
+   * @param {Object} opciones - { desde, hasta, formato } formato: 'csv' o 'ndjson'
+   */
+  async exportarVentas({ desde, hasta, formato = 'csv' } = {}) {
+    const token = localStorage.getItem('token');
+    const params = new URLSearchParams({ formato });
+    if (desde) params.append('desde', desde);
+    if (hasta) params.append('hasta', hasta);
+
+    const response = await fetch(`${API_BASE_URL}/proveedor/ventas/exportar?${params.toString()}`, {
+      method: 'GET',
+      headers: {
+        'Authorization': `Bearer ${token}`,
+      },
+    });
+
+    if (!response.ok) {
+      const errorData = await response.json();
+      throw new Error(errorData.message || 'Error al exportar ventas');
+    }
+
+    const archivo = await response.blob();
+    const url = URL.createObjectURL(archivo);
+    const enlace = document.createElement('a');
+    enlace.href = url;
+    enlace.download = `ventas.${formato}`;
+    enlace.click();
+    URL.revokeObjectURL(url);
   }
 };
 